@@ -15,15 +15,20 @@ import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.lifecycle.ViewModelProvider;
 
+import com.example.healthsensorpro.data.model.ActivityType;
 import com.example.healthsensorpro.utils.PermissionsHelper;
 import com.google.android.material.card.MaterialCardView;
-import com.example.healthsensorpro.data.model.HealthMetrics;
 import com.example.healthsensorpro.ui.components.MetricCardView;
 import com.example.healthsensorpro.viewmodel.SensorViewModel;
 import java.util.List;
 import java.util.Locale;
 
 public class MainActivity extends AppCompatActivity {
+    // Parsed once instead of on every activity update
+    private static final int COLOR_WALKING = Color.parseColor("#4CAF50");
+    private static final int COLOR_RUNNING = Color.parseColor("#F44336");
+    private static final int COLOR_STATIONARY = Color.parseColor("#9E9E9E");
+
     private SensorViewModel viewModel;
 
     // UI Components
@@ -108,10 +113,36 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void observeViewModel() {
-        // Observe health metrics
-        viewModel.getHealthMetrics().observe(this, metrics -> {
-            if (metrics != null) {
-                updateMetricsUI(metrics);
+        // Observe health metrics, each card only rebinds when its value changes
+        viewModel.getSteps().observe(this, steps -> {
+            if (steps != null) {
+                stepsCard.setValue(String.valueOf(steps));
+            }
+        });
+
+        viewModel.getCalories().observe(this, calories -> {
+            if (calories != null) {
+                caloriesCard.setValue(String.format(Locale.getDefault(), "%.1f", calories));
+            }
+        });
+
+        viewModel.getDistance().observe(this, distance -> {
+            if (distance != null) {
+                distanceCard.setValue(String.format(Locale.getDefault(), "%.2f", distance));
+            }
+        });
+
+        viewModel.getHeartRate().observe(this, heartRate -> {
+            if (heartRate != null) {
+                heartRateCard.setValue(String.format(Locale.getDefault(), "%.0f", heartRate));
+            } else {
+                heartRateCard.setValue("--");
+            }
+        });
+
+        viewModel.getActivity().observe(this, activity -> {
+            if (activity != null) {
+                updateActivityUI(activity);
             }
         });
 
@@ -138,42 +169,24 @@ public class MainActivity extends AppCompatActivity {
         });
     }
 
-    private void updateMetricsUI(HealthMetrics metrics) {
-        // Update steps
-        stepsCard.setValue(String.valueOf(metrics.getTotalSteps()));
-
-        // Update calories
-        caloriesCard.setValue(String.format(Locale.getDefault(), "%.1f", metrics.getTotalCalories()));
-
-        // Update distance
-        distanceCard.setValue(String.format(Locale.getDefault(), "%.2f", metrics.getTotalDistance()));
-
-        // Update heart rate
-        if (metrics.getAvgHeartRate() != null) {
-            heartRateCard.setValue(String.format(Locale.getDefault(), "%.0f", metrics.getAvgHeartRate()));
-        } else {
-            heartRateCard.setValue("--");
-        }
-
-        // Update activity
-        String activity = metrics.getCurrentActivity();
-        activityText.setText(activity);
+    private void updateActivityUI(ActivityType activity) {
+        activityText.setText(activity.getLabel());
 
         // Update activity icon and color based on activity
         int color;
         int iconResId;
 
         switch (activity) {
-            case "Walking":
-                color = Color.parseColor("#4CAF50");
+            case WALKING:
+                color = COLOR_WALKING;
                 iconResId = R.drawable.ic_walk;
                 break;
-            case "Running":
-                color = Color.parseColor("#F44336");
+            case RUNNING:
+                color = COLOR_RUNNING;
                 iconResId = R.drawable.ic_run;
                 break;
             default:
-                color = Color.parseColor("#9E9E9E");
+                color = COLOR_STATIONARY;
                 iconResId = R.drawable.ic_pause;
                 break;
         }
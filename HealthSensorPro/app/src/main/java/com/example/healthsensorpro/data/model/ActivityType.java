@@ -0,0 +1,42 @@
+package com.example.healthsensorpro.data.model;
+
+public enum ActivityType {
+    UNKNOWN((byte) 0, "Unknown"),
+    STATIONARY((byte) 1, "Stationary"),
+    WALKING((byte) 2, "Walking"),
+    RUNNING((byte) 3, "Running");
+
+    // values() clones the array on every call, so keep one copy for lookups
+    private static final ActivityType[] BY_CODE = values();
+
+    private final byte code;
+    private final String label;
+
+    ActivityType(byte code, String label) {
+        this.code = code;
+        this.label = label;
+    }
+
+    public byte getCode() { return code; }
+    public String getLabel() { return label; }
+
+    public static int count() {
+        return BY_CODE.length;
+    }
+
+    public static ActivityType fromCode(int code) {
+        if (code < 0 || code >= BY_CODE.length) {
+            return UNKNOWN;
+        }
+        return BY_CODE[code];
+    }
+
+    public static ActivityType fromLabel(String label) {
+        for (ActivityType type : BY_CODE) {
+            if (type.label.equals(label)) {
+                return type;
+            }
+        }
+        return UNKNOWN;
+    }
+}
@@ -1,18 +1,30 @@
 package com.example.healthsensorpro.data.model;
 
 public class HealthMetrics {
+    // Below 50% of the maximum heart rate, then one per 10% up to 90% and above
+    public static final int HEART_RATE_ZONES = 6;
+
     private int totalSteps;
     private double totalCalories;
     private double totalDistance;
-    private Float avgHeartRate;
-    private String currentActivity;
+    private float avgHeartRate;
+    private float minHeartRate;
+    private float maxHeartRate;
+    private float heartRateVariability;
+    private final long[] heartRateZoneMillis = new long[HEART_RATE_ZONES];
+    private ActivityType currentActivity;
+    private float cadence;
 
     public HealthMetrics() {
         this.totalSteps = 0;
         this.totalCalories = 0.0;
         this.totalDistance = 0.0;
-        this.avgHeartRate = null;
-        this.currentActivity = "Stationary";
+        this.avgHeartRate = Float.NaN;
+        this.minHeartRate = Float.NaN;
+        this.maxHeartRate = Float.NaN;
+        this.heartRateVariability = Float.NaN;
+        this.currentActivity = ActivityType.STATIONARY;
+        this.cadence = 0f;
     }
 
     // Getters and Setters
@@ -25,9 +37,30 @@ public class HealthMetrics {
     public double getTotalDistance() { return totalDistance; }
     public void setTotalDistance(double totalDistance) { this.totalDistance = totalDistance; }
 
-    public Float getAvgHeartRate() { return avgHeartRate; }
-    public void setAvgHeartRate(Float avgHeartRate) { this.avgHeartRate = avgHeartRate; }
+    // Smoothed over the last half minute or so; NaN when there is no heart
+    // rate reading
+    public float getAvgHeartRate() { return avgHeartRate; }
+    public void setAvgHeartRate(float avgHeartRate) { this.avgHeartRate = avgHeartRate; }
+    public boolean hasHeartRate() { return !Float.isNaN(avgHeartRate); }
+
+    // Since monitoring started, NaN without readings
+    public float getMinHeartRate() { return minHeartRate; }
+    public void setMinHeartRate(float minHeartRate) { this.minHeartRate = minHeartRate; }
+
+    public float getMaxHeartRate() { return maxHeartRate; }
+    public void setMaxHeartRate(float maxHeartRate) { this.maxHeartRate = maxHeartRate; }
+
+    // RMSSD of the beat-to-beat intervals in ms, NaN without a heart beat sensor
+    public float getHeartRateVariability() { return heartRateVariability; }
+    public void setHeartRateVariability(float heartRateVariability) { this.heartRateVariability = heartRateVariability; }
+
+    public long getHeartRateZoneMillis(int zone) { return heartRateZoneMillis[zone]; }
+    public void setHeartRateZoneMillis(int zone, long millis) { heartRateZoneMillis[zone] = millis; }
+
+    public ActivityType getCurrentActivity() { return currentActivity; }
+    public void setCurrentActivity(ActivityType currentActivity) { this.currentActivity = currentActivity; }
 
-    public String getCurrentActivity() { return currentActivity; }
-    public void setCurrentActivity(String currentActivity) { this.currentActivity = currentActivity; }
-}
\ No newline at end of file
+    // Steps per minute, 0 when no rhythm is detected
+    public float getCadence() { return cadence; }
+    public void setCadence(float cadence) { this.cadence = cadence; }
+}
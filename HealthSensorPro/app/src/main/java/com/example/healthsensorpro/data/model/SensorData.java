@@ -5,22 +5,38 @@ public class SensorData {
     private int steps;
     private double calories;
     private double distance;
-    private Float heartRate;
+    private float heartRate;
     private float accelerometerX;
     private float accelerometerY;
     private float accelerometerZ;
-    private String activityType;
+    private ActivityType activityType;
+    private float cadence;
 
     public SensorData() {
         this.timestamp = System.currentTimeMillis();
         this.steps = 0;
         this.calories = 0.0;
         this.distance = 0.0;
-        this.heartRate = null;
+        this.heartRate = Float.NaN;
         this.accelerometerX = 0f;
         this.accelerometerY = 0f;
         this.accelerometerZ = 0f;
-        this.activityType = "Unknown";
+        this.activityType = ActivityType.UNKNOWN;
+        this.cadence = 0f;
+    }
+
+    // Instances are reused, so copying replaces allocating a new one
+    public void copyFrom(SensorData other) {
+        this.timestamp = other.timestamp;
+        this.steps = other.steps;
+        this.calories = other.calories;
+        this.distance = other.distance;
+        this.heartRate = other.heartRate;
+        this.accelerometerX = other.accelerometerX;
+        this.accelerometerY = other.accelerometerY;
+        this.accelerometerZ = other.accelerometerZ;
+        this.activityType = other.activityType;
+        this.cadence = other.cadence;
     }
 
     // Getters and Setters
@@ -36,8 +52,10 @@ public class SensorData {
     public double getDistance() { return distance; }
     public void setDistance(double distance) { this.distance = distance; }
 
-    public Float getHeartRate() { return heartRate; }
-    public void setHeartRate(Float heartRate) { this.heartRate = heartRate; }
+    // NaN when there is no heart rate reading
+    public float getHeartRate() { return heartRate; }
+    public void setHeartRate(float heartRate) { this.heartRate = heartRate; }
+    public boolean hasHeartRate() { return !Float.isNaN(heartRate); }
 
     public float getAccelerometerX() { return accelerometerX; }
     public void setAccelerometerX(float accelerometerX) { this.accelerometerX = accelerometerX; }
@@ -48,6 +66,10 @@ public class SensorData {
     public float getAccelerometerZ() { return accelerometerZ; }
     public void setAccelerometerZ(float accelerometerZ) { this.accelerometerZ = accelerometerZ; }
 
-    public String getActivityType() { return activityType; }
-    public void setActivityType(String activityType) { this.activityType = activityType; }
-}
\ No newline at end of file
+    public ActivityType getActivityType() { return activityType; }
+    public void setActivityType(ActivityType activityType) { this.activityType = activityType; }
+
+    // Steps per minute, 0 when no rhythm is detected
+    public float getCadence() { return cadence; }
+    public void setCadence(float cadence) { this.cadence = cadence; }
+}
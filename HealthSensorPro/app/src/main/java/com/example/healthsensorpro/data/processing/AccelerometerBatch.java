@@ -0,0 +1,113 @@
+package com.example.healthsensorpro.data.processing;
+
+// Fixed-capacity buffer for one burst of accelerometer samples, packed as a
+// struct of arrays: each timestamp as an int nanosecond delta from the one
+// before, each axis as an int16 multiple of getScale(). That is 10 bytes a
+// sample, against 20 for a long and three floats.
+//
+// The scale is the sensor's own resolution, so its readings are packed
+// without loss, unless the range would not fit in 16 bits at that step; then
+// it is maximumRange / 32767, and a value comes back off by at most half a
+// step (getMaxError(), 0.0012 m/s^2 at +-8 g). Values beyond the range are
+// clamped, as the sensor would. Timestamps are exact.
+//
+// Consumers read the arrays in place, summing the deltas from
+// getFirstTimestamp(). Filled and drained on the sensor thread.
+public class AccelerometerBatch {
+    // +-8 g, the usual range of phone accelerometers
+    public static final float DEFAULT_MAXIMUM_RANGE = 8 * 9.80665f;
+    private static final int MAX_STEPS = Short.MAX_VALUE;
+    // For a sensor that does not report its range and resolution
+    public static final float DEFAULT_SCALE = DEFAULT_MAXIMUM_RANGE / MAX_STEPS;
+
+    private final int[] timestampDeltas;
+    private final short[] xs;
+    private final short[] ys;
+    private final short[] zs;
+    private final float scale;
+    private final float inverseScale;
+    private long firstTimestamp;
+    private long lastTimestamp;
+    private int size = 0;
+
+    public AccelerometerBatch(int capacity) {
+        this(capacity, DEFAULT_MAXIMUM_RANGE);
+    }
+
+    // maximumRange in m/s^2, as reported by the sensor
+    public AccelerometerBatch(int capacity, float maximumRange) {
+        this(capacity, maximumRange, 0f);
+    }
+
+    // maximumRange and resolution in m/s^2, as reported by the sensor; a
+    // resolution of 0 means unknown
+    public AccelerometerBatch(int capacity, float maximumRange, float resolution) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        if (!(maximumRange > 0)) {
+            throw new IllegalArgumentException("maximumRange must be positive: " + maximumRange);
+        }
+        timestampDeltas = new int[capacity];
+        xs = new short[capacity];
+        ys = new short[capacity];
+        zs = new short[capacity];
+        scale = scaleFor(maximumRange, resolution);
+        inverseScale = 1 / scale;
+    }
+
+    // The packing step for a sensor: its resolution, or coarser if its range
+    // would not fit in 16 bits at that step. Non-positive values are unknown.
+    public static float scaleFor(float maximumRange, float resolution) {
+        float fit = (maximumRange > 0 ? maximumRange : DEFAULT_MAXIMUM_RANGE) / MAX_STEPS;
+        return resolution > fit ? resolution : fit;
+    }
+
+    // Returns false when the batch is full, or the sample is more than ~2.1 s
+    // away from the previous one; drain the batch and add it again
+    public boolean add(long timestampNanos, float x, float y, float z) {
+        if (size == timestampDeltas.length) {
+            return false;
+        }
+        long delta = size == 0 ? 0L : timestampNanos - lastTimestamp;
+        if (delta != (int) delta) {
+            return false;
+        }
+        if (size == 0) {
+            firstTimestamp = timestampNanos;
+        }
+        timestampDeltas[size] = (int) delta;
+        xs[size] = pack(x);
+        ys[size] = pack(y);
+        zs[size] = pack(z);
+        lastTimestamp = timestampNanos;
+        size++;
+        return true;
+    }
+
+    private short pack(float value) {
+        int steps = Math.round(value * inverseScale);
+        return (short) Math.max(-MAX_STEPS, Math.min(MAX_STEPS, steps));
+    }
+
+    public boolean isFull() { return size == timestampDeltas.length; }
+    public int size() { return size; }
+    public int capacity() { return timestampDeltas.length; }
+
+    // Timestamp of sample 0; its delta is 0
+    public long getFirstTimestamp() { return firstTimestamp; }
+    public long getLastTimestamp() { return lastTimestamp; }
+
+    public int[] timestampDeltas() { return timestampDeltas; }
+    public short[] xs() { return xs; }
+    public short[] ys() { return ys; }
+    public short[] zs() { return zs; }
+
+    // m/s^2 per step of the packed axes
+    public float getScale() { return scale; }
+    public float getMaxError() { return scale / 2; }
+
+    public void clear() {
+        size = 0;
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.healthsensorpro.data.processing;
+
+import com.example.healthsensorpro.data.model.ActivityType;
+
+// Sliding-window activity classifier over the accelerometer magnitude.
+//
+// The window keeps the last windowLength samples in primitive rings and
+// maintains running sums for the features, so each sample costs O(1):
+//  - mean and variance of the magnitude (sum, sum of squares)
+//  - energy: mean square of the magnitude minus a slow gravity baseline
+//  - zero-crossing rate of the magnitude around that baseline, per second
+// A new classification is made every hopLength samples. Running sums are
+// rebuilt from the rings every RESYNC_WRAPS passes to shed rounding drift.
+//
+// The rings are packed like AccelerometerBatch, 9 bytes a sample against 17
+// for a long and two floats and a byte: the time since the previous sample
+// as an int (gaps over ~2.1 s count as that), the magnitude as an unsigned
+// 16-bit multiple of the scale, and the magnitude less gravity as a signed
+// one, squared for the energy. The features are computed from the packed
+// values, so adding and evicting a sample cancel exactly.
+//
+// Plain Java and allocation-free; confined to one thread.
+public class ActivityClassifier {
+    private static final double GRAVITY_TIME_CONSTANT = 1.0; // seconds
+    private static final double MAX_SAMPLE_GAP = 0.5;        // seconds
+    private static final int RESYNC_WRAPS = 64;
+
+    // Below this energy the device is considered at rest
+    private static final double STATIONARY_ENERGY = 0.25;   // (m/s^2)^2
+    // Either a strong bounce or a fast cadence means running
+    private static final double RUNNING_STD_DEV = 3.0;      // m/s^2
+    private static final double RUNNING_CROSSINGS_HZ = 4.8; // two crossings per step, 2.4 steps/s
+    private static final double RUNNING_MIN_STD_DEV = 1.0;  // m/s^2
+
+    private static final int MAX_MAGNITUDE_STEPS = 0xFFFF;
+    private static final int MAX_DYNAMIC_STEPS = Short.MAX_VALUE;
+
+    private final int windowLength;
+    private final int hopLength;
+    private final float scale;
+    private final float inverseScale;
+
+    private final int[] timestampDeltas;
+    private final char[] magnitudes;
+    private final short[] dynamics;
+    private final byte[] crossings;
+    // Newest sample time less the oldest's
+    private long spanNanos = 0;
+    private int head = 0;
+    private int size = 0;
+    private int wraps = 0;
+    private int samplesSinceHop = 0;
+
+    private double sum = 0;
+    private double sumSquares = 0;
+    private double energySum = 0;
+    private int crossingCount = 0;
+
+    private boolean baselineInitialized = false;
+    private double gravity;
+    private long lastTimestamp;
+    private boolean lastAbove;
+
+    private ActivityType activity = ActivityType.UNKNOWN;
+    private float mean;
+    private float variance;
+    private float energy;
+    private float zeroCrossingRate;
+
+    public ActivityClassifier(int windowLength) {
+        this(windowLength, Math.max(1, windowLength / 2));
+    }
+
+    public ActivityClassifier(int windowLength, int hopLength) {
+        this(windowLength, hopLength, AccelerometerBatch.DEFAULT_SCALE);
+    }
+
+    // scale in m/s^2 per packed step, see AccelerometerBatch.scaleFor()
+    public ActivityClassifier(int windowLength, int hopLength, float scale) {
+        if (windowLength < 2) {
+            throw new IllegalArgumentException("windowLength must be at least 2: " + windowLength);
+        }
+        if (hopLength <= 0 || hopLength > windowLength) {
+            throw new IllegalArgumentException("hopLength must be in 1.." + windowLength + ": " + hopLength);
+        }
+        if (!(scale > 0)) {
+            throw new IllegalArgumentException("scale must be positive: " + scale);
+        }
+        this.windowLength = windowLength;
+        this.hopLength = hopLength;
+        this.scale = scale;
+        this.inverseScale = 1 / scale;
+        timestampDeltas = new int[windowLength];
+        magnitudes = new char[windowLength];
+        dynamics = new short[windowLength];
+        crossings = new byte[windowLength];
+    }
+
+    // Returns true when this sample completed a hop and getActivity() was updated
+    public boolean onSample(long timestampNanos, float x, float y, float z) {
+        float magnitude = (float) Math.sqrt(x * x + y * y + z * z);
+
+        long delta = 0;
+        if (!baselineInitialized) {
+            baselineInitialized = true;
+            gravity = magnitude;
+            lastAbove = false;
+        } else {
+            delta = Math.max(0, Math.min(Integer.MAX_VALUE, timestampNanos - lastTimestamp));
+            double dt = delta / 1e9;
+            if (dt > 0) {
+                dt = Math.min(dt, MAX_SAMPLE_GAP);
+                gravity += dt / (GRAVITY_TIME_CONSTANT + dt) * (magnitude - gravity);
+            }
+        }
+        lastTimestamp = timestampNanos;
+
+        double dynamic = magnitude - gravity;
+        boolean above = dynamic > 0;
+        byte crossed = (byte) (above != lastAbove ? 1 : 0);
+        lastAbove = above;
+
+        char packedMagnitude = (char) Math.min(MAX_MAGNITUDE_STEPS, Math.round(magnitude * inverseScale));
+        short packedDynamic = (short) Math.max(-MAX_DYNAMIC_STEPS,
+                Math.min(MAX_DYNAMIC_STEPS, Math.round(dynamic * inverseScale)));
+
+        if (size == windowLength) {
+            double old = magnitudes[head] * (double) scale;
+            double oldDynamic = dynamics[head] * (double) scale;
+            sum -= old;
+            sumSquares -= old * old;
+            energySum -= oldDynamic * oldDynamic;
+            crossingCount -= crossings[head];
+            // The next oldest's gap to the evicted sample leaves the window
+            spanNanos -= timestampDeltas[head + 1 == windowLength ? 0 : head + 1];
+        } else {
+            size++;
+        }
+        if (size > 1) {
+            spanNanos += delta;
+        }
+
+        double packed = packedMagnitude * (double) scale;
+        double packedDynamicValue = packedDynamic * (double) scale;
+        timestampDeltas[head] = (int) delta;
+        magnitudes[head] = packedMagnitude;
+        dynamics[head] = packedDynamic;
+        crossings[head] = crossed;
+        sum += packed;
+        sumSquares += packed * packed;
+        energySum += packedDynamicValue * packedDynamicValue;
+        crossingCount += crossed;
+
+        head++;
+        if (head == windowLength) {
+            head = 0;
+            if (++wraps == RESYNC_WRAPS) {
+                wraps = 0;
+                resync();
+            }
+        }
+
+        if (++samplesSinceHop < hopLength || size < windowLength) {
+            return false;
+        }
+        samplesSinceHop = 0;
+        classify();
+        return true;
+    }
+
+    private void classify() {
+        int n = size;
+        double windowMean = sum / n;
+        double windowVariance = Math.max(0, sumSquares / n - windowMean * windowMean);
+        double windowEnergy = energySum / n;
+
+        double crossingsPerSecond = spanNanos > 0 ? crossingCount / (spanNanos / 1e9) : 0;
+
+        mean = (float) windowMean;
+        variance = (float) windowVariance;
+        energy = (float) windowEnergy;
+        zeroCrossingRate = (float) crossingsPerSecond;
+
+        double stdDev = Math.sqrt(windowVariance);
+        if (windowEnergy < STATIONARY_ENERGY) {
+            activity = ActivityType.STATIONARY;
+        } else if (stdDev >= RUNNING_STD_DEV
+                || (crossingsPerSecond >= RUNNING_CROSSINGS_HZ && stdDev >= RUNNING_MIN_STD_DEV)) {
+            activity = ActivityType.RUNNING;
+        } else {
+            activity = ActivityType.WALKING;
+        }
+    }
+
+    private void resync() {
+        sum = 0;
+        sumSquares = 0;
+        energySum = 0;
+        for (int i = 0; i < size; i++) {
+            double magnitude = magnitudes[i] * (double) scale;
+            double dynamic = dynamics[i] * (double) scale;
+            sum += magnitude;
+            sumSquares += magnitude * magnitude;
+            energySum += dynamic * dynamic;
+        }
+    }
+
+    // Latest classification, UNKNOWN until the first window is full
+    public ActivityType getActivity() { return activity; }
+
+    // Features of the latest classification
+    public float getMean() { return mean; }
+    public float getVariance() { return variance; }
+    public float getEnergy() { return energy; }
+    public float getZeroCrossingRate() { return zeroCrossingRate; }
+
+    public int getWindowLength() { return windowLength; }
+    public int getHopLength() { return hopLength; }
+    // m/s^2 per step of the packed magnitudes
+    public float getScale() { return scale; }
+
+    public void reset() {
+        head = 0;
+        size = 0;
+        spanNanos = 0;
+        wraps = 0;
+        samplesSinceHop = 0;
+        sum = 0;
+        sumSquares = 0;
+        energySum = 0;
+        crossingCount = 0;
+        baselineInitialized = false;
+        activity = ActivityType.UNKNOWN;
+        mean = 0;
+        variance = 0;
+        energy = 0;
+        zeroCrossingRate = 0;
+    }
+}
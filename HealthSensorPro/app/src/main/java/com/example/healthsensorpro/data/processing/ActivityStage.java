@@ -0,0 +1,52 @@
+package com.example.healthsensorpro.data.processing;
+
+import com.example.healthsensorpro.data.model.ActivityType;
+
+// Classifies accelerometer samples with a windowed feature classifier and
+// smooths the per-window decisions with a short majority vote.
+// Confined to the sensor thread.
+public class ActivityStage {
+    // Samples per classification window (2 s at SENSOR_DELAY_NORMAL)
+    public static final int DEFAULT_WINDOW_LENGTH = 10;
+    // Window decisions in the majority vote
+    private static final int VOTE_LENGTH = 3;
+
+    private final ActivityClassifier classifier;
+    private final ActivityWindow activityWindow = new ActivityWindow(VOTE_LENGTH);
+
+    public ActivityStage() {
+        this(DEFAULT_WINDOW_LENGTH);
+    }
+
+    public ActivityStage(int windowLength) {
+        this(windowLength, AccelerometerBatch.DEFAULT_SCALE);
+    }
+
+    // scale packs the classifier's window, see AccelerometerBatch.scaleFor()
+    public ActivityStage(int windowLength, float scale) {
+        classifier = new ActivityClassifier(windowLength, Math.max(1, windowLength / 2), scale);
+    }
+
+    // timestampNanos is the sensor event time, not the processing time
+    public ActivityType process(long timestampNanos, float x, float y, float z) {
+        if (classifier.onSample(timestampNanos, x, y, z)) {
+            activityWindow.add(classifier.getActivity());
+        }
+        return classifier.getActivity();
+    }
+
+    // Most frequent recent window decision, UNKNOWN before the first window
+    public ActivityType getCurrentActivity() {
+        return activityWindow.getMode();
+    }
+
+    // Latest single-window decision
+    public ActivityType getDetectedActivity() { return classifier.getActivity(); }
+
+    public ActivityClassifier getClassifier() { return classifier; }
+
+    public void reset() {
+        activityWindow.clear();
+        classifier.reset();
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.healthsensorpro.data.processing;
+
+import com.example.healthsensorpro.data.model.ActivityType;
+
+// Sliding window of the last N activity codes with a running majority vote.
+// Per-class counters are updated on every add, so add() and getMode() are
+// O(1) and allocation-free. On a tie the current mode is kept.
+public class ActivityWindow {
+    private final byte[] codes;
+    private final int[] counts = new int[ActivityType.count()];
+    private int head = 0;
+    private int size = 0;
+    private int mode = ActivityType.UNKNOWN.getCode();
+
+    public ActivityWindow(int length) {
+        if (length <= 0) {
+            throw new IllegalArgumentException("window length must be positive: " + length);
+        }
+        codes = new byte[length];
+    }
+
+    public void add(ActivityType activity) {
+        int code = activity.getCode();
+        int evicted = -1;
+
+        if (size == codes.length) {
+            evicted = codes[head];
+            counts[evicted]--;
+        } else {
+            size++;
+        }
+        codes[head] = (byte) code;
+        head = head + 1 == codes.length ? 0 : head + 1;
+        counts[code]++;
+
+        if (size == 1 || counts[code] > counts[mode]) {
+            mode = code;
+        } else if (evicted == mode && evicted != code) {
+            // The leader lost a vote; another class may have overtaken it
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > counts[mode]) {
+                    mode = i;
+                }
+            }
+        }
+    }
+
+    public ActivityType getMode() {
+        return size == 0 ? ActivityType.UNKNOWN : ActivityType.fromCode(mode);
+    }
+
+    public int size() { return size; }
+    public int length() { return codes.length; }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+        mode = ActivityType.UNKNOWN.getCode();
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 0;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.healthsensorpro.data.processing;
+
+// Streaming cadence estimate from the accelerometer magnitude.
+//
+// A bank of BIN_COUNT single-frequency DFT bins covering 0.5-4 Hz is updated
+// on every sample (a sliding DFT with an exponential window of
+// WINDOW_TIME_CONSTANT seconds). Each bin keeps a rotating phasor that is
+// advanced by the real sample spacing, so irregular sensor timestamps are
+// handled without resampling and without trigonometry while the spacing is
+// stable. Cost per sample is a fixed handful of multiply-adds per bin; no
+// FFT is run. The cadence is the strongest bin, refined by parabolic
+// interpolation with its neighbours.
+//
+// Plain Java and allocation-free; confined to one thread.
+public class CadenceEstimator {
+    private static final double MIN_FREQUENCY = 0.5;           // Hz
+    private static final double FREQUENCY_STEP = 0.125;        // Hz
+    private static final int BIN_COUNT = 29;                   // up to 4 Hz
+    private static final double WINDOW_TIME_CONSTANT = 4.0;    // seconds
+    private static final double GRAVITY_TIME_CONSTANT = 1.0;   // seconds
+    private static final double MAX_SAMPLE_GAP = 0.5;          // seconds
+    // Bounce amplitude below which there is no rhythm worth reporting
+    private static final double MIN_AMPLITUDE = 0.3;           // m/s^2
+    private static final int RENORMALIZE_INTERVAL = 1024;
+
+    private final double[] omegas = new double[BIN_COUNT];
+    // Per-bin rotation for the current sample spacing
+    private final double[] rotationRe = new double[BIN_COUNT];
+    private final double[] rotationIm = new double[BIN_COUNT];
+    // Per-bin phasor e^(-i * omega * t) and accumulated spectrum
+    private final double[] phasorRe = new double[BIN_COUNT];
+    private final double[] phasorIm = new double[BIN_COUNT];
+    private final double[] spectrumRe = new double[BIN_COUNT];
+    private final double[] spectrumIm = new double[BIN_COUNT];
+
+    private boolean initialized = false;
+    private long lastTimestamp;
+    private long rotationDtNanos = -1;
+    private double decay;
+    private double gravity;
+    private double weight;
+    private int samplesSinceRenormalize = 0;
+
+    public CadenceEstimator() {
+        for (int k = 0; k < BIN_COUNT; k++) {
+            omegas[k] = 2 * Math.PI * (MIN_FREQUENCY + k * FREQUENCY_STEP);
+        }
+        reset();
+    }
+
+    public void onSample(long timestampNanos, float x, float y, float z) {
+        double magnitude = Math.sqrt(x * x + y * y + z * z);
+
+        if (!initialized) {
+            initialized = true;
+            lastTimestamp = timestampNanos;
+            gravity = magnitude;
+            return;
+        }
+
+        long dtNanos = timestampNanos - lastTimestamp;
+        lastTimestamp = timestampNanos;
+        if (dtNanos <= 0) {
+            return;
+        }
+        if (dtNanos > MAX_SAMPLE_GAP * 1e9) {
+            dtNanos = (long) (MAX_SAMPLE_GAP * 1e9);
+        }
+        double dt = dtNanos / 1e9;
+        if (Math.abs(dtNanos - rotationDtNanos) > rotationDtNanos / 8) {
+            updateRotation(dtNanos, dt);
+        }
+        // Jitter relative to the spacing the rotation was computed for
+        double delta = (dtNanos - rotationDtNanos) / 1e9;
+        double sampleDecay = decay * (1 - delta / WINDOW_TIME_CONSTANT);
+
+        gravity += dt / (GRAVITY_TIME_CONSTANT + dt) * (magnitude - gravity);
+        double value = (magnitude - gravity) * dt;
+        weight = sampleDecay * weight + dt;
+
+        for (int k = 0; k < BIN_COUNT; k++) {
+            // rotation(dt) = rotation(base) * rotation(delta), second order in delta
+            double angle = omegas[k] * delta;
+            double correctionRe = 1 - 0.5 * angle * angle;
+            double stepRe = rotationRe[k] * correctionRe + rotationIm[k] * angle;
+            double stepIm = rotationIm[k] * correctionRe - rotationRe[k] * angle;
+
+            double re = phasorRe[k] * stepRe - phasorIm[k] * stepIm;
+            double im = phasorRe[k] * stepIm + phasorIm[k] * stepRe;
+            phasorRe[k] = re;
+            phasorIm[k] = im;
+            spectrumRe[k] = sampleDecay * spectrumRe[k] + value * re;
+            spectrumIm[k] = sampleDecay * spectrumIm[k] + value * im;
+        }
+
+        if (++samplesSinceRenormalize == RENORMALIZE_INTERVAL) {
+            samplesSinceRenormalize = 0;
+            for (int k = 0; k < BIN_COUNT; k++) {
+                double length = Math.sqrt(phasorRe[k] * phasorRe[k] + phasorIm[k] * phasorIm[k]);
+                phasorRe[k] /= length;
+                phasorIm[k] /= length;
+            }
+        }
+    }
+
+    private void updateRotation(long dtNanos, double dt) {
+        rotationDtNanos = dtNanos;
+        decay = Math.exp(-dt / WINDOW_TIME_CONSTANT);
+        for (int k = 0; k < BIN_COUNT; k++) {
+            rotationRe[k] = Math.cos(omegas[k] * dt);
+            rotationIm[k] = -Math.sin(omegas[k] * dt);
+        }
+    }
+
+    // Steps per minute, or 0 when there is no clear rhythm. O(BIN_COUNT).
+    public float getCadence() {
+        if (weight <= 0) {
+            return 0f;
+        }
+
+        int best = 0;
+        double bestPower = -1;
+        for (int k = 0; k < BIN_COUNT; k++) {
+            double power = spectrumRe[k] * spectrumRe[k] + spectrumIm[k] * spectrumIm[k];
+            if (power > bestPower) {
+                bestPower = power;
+                best = k;
+            }
+        }
+
+        // A sinusoid of amplitude A accumulates to A / 2 * weight
+        double amplitude = 2 * Math.sqrt(bestPower) / weight;
+        if (amplitude < MIN_AMPLITUDE) {
+            return 0f;
+        }
+
+        double offset = 0;
+        if (best > 0 && best < BIN_COUNT - 1) {
+            double left = Math.sqrt(power(best - 1));
+            double center = Math.sqrt(bestPower);
+            double right = Math.sqrt(power(best + 1));
+            double denominator = left - 2 * center + right;
+            if (denominator != 0) {
+                offset = 0.5 * (left - right) / denominator;
+            }
+        }
+
+        double frequency = MIN_FREQUENCY + (best + offset) * FREQUENCY_STEP;
+        return (float) (frequency * 60);
+    }
+
+    private double power(int k) {
+        return spectrumRe[k] * spectrumRe[k] + spectrumIm[k] * spectrumIm[k];
+    }
+
+    public void reset() {
+        initialized = false;
+        rotationDtNanos = -1;
+        weight = 0;
+        samplesSinceRenormalize = 0;
+        for (int k = 0; k < BIN_COUNT; k++) {
+            phasorRe[k] = 1;
+            phasorIm[k] = 0;
+            spectrumRe[k] = 0;
+            spectrumIm[k] = 0;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.healthsensorpro.data.processing;
+
+import com.example.healthsensorpro.data.model.ActivityType;
+
+// Accumulates calories step by step, weighting each new step by the
+// intensity at the time it was taken. Confined to the sensor thread.
+public class CalorieStage {
+    private static final double CALORIES_PER_STEP = 0.04;
+    // Intensity rises linearly with cadence between these two points
+    private static final double EASY_CADENCE = 90;   // steps/min, intensity 1.0
+    private static final double HARD_CADENCE = 170;  // steps/min, intensity 1.8
+    private static final double MAX_INTENSITY = 1.8;
+
+    private int countedSteps = 0;
+    private double calories = 0;
+
+    // cadence in steps/min, 0 when unknown
+    public double onSteps(int totalSteps, float cadence, ActivityType activity) {
+        int newSteps = totalSteps - countedSteps;
+        if (newSteps > 0) {
+            calories += newSteps * CALORIES_PER_STEP * intensity(cadence, activity);
+        }
+        countedSteps = totalSteps;
+        return calories;
+    }
+
+    static double intensity(float cadence, ActivityType activity) {
+        if (cadence > 0) {
+            double position = (cadence - EASY_CADENCE) / (HARD_CADENCE - EASY_CADENCE);
+            return 1.0 + Math.max(0, Math.min(1, position)) * (MAX_INTENSITY - 1.0);
+        }
+
+        // No rhythm detected yet, fall back to the activity
+        switch (activity) {
+            case WALKING:
+                return 1.2;
+            case RUNNING:
+                return 1.8;
+            default:
+                return 1.0;
+        }
+    }
+
+    public double getCalories() { return calories; }
+
+    public void reset() {
+        countedSteps = 0;
+        calories = 0;
+    }
+}
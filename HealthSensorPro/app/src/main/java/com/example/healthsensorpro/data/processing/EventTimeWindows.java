@@ -0,0 +1,202 @@
+package com.example.healthsensorpro.data.processing;
+
+// Aggregates a scalar stream (acceleration magnitude, heart rate) into
+// windows of sensor event time, whatever order and grouping the events
+// arrive in. Windows are [start, start + size) with starts on multiples of
+// slide; size == slide gives tumbling windows, a multiple of it sliding ones.
+//
+// The watermark trails the newest event time by allowedLatenessNanos. Once it
+// reaches a window's end the window is emitted, exactly once, and never
+// changes again. An event older than the watermark still goes into the
+// windows holding it that are open; only one whose windows have all been
+// emitted is dropped, and counted. Windows without events are not emitted.
+//
+// Values are summed per pane of one slide, and a window combines its panes
+// when it closes. The panes are a fixed ring covering the lateness and one
+// window, so an event far ahead of the others just closes everything before
+// it. Allocation-free; confined to one thread.
+public final class EventTimeWindows {
+    // Called with a reused result, in window order
+    public interface Listener {
+        void onWindow(WindowResult window);
+    }
+
+    private final long sizeNanos;
+    private final long slideNanos;
+    private final long allowedLatenessNanos;
+    // Panes per window
+    private final int panesPerWindow;
+
+    private final int[] counts;
+    private final double[] sums;
+    private final double[] sumsOfSquares;
+    private final float[] mins;
+    private final float[] maxs;
+
+    private final WindowResult result = new WindowResult();
+    private Listener listener;
+
+    private boolean started = false;
+    private long maxEventNanos;
+    // Start pane of the next window to emit; the ring holds panes from here on
+    private long nextWindowPane;
+    // Newest pane with values, to skip runs of empty windows
+    private long lastFilledPane;
+    private long windowCount = 0L;
+    private long lateCount = 0L;
+
+    public EventTimeWindows(long sizeNanos, long slideNanos, long allowedLatenessNanos) {
+        if (slideNanos <= 0 || sizeNanos < slideNanos || sizeNanos % slideNanos != 0) {
+            throw new IllegalArgumentException("size must be a positive multiple of slide: "
+                    + sizeNanos + ", " + slideNanos);
+        }
+        if (allowedLatenessNanos < 0) {
+            throw new IllegalArgumentException("allowedLatenessNanos must be >= 0: " + allowedLatenessNanos);
+        }
+        long panes = sizeNanos / slideNanos + (allowedLatenessNanos + slideNanos - 1) / slideNanos + 1;
+        if (panes > 1 << 16) {
+            throw new IllegalArgumentException("Too many panes for a slide of " + slideNanos);
+        }
+        this.sizeNanos = sizeNanos;
+        this.slideNanos = slideNanos;
+        this.allowedLatenessNanos = allowedLatenessNanos;
+        this.panesPerWindow = (int) (sizeNanos / slideNanos);
+        int capacity = (int) panes;
+        counts = new int[capacity];
+        sums = new double[capacity];
+        sumsOfSquares = new double[capacity];
+        mins = new float[capacity];
+        maxs = new float[capacity];
+        clearPanes();
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    // Returns false if the event was too late and dropped
+    public boolean add(long timestampNanos, float value) {
+        if (!started) {
+            started = true;
+            maxEventNanos = timestampNanos;
+            nextWindowPane = firstOpenWindow(getWatermark());
+            lastFilledPane = nextWindowPane - 1;
+        } else if (pane(timestampNanos) < nextWindowPane) {
+            // The newest window holding it starts in its pane, and is emitted
+            lateCount++;
+            return false;
+        } else if (timestampNanos > maxEventNanos) {
+            maxEventNanos = timestampNanos;
+            emitUntil(getWatermark());
+        }
+
+        long pane = pane(timestampNanos);
+        int index = slot(pane);
+        counts[index]++;
+        sums[index] += value;
+        sumsOfSquares[index] += (double) value * value;
+        mins[index] = Math.min(mins[index], value);
+        maxs[index] = Math.max(maxs[index], value);
+        lastFilledPane = Math.max(lastFilledPane, pane);
+        return true;
+    }
+
+    // Emits every window still holding events, e.g. at the end of a replay.
+    // Events before the end of the newest one's pane are late afterwards.
+    public void flush() {
+        if (!started) {
+            return;
+        }
+        emitUntil(Long.MAX_VALUE);
+        // Nothing at or before the newest event can be added to a window now
+        nextWindowPane = Math.max(nextWindowPane, pane(maxEventNanos) + 1);
+        lastFilledPane = nextWindowPane - 1;
+        maxEventNanos = Math.max(maxEventNanos, nextWindowPane * slideNanos + allowedLatenessNanos);
+    }
+
+    // Windows ending at or before this are emitted
+    public long getWatermark() {
+        return started ? maxEventNanos - allowedLatenessNanos : Long.MIN_VALUE;
+    }
+
+    public long getWindowCount() { return windowCount; }
+    public long getLateCount() { return lateCount; }
+    public long getSizeNanos() { return sizeNanos; }
+    public long getSlideNanos() { return slideNanos; }
+
+    public void reset() {
+        started = false;
+        windowCount = 0L;
+        lateCount = 0L;
+        clearPanes();
+    }
+
+    private void emitUntil(long watermark) {
+        while (nextWindowPane <= lastFilledPane) {
+            long start = nextWindowPane * slideNanos;
+            long end = start + sizeNanos;
+            if (end > watermark) {
+                return;
+            }
+            emit(nextWindowPane, start, end);
+            clearPane(slot(nextWindowPane));
+            nextWindowPane++;
+        }
+        // Only empty windows are left before the watermark: jump to the first
+        // one still open
+        if (watermark != Long.MAX_VALUE) {
+            nextWindowPane = Math.max(nextWindowPane, firstOpenWindow(watermark));
+        }
+    }
+
+    // Start pane of the first window ending after the watermark
+    private long firstOpenWindow(long watermark) {
+        return Math.floorDiv(watermark - sizeNanos, slideNanos) + 1;
+    }
+
+    private void emit(long firstPane, long start, long end) {
+        int count = 0;
+        double sum = 0;
+        double sumOfSquares = 0;
+        float min = Float.POSITIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+        for (long pane = firstPane; pane < firstPane + panesPerWindow; pane++) {
+            int index = slot(pane);
+            count += counts[index];
+            sum += sums[index];
+            sumOfSquares += sumsOfSquares[index];
+            min = Math.min(min, mins[index]);
+            max = Math.max(max, maxs[index]);
+        }
+        if (count == 0) {
+            return;
+        }
+        result.set(start, end, count, sum, sumOfSquares, min, max);
+        windowCount++;
+        if (listener != null) {
+            listener.onWindow(result);
+        }
+    }
+
+    private long pane(long timestampNanos) {
+        return Math.floorDiv(timestampNanos, slideNanos);
+    }
+
+    private int slot(long pane) {
+        return (int) Math.floorMod(pane, (long) counts.length);
+    }
+
+    private void clearPanes() {
+        for (int i = 0; i < counts.length; i++) {
+            clearPane(i);
+        }
+    }
+
+    private void clearPane(int index) {
+        counts[index] = 0;
+        sums[index] = 0;
+        sumsOfSquares[index] = 0;
+        mins[index] = Float.POSITIVE_INFINITY;
+        maxs[index] = Float.NEGATIVE_INFINITY;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.healthsensorpro.data.processing;
+
+// Values of every SensorTimeline stream at one reference timestamp. Stream 0
+// is the reference itself; the others are numbered in the order they were
+// added. Reused between frames.
+public final class FusedFrame {
+    private long timestampNanos;
+    private final int[] sensorTypes;
+    private final int[] offsets;
+    private final int[] dimensions;
+    private final float[] values;
+    private final boolean[] present;
+    private final long[] ageNanos;
+
+    FusedFrame(int[] sensorTypes, int[] dimensions) {
+        this.sensorTypes = sensorTypes.clone();
+        this.dimensions = dimensions.clone();
+        offsets = new int[dimensions.length];
+        int total = 0;
+        for (int i = 0; i < dimensions.length; i++) {
+            offsets[i] = total;
+            total += dimensions[i];
+        }
+        values = new float[total];
+        present = new boolean[dimensions.length];
+        ageNanos = new long[dimensions.length];
+    }
+
+    public long getTimestamp() { return timestampNanos; }
+    public int getStreamCount() { return dimensions.length; }
+    public int getDimension(int stream) { return dimensions[stream]; }
+    public int getSensorType(int stream) { return sensorTypes[stream]; }
+
+    // Stream of the sensor type, -1 if it is not part of the frame
+    public int indexOf(int sensorType) {
+        for (int i = 0; i < sensorTypes.length; i++) {
+            if (sensorTypes[i] == sensorType) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // False until the stream has delivered a sample it can be aligned with
+    public boolean has(int stream) { return present[stream]; }
+
+    public float getValue(int stream, int axis) {
+        return values[offsets[stream] + axis];
+    }
+
+    // How far the value is from a real sample of the stream: 0 for the
+    // reference and interpolated values, the time held for held ones
+    public long getAgeNanos(int stream) { return ageNanos[stream]; }
+
+    void setTimestamp(long timestampNanos) {
+        this.timestampNanos = timestampNanos;
+    }
+
+    void setMissing(int stream) {
+        present[stream] = false;
+        ageNanos[stream] = 0L;
+    }
+
+    void set(int stream, float[] source, int from, long age) {
+        System.arraycopy(source, from, values, offsets[stream], dimensions[stream]);
+        present[stream] = true;
+        ageNanos[stream] = age;
+    }
+
+    // Linear between sample a at fraction 0 and sample b at fraction 1
+    void interpolate(int stream, float[] source, int a, int b, float fraction) {
+        int offset = offsets[stream];
+        for (int axis = 0; axis < dimensions[stream]; axis++) {
+            float start = source[a + axis];
+            values[offset + axis] = start + fraction * (source[b + axis] - start);
+        }
+        present[stream] = true;
+        ageNanos[stream] = 0L;
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.healthsensorpro.data.processing;
+
+import com.example.healthsensorpro.data.model.HealthMetrics;
+
+// Streaming statistics over the heart rate sensor (beats per minute, reported
+// at irregular intervals) and the heart beat sensor (one event per beat).
+//
+// Readings are weighted by event time: each one holds until the next, so the
+// average and the time in zone do not depend on how often the sensor reports.
+// A reading holds for at most MAX_HOLD_NANOS, so a sensor that stops (off the
+// wrist) does not keep crediting its last value. Past that it expires, on the
+// event time of whichever sensor is still reporting (advanceTo()), so a
+// stopped sensor does not keep showing it either.
+//
+// HRV is the RMSSD of the beat-to-beat (RR) intervals of the last
+// RMSSD_WINDOW_NANOS, kept in a ring buffer of squared successive differences.
+// Intervals outside a plausible range, or more than MAX_RR_CHANGE away from
+// the previous one (a missed or extra beat), break the chain instead.
+//
+// Allocation-free; confined to the sensor thread.
+public class HeartRateStage {
+    public static final int ZONE_COUNT = HealthMetrics.HEART_RATE_ZONES;
+    public static final int DEFAULT_MAX_HEART_RATE = 190;
+    // Zone i starts at ZONE_FRACTIONS[i - 1] of the maximum heart rate;
+    // zone 0 is everything below the first
+    private static final float[] ZONE_FRACTIONS = {0.5f, 0.6f, 0.7f, 0.8f, 0.9f};
+
+    static final long AVERAGE_TIME_CONSTANT_NANOS = 30_000_000_000L;
+    static final long MAX_HOLD_NANOS = 10_000_000_000L;
+    static final long RMSSD_WINDOW_NANOS = 60_000_000_000L;
+    static final int MIN_RMSSD_DIFFERENCES = 10;
+    private static final float MIN_BPM = 25f;
+    private static final float MAX_BPM = 250f;
+    private static final long MIN_RR_MICROS = 250_000L;
+    private static final long MAX_RR_MICROS = 2_400_000L;
+    private static final float MAX_RR_CHANGE = 0.2f;
+    private static final float MIN_BEAT_CONFIDENCE = 0.5f;
+    // Beats in RMSSD_WINDOW_NANOS at MAX_BPM, rounded up to a power of two
+    private static final int RING_CAPACITY = 256;
+
+    private float maxHeartRate = DEFAULT_MAX_HEART_RATE;
+
+    private float heartRate = Float.NaN;
+    private long heartRateTimestamp;
+    private double average = Double.NaN;
+    private float min = Float.NaN;
+    private float max = Float.NaN;
+    private final long[] zoneNanos = new long[ZONE_COUNT];
+
+    private long lastBeatTimestamp;
+    private boolean hasLastBeat = false;
+    private long lastRrMicros = -1L;
+    private final long[] differenceTimestamps = new long[RING_CAPACITY];
+    private final long[] squaredDifferences = new long[RING_CAPACITY];
+    private int ringStart = 0;
+    private int ringSize = 0;
+    // Exact in microseconds squared, so adding and removing never drifts
+    private long squaredDifferenceSum = 0L;
+
+    // Upper end of the top zone, e.g. from the user's age
+    public void setMaxHeartRate(float maxHeartRate) {
+        this.maxHeartRate = maxHeartRate;
+    }
+
+    // Event time of any sensor: expires a reading held for longer than
+    // MAX_HOLD_NANOS and beats that have left the RMSSD window
+    public void advanceTo(long nowNanos) {
+        if (!Float.isNaN(heartRate) && nowNanos - heartRateTimestamp > MAX_HOLD_NANOS) {
+            credit(MAX_HOLD_NANOS);
+            heartRate = Float.NaN;
+        }
+        pruneDifferences(nowNanos - RMSSD_WINDOW_NANOS);
+    }
+
+    // bpm from the heart rate sensor; 0 or out of range means no contact
+    public void onHeartRate(long timestampNanos, float bpm) {
+        advanceTo(timestampNanos);
+        if (!Float.isNaN(heartRate)) {
+            long held = timestampNanos - heartRateTimestamp;
+            if (held > 0) {
+                credit(held);
+            }
+        }
+
+        if (!(bpm >= MIN_BPM && bpm <= MAX_BPM)) {
+            heartRate = Float.NaN;
+            return;
+        }
+        if (Double.isNaN(average)) {
+            average = bpm;
+        }
+        if (Float.isNaN(min) || bpm < min) min = bpm;
+        if (Float.isNaN(max) || bpm > max) max = bpm;
+        heartRate = bpm;
+        heartRateTimestamp = timestampNanos;
+    }
+
+    // One event per beat, timestamped at its peak; confidence 0 to 1
+    public void onHeartBeat(long timestampNanos, float confidence) {
+        if (confidence < MIN_BEAT_CONFIDENCE) {
+            // The interval around an unsure beat is unreliable too
+            hasLastBeat = false;
+            lastRrMicros = -1L;
+            return;
+        }
+        long previous = lastBeatTimestamp;
+        boolean hadBeat = hasLastBeat;
+        lastBeatTimestamp = timestampNanos;
+        hasLastBeat = true;
+        if (!hadBeat) {
+            return;
+        }
+
+        long rr = (timestampNanos - previous) / 1000L;
+        if (rr < MIN_RR_MICROS || rr > MAX_RR_MICROS
+                || (lastRrMicros > 0 && Math.abs(rr - lastRrMicros) > lastRrMicros * MAX_RR_CHANGE)) {
+            // Start the chain over; the intervals on either side of a missed
+            // or extra beat are both off
+            lastRrMicros = -1L;
+            return;
+        }
+        if (lastRrMicros > 0) {
+            long difference = rr - lastRrMicros;
+            addDifference(timestampNanos, difference * difference);
+        }
+        lastRrMicros = rr;
+    }
+
+    // The current reading held for heldNanos
+    private void credit(long heldNanos) {
+        zoneNanos[zoneOf(heartRate)] += heldNanos;
+        double weight = 1.0 - Math.exp(-(double) heldNanos / AVERAGE_TIME_CONSTANT_NANOS);
+        average += weight * (heartRate - average);
+    }
+
+    private void addDifference(long timestampNanos, long squared) {
+        pruneDifferences(timestampNanos - RMSSD_WINDOW_NANOS);
+        if (ringSize == RING_CAPACITY) {
+            removeOldestDifference();
+        }
+        int index = (ringStart + ringSize) & (RING_CAPACITY - 1);
+        differenceTimestamps[index] = timestampNanos;
+        squaredDifferences[index] = squared;
+        squaredDifferenceSum += squared;
+        ringSize++;
+    }
+
+    private void pruneDifferences(long oldestNanos) {
+        while (ringSize > 0 && differenceTimestamps[ringStart] < oldestNanos) {
+            removeOldestDifference();
+        }
+    }
+
+    private void removeOldestDifference() {
+        squaredDifferenceSum -= squaredDifferences[ringStart];
+        ringStart = (ringStart + 1) & (RING_CAPACITY - 1);
+        ringSize--;
+    }
+
+    int zoneOf(float bpm) {
+        float fraction = bpm / maxHeartRate;
+        int zone = 0;
+        while (zone < ZONE_FRACTIONS.length && fraction >= ZONE_FRACTIONS[zone]) {
+            zone++;
+        }
+        return zone;
+    }
+
+    // Latest reading, NaN without contact or once it has expired
+    public float getHeartRate() {
+        return heartRate;
+    }
+
+    // Exponentially weighted over event time, NaN before the first reading
+    public float getAverage() {
+        return (float) average;
+    }
+
+    public float getMin() { return min; }
+    public float getMax() { return max; }
+
+    public long getZoneNanos(int zone) {
+        return zoneNanos[zone];
+    }
+
+    // In milliseconds; NaN while there are too few clean beats in the window
+    public float getRmssd() {
+        if (ringSize < MIN_RMSSD_DIFFERENCES) {
+            return Float.NaN;
+        }
+        return (float) (Math.sqrt((double) squaredDifferenceSum / ringSize) / 1000.0);
+    }
+
+    public void reset() {
+        heartRate = Float.NaN;
+        average = Double.NaN;
+        min = Float.NaN;
+        max = Float.NaN;
+        for (int i = 0; i < ZONE_COUNT; i++) {
+            zoneNanos[i] = 0L;
+        }
+        hasLastBeat = false;
+        lastRrMicros = -1L;
+        ringStart = 0;
+        ringSize = 0;
+        squaredDifferenceSum = 0L;
+    }
+}
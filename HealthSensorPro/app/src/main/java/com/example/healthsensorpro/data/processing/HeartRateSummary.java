@@ -0,0 +1,21 @@
+package com.example.healthsensorpro.data.processing;
+
+// The HeartRateStage statistics as of one publish, handed to the consumer
+// thread in the same slot as the snapshot
+final class HeartRateSummary {
+    float average = Float.NaN;
+    float min = Float.NaN;
+    float max = Float.NaN;
+    float rmssd = Float.NaN;
+    final long[] zoneNanos = new long[HeartRateStage.ZONE_COUNT];
+
+    void copyFrom(HeartRateStage stage) {
+        average = stage.getAverage();
+        min = stage.getMin();
+        max = stage.getMax();
+        rmssd = stage.getRmssd();
+        for (int i = 0; i < zoneNanos.length; i++) {
+            zoneNanos[i] = stage.getZoneNanos(i);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.healthsensorpro.data.processing;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Fixed-bucket histogram of latencies in nanoseconds. Buckets are log-linear:
+// every power of two is split into 8, so a reported percentile is within
+// 12.5% of the true value, from 8 ns up to MAX_TRACKABLE_NANOS (about 73
+// minutes; anything above lands in the last bucket).
+//
+// One thread records, any thread reads. Recording is an array index and an
+// ordered store, with no lock and no allocation; readers may see a snapshot
+// that is a few samples behind.
+public class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int MAX_MAGNITUDE = 41;
+    public static final long MAX_TRACKABLE_NANOS = (1L << (MAX_MAGNITUDE + 1)) - 1;
+    static final int BUCKET_COUNT = (MAX_MAGNITUDE - SUB_BITS + 2) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    // Recording thread only. Negative latencies (clock skew) count as 0.
+    public void record(long nanos) {
+        int bucket = bucketFor(nanos);
+        counts.lazySet(bucket, counts.get(bucket) + 1);
+    }
+
+    static int bucketFor(long nanos) {
+        if (nanos < SUB_COUNT) {
+            return nanos < 0 ? 0 : (int) nanos;
+        }
+        if (nanos > MAX_TRACKABLE_NANOS) {
+            return BUCKET_COUNT - 1;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BITS;
+        int sub = (int) (nanos >>> shift) & (SUB_COUNT - 1);
+        return (shift + 1) * SUB_COUNT + sub;
+    }
+
+    // Smallest value that falls into bucket
+    static long lowerBound(int bucket) {
+        if (bucket < SUB_COUNT) {
+            return bucket;
+        }
+        int shift = bucket / SUB_COUNT - 1;
+        return (long) (SUB_COUNT + bucket % SUB_COUNT) << shift;
+    }
+
+    // Largest value that falls into bucket
+    static long upperBound(int bucket) {
+        return bucket == BUCKET_COUNT - 1 ? Long.MAX_VALUE : lowerBound(bucket + 1) - 1;
+    }
+
+    public long getCount() {
+        long total = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    // Latency at or below which the given fraction (0..1) of samples fall,
+    // as the upper bound of its bucket; 0 when empty
+    public long getPercentile(double fraction) {
+        long[] snapshot = new long[BUCKET_COUNT];
+        long total = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0L;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(fraction * total));
+        long seen = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), MAX_TRACKABLE_NANOS);
+            }
+        }
+        return MAX_TRACKABLE_NANOS;
+    }
+
+    // Any thread; samples recorded concurrently may survive it
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0L);
+        }
+    }
+}
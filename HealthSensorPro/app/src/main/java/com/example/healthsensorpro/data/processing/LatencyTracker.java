@@ -0,0 +1,149 @@
+package com.example.healthsensorpro.data.processing;
+
+import java.io.IOException;
+import java.util.Locale;
+
+// How old a sensor event is when it reaches each stage on its way to the
+// screen, measured from the event's own timestamp:
+//
+//   INGEST     delivered to the pipeline (includes time queued in the FIFO)
+//   CLASSIFY   activity, cadence and steps updated
+//   AGGREGATE  snapshot with totals published
+//   POST       newest snapshot handed to LiveData on the main thread
+//   BIND       metric cards updated
+//
+// The first three are recorded on the sensor thread, the last two on the main
+// thread, against the newest event published at that point, sampled or not.
+// Each stage has its own single-writer histogram, so recording costs one
+// clock read and an array store.
+//
+// A clock read costs tens of nanoseconds, so per-event samples are only
+// taken for one event in sampleEvery (32 by default); the rest pay for a
+// counter. A FIFO burst is measured whole, with a single clock read.
+// Disabled tracking is a null tracker: the hot path only pays a field read.
+public class LatencyTracker {
+    public enum Stage {
+        INGEST,
+        CLASSIFY,
+        AGGREGATE,
+        POST,
+        BIND
+    }
+
+    // Must share the sensor timestamps' time base (elapsedRealtimeNanos on Android)
+    public interface Clock {
+        long nanos();
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+
+    public static final int DEFAULT_SAMPLE_EVERY = 32;
+
+    private final Clock clock;
+    private final int sampleMask;
+    private int eventCount = 0; // sensor thread only
+    private final LatencyHistogram[] histograms = new LatencyHistogram[STAGES.length];
+    // Timestamp of the newest event in the last published snapshot
+    private volatile long publishedEventNanos = Long.MIN_VALUE;
+
+    public LatencyTracker(Clock clock) {
+        this(clock, DEFAULT_SAMPLE_EVERY);
+    }
+
+    // sampleEvery must be a power of two; 1 measures every event
+    public LatencyTracker(Clock clock, int sampleEvery) {
+        if (sampleEvery <= 0 || Integer.bitCount(sampleEvery) != 1) {
+            throw new IllegalArgumentException("sampleEvery must be a power of two: " + sampleEvery);
+        }
+        this.clock = clock;
+        this.sampleMask = sampleEvery - 1;
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    // Sensor thread: whether to measure the event about to be processed
+    public boolean sampleNext() {
+        return (eventCount++ & sampleMask) == 0;
+    }
+
+    public long now() {
+        return clock.nanos();
+    }
+
+    public void record(Stage stage, long eventTimestampNanos) {
+        histograms[stage.ordinal()].record(clock.nanos() - eventTimestampNanos);
+    }
+
+    // Several events seen at the same instant, e.g. one FIFO burst
+    public void record(Stage stage, AccelerometerBatch batch, long nowNanos) {
+        LatencyHistogram histogram = histograms[stage.ordinal()];
+        int[] deltas = batch.timestampDeltas();
+        long timestamp = batch.getFirstTimestamp();
+        for (int i = 0; i < batch.size(); i++) {
+            timestamp += deltas[i];
+            histogram.record(nowNanos - timestamp);
+        }
+    }
+
+    // Sensor thread: records AGGREGATE and remembers the event for the main
+    // thread stages
+    public void recordPublished(long eventTimestampNanos) {
+        record(Stage.AGGREGATE, eventTimestampNanos);
+        publishedEventNanos = eventTimestampNanos;
+    }
+
+    // Sensor thread: remembers an event that was published but not sampled,
+    // so POST and BIND are not measured from an older one. One volatile write.
+    public void markPublished(long eventTimestampNanos) {
+        publishedEventNanos = eventTimestampNanos;
+    }
+
+    // Main thread: POST or BIND for the newest published event, if any
+    public void recordForPublished(Stage stage) {
+        long event = publishedEventNanos;
+        if (event != Long.MIN_VALUE) {
+            record(stage, event);
+        }
+    }
+
+    public LatencyHistogram getHistogram(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+
+    // Percentiles per stage in milliseconds, for logs and bug reports
+    public String dump() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.US, "%-10s %10s %8s %8s %8s %8s%n",
+                "stage", "count", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms"));
+        for (Stage stage : STAGES) {
+            LatencyHistogram histogram = histograms[stage.ordinal()];
+            out.append(String.format(Locale.US, "%-10s %10d", stage, histogram.getCount()));
+            for (double percentile : PERCENTILES) {
+                out.append(String.format(Locale.US, " %8.2f", histogram.getPercentile(percentile) / 1e6));
+            }
+            out.append(String.format(Locale.US, "%n"));
+        }
+        return out.toString();
+    }
+
+    // The same as CSV, with a header row and values in nanoseconds
+    public void exportCsv(Appendable out) throws IOException {
+        out.append("stage,count,p50_ns,p90_ns,p99_ns,p999_ns\n");
+        for (Stage stage : STAGES) {
+            LatencyHistogram histogram = histograms[stage.ordinal()];
+            out.append(stage.name()).append(',').append(Long.toString(histogram.getCount()));
+            for (double percentile : PERCENTILES) {
+                out.append(',').append(Long.toString(histogram.getPercentile(percentile)));
+            }
+            out.append('\n');
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.healthsensorpro.data.processing;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Chooses between a low accelerometer rate while the user is still and a high
+// one while they move, with hysteresis so registrations do not thrash:
+//
+//   LOW -> HIGH  as soon as movement has been detected for upDelay
+//   HIGH -> LOW  only after no movement for downDelay
+//   either way   never sooner than minDwell after the previous change
+//
+// Time is event time (sensor timestamps), so the controller behaves the same
+// live and on a replayed trace. It also counts the time spent and events
+// delivered at each rate, to put numbers on what the low rate saves.
+//
+// onEvents() runs on the sensor thread; the counters may be read from any
+// thread.
+public class SamplingRateController {
+    public enum Rate {
+        LOW,
+        HIGH
+    }
+
+    // Called on the sensor thread when the rate should change
+    public interface Listener {
+        void onRateChanged(Rate rate);
+    }
+
+    public static final long DEFAULT_UP_DELAY_NANOS = 0L;
+    public static final long DEFAULT_DOWN_DELAY_NANOS = 30_000_000_000L;
+    public static final long DEFAULT_MIN_DWELL_NANOS = 5_000_000_000L;
+
+    private final long upDelayNanos;
+    private final long downDelayNanos;
+    private final long minDwellNanos;
+    private final Listener listener;
+
+    private volatile Rate rate;
+    private volatile long rateChanges = 0L;
+    // Written on the sensor thread only, with ordered stores
+    private final AtomicLongArray nanosAt = new AtomicLongArray(Rate.values().length);
+    private final AtomicLongArray eventsAt = new AtomicLongArray(Rate.values().length);
+
+    // Sensor thread only
+    private boolean started = false;
+    private long lastTimestamp;
+    // No dwell before the first change
+    private long lastChange = Long.MIN_VALUE / 2;
+    // Start of the current run of moving / still events
+    private boolean moving = false;
+    private long runStart;
+
+    public SamplingRateController(Rate initialRate, Listener listener) {
+        this(initialRate, DEFAULT_UP_DELAY_NANOS, DEFAULT_DOWN_DELAY_NANOS, DEFAULT_MIN_DWELL_NANOS, listener);
+    }
+
+    public SamplingRateController(Rate initialRate, long upDelayNanos, long downDelayNanos,
+                                  long minDwellNanos, Listener listener) {
+        this.rate = initialRate;
+        this.upDelayNanos = upDelayNanos;
+        this.downDelayNanos = downDelayNanos;
+        this.minDwellNanos = minDwellNanos;
+        this.listener = listener;
+    }
+
+    // count events up to timestampNanos have been processed, and the pipeline
+    // now does or does not see the user moving
+    public void onEvents(long timestampNanos, int count, boolean isMoving) {
+        if (!started) {
+            started = true;
+            lastTimestamp = timestampNanos;
+            moving = isMoving;
+            runStart = timestampNanos;
+        }
+
+        int current = rate.ordinal();
+        long elapsed = timestampNanos - lastTimestamp;
+        if (elapsed > 0) {
+            nanosAt.lazySet(current, nanosAt.get(current) + elapsed);
+        }
+        eventsAt.lazySet(current, eventsAt.get(current) + count);
+        lastTimestamp = Math.max(lastTimestamp, timestampNanos);
+
+        if (isMoving != moving) {
+            moving = isMoving;
+            runStart = timestampNanos;
+        }
+        if (timestampNanos - lastChange < minDwellNanos) {
+            return;
+        }
+
+        long run = timestampNanos - runStart;
+        if (rate == Rate.LOW && moving && run >= upDelayNanos) {
+            change(Rate.HIGH, timestampNanos);
+        } else if (rate == Rate.HIGH && !moving && run >= downDelayNanos) {
+            change(Rate.LOW, timestampNanos);
+        }
+    }
+
+    private void change(Rate newRate, long timestampNanos) {
+        rate = newRate;
+        lastChange = timestampNanos;
+        rateChanges = rateChanges + 1;
+        listener.onRateChanged(newRate);
+    }
+
+    public Rate getRate() {
+        return rate;
+    }
+
+    // Event time spent at rate
+    public long getNanosAt(Rate rate) {
+        return nanosAt.get(rate.ordinal());
+    }
+
+    public long getEventsAt(Rate rate) {
+        return eventsAt.get(rate.ordinal());
+    }
+
+    public long getRateChanges() {
+        return rateChanges;
+    }
+}
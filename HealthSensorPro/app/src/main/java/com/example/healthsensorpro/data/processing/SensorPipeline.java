@@ -0,0 +1,290 @@
+package com.example.healthsensorpro.data.processing;
+
+import com.example.healthsensorpro.data.model.ActivityType;
+import com.example.healthsensorpro.data.model.HealthMetrics;
+import com.example.healthsensorpro.data.model.SensorData;
+
+// Runs the processing stages on the sensor thread and publishes a snapshot
+// after every change. Snapshots are handed to a single consumer thread through
+// a triple buffer of reused SensorData objects, so the steady state allocates
+// nothing. Only the snapshot and getCurrentActivity() may be read from other
+// threads.
+public class SensorPipeline {
+    // For calculations
+    private static final double STEP_LENGTH = 0.762;
+
+    // Called on the sensor thread when a displayed metric has changed
+    public interface Listener {
+        void onMetricsChanged();
+    }
+
+    // Called on the sensor thread with every published snapshot. The object is
+    // reused: copy what is needed before returning.
+    public interface Recorder {
+        void record(SensorData snapshot);
+    }
+
+    private final ActivityStage activityStage;
+    private final StepStage stepStage;
+    private final HeartRateStage heartRateStage = new HeartRateStage();
+    private final CadenceEstimator cadenceEstimator = new CadenceEstimator();
+    private final CalorieStage calorieStage = new CalorieStage();
+    private Listener listener;
+    private Recorder recorder;
+    // null unless latency is being measured
+    private LatencyTracker latencyTracker;
+
+    // Metric values of the last notification, so unchanged samples stay silent
+    private int notifiedSteps = -1;
+    private ActivityType notifiedActivity = null;
+    private int notifiedHeartRateBits = 0;
+
+    private final float[] lastAccelerometerValues = new float[3];
+    private long lastAccelerometerTimestamp = 0L;
+    private boolean hasAccelerometer = false;
+
+    // Sensor event time + offset = wall clock time
+    private long epochOffsetNanos = 0L;
+
+    private final TripleBuffer<Published> snapshots =
+            new TripleBuffer<>(new Published(), new Published(), new Published());
+    private volatile ActivityType currentActivity = ActivityType.UNKNOWN;
+
+    // useStepDetector: derive steps from the accelerometer (no hardware counter)
+    public SensorPipeline(boolean useStepDetector) {
+        this(useStepDetector, ActivityStage.DEFAULT_WINDOW_LENGTH);
+    }
+
+    public SensorPipeline(boolean useStepDetector, int activityWindowLength) {
+        this(useStepDetector, activityWindowLength, AccelerometerBatch.DEFAULT_SCALE);
+    }
+
+    // accelerometerScale packs the activity window, see AccelerometerBatch.scaleFor()
+    public SensorPipeline(boolean useStepDetector, int activityWindowLength, float accelerometerScale) {
+        this.stepStage = new StepStage(useStepDetector);
+        this.activityStage = new ActivityStage(activityWindowLength, accelerometerScale);
+    }
+
+    // Per-event path: one sample in, one snapshot out
+    public void onAccelerometer(long timestampNanos, float x, float y, float z) {
+        LatencyTracker tracker = latencyTracker;
+        LatencyTracker latency = tracker != null && tracker.sampleNext() ? tracker : null;
+        if (latency != null) {
+            latency.record(LatencyTracker.Stage.INGEST, timestampNanos);
+        }
+        processAccelerometer(timestampNanos, x, y, z);
+        if (latency != null) {
+            latency.record(LatencyTracker.Stage.CLASSIFY, timestampNanos);
+        }
+        publish();
+        if (latency != null) {
+            latency.recordPublished(timestampNanos);
+        } else if (tracker != null) {
+            tracker.markPublished(timestampNanos);
+        }
+    }
+
+    // Batch path: a whole FIFO burst is processed before a single publish
+    public void onAccelerometerBatch(AccelerometerBatch batch) {
+        int size = batch.size();
+        if (size == 0) {
+            return;
+        }
+
+        LatencyTracker latency = latencyTracker;
+        if (latency != null) {
+            latency.record(LatencyTracker.Stage.INGEST, batch, latency.now());
+        }
+        int[] deltas = batch.timestampDeltas();
+        short[] xs = batch.xs();
+        short[] ys = batch.ys();
+        short[] zs = batch.zs();
+        float scale = batch.getScale();
+        long timestamp = batch.getFirstTimestamp();
+        float x = 0f;
+        float y = 0f;
+        float z = 0f;
+        for (int i = 0; i < size; i++) {
+            timestamp += deltas[i];
+            x = xs[i] * scale;
+            y = ys[i] * scale;
+            z = zs[i] * scale;
+            activityStage.process(timestamp, x, y, z);
+            cadenceEstimator.onSample(timestamp, x, y, z);
+        }
+        stepStage.onAccelerometerBatch(batch);
+
+        rememberAccelerometer(timestamp, x, y, z);
+        if (latency != null) {
+            latency.record(LatencyTracker.Stage.CLASSIFY, timestamp);
+        }
+        publish();
+        if (latency != null) {
+            latency.recordPublished(timestamp);
+        }
+    }
+
+    private void processAccelerometer(long timestampNanos, float x, float y, float z) {
+        rememberAccelerometer(timestampNanos, x, y, z);
+        activityStage.process(timestampNanos, x, y, z);
+        cadenceEstimator.onSample(timestampNanos, x, y, z);
+        stepStage.onAccelerometer(timestampNanos, x, y, z);
+    }
+
+    private void rememberAccelerometer(long timestampNanos, float x, float y, float z) {
+        lastAccelerometerTimestamp = timestampNanos;
+        hasAccelerometer = true;
+        lastAccelerometerValues[0] = x;
+        lastAccelerometerValues[1] = y;
+        lastAccelerometerValues[2] = z;
+    }
+
+    public void onStepCounter(float value) {
+        stepStage.onStepCounter(value);
+        publish();
+    }
+
+    // bpm from the heart rate sensor, 0 without skin contact
+    public void onHeartRate(long timestampNanos, float bpm) {
+        heartRateStage.onHeartRate(timestampNanos, bpm);
+        publish();
+        LatencyTracker latency = latencyTracker;
+        if (latency != null) {
+            latency.markPublished(timestampNanos);
+        }
+    }
+
+    // Heart beat sensor: feeds the HRV estimate, which is published with the
+    // next snapshot
+    public void onHeartBeat(long timestampNanos, float confidence) {
+        heartRateStage.onHeartBeat(timestampNanos, confidence);
+    }
+
+    public void reset() {
+        stepStage.reset();
+        activityStage.reset();
+        heartRateStage.reset();
+        cadenceEstimator.reset();
+        calorieStage.reset();
+        publish();
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public void setRecorder(Recorder recorder) {
+        this.recorder = recorder;
+    }
+
+    // Sensor thread; null turns measuring off
+    public void setLatencyTracker(LatencyTracker latencyTracker) {
+        this.latencyTracker = latencyTracker;
+    }
+
+    // True while the latest activity window saw walking or running
+    public boolean isMoving() {
+        ActivityType detected = activityStage.getDetectedActivity();
+        return detected == ActivityType.WALKING || detected == ActivityType.RUNNING;
+    }
+
+    public boolean usesStepDetector() {
+        return stepStage.usesStepDetector();
+    }
+
+    public StepDetector getStepDetector() {
+        return stepStage.getStepDetector();
+    }
+
+    // Upper end of the top heart rate zone
+    public void setMaxHeartRate(float maxHeartRate) {
+        heartRateStage.setMaxHeartRate(maxHeartRate);
+    }
+
+    public void setEpochOffsetNanos(long epochOffsetNanos) {
+        this.epochOffsetNanos = epochOffsetNanos;
+    }
+
+    // Any thread
+    public ActivityType getCurrentActivity() {
+        return currentActivity;
+    }
+
+    // Consumer thread only. The returned object is reused: it is valid until the
+    // next call and must not be modified or kept.
+    public SensorData acquireSnapshot() {
+        return snapshots.acquire().snapshot;
+    }
+
+    // Consumer thread only
+    public void readHealthMetrics(HealthMetrics out) {
+        // One acquire, so the summary is the one published with the snapshot
+        Published published = snapshots.acquire();
+        SensorData snapshot = published.snapshot;
+        HeartRateSummary heartRate = published.heartRate;
+        out.setTotalSteps(snapshot.getSteps());
+        out.setTotalCalories(snapshot.getCalories());
+        out.setTotalDistance(snapshot.getDistance() / 1000);
+        // The average lingers after contact is lost; show nothing instead
+        out.setAvgHeartRate(snapshot.hasHeartRate() ? heartRate.average : Float.NaN);
+        out.setMinHeartRate(heartRate.min);
+        out.setMaxHeartRate(heartRate.max);
+        out.setHeartRateVariability(heartRate.rmssd);
+        for (int i = 0; i < HeartRateStage.ZONE_COUNT; i++) {
+            out.setHeartRateZoneMillis(i, heartRate.zoneNanos[i] / 1_000_000L);
+        }
+        out.setCurrentActivity(snapshot.getActivityType());
+        out.setCadence(snapshot.getCadence());
+    }
+
+    private void publish() {
+        if (hasAccelerometer) {
+            // The accelerometer keeps event time going when the heart rate
+            // sensor stops
+            heartRateStage.advanceTo(lastAccelerometerTimestamp);
+        }
+        int steps = stepStage.getStepCount();
+        ActivityType activity = activityStage.getCurrentActivity();
+        float heartRate = heartRateStage.getHeartRate();
+        float cadence = cadenceEstimator.getCadence();
+        double calories = calorieStage.onSteps(steps, cadence, activity);
+
+        Published published = snapshots.back();
+        SensorData snapshot = published.snapshot;
+        snapshot.setTimestamp((lastAccelerometerTimestamp + epochOffsetNanos) / 1_000_000L);
+        snapshot.setSteps(steps);
+        snapshot.setCalories(calories);
+        snapshot.setDistance(steps * STEP_LENGTH);
+        snapshot.setHeartRate(heartRate);
+        snapshot.setActivityType(activity);
+        snapshot.setCadence(cadence);
+        snapshot.setAccelerometerX(lastAccelerometerValues[0]);
+        snapshot.setAccelerometerY(lastAccelerometerValues[1]);
+        snapshot.setAccelerometerZ(lastAccelerometerValues[2]);
+        // Snapshots are stamped with the last accelerometer sample's time, so
+        // ones published before the first sample have none to go by
+        if (recorder != null && hasAccelerometer) {
+            recorder.record(snapshot);
+        }
+        published.heartRate.copyFrom(heartRateStage);
+        snapshots.publish();
+        currentActivity = activity;
+
+        int heartRateBits = Float.floatToIntBits(heartRate);
+        if (steps != notifiedSteps || activity != notifiedActivity
+                || heartRateBits != notifiedHeartRateBits) {
+            notifiedSteps = steps;
+            notifiedActivity = activity;
+            notifiedHeartRateBits = heartRateBits;
+            if (listener != null) {
+                listener.onMetricsChanged();
+            }
+        }
+    }
+
+    // A snapshot and the heart rate statistics as of the same publish
+    private static final class Published {
+        final SensorData snapshot = new SensorData();
+        final HeartRateSummary heartRate = new HeartRateSummary();
+    }
+}
@@ -0,0 +1,271 @@
+package com.example.healthsensorpro.data.processing;
+
+// Merge-joins several sensor streams on their event timestamps into fused
+// frames, one per sample of a reference stream (the accelerometer, say).
+//
+// Each other stream is aligned to the reference timestamp in one of two ways:
+//  - INTERPOLATE, for signals sampled at a similar rate (the gyroscope): linear
+//    between the samples on either side. A frame waits until the stream has a
+//    sample at or after its timestamp, but at most maxWaitNanos of event time,
+//    after which the last value is held.
+//  - HOLD, for slow signals (heart rate): the last sample at or before the
+//    timestamp, never waited for.
+//
+// Streams may run at any rate and deliver slightly out of order, as batched
+// sensors do; a late sample is sorted into place, though frames already
+// emitted past it stay as they were. Every stream is a fixed ring of
+// capacity samples, so a stalled or runaway stream cannot make the buffers
+// grow: a full reference ring pushes its oldest frame out with what is known,
+// and a full ring of another stream drops its oldest sample. Dropped samples
+// are counted, including reference samples older than the last frame.
+//
+// Allocation-free once the streams are set up; confined to one thread.
+public final class SensorTimeline {
+    public enum Alignment {
+        INTERPOLATE,
+        HOLD
+    }
+
+    // Called with a reused frame, in timestamp order
+    public interface FrameListener {
+        void onFrame(FusedFrame frame);
+    }
+
+    private static final int MAX_STREAMS = 8;
+
+    private final int capacity;
+    private final long maxWaitNanos;
+    private final Stream[] streams = new Stream[MAX_STREAMS];
+    private int streamCount = 0;
+    private FusedFrame frame;
+    private FrameListener listener;
+
+    // Newest timestamp of any stream, the clock for maxWaitNanos
+    private long latestNanos = Long.MIN_VALUE;
+    private boolean hasFrame = false;
+    private long lastFrameNanos;
+    private long frameCount = 0L;
+    private long droppedCount = 0L;
+
+    public SensorTimeline(int referenceType, int referenceDimension, int capacity, long maxWaitNanos) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("capacity must be at least 2: " + capacity);
+        }
+        if (maxWaitNanos < 0) {
+            throw new IllegalArgumentException("maxWaitNanos must be >= 0: " + maxWaitNanos);
+        }
+        this.capacity = capacity;
+        this.maxWaitNanos = maxWaitNanos;
+        addStream(referenceType, referenceDimension, Alignment.HOLD);
+    }
+
+    // Before the first sample. Returns the stream's index in the frames.
+    public int addStream(int sensorType, int dimension, Alignment alignment) {
+        if (frame != null) {
+            throw new IllegalStateException("Streams are fixed once samples arrive");
+        }
+        if (streamCount == MAX_STREAMS || dimension <= 0 || streamFor(sensorType) != null) {
+            throw new IllegalArgumentException("Cannot add stream " + sensorType + " of dimension " + dimension);
+        }
+        streams[streamCount] = new Stream(sensorType, dimension, alignment, capacity);
+        return streamCount++;
+    }
+
+    public void setFrameListener(FrameListener listener) {
+        this.listener = listener;
+    }
+
+    // Samples of other sensor types are ignored; the stream's dimension of
+    // values is copied
+    public void onSample(int sensorType, long timestampNanos, float[] values) {
+        Stream stream = streamFor(sensorType);
+        if (stream == null) {
+            return;
+        }
+        if (frame == null) {
+            int[] sensorTypes = new int[streamCount];
+            int[] dimensions = new int[streamCount];
+            for (int i = 0; i < streamCount; i++) {
+                sensorTypes[i] = streams[i].sensorType;
+                dimensions[i] = streams[i].dimension;
+            }
+            frame = new FusedFrame(sensorTypes, dimensions);
+        }
+
+        if (stream == streams[0]) {
+            if (hasFrame && timestampNanos <= lastFrameNanos) {
+                droppedCount++;
+                return;
+            }
+            if (stream.size == capacity) {
+                emitOldest();
+            }
+        } else if (stream.size == capacity) {
+            droppedCount++;
+            stream.removeOldest();
+        }
+        stream.insert(timestampNanos, values);
+        latestNanos = Math.max(latestNanos, timestampNanos);
+        emitReady();
+    }
+
+    // Emits every waiting frame with what is known, e.g. at the end of a replay
+    public void flush() {
+        while (streams[0].size > 0) {
+            emitOldest();
+        }
+    }
+
+    private void emitReady() {
+        Stream reference = streams[0];
+        while (reference.size > 0) {
+            long timestamp = reference.timestamps[reference.head];
+            if (latestNanos - timestamp < maxWaitNanos) {
+                for (int s = 1; s < streamCount; s++) {
+                    Stream stream = streams[s];
+                    if (stream.alignment == Alignment.INTERPOLATE
+                            && (stream.size == 0 || stream.newestTimestamp() < timestamp)) {
+                        return;
+                    }
+                }
+            }
+            emitOldest();
+        }
+    }
+
+    private void emitOldest() {
+        Stream reference = streams[0];
+        int head = reference.head;
+        long timestamp = reference.timestamps[head];
+        frame.setTimestamp(timestamp);
+        frame.set(0, reference.values, head * reference.dimension, 0L);
+        for (int s = 1; s < streamCount; s++) {
+            streams[s].align(s, timestamp, frame);
+        }
+        reference.removeOldest();
+        hasFrame = true;
+        lastFrameNanos = timestamp;
+        frameCount++;
+        if (listener != null) {
+            listener.onFrame(frame);
+        }
+    }
+
+    private Stream streamFor(int sensorType) {
+        for (int i = 0; i < streamCount; i++) {
+            if (streams[i].sensorType == sensorType) {
+                return streams[i];
+            }
+        }
+        return null;
+    }
+
+    public int getStreamCount() { return streamCount; }
+    public long getFrameCount() { return frameCount; }
+    public long getDroppedCount() { return droppedCount; }
+
+    // Samples waiting in the rings, at most capacity per stream
+    public int getBufferedCount() {
+        int count = 0;
+        for (int i = 0; i < streamCount; i++) {
+            count += streams[i].size;
+        }
+        return count;
+    }
+
+    public void reset() {
+        for (int i = 0; i < streamCount; i++) {
+            streams[i].head = 0;
+            streams[i].size = 0;
+        }
+        latestNanos = Long.MIN_VALUE;
+        hasFrame = false;
+        frameCount = 0L;
+        droppedCount = 0L;
+    }
+
+    // Ring of samples in timestamp order
+    private static final class Stream {
+        final int sensorType;
+        final int dimension;
+        final Alignment alignment;
+        final long[] timestamps;
+        final float[] values;
+        int head = 0;
+        int size = 0;
+
+        Stream(int sensorType, int dimension, Alignment alignment, int capacity) {
+            this.sensorType = sensorType;
+            this.dimension = dimension;
+            this.alignment = alignment;
+            timestamps = new long[capacity];
+            values = new float[capacity * dimension];
+        }
+
+        int physical(int i) {
+            int index = head + i;
+            return index >= timestamps.length ? index - timestamps.length : index;
+        }
+
+        long newestTimestamp() {
+            return timestamps[physical(size - 1)];
+        }
+
+        void removeOldest() {
+            head = physical(1);
+            size--;
+        }
+
+        // There must be room. Late samples are moved back into place; they
+        // are rarely more than a few samples late.
+        void insert(long timestampNanos, float[] sample) {
+            int i = size;
+            while (i > 0 && timestamps[physical(i - 1)] > timestampNanos) {
+                int from = physical(i - 1);
+                int to = physical(i);
+                timestamps[to] = timestamps[from];
+                System.arraycopy(values, from * dimension, values, to * dimension, dimension);
+                i--;
+            }
+            int index = physical(i);
+            timestamps[index] = timestampNanos;
+            System.arraycopy(sample, 0, values, index * dimension, dimension);
+            size++;
+        }
+
+        // Sets this stream's value at timestampNanos in the frame, then drops
+        // the samples no later frame needs
+        void align(int stream, long timestampNanos, FusedFrame frame) {
+            // Last sample at or before the timestamp, or -1
+            int before = -1;
+            while (before + 1 < size && timestamps[physical(before + 1)] <= timestampNanos) {
+                before++;
+            }
+
+            if (before < 0) {
+                if (size > 0 && alignment == Alignment.INTERPOLATE) {
+                    // Nothing earlier yet: hold the first sample back
+                    int first = physical(0);
+                    frame.set(stream, values, first * dimension, 0L);
+                } else {
+                    frame.setMissing(stream);
+                }
+            } else {
+                int a = physical(before);
+                long aTimestamp = timestamps[a];
+                if (alignment == Alignment.INTERPOLATE && before + 1 < size && aTimestamp < timestampNanos) {
+                    int b = physical(before + 1);
+                    float fraction = (float) ((double) (timestampNanos - aTimestamp)
+                            / (timestamps[b] - aTimestamp));
+                    frame.interpolate(stream, values, a * dimension, b * dimension, fraction);
+                } else {
+                    frame.set(stream, values, a * dimension, timestampNanos - aTimestamp);
+                }
+                // Frames only move forward, so everything before a is done
+                for (int i = 0; i < before; i++) {
+                    removeOldest();
+                }
+            }
+        }
+    }
+}
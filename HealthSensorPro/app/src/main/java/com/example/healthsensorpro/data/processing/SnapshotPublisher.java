@@ -0,0 +1,258 @@
+package com.example.healthsensorpro.data.processing;
+
+import com.example.healthsensorpro.data.model.SensorData;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// Fans published snapshots out to any number of subscribers (UI, storage,
+// export, analytics), each on its own delivery thread behind its own buffer,
+// so a slow subscriber only ever falls behind itself.
+//
+// A subscriber's buffer is a ring of reused SensorData copies, and what
+// happens when it is full is its Policy:
+//  - DROP_OLDEST: the oldest waiting snapshot is overwritten.
+//  - CONFLATE: only the newest snapshot waits; the subscriber sees the latest
+//    state whenever it gets round to it (the capacity is ignored).
+//  - BLOCK: publish() waits up to the subscriber's bound for room, then drops
+//    the new snapshot. Nothing is lost while the subscriber keeps up, and the
+//    producer is never held longer than the bound.
+//
+// publish() is called from one producer thread, the sensor thread; it copies
+// the snapshot into each buffer under that subscriber's lock, which is only
+// ever held for a copy. Nothing is allocated once subscribers are attached.
+//
+// A subscriber that throws is cancelled on the spot, with what it had waiting
+// counted as dropped and the exception kept in getFailure(), so a broken
+// subscriber can neither hold up publish() nor quietly swallow snapshots.
+public final class SnapshotPublisher {
+    public enum Policy {
+        DROP_OLDEST,
+        CONFLATE,
+        BLOCK
+    }
+
+    // Called on the subscription's own thread, in publish order. The snapshot
+    // is reused: copy what is needed before returning.
+    public interface Subscriber {
+        void onSnapshot(SensorData snapshot);
+    }
+
+    // Replaced on every change, so publish() iterates without locking or
+    // allocating
+    private volatile Subscription[] subscriptions = new Subscription[0];
+    private boolean closed = false;
+
+    // maxBlockNanos only applies to BLOCK
+    public Subscription subscribe(String name, Policy policy, int capacity, long maxBlockNanos,
+                                  Subscriber subscriber) {
+        if (capacity <= 0 || maxBlockNanos < 0) {
+            throw new IllegalArgumentException("capacity must be positive and maxBlockNanos >= 0: "
+                    + capacity + ", " + maxBlockNanos);
+        }
+        Subscription subscription = new Subscription(name, policy,
+                policy == Policy.CONFLATE ? 1 : capacity, maxBlockNanos, subscriber);
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Publisher is closed");
+            }
+            Subscription[] current = subscriptions;
+            Subscription[] added = Arrays.copyOf(current, current.length + 1);
+            added[current.length] = subscription;
+            subscriptions = added;
+        }
+        subscription.thread.start();
+        return subscription;
+    }
+
+    public Subscription subscribe(String name, Policy policy, int capacity, Subscriber subscriber) {
+        return subscribe(name, policy, capacity, 0L, subscriber);
+    }
+
+    // Producer thread
+    public void publish(SensorData snapshot) {
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(snapshot);
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.length;
+    }
+
+    // Cancels every subscription; each delivers what it already holds first
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        for (Subscription subscription : subscriptions) {
+            subscription.cancel();
+        }
+    }
+
+    private synchronized void remove(Subscription subscription) {
+        Subscription[] current = subscriptions;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == subscription) {
+                Subscription[] removed = new Subscription[current.length - 1];
+                System.arraycopy(current, 0, removed, 0, i);
+                System.arraycopy(current, i + 1, removed, i, current.length - i - 1);
+                subscriptions = removed;
+                return;
+            }
+        }
+    }
+
+    public final class Subscription {
+        private final Thread thread;
+        private final Object lock = new Object();
+        private final Policy policy;
+        private final long maxBlockNanos;
+        private final Subscriber subscriber;
+        private final SensorData[] ring;
+        // Handed to the subscriber; delivery thread only
+        private final SensorData delivered = new SensorData();
+        private int head = 0;
+        private int size = 0;
+        private boolean cancelled = false;
+        private volatile long publishedCount = 0L;
+        private volatile long deliveredCount = 0L;
+        private volatile long droppedCount = 0L;
+        private volatile RuntimeException failure;
+
+        Subscription(String name, Policy policy, int capacity, long maxBlockNanos, Subscriber subscriber) {
+            thread = new Thread(this::deliver, "SnapshotSubscriber-" + name);
+            thread.setDaemon(true);
+            this.policy = policy;
+            this.maxBlockNanos = maxBlockNanos;
+            this.subscriber = subscriber;
+            ring = new SensorData[capacity];
+            for (int i = 0; i < capacity; i++) {
+                ring[i] = new SensorData();
+            }
+        }
+
+        // Producer thread
+        private void offer(SensorData snapshot) {
+            synchronized (lock) {
+                if (cancelled) {
+                    return;
+                }
+                publishedCount++;
+                if (size == ring.length && policy == Policy.BLOCK) {
+                    awaitRoom();
+                    if (cancelled) {
+                        droppedCount++;
+                        return;
+                    }
+                }
+                if (size == ring.length) {
+                    droppedCount++;
+                    if (policy == Policy.BLOCK) {
+                        return;
+                    }
+                    // DROP_OLDEST and CONFLATE make room the same way
+                    head = next(head);
+                    size--;
+                }
+                ring[index(size)].copyFrom(snapshot);
+                size++;
+                lock.notifyAll();
+            }
+        }
+
+        private void awaitRoom() {
+            long deadline = System.nanoTime() + maxBlockNanos;
+            try {
+                long remaining = maxBlockNanos;
+                while (size == ring.length && !cancelled && remaining > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                    remaining = deadline - System.nanoTime();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void deliver() {
+            while (true) {
+                synchronized (lock) {
+                    while (size == 0 && !cancelled) {
+                        try {
+                            lock.wait();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                    if (size == 0) {
+                        return;
+                    }
+                    delivered.copyFrom(ring[head]);
+                    head = next(head);
+                    size--;
+                    // A blocked producer may go on
+                    lock.notifyAll();
+                }
+                try {
+                    subscriber.onSnapshot(delivered);
+                } catch (RuntimeException e) {
+                    fail(e);
+                    return;
+                }
+                deliveredCount++;
+            }
+        }
+
+        // Delivery thread
+        private void fail(RuntimeException error) {
+            failure = error;
+            remove(this);
+            synchronized (lock) {
+                cancelled = true;
+                // The one it threw on as well
+                droppedCount += size + 1;
+                size = 0;
+                lock.notifyAll();
+            }
+        }
+
+        // Stops delivery once the waiting snapshots are out; returns at once
+        public void cancel() {
+            remove(this);
+            synchronized (lock) {
+                cancelled = true;
+                lock.notifyAll();
+            }
+        }
+
+        // After cancel(): false if the subscriber is still busy after the timeout
+        public boolean awaitTermination(long timeoutMillis) throws InterruptedException {
+            thread.join(timeoutMillis);
+            return !thread.isAlive();
+        }
+
+        private int index(int i) {
+            int index = head + i;
+            return index >= ring.length ? index - ring.length : index;
+        }
+
+        private int next(int index) {
+            return index + 1 == ring.length ? 0 : index + 1;
+        }
+
+        public Policy getPolicy() { return policy; }
+        public long getPublishedCount() { return publishedCount; }
+        public long getDeliveredCount() { return deliveredCount; }
+        public long getDroppedCount() { return droppedCount; }
+
+        // What the subscriber threw, which cancelled it; null if it did not
+        public RuntimeException getFailure() { return failure; }
+
+        // Snapshots waiting for the subscriber
+        public int getPendingCount() {
+            synchronized (lock) {
+                return size;
+            }
+        }
+    }
+}
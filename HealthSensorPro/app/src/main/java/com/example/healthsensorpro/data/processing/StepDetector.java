@@ -0,0 +1,163 @@
+package com.example.healthsensorpro.data.processing;
+
+// Streaming step detector over raw accelerometer samples.
+//
+// Each sample goes through: magnitude -> gravity removal (slow low-pass,
+// subtracted) -> smoothing (fast low-pass) -> local-maximum search. A peak
+// counts as a step when it rises above an adaptive threshold (half of the
+// running average peak height, never below MIN_THRESHOLD), the signal has
+// dipped below the gravity baseline since the previous step, and at least
+// MIN_STEP_INTERVAL_NANOS have passed. Filter coefficients are derived from
+// the actual sample spacing, so the detector works from ~20 Hz to 200 Hz.
+//
+// Plain Java and allocation-free; confined to one thread.
+public class StepDetector {
+    private static final double GRAVITY_TIME_CONSTANT = 0.8;   // seconds
+    private static final double SMOOTHING_TIME_CONSTANT = 0.04; // seconds, ~4 Hz cut-off
+    private static final double MIN_THRESHOLD = 0.6;           // m/s^2 above baseline
+    private static final double THRESHOLD_RATIO = 0.5;
+    private static final double PEAK_AVERAGE_WEIGHT = 0.2;
+    private static final long MIN_STEP_INTERVAL_NANOS = 250_000_000L; // at most 4 steps/s
+    private static final double MAX_SAMPLE_GAP = 0.5;          // seconds
+
+    private boolean initialized = false;
+    private long lastTimestamp;
+    private double gravity;
+    private double smoothed;
+
+    // Last two smoothed values, for the local-maximum test
+    private double previous;
+    private double beforePrevious;
+    private long previousTimestamp;
+
+    private double averagePeak = 2 * MIN_THRESHOLD;
+    private boolean armed = true;
+    private long lastStepTimestamp = 0L;
+    private long stepCount = 0;
+
+    // Cost accounting for the batch path
+    private boolean profiling = false;
+    private long profiledSamples = 0;
+    private long profiledNanos = 0;
+
+    // Returns true when this sample completed a step
+    public boolean onSample(long timestampNanos, float x, float y, float z) {
+        double magnitude = Math.sqrt(x * x + y * y + z * z);
+
+        if (!initialized) {
+            initialized = true;
+            lastTimestamp = timestampNanos;
+            gravity = magnitude;
+            smoothed = 0;
+            previous = 0;
+            beforePrevious = 0;
+            previousTimestamp = timestampNanos;
+            return false;
+        }
+
+        double dt = (timestampNanos - lastTimestamp) / 1e9;
+        lastTimestamp = timestampNanos;
+        if (dt <= 0) {
+            return false;
+        }
+        if (dt > MAX_SAMPLE_GAP) {
+            dt = MAX_SAMPLE_GAP;
+        }
+
+        gravity += dt / (GRAVITY_TIME_CONSTANT + dt) * (magnitude - gravity);
+        smoothed += dt / (SMOOTHING_TIME_CONSTANT + dt) * ((magnitude - gravity) - smoothed);
+
+        boolean step = false;
+        if (smoothed < 0) {
+            // Back below the baseline: the next peak may be a new step
+            armed = true;
+        }
+
+        if (previous > beforePrevious && previous >= smoothed && previous > MIN_THRESHOLD) {
+            // previous was a local maximum
+            double threshold = Math.max(MIN_THRESHOLD, THRESHOLD_RATIO * averagePeak);
+            averagePeak += PEAK_AVERAGE_WEIGHT * (previous - averagePeak);
+
+            boolean refractory = stepCount > 0
+                    && previousTimestamp - lastStepTimestamp < MIN_STEP_INTERVAL_NANOS;
+            if (armed && !refractory && previous >= threshold) {
+                step = true;
+                armed = false;
+                lastStepTimestamp = previousTimestamp;
+                stepCount++;
+            }
+        }
+
+        beforePrevious = previous;
+        previous = smoothed;
+        previousTimestamp = timestampNanos;
+        return step;
+    }
+
+    // Processes count samples starting at offset, reading the arrays in place.
+    // Returns the number of steps detected.
+    public int process(long[] timestamps, float[] xs, float[] ys, float[] zs, int offset, int count) {
+        long start = profiling ? System.nanoTime() : 0L;
+
+        int steps = 0;
+        int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            if (onSample(timestamps[i], xs[i], ys[i], zs[i])) {
+                steps++;
+            }
+        }
+
+        if (profiling) {
+            profiledNanos += System.nanoTime() - start;
+            profiledSamples += count;
+        }
+        return steps;
+    }
+
+    // Processes a packed batch, reading its arrays in place. Returns the
+    // number of steps detected.
+    public int process(AccelerometerBatch batch) {
+        long start = profiling ? System.nanoTime() : 0L;
+
+        int steps = 0;
+        int size = batch.size();
+        int[] deltas = batch.timestampDeltas();
+        short[] xs = batch.xs();
+        short[] ys = batch.ys();
+        short[] zs = batch.zs();
+        float scale = batch.getScale();
+        long timestamp = batch.getFirstTimestamp();
+        for (int i = 0; i < size; i++) {
+            timestamp += deltas[i];
+            if (onSample(timestamp, xs[i] * scale, ys[i] * scale, zs[i] * scale)) {
+                steps++;
+            }
+        }
+
+        if (profiling) {
+            profiledNanos += System.nanoTime() - start;
+            profiledSamples += size;
+        }
+        return steps;
+    }
+
+    public long getStepCount() { return stepCount; }
+
+    // Timing is per batch, so the clock reads are amortised over the samples
+    public void setProfiling(boolean profiling) { this.profiling = profiling; }
+    public long getProfiledSamples() { return profiledSamples; }
+
+    public double getNanosPerSample() {
+        return profiledSamples == 0 ? 0 : (double) profiledNanos / profiledSamples;
+    }
+
+    public void reset() {
+        initialized = false;
+        averagePeak = 2 * MIN_THRESHOLD;
+        armed = true;
+        lastStepTimestamp = 0L;
+        stepCount = 0;
+        profiledSamples = 0;
+        profiledNanos = 0;
+    }
+}
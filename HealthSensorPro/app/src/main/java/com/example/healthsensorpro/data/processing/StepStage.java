@@ -0,0 +1,59 @@
+package com.example.healthsensorpro.data.processing;
+
+// Step counting from the hardware counter, or detected from raw accelerometer
+// samples when the device has none. Confined to the sensor thread.
+public class StepStage {
+    private final boolean useStepDetector;
+    private final StepDetector stepDetector = new StepDetector();
+
+    private int stepCount = 0;
+    private int lastStepCount = 0;
+    private int initialSteps = 0;
+    private boolean isInitialized = false;
+
+    public StepStage(boolean useStepDetector) {
+        this.useStepDetector = useStepDetector;
+    }
+
+    public boolean usesStepDetector() { return useStepDetector; }
+
+    public void onStepCounter(float value) {
+        if (!isInitialized) {
+            initialSteps = (int) value;
+            isInitialized = true;
+        }
+
+        int currentSteps = (int) value;
+        stepCount = currentSteps - initialSteps;
+
+        if (stepCount > lastStepCount) {
+            lastStepCount = stepCount;
+        }
+    }
+
+    public void onAccelerometer(long timestampNanos, float x, float y, float z) {
+        if (useStepDetector && stepDetector.onSample(timestampNanos, x, y, z)) {
+            stepCount++;
+            lastStepCount = stepCount;
+        }
+    }
+
+    public void onAccelerometerBatch(AccelerometerBatch batch) {
+        if (useStepDetector) {
+            stepCount += stepDetector.process(batch);
+            lastStepCount = stepCount;
+        }
+    }
+
+    public int getStepCount() { return stepCount; }
+
+    public StepDetector getStepDetector() { return stepDetector; }
+
+    public void reset() {
+        stepCount = 0;
+        lastStepCount = 0;
+        initialSteps = 0;
+        isInitialized = false;
+        stepDetector.reset();
+    }
+}
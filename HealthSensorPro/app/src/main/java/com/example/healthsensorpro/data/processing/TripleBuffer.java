@@ -0,0 +1,43 @@
+package com.example.healthsensorpro.data.processing;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Lock-free hand-off of reusable objects from one producer thread to one
+// consumer thread. The producer fills back() and publishes it; the consumer
+// reads the latest published slot via acquire(). The third slot is what lets
+// both sides swap without waiting for each other, and nothing is allocated.
+public class TripleBuffer<T> {
+    private static final int INDEX_MASK = 3;
+    private static final int DIRTY = 4;
+
+    private final Object[] slots;
+    // Index of the slot in the middle, plus DIRTY if it has not been consumed
+    private final AtomicInteger middle = new AtomicInteger(2);
+    private int back = 0;  // producer only
+    private int front = 1; // consumer only
+
+    public TripleBuffer(T first, T second, T third) {
+        slots = new Object[] {first, second, third};
+    }
+
+    // Producer: the slot to write the next value into. It holds stale data.
+    @SuppressWarnings("unchecked")
+    public T back() {
+        return (T) slots[back];
+    }
+
+    // Producer: makes the back slot visible to the consumer
+    public void publish() {
+        back = middle.getAndSet(back | DIRTY) & INDEX_MASK;
+    }
+
+    // Consumer: the most recently published value. It stays valid until the
+    // next acquire() call on the consumer thread.
+    @SuppressWarnings("unchecked")
+    public T acquire() {
+        if ((middle.get() & DIRTY) != 0) {
+            front = middle.getAndSet(front) & INDEX_MASK;
+        }
+        return (T) slots[front];
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.healthsensorpro.data.processing;
+
+// Aggregate of one EventTimeWindows window. Reused between windows: copy it
+// with copyFrom() to keep it.
+public final class WindowResult {
+    private long startNanos;
+    private long endNanos;
+    private int count;
+    private double sum;
+    private double sumOfSquares;
+    private float min;
+    private float max;
+
+    // Event time, start inclusive and end exclusive
+    public long getStart() { return startNanos; }
+    public long getEnd() { return endNanos; }
+    public int getCount() { return count; }
+    public double getSum() { return sum; }
+    public float getMin() { return min; }
+    public float getMax() { return max; }
+
+    public double getMean() {
+        return sum / count;
+    }
+
+    // Population variance
+    public double getVariance() {
+        double mean = getMean();
+        return Math.max(0.0, sumOfSquares / count - mean * mean);
+    }
+
+    public void copyFrom(WindowResult other) {
+        set(other.startNanos, other.endNanos, other.count, other.sum, other.sumOfSquares,
+                other.min, other.max);
+    }
+
+    void set(long startNanos, long endNanos, int count, double sum, double sumOfSquares,
+            float min, float max) {
+        this.startNanos = startNanos;
+        this.endNanos = endNanos;
+        this.count = count;
+        this.sum = sum;
+        this.sumOfSquares = sumOfSquares;
+        this.min = min;
+        this.max = max;
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.healthsensorpro.data.repository;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener2;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import com.example.healthsensorpro.data.source.SensorSource;
+import com.example.healthsensorpro.data.source.SensorTypes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// SensorSource backed by the device's SensorManager. Events are delivered on
+// the given handler's thread, batched through the hardware FIFO when the
+// config asks for it.
+public class AndroidSensorSource implements SensorSource, SensorEventListener2 {
+    private final SensorManager sensorManager;
+    private final SensorConfig config;
+    private final Handler handler;
+    private final Sensor accelerometerSensor;
+    private final Sensor gyroscopeSensor;
+    private final Sensor stepCounterSensor;
+    private final Sensor heartRateSensor;
+    private final Sensor heartBeatSensor;
+    private Listener listener;
+    // Written by start()/stop(), read by setSamplingRate() on the sensor thread
+    private volatile boolean started = false;
+
+    public AndroidSensorSource(Context context, SensorConfig config, Handler handler) {
+        this.sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
+        this.config = config;
+        this.handler = handler;
+        if (sensorManager != null) {
+            accelerometerSensor = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+            gyroscopeSensor = config.usesGyroscope()
+                    ? sensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE) : null;
+            stepCounterSensor = sensorManager.getDefaultSensor(Sensor.TYPE_STEP_COUNTER);
+            heartRateSensor = sensorManager.getDefaultSensor(Sensor.TYPE_HEART_RATE);
+            heartBeatSensor = sensorManager.getDefaultSensor(Sensor.TYPE_HEART_BEAT);
+        } else {
+            accelerometerSensor = null;
+            gyroscopeSensor = null;
+            stepCounterSensor = null;
+            heartRateSensor = null;
+            heartBeatSensor = null;
+        }
+    }
+
+    private Sensor sensorFor(int sensorType) {
+        switch (sensorType) {
+            case SensorTypes.ACCELEROMETER:
+                return accelerometerSensor;
+            case SensorTypes.GYROSCOPE:
+                return gyroscopeSensor;
+            case SensorTypes.STEP_COUNTER:
+                return stepCounterSensor;
+            case SensorTypes.HEART_RATE:
+                return heartRateSensor;
+            case SensorTypes.HEART_BEAT:
+                return heartBeatSensor;
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public boolean hasSensor(int sensorType) {
+        return sensorFor(sensorType) != null;
+    }
+
+    @Override
+    public int getFifoMaxEventCount(int sensorType) {
+        Sensor sensor = sensorFor(sensorType);
+        return sensor == null ? 0 : sensor.getFifoMaxEventCount();
+    }
+
+    // In the sensor's unit (m/s^2 for the accelerometer); 0 if unknown
+    public float getMaximumRange(int sensorType) {
+        Sensor sensor = sensorFor(sensorType);
+        return sensor == null ? 0f : sensor.getMaximumRange();
+    }
+
+    // Smallest step the sensor reports, in its unit; 0 if unknown
+    public float getResolution(int sensorType) {
+        Sensor sensor = sensorFor(sensorType);
+        return sensor == null ? 0f : sensor.getResolution();
+    }
+
+    @Override
+    public void start(Listener listener) {
+        this.listener = listener;
+        started = true;
+        int latency = config.getMaxReportLatencyUs();
+        if (accelerometerSensor != null) {
+            register(accelerometerSensor, config.getSamplingPeriodUs(), latency);
+        }
+        if (gyroscopeSensor != null) {
+            register(gyroscopeSensor, config.getSamplingPeriodUs(), latency);
+        }
+        if (stepCounterSensor != null) {
+            register(stepCounterSensor, SensorManager.SENSOR_DELAY_UI, latency);
+        }
+        if (heartRateSensor != null) {
+            register(heartRateSensor, SensorManager.SENSOR_DELAY_NORMAL, latency);
+        }
+        // Reports once per beat whatever the rate; the timestamps are what matter
+        if (heartBeatSensor != null) {
+            register(heartBeatSensor, SensorManager.SENSOR_DELAY_NORMAL, latency);
+        }
+    }
+
+    // Called on the sensor thread (SensorRepository's rate controller) while
+    // events arrive on the callback handler. Samples still in the FIFO may be
+    // delivered before or after the switch.
+    @Override
+    public void setSamplingRate(int sensorType, int samplingPeriodUs, int maxReportLatencyUs) {
+        Sensor sensor = sensorFor(sensorType);
+        if (!started || sensor == null) {
+            return;
+        }
+        sensorManager.unregisterListener(this, sensor);
+        register(sensor, samplingPeriodUs, maxReportLatencyUs);
+    }
+
+    private void register(Sensor sensor, int samplingPeriodUs, int maxReportLatencyUs) {
+        if (maxReportLatencyUs > 0) {
+            sensorManager.registerListener(this, sensor, samplingPeriodUs, maxReportLatencyUs, handler);
+        } else {
+            sensorManager.registerListener(this, sensor, samplingPeriodUs, handler);
+        }
+    }
+
+    // Asks the sensor hub to deliver everything still queued in its FIFOs
+    @Override
+    public void flush() {
+        if (sensorManager != null) {
+            sensorManager.flush(this);
+        }
+    }
+
+    @Override
+    public void stop() {
+        started = false;
+        if (sensorManager != null) {
+            sensorManager.unregisterListener(this);
+        }
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        listener.onSample(event.sensor.getType(), event.timestamp, event.values);
+    }
+
+    @Override
+    public void onFlushCompleted(Sensor sensor) {
+        listener.onFlushCompleted(sensor.getType());
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {
+        // Handle accuracy changes if needed
+    }
+
+    public List<String> getAvailableSensors() {
+        List<String> sensors = new ArrayList<>();
+
+        if (sensorManager != null) {
+            List<Sensor> sensorList = sensorManager.getSensorList(Sensor.TYPE_ALL);
+
+            // Check for specific sensors
+            boolean hasAccelerometer = false;
+            boolean hasStepCounter = false;
+            boolean hasHeartRate = false;
+
+            for (Sensor sensor : sensorList) {
+                switch (sensor.getType()) {
+                    case Sensor.TYPE_ACCELEROMETER:
+                        hasAccelerometer = true;
+                        break;
+                    case Sensor.TYPE_STEP_COUNTER:
+                        hasStepCounter = true;
+                        break;
+                    case Sensor.TYPE_HEART_RATE:
+                        hasHeartRate = true;
+                        break;
+                    case Sensor.TYPE_GYROSCOPE:
+                        sensors.add("Gyroscope");
+                        break;
+                    case Sensor.TYPE_LIGHT:
+                        sensors.add("Light Sensor");
+                        break;
+                    case Sensor.TYPE_PROXIMITY:
+                        sensors.add("Proximity Sensor");
+                        break;
+                }
+            }
+
+            if (hasAccelerometer) sensors.add(0, "Accelerometer");
+            if (hasStepCounter) {
+                sensors.add(0, "Step Counter");
+            } else {
+                sensors.add(0, "Step Counter (Accelerometer)");
+            }
+            if (hasHeartRate) sensors.add(0, "Heart Rate");
+        }
+
+        return sensors;
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.healthsensorpro.data.repository;
+
+import android.hardware.SensorManager;
+import com.example.healthsensorpro.data.processing.ActivityStage;
+
+// How the repository registers its sensor listeners.
+// With a report latency > 0 the sensor hub queues samples in its hardware FIFO
+// and delivers them in bursts, so the application processor wakes up once per
+// burst instead of once per sample.
+//
+// An adaptive config drops the accelerometer to an idle rate while the user
+// is still, batched with a long report latency, and returns to the normal
+// rate once they move (see SamplingRateController). Only on devices with a
+// hardware step counter: the accelerometer step detector misses the first
+// steps after a stillness at the idle rate.
+public class SensorConfig {
+    public static final SensorConfig PER_EVENT = new SensorConfig(SensorManager.SENSOR_DELAY_NORMAL, 0);
+    // 2 Hz, delivered every 10 s while still
+    public static final SensorConfig ADAPTIVE = PER_EVENT.withIdleRate(500_000, 10_000_000);
+
+    private final int samplingPeriodUs;
+    private final int maxReportLatencyUs;
+    // Samples per activity classification window; scale up with the sampling rate
+    private final int activityWindowLength;
+    // Accelerometer registration while the user is still; 0 when not adaptive
+    private final int idleSamplingPeriodUs;
+    private final int idleMaxReportLatencyUs;
+    // Registers the gyroscope along with the accelerometer, for fused frames
+    private final boolean gyroscope;
+    // Receives sensor events on a thread of their own (see SensorRepository)
+    private final boolean callbackThread;
+
+    public SensorConfig(int samplingPeriodUs, int maxReportLatencyUs) {
+        this(samplingPeriodUs, maxReportLatencyUs, ActivityStage.DEFAULT_WINDOW_LENGTH);
+    }
+
+    public SensorConfig(int samplingPeriodUs, int maxReportLatencyUs, int activityWindowLength) {
+        this(samplingPeriodUs, maxReportLatencyUs, activityWindowLength, 0, 0, false, false);
+    }
+
+    private SensorConfig(int samplingPeriodUs, int maxReportLatencyUs, int activityWindowLength,
+                         int idleSamplingPeriodUs, int idleMaxReportLatencyUs, boolean gyroscope,
+                         boolean callbackThread) {
+        if (maxReportLatencyUs < 0) {
+            throw new IllegalArgumentException("maxReportLatencyUs must be >= 0: " + maxReportLatencyUs);
+        }
+        if (activityWindowLength <= 0) {
+            throw new IllegalArgumentException("activityWindowLength must be positive: " + activityWindowLength);
+        }
+        this.samplingPeriodUs = samplingPeriodUs;
+        this.maxReportLatencyUs = maxReportLatencyUs;
+        this.activityWindowLength = activityWindowLength;
+        this.idleSamplingPeriodUs = idleSamplingPeriodUs;
+        this.idleMaxReportLatencyUs = idleMaxReportLatencyUs;
+        this.gyroscope = gyroscope;
+        this.callbackThread = callbackThread;
+    }
+
+    public static SensorConfig batched(int maxReportLatencyUs) {
+        return new SensorConfig(SensorManager.SENSOR_DELAY_NORMAL, maxReportLatencyUs);
+    }
+
+    public int getSamplingPeriodUs() { return samplingPeriodUs; }
+    public int getMaxReportLatencyUs() { return maxReportLatencyUs; }
+    public SensorConfig withActivityWindowLength(int length) {
+        return new SensorConfig(samplingPeriodUs, maxReportLatencyUs, length,
+                idleSamplingPeriodUs, idleMaxReportLatencyUs, gyroscope, callbackThread);
+    }
+
+    // Makes the config adaptive, with this rate while the user is still
+    public SensorConfig withIdleRate(int samplingPeriodUs, int maxReportLatencyUs) {
+        if (samplingPeriodUs <= 0 || maxReportLatencyUs < 0) {
+            throw new IllegalArgumentException("Invalid idle rate: " + samplingPeriodUs + " us, "
+                    + maxReportLatencyUs + " us latency");
+        }
+        return new SensorConfig(this.samplingPeriodUs, this.maxReportLatencyUs, activityWindowLength,
+                samplingPeriodUs, maxReportLatencyUs, gyroscope, callbackThread);
+    }
+
+    // Also samples the gyroscope, at the accelerometer's normal rate. It draws
+    // several times the accelerometer's power, so only for fused frames.
+    public SensorConfig withGyroscope() {
+        return new SensorConfig(samplingPeriodUs, maxReportLatencyUs, activityWindowLength,
+                idleSamplingPeriodUs, idleMaxReportLatencyUs, true, callbackThread);
+    }
+
+    // Takes sensor events on a callback thread that only copies them into a
+    // ring, so they keep flowing while the processing thread is busy with a
+    // batch or a log segment
+    public SensorConfig withCallbackThread() {
+        return new SensorConfig(samplingPeriodUs, maxReportLatencyUs, activityWindowLength,
+                idleSamplingPeriodUs, idleMaxReportLatencyUs, gyroscope, true);
+    }
+
+    public int getActivityWindowLength() { return activityWindowLength; }
+    public boolean isBatching() { return maxReportLatencyUs > 0; }
+    public boolean isAdaptive() { return idleSamplingPeriodUs > 0; }
+    public int getIdleSamplingPeriodUs() { return idleSamplingPeriodUs; }
+    public int getIdleMaxReportLatencyUs() { return idleMaxReportLatencyUs; }
+    public boolean usesGyroscope() { return gyroscope; }
+    public boolean usesCallbackThread() { return callbackThread; }
+}
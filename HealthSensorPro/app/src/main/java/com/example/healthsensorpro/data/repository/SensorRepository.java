@@ -1,368 +1,652 @@
 package com.example.healthsensorpro.data.repository;
 
 import android.content.Context;
-import android.hardware.Sensor;
-import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
-import android.hardware.SensorManager;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Choreographer;
 import com.example.healthsensorpro.data.model.HealthMetrics;
 import com.example.healthsensorpro.data.model.SensorData;
-
-import java.util.ArrayList;
-import java.util.HashMap;
+import com.example.healthsensorpro.data.processing.AccelerometerBatch;
+import com.example.healthsensorpro.data.processing.ActivityStage;
+import com.example.healthsensorpro.data.processing.EventTimeWindows;
+import com.example.healthsensorpro.data.processing.LatencyTracker;
+import com.example.healthsensorpro.data.processing.SamplingRateController;
+import com.example.healthsensorpro.data.processing.SensorPipeline;
+import com.example.healthsensorpro.data.processing.SensorTimeline;
+import com.example.healthsensorpro.data.processing.SnapshotPublisher;
+import com.example.healthsensorpro.data.source.SampleRing;
+import com.example.healthsensorpro.data.source.SensorSource;
+import com.example.healthsensorpro.data.source.SensorTypes;
+import com.example.healthsensorpro.data.source.TraceWriter;
+import com.example.healthsensorpro.data.storage.RollupBackfill;
+import com.example.healthsensorpro.data.storage.RollupEngine;
+import com.example.healthsensorpro.data.storage.RollupResolution;
+import com.example.healthsensorpro.data.storage.SensorLog;
+import com.example.healthsensorpro.data.storage.TieredHistory;
+
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
-import java.util.Map;
-import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+public class SensorRepository implements SensorSource.Listener {
+    // Receives metrics on the main thread, at most once per display frame.
+    // The HealthMetrics instance is reused between calls.
+    public interface MetricsListener {
+        void onMetricsChanged(HealthMetrics metrics);
+    }
 
-public class SensorRepository implements SensorEventListener {
     private Context context;
-    private SensorManager sensorManager;
-    private Sensor stepCounterSensor;
-    private Sensor accelerometerSensor;
-    private Sensor heartRateSensor;
-
-    private int stepCount = 0;
-    private int lastStepCount = 0;
-    private int initialSteps = 0;
-    private boolean isInitialized = false;
-    private boolean useSimulatedSteps = true; // For emulator/device without step counter
-
-    private long lastAccelerometerReading = 0L;
-    private List<String> activityBuffer = new ArrayList<>();
-    private Handler handler = new Handler(Looper.getMainLooper());
-    private Random random = new Random();
-
-    // For calculations
-    private final double CALORIES_PER_STEP = 0.04;
-    private final double STEP_LENGTH = 0.762;
-    private float[] lastAccelerometerValues = new float[3];
-
-    // Activity tracking
-    private String currentDetectedActivity = "Stationary";
-    private long lastActivityChangeTime = 0;
-    private float lastMagnitude = 0;
-
-    // Step simulation
-    private Runnable stepSimulator = new Runnable() {
+    private final SensorConfig config;
+    private AndroidSensorSource sensorSource;
+
+    // Sensor callbacks and all processing run here, never on the main thread
+    private final HandlerThread sensorThread;
+    private final Handler sensorHandler;
+    private SensorPipeline pipeline;
+
+    // Raw samples are copied here while a trace is being recorded
+    private TraceWriter traceWriter;
+
+    // Accelerometer, gyroscope and heart rate aligned into fused frames while
+    // someone listens; null otherwise
+    private SensorTimeline sensorTimeline;
+    private static final int MIN_TIMELINE_CAPACITY = 256;
+    private static final long TIMELINE_MAX_WAIT_NANOS = 100_000_000L;
+
+    // Acceleration magnitude aggregated in windows of event time while
+    // someone listens; null otherwise
+    private EventTimeWindows accelerometerWindows;
+
+    // null unless latency tracking is on
+    private volatile LatencyTracker latencyTracker;
+
+    // Every snapshot is appended to the on-disk log; null until it is open,
+    // or if it could not be opened
+    private volatile SensorLog sensorLog;
+
+    // Every snapshot, fanned out to subscribers on their own threads
+    private final SnapshotPublisher snapshotPublisher = new SnapshotPublisher();
+
+    // The last snapshots in memory for the live charts, coarser the older they
+    // are, within a fixed budget
+    private static final long RECENT_HISTORY_BYTES = 2L * 1024 * 1024;
+    private final TieredHistory recentHistory = new TieredHistory(RECENT_HISTORY_BYTES);
+
+    // Minute/hour/day rollups of the log, brought up to date on the history
+    // thread once a minute and before every query
+    private final HandlerThread historyThread;
+    private final Handler historyHandler;
+    private volatile RollupEngine rollupEngine;
+    private static final long ROLLUP_INTERVAL_MS = 60_000L;
+    private final Runnable updateRollups = new Runnable() {
         @Override
         public void run() {
-            if (useSimulatedSteps && !currentDetectedActivity.equals("Stationary")) {
-                // Simulate steps based on activity
-                int stepsToAdd = 0;
-
-                switch (currentDetectedActivity) {
-                    case "Walking":
-                        stepsToAdd = 1 + random.nextInt(2); // 1-2 steps per second
-                        break;
-                    case "Running":
-                        stepsToAdd = 2 + random.nextInt(3); // 2-4 steps per second
-                        break;
-                }
-
-                stepCount += stepsToAdd;
-
-                // Update UI
-                if (stepCount > lastStepCount) {
-                    lastStepCount = stepCount;
+            RollupEngine engine = rollupEngine;
+            if (engine != null) {
+                try {
+                    engine.update();
+                } catch (IOException e) {
+                    // Retried on the next round; the log still has the data
                 }
+                historyHandler.postDelayed(this, ROLLUP_INTERVAL_MS);
             }
+        }
+    };
 
-            // Schedule next update
-            long interval = 1000; // 1 second
-            handler.postDelayed(this, interval);
+    // Adaptive configs only: lowers the accelerometer rate while the user is still
+    private SamplingRateController samplingRateController;
+
+    // Batching mode: samples of one FIFO burst are collected here and handed
+    // to the pipeline together once the burst has been delivered
+    private AccelerometerBatch accelerometerBatch;
+    private boolean batchDrainScheduled = false;
+    private final Runnable drainBatch = this::drainAccelerometerBatch;
+
+    // With a callback thread, events are copied into the ring there and
+    // drained on the sensor thread; null otherwise
+    private HandlerThread callbackThread;
+    private SampleRing sampleRing;
+    private final AtomicBoolean ringDrainScheduled = new AtomicBoolean(false);
+    private final Runnable drainRing = this::drainSampleRing;
+    private static final int MIN_RING_CAPACITY = 4096;
+
+    // Change notifications are coalesced into one callback per frame
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicBoolean frameScheduled = new AtomicBoolean(false);
+    private final HealthMetrics frameMetrics = new HealthMetrics();
+    private MetricsListener metricsListener;
+
+    private static final int MIN_BATCH_CAPACITY = 64;
+
+    private final Choreographer.FrameCallback frameCallback = frameTimeNanos -> {
+        frameScheduled.set(false);
+        if (metricsListener != null) {
+            getHealthMetrics(frameMetrics);
+            metricsListener.onMetricsChanged(frameMetrics);
         }
     };
+    private final Runnable postFrameCallback =
+            () -> Choreographer.getInstance().postFrameCallback(frameCallback);
 
     public SensorRepository(Context context) {
+        this(context, SensorConfig.ADAPTIVE);
+    }
+
+    public SensorRepository(Context context, SensorConfig config) {
         this.context = context;
+        this.config = config;
+
+        sensorThread = new HandlerThread("SensorPipeline");
+        sensorThread.start();
+        sensorHandler = new Handler(sensorThread.getLooper());
+
+        historyThread = new HandlerThread("SensorHistory");
+        historyThread.start();
+        historyHandler = new Handler(historyThread.getLooper());
+
         initializeSensors();
-        startStepSimulation();
+        sensorHandler.post(this::openSensorLog);
     }
 
     private void initializeSensors() {
-        sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
-
-        if (sensorManager != null) {
-            stepCounterSensor = sensorManager.getDefaultSensor(Sensor.TYPE_STEP_COUNTER);
-            accelerometerSensor = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
-            heartRateSensor = sensorManager.getDefaultSensor(Sensor.TYPE_HEART_RATE);
-
-            // Check if we have a real step counter
-            if (stepCounterSensor == null) {
-                useSimulatedSteps = true;
-            } else {
-                useSimulatedSteps = false;
-            }
+        Handler callbackHandler = sensorHandler;
+        if (config.usesCallbackThread()) {
+            callbackThread = new HandlerThread("SensorCallbacks");
+            callbackThread.start();
+            callbackHandler = new Handler(callbackThread.getLooper());
+        }
+        sensorSource = new AndroidSensorSource(context, config, callbackHandler);
+
+        // Without a hardware step counter, steps are detected from the accelerometer
+        boolean useStepDetector = !sensorSource.hasSensor(SensorTypes.STEP_COUNTER);
+        // Retained and batched samples are packed to the sensor's own range
+        // and resolution (see AccelerometerBatch)
+        float range = sensorSource.getMaximumRange(SensorTypes.ACCELEROMETER);
+        float resolution = sensorSource.getResolution(SensorTypes.ACCELEROMETER);
+        pipeline = createPipeline(useStepDetector, AccelerometerBatch.scaleFor(range, resolution));
+
+        if (config.isBatching() && sensorSource.hasSensor(SensorTypes.ACCELEROMETER)) {
+            // Room for a full hardware FIFO so a burst is drained in one go
+            int fifoSize = sensorSource.getFifoMaxEventCount(SensorTypes.ACCELEROMETER);
+            accelerometerBatch = new AccelerometerBatch(Math.max(fifoSize, MIN_BATCH_CAPACITY),
+                    range > 0 ? range : AccelerometerBatch.DEFAULT_MAXIMUM_RANGE, resolution);
+        }
 
-            // Register listeners
-            if (accelerometerSensor != null) {
-                sensorManager.registerListener(this, accelerometerSensor, SensorManager.SENSOR_DELAY_NORMAL);
-            }
+        // The step detector needs the normal rate to see steps at all, so a
+        // device without a step counter never idles and keeps the plain config
+        if (config.isAdaptive() && !useStepDetector && sensorSource.hasSensor(SensorTypes.ACCELEROMETER)) {
+            // Registered at the normal rate first, until stillness is confirmed
+            samplingRateController = new SamplingRateController(
+                    SamplingRateController.Rate.HIGH, this::onSamplingRateChanged);
+        }
 
-            if (stepCounterSensor != null && !useSimulatedSteps) {
-                sensorManager.registerListener(this, stepCounterSensor, SensorManager.SENSOR_DELAY_UI);
-            }
+        if (callbackThread != null) {
+            // Room for every FIFO to arrive in one go while processing is busy
+            int fifoTotal = sensorSource.getFifoMaxEventCount(SensorTypes.ACCELEROMETER)
+                    + sensorSource.getFifoMaxEventCount(SensorTypes.GYROSCOPE)
+                    + sensorSource.getFifoMaxEventCount(SensorTypes.HEART_RATE);
+            sampleRing = new SampleRing(Math.max(MIN_RING_CAPACITY, 2 * fifoTotal), 3);
+            sensorSource.start(new RingProducer());
+        } else {
+            // Events are delivered on the sensor thread
+            sensorSource.start(this);
+        }
+    }
 
-            if (heartRateSensor != null) {
-                sensorManager.registerListener(this, heartRateSensor, SensorManager.SENSOR_DELAY_NORMAL);
+    // Callback thread: copies each event into the ring and wakes the sensor
+    // thread once per run of events
+    private final class RingProducer implements SensorSource.Listener {
+        @Override
+        public void onSample(int sensorType, long timestampNanos, float[] values) {
+            // A full ring drops the sample; getDroppedSampleCount() has it
+            sampleRing.offer(sensorType, timestampNanos, values);
+            if (ringDrainScheduled.compareAndSet(false, true)) {
+                sensorHandler.post(drainRing);
             }
         }
-    }
 
-    private void startStepSimulation() {
-        // Start step simulation only if using simulated steps
-        if (useSimulatedSteps) {
-            handler.postDelayed(stepSimulator, 1000);
+        @Override
+        public void onFlushCompleted(int sensorType) {
+            // After the samples the flush delivered
+            sensorHandler.post(() -> {
+                drainSampleRing();
+                SensorRepository.this.onFlushCompleted(sensorType);
+            });
         }
     }
 
-    @Override
-    public void onSensorChanged(SensorEvent event) {
-        switch (event.sensor.getType()) {
-            case Sensor.TYPE_STEP_COUNTER:
-                handleStepCounter(event);
-                break;
-            case Sensor.TYPE_ACCELEROMETER:
-                handleAccelerometer(event);
-                break;
-            case Sensor.TYPE_HEART_RATE:
-                // Handle heart rate data
-                break;
-        }
+    // Sensor thread. Events offered after the flag is cleared schedule
+    // another drain, so none is left behind.
+    private void drainSampleRing() {
+        ringDrainScheduled.set(false);
+        sampleRing.drain(this);
+    }
+
+    // Events lost because the ring between the callback thread and the
+    // sensor thread was full; 0 without a callback thread
+    public long getDroppedSampleCount() {
+        return sampleRing == null ? 0L : sampleRing.getOverflowCount();
     }
 
-    private void handleStepCounter(SensorEvent event) {
-        if (!isInitialized) {
-            initialSteps = (int) event.values[0];
-            isInitialized = true;
+    // Sensor thread
+    private void onSamplingRateChanged(SamplingRateController.Rate rate) {
+        if (rate == SamplingRateController.Rate.LOW) {
+            sensorSource.setSamplingRate(SensorTypes.ACCELEROMETER,
+                    config.getIdleSamplingPeriodUs(), config.getIdleMaxReportLatencyUs());
+        } else {
+            sensorSource.setSamplingRate(SensorTypes.ACCELEROMETER,
+                    config.getSamplingPeriodUs(), config.getMaxReportLatencyUs());
         }
+    }
 
-        int currentSteps = (int) event.values[0];
-        stepCount = currentSteps - initialSteps;
+    private SensorPipeline createPipeline(boolean useStepDetector, float accelerometerScale) {
+        SensorPipeline pipeline = new SensorPipeline(useStepDetector, config.getActivityWindowLength(),
+                accelerometerScale);
+        pipeline.setListener(this::onPipelineChanged);
+        pipeline.setRecorder(this::recordSnapshot);
+        // Sensor timestamps count from boot; stored data needs wall clock time
+        pipeline.setEpochOffsetNanos(
+                System.currentTimeMillis() * 1_000_000L - SystemClock.elapsedRealtimeNanos());
+        return pipeline;
+    }
 
-        if (stepCount > lastStepCount) {
-            lastStepCount = stepCount;
+    // Sensor thread. Recovering the log reads its last segment, so this stays
+    // off the main thread; samples before it is open are simply not stored.
+    private void openSensorLog() {
+        try {
+            sensorLog = SensorLog.open(new File(context.getFilesDir(), "sensor-log"));
+        } catch (IOException e) {
+            sensorLog = null;
+            return;
         }
+
+        final SensorLog log = sensorLog;
+        historyHandler.post(() -> openRollups(log));
     }
 
-    private void handleAccelerometer(SensorEvent event) {
-        lastAccelerometerReading = System.currentTimeMillis();
-        lastAccelerometerValues[0] = event.values[0];
-        lastAccelerometerValues[1] = event.values[1];
-        lastAccelerometerValues[2] = event.values[2];
-
-        // Calculate magnitude
-        double magnitude = Math.sqrt(
-                event.values[0] * event.values[0] +
-                        event.values[1] * event.values[1] +
-                        event.values[2] * event.values[2]
-        );
-
-        // Store for comparison
-        lastMagnitude = (float) magnitude;
-
-        // Improved activity recognition with hysteresis
-        String newActivity;
-        if (magnitude < 10.0) {
-            newActivity = "Stationary";
-        } else if (magnitude < 12.5) {
-            newActivity = "Walking";
-        } else {
-            newActivity = "Running";
+    // Sensor thread
+    private void recordSnapshot(SensorData snapshot) {
+        recentHistory.add(snapshot);
+        SensorLog log = sensorLog;
+        if (log != null) {
+            log.append(snapshot);
         }
+        snapshotPublisher.publish(snapshot);
+    }
+
+    // Delivers every snapshot the pipeline publishes (one per accelerometer
+    // sample or batch) to the subscriber on a thread of its own, buffered
+    // according to the policy (see SnapshotPublisher). However slow the
+    // subscriber, the sensor thread and other subscribers carry on; only a
+    // BLOCK subscriber holds the sensor thread, for at most maxBlockNanos.
+    // Cancel the subscription to stop.
+    public SnapshotPublisher.Subscription subscribeSnapshots(String name, SnapshotPublisher.Policy policy,
+            int capacity, long maxBlockNanos, SnapshotPublisher.Subscriber subscriber) {
+        return snapshotPublisher.subscribe(name, policy, capacity, maxBlockNanos, subscriber);
+    }
 
-        // Only update if activity changed
-        if (!newActivity.equals(currentDetectedActivity)) {
-            currentDetectedActivity = newActivity;
-            lastActivityChangeTime = System.currentTimeMillis();
+    // History thread. Catching up after a crash happens on the first update.
+    private void openRollups(SensorLog log) {
+        try {
+            rollupEngine = RollupEngine.open(rollupDirectory(), log, zoneOffsetMillis());
+            updateRollups.run();
+        } catch (IOException e) {
+            rollupEngine = null;
         }
+    }
+
+    private File rollupDirectory() {
+        return new File(context.getFilesDir(), "rollups");
+    }
 
-        updateActivityBuffer(newActivity);
+    private static long zoneOffsetMillis() {
+        return TimeZone.getDefault().getOffset(System.currentTimeMillis());
+    }
 
-        // For simulation: Add steps when movement is detected
-        if (useSimulatedSteps && !newActivity.equals("Stationary")) {
-            simulateStepsFromMovement(magnitude);
+    // Re-classifies the whole recorded history with a new activity model and
+    // swaps in the rollups derived from it (see RollupBackfill), using every
+    // core. Runs in the background; the old rollups answer queries until the
+    // new ones are ready. listener, if any, is called from the worker threads.
+    public void backfillRollups(Supplier<ActivityStage> activityStages,
+                                RollupBackfill.ProgressListener listener) {
+        historyHandler.post(() -> runBackfill(activityStages, listener));
+    }
+
+    // History thread
+    private void runBackfill(Supplier<ActivityStage> activityStages, RollupBackfill.ProgressListener listener) {
+        SensorLog log = sensorLog;
+        if (log == null || rollupEngine == null) {
+            return;
+        }
+        File target = new File(context.getFilesDir(), "rollups.backfill");
+        RollupBackfill backfill = new RollupBackfill(log, zoneOffsetMillis(), activityStages);
+        backfill.setProgressListener(listener);
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            backfill.run(pool, target, System.currentTimeMillis());
+            historyHandler.removeCallbacks(updateRollups);
+            closeRollups();
+            RollupEngine.replace(rollupDirectory(), target);
+        } catch (IOException e) {
+            // Keep the old rollups; a later backfill starts over
+        } finally {
+            pool.shutdown();
+        }
+        if (rollupEngine == null) {
+            openRollups(log);
         }
     }
 
-    private void simulateStepsFromMovement(double magnitude) {
-        long currentTime = System.currentTimeMillis();
+    // Streams the recorded snapshots with fromMillis <= timestamp <= toMillis
+    // into a caller-owned SensorData, oldest first, without building a list.
+    // Seeking to the start is cheap; reading may block on flash, so iterate
+    // off the main thread. Empty while history is unavailable.
+    public SensorLog.Cursor queryHistory(long fromMillis, long toMillis) {
+        SensorLog log = sensorLog;
+        return log == null ? SensorLog.emptyCursor() : log.scan(fromMillis, toMillis);
+    }
 
-        // Add steps based on movement intensity
-        if (currentTime - lastActivityChangeTime > 1000) { // At least 1 second between step bursts
-            int steps = 0;
+    // Blocking, so call it from a background thread. Visits the minute, hour
+    // or day buckets overlapping [fromMillis, toMillis] and returns how many
+    // there were; 0 while history is unavailable.
+    public int queryRollups(RollupResolution resolution, long fromMillis, long toMillis,
+                            RollupEngine.Visitor visitor) throws IOException {
+        RollupEngine engine = rollupEngine;
+        return engine == null ? 0 : engine.query(resolution, fromMillis, toMillis, visitor);
+    }
 
-            if (currentDetectedActivity.equals("Walking")) {
-                // Walking: 60-100 steps per minute = 1-2 steps per second
-                if (random.nextFloat() > 0.3f) { // 70% chance to add a step
-                    steps = 1;
-                }
-            } else if (currentDetectedActivity.equals("Running")) {
-                // Running: 150-180 steps per minute = 2.5-3 steps per second
-                steps = 2 + random.nextInt(2); // 2-3 steps
+    // Visits the in-memory points overlapping [fromMillis, toMillis], oldest
+    // first: every snapshot of the last minutes, then per second and per
+    // minute (or coarser) further back. Never touches storage, so it can run
+    // on the main thread; pass the same buffer on every call to reuse its
+    // points.
+    public int queryRecentHistory(long fromMillis, long toMillis, TieredHistory.QueryBuffer buffer,
+                                  TieredHistory.Visitor visitor) {
+        return recentHistory.query(fromMillis, toMillis, buffer, visitor);
+    }
+
+    // Receives a frame per accelerometer sample with the gyroscope
+    // interpolated to its timestamp (with a config that uses it) and the last
+    // heart rate, for classifiers that need more than one sensor. Streams the
+    // device lacks are left out; find the others with FusedFrame.indexOf().
+    // Called on the sensor thread with a reused frame; pass null to stop.
+    public void setFusedFrameListener(SensorTimeline.FrameListener listener) {
+        sensorHandler.post(() -> {
+            if (listener == null) {
+                sensorTimeline = null;
+                return;
+            }
+            // Room for a full FIFO burst of one sensor before the other's arrives
+            int capacity = Math.max(MIN_TIMELINE_CAPACITY, Math.max(
+                    sensorSource.getFifoMaxEventCount(SensorTypes.ACCELEROMETER),
+                    sensorSource.getFifoMaxEventCount(SensorTypes.GYROSCOPE)));
+            long maxWait = config.getMaxReportLatencyUs() * 1000L + TIMELINE_MAX_WAIT_NANOS;
+            SensorTimeline timeline = new SensorTimeline(SensorTypes.ACCELEROMETER, 3, capacity, maxWait);
+            if (sensorSource.hasSensor(SensorTypes.GYROSCOPE)) {
+                timeline.addStream(SensorTypes.GYROSCOPE, 3, SensorTimeline.Alignment.INTERPOLATE);
+            }
+            if (sensorSource.hasSensor(SensorTypes.HEART_RATE)) {
+                timeline.addStream(SensorTypes.HEART_RATE, 1, SensorTimeline.Alignment.HOLD);
             }
+            timeline.setFrameListener(listener);
+            sensorTimeline = timeline;
+        });
+    }
 
-            stepCount += steps;
-            lastStepCount = stepCount;
+    // Receives the count, mean, variance and range of the acceleration
+    // magnitude (m/s^2) in windows of sensor event time: tumbling when size
+    // equals slide, sliding when it is a multiple of it. Each window is
+    // reported once, after every event that can still arrive for it has, so
+    // FIFO bursts and reordered deliveries give the same windows as live
+    // samples. Called on the sensor thread with a reused result; pass null to
+    // stop.
+    public void setAccelerometerWindowListener(long sizeNanos, long slideNanos,
+            EventTimeWindows.Listener listener) {
+        // Fails here rather than on the sensor thread
+        final EventTimeWindows windows = listener == null ? null : new EventTimeWindows(sizeNanos,
+                slideNanos, config.getMaxReportLatencyUs() * 1000L + TIMELINE_MAX_WAIT_NANOS);
+        if (windows != null) {
+            windows.setListener(listener);
         }
+        sensorHandler.post(() -> accelerometerWindows = windows);
     }
 
-    private void updateActivityBuffer(String activity) {
-        activityBuffer.add(activity);
-        if (activityBuffer.size() > 10) {
-            activityBuffer.remove(0);
-        }
+    // Measures how old sensor events are at each stage on their way to the
+    // screen (see LatencyTracker). Off by default; turning it on again starts
+    // from empty histograms.
+    public void setLatencyTracking(boolean enabled) {
+        final LatencyTracker tracker = enabled ? new LatencyTracker(SystemClock::elapsedRealtimeNanos) : null;
+        latencyTracker = tracker;
+        sensorHandler.post(() -> pipeline.setLatencyTracker(tracker));
     }
 
-    public String getCurrentActivity() {
-        if (activityBuffer.isEmpty()) {
-            return "Unknown";
-        }
+    // Time and events at each accelerometer rate; null unless the config is
+    // adaptive
+    public SamplingRateController getSamplingRateController() {
+        return samplingRateController;
+    }
 
-        // Find most frequent activity
-        Map<String, Integer> frequency = new HashMap<>();
-        for (String activity : activityBuffer) {
-            frequency.put(activity, frequency.getOrDefault(activity, 0) + 1);
-        }
+    // null while latency tracking is off
+    public LatencyTracker getLatencyTracker() {
+        return latencyTracker;
+    }
 
-        String mostCommon = "Unknown";
-        int maxCount = 0;
-        for (Map.Entry<String, Integer> entry : frequency.entrySet()) {
-            if (entry.getValue() > maxCount) {
-                mostCommon = entry.getKey();
-                maxCount = entry.getValue();
+    // Records every raw sensor sample into a trace file until
+    // stopTraceRecording(), for replaying it with ReplaySource off the device.
+    // A recording already running is finished first.
+    public void startTraceRecording(final File file) {
+        sensorHandler.post(() -> {
+            closeTraceWriter();
+            try {
+                traceWriter = new TraceWriter(file, sensorSource);
+            } catch (IOException e) {
+                traceWriter = null;
             }
+        });
+    }
+
+    public void stopTraceRecording() {
+        sensorHandler.post(this::closeTraceWriter);
+    }
+
+    // Sensor thread
+    private void closeTraceWriter() {
+        if (traceWriter != null) {
+            try {
+                traceWriter.close();
+            } catch (IOException e) {
+                // Whatever was written before the failure is still readable
+            }
+            traceWriter = null;
         }
+    }
 
-        return mostCommon;
+    // Sensor thread
+    private void onPipelineChanged() {
+        if (frameScheduled.compareAndSet(false, true)) {
+            mainHandler.post(postFrameCallback);
+        }
     }
 
-    public HealthMetrics getHealthMetrics() {
-        String currentActivity = getCurrentActivity();
-        double activityMultiplier;
+    // Main thread. Pass null to stop receiving updates.
+    public void setMetricsListener(MetricsListener listener) {
+        metricsListener = listener;
+        if (listener == null) {
+            Choreographer.getInstance().removeFrameCallback(frameCallback);
+            mainHandler.removeCallbacks(postFrameCallback);
+            frameScheduled.set(false);
+        }
+    }
+
+    // Sensor thread
+    @Override
+    public void onSample(int sensorType, long timestampNanos, float[] values) {
+        if (traceWriter != null) {
+            traceWriter.write(sensorType, timestampNanos, values);
+        }
+        if (sensorTimeline != null) {
+            sensorTimeline.onSample(sensorType, timestampNanos, values);
+        }
+        if (accelerometerWindows != null && sensorType == SensorTypes.ACCELEROMETER) {
+            float x = values[0];
+            float y = values[1];
+            float z = values[2];
+            accelerometerWindows.add(timestampNanos, (float) Math.sqrt(x * x + y * y + z * z));
+        }
 
-        switch (currentActivity) {
-            case "Walking":
-                activityMultiplier = 1.2;
+        switch (sensorType) {
+            case SensorTypes.STEP_COUNTER:
+                if (!pipeline.usesStepDetector()) {
+                    pipeline.onStepCounter(values[0]);
+                }
                 break;
-            case "Running":
-                activityMultiplier = 1.8;
+            case SensorTypes.ACCELEROMETER:
+                if (accelerometerBatch != null) {
+                    batchAccelerometer(timestampNanos, values);
+                } else {
+                    pipeline.onAccelerometer(timestampNanos, values[0], values[1], values[2]);
+                    if (samplingRateController != null) {
+                        samplingRateController.onEvents(timestampNanos, 1, pipeline.isMoving());
+                    }
+                }
+                break;
+            case SensorTypes.HEART_RATE:
+                // Accelerometer samples batched before it come first
+                if (accelerometerBatch != null && accelerometerBatch.size() > 0) {
+                    drainAccelerometerBatch();
+                }
+                pipeline.onHeartRate(timestampNanos, values[0]);
+                break;
+            case SensorTypes.HEART_BEAT:
+                pipeline.onHeartBeat(timestampNanos, values[0]);
                 break;
-            default:
-                activityMultiplier = 1.0;
         }
+    }
 
-        double caloriesBurned = stepCount * CALORIES_PER_STEP * activityMultiplier;
-        double distanceKm = (stepCount * STEP_LENGTH) / 1000;
+    private void batchAccelerometer(long timestampNanos, float[] values) {
+        if (!accelerometerBatch.add(timestampNanos, values[0], values[1], values[2])) {
+            // Too long after the previous sample to pack into this batch
+            drainAccelerometerBatch();
+            accelerometerBatch.add(timestampNanos, values[0], values[1], values[2]);
+        }
 
-        HealthMetrics metrics = new HealthMetrics();
-        metrics.setTotalSteps(stepCount);
-        metrics.setTotalCalories(caloriesBurned);
-        metrics.setTotalDistance(distanceKm);
-
-        // Simulate heart rate based on activity
-        Float heartRate = null;
-        if (!currentActivity.equals("Stationary")) {
-            int baseHeartRate = 70;
-            if (currentActivity.equals("Walking")) {
-                heartRate = (float) (baseHeartRate + random.nextInt(20)); // 70-90 bpm
-            } else if (currentActivity.equals("Running")) {
-                heartRate = (float) (baseHeartRate + 30 + random.nextInt(40)); // 100-140 bpm
-            }
+        if (accelerometerBatch.isFull()) {
+            drainAccelerometerBatch();
+        } else if (!batchDrainScheduled) {
+            // A burst is dispatched from a single looper callback, so this runs
+            // after the last event of the burst has been added
+            batchDrainScheduled = true;
+            sensorHandler.post(drainBatch);
         }
-        metrics.setAvgHeartRate(heartRate);
-        metrics.setCurrentActivity(currentActivity);
+    }
+
+    private void drainAccelerometerBatch() {
+        sensorHandler.removeCallbacks(drainBatch);
+        batchDrainScheduled = false;
+        pipeline.onAccelerometerBatch(accelerometerBatch);
+        int size = accelerometerBatch.size();
+        if (samplingRateController != null && size > 0) {
+            samplingRateController.onEvents(accelerometerBatch.getLastTimestamp(), size,
+                    pipeline.isMoving());
+        }
+        accelerometerBatch.clear();
+    }
 
+    @Override
+    public void onFlushCompleted(int sensorType) {
+        if (accelerometerBatch != null && sensorType == SensorTypes.ACCELEROMETER) {
+            drainAccelerometerBatch();
+        }
+    }
+
+    // Asks the sensor hub to deliver everything still queued in its FIFOs,
+    // e.g. when the UI becomes visible and needs up-to-date values
+    public void flush() {
+        sensorSource.flush();
+    }
+
+    public String getCurrentActivity() {
+        return pipeline.getCurrentActivity().getLabel();
+    }
+
+    // The snapshot getters below consume from the pipeline's triple buffer and
+    // must only be called on the main thread
+
+    public HealthMetrics getHealthMetrics() {
+        HealthMetrics metrics = new HealthMetrics();
+        getHealthMetrics(metrics);
         return metrics;
     }
 
-    public SensorData getSensorData() {
-        HealthMetrics metrics = getHealthMetrics();
+    public void getHealthMetrics(HealthMetrics out) {
+        pipeline.readHealthMetrics(out);
+    }
 
+    public SensorData getSensorData() {
         SensorData data = new SensorData();
-        data.setSteps(metrics.getTotalSteps());
-        data.setCalories(metrics.getTotalCalories());
-        data.setDistance(metrics.getTotalDistance() * 1000);
-        data.setActivityType(metrics.getCurrentActivity());
-        data.setAccelerometerX(lastAccelerometerValues[0]);
-        data.setAccelerometerY(lastAccelerometerValues[1]);
-        data.setAccelerometerZ(lastAccelerometerValues[2]);
-
-        if (metrics.getAvgHeartRate() != null) {
-            data.setHeartRate(metrics.getAvgHeartRate());
-        }
-
+        getSensorData(data);
         return data;
     }
 
-    public List<String> getAvailableSensors() {
-        List<String> sensors = new ArrayList<>();
-
-        if (sensorManager != null) {
-            List<Sensor> sensorList = sensorManager.getSensorList(Sensor.TYPE_ALL);
-
-            // Check for specific sensors
-            boolean hasAccelerometer = false;
-            boolean hasStepCounter = false;
-            boolean hasHeartRate = false;
-
-            for (Sensor sensor : sensorList) {
-                switch (sensor.getType()) {
-                    case Sensor.TYPE_ACCELEROMETER:
-                        hasAccelerometer = true;
-                        break;
-                    case Sensor.TYPE_STEP_COUNTER:
-                        hasStepCounter = true;
-                        break;
-                    case Sensor.TYPE_HEART_RATE:
-                        hasHeartRate = true;
-                        break;
-                    case Sensor.TYPE_GYROSCOPE:
-                        sensors.add("Gyroscope");
-                        break;
-                    case Sensor.TYPE_LIGHT:
-                        sensors.add("Light Sensor");
-                        break;
-                    case Sensor.TYPE_PROXIMITY:
-                        sensors.add("Proximity Sensor");
-                        break;
-                }
-            }
-
-            if (hasAccelerometer) sensors.add(0, "Accelerometer");
-            if (hasStepCounter) {
-                sensors.add(0, "Step Counter");
-            } else {
-                sensors.add(0, "Step Counter (Simulated)");
-            }
-            if (hasHeartRate) sensors.add(0, "Heart Rate");
-        }
+    public void getSensorData(SensorData out) {
+        out.copyFrom(pipeline.acquireSnapshot());
+    }
 
-        return sensors;
+    public List<String> getAvailableSensors() {
+        return sensorSource.getAvailableSensors();
     }
 
+    // The reset runs on the sensor thread and is pushed to the listener. It
+    // queues behind samples already posted, which belong to the old session.
     public void resetCounters() {
-        stepCount = 0;
-        lastStepCount = 0;
-        initialSteps = 0;
-        isInitialized = false;
-        activityBuffer.clear();
-        currentDetectedActivity = "Stationary";
+        sensorHandler.post(pipeline::reset);
     }
 
     public void cleanup() {
-        if (sensorManager != null) {
-            sensorManager.unregisterListener(this);
+        sensorSource.stop();
+        if (callbackThread != null) {
+            callbackThread.quitSafely();
         }
 
-        // Stop step simulation
-        handler.removeCallbacks(stepSimulator);
+        setMetricsListener(null);
+
+        sensorHandler.removeCallbacks(drainBatch);
+        sensorHandler.post(this::closeTraceWriter);
+        sensorHandler.post(this::closeSensorLog);
+        // Subscribers still get what was published before
+        sensorHandler.post(snapshotPublisher::close);
+        sensorThread.quitSafely();
+
+        historyHandler.removeCallbacks(updateRollups);
+        historyHandler.post(this::closeRollups);
+        historyThread.quitSafely();
     }
 
-    @Override
-    public void onAccuracyChanged(Sensor sensor, int accuracy) {
-        // Handle accuracy changes if needed
+    // Sensor thread, after the last sample has been processed
+    private void closeSensorLog() {
+        if (sensorLog != null) {
+            pipeline.setRecorder(null);
+            sensorLog.close();
+            sensorLog = null;
+        }
+    }
+
+    // History thread
+    private void closeRollups() {
+        RollupEngine engine = rollupEngine;
+        rollupEngine = null;
+        if (engine != null) {
+            try {
+                engine.close();
+            } catch (IOException e) {
+                // Open buckets are rebuilt from the log next time anyway
+            }
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,337 @@
+package com.example.healthsensorpro.data.source;
+
+import com.example.healthsensorpro.data.model.SensorData;
+import com.example.healthsensorpro.data.processing.SensorPipeline;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Runs the on-device processing over many device streams at once, without
+// Android: each stream gets its own SensorPipeline behind a PipelineDriver,
+// the same per-stream state the app uses for replays.
+//
+// Streams are sharded over a fixed pool of worker threads by stream id. A
+// stream always lands on the same worker, which processes its chunks one at a
+// time in submission order, so samples of one stream are never reordered or
+// processed concurrently and its state needs no locking. Each worker has a
+// bounded queue: submit() blocks when it is full, trySubmit() fails instead.
+//
+// Chunks of one stream must be submitted from one thread, or in an order the
+// callers agree on; chunks of different streams may come from any thread.
+//
+// A chunk that throws fails its stream, not the worker: the stream's state is
+// dropped, the listener is told, and later chunks of it are skipped up to its
+// end. A stream that gets no chunk for the idle timeout is evicted, so
+// streams whose end never arrives do not hold their pipelines forever.
+public final class IngestionEngine implements Closeable {
+    // Called on the stream's worker thread
+    public interface Listener {
+        // snapshot is the stream's final state and is reused afterwards
+        void onStreamFinished(long streamId, SensorData snapshot, long samples);
+
+        // Processing the stream, or the callback for it, threw
+        default void onStreamFailed(long streamId, RuntimeException error) {
+        }
+    }
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+    public static final int DEFAULT_BATCH_CAPACITY = 64;
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 10 * 60_000L;
+
+    private static final SampleChunk STOP = new SampleChunk(null);
+
+    private final Worker[] workers;
+    private final Listener listener;
+    private final boolean useStepDetector;
+    private final int batchCapacity;
+    private final long idleTimeoutNanos;
+    private final AtomicLong rejectedChunks = new AtomicLong();
+    private volatile boolean closed = false;
+
+    public IngestionEngine(int workerCount, Listener listener) {
+        this(workerCount, DEFAULT_QUEUE_CAPACITY, true, DEFAULT_BATCH_CAPACITY, listener);
+    }
+
+    // useStepDetector: derive steps from the accelerometer, for devices that
+    // upload no step counter. batchCapacity as for PipelineDriver.
+    public IngestionEngine(int workerCount, int queueCapacity, boolean useStepDetector,
+                           int batchCapacity, Listener listener) {
+        this(workerCount, queueCapacity, useStepDetector, batchCapacity, DEFAULT_IDLE_TIMEOUT_MILLIS, listener);
+    }
+
+    public IngestionEngine(int workerCount, int queueCapacity, boolean useStepDetector,
+                           int batchCapacity, long idleTimeoutMillis, Listener listener) {
+        if (workerCount <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("workerCount and queueCapacity must be positive");
+        }
+        if (idleTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("idleTimeoutMillis must be positive: " + idleTimeoutMillis);
+        }
+        this.listener = listener;
+        this.useStepDetector = useStepDetector;
+        this.batchCapacity = batchCapacity;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        workers = new Worker[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Worker(i, queueCapacity);
+            workers[i].start();
+        }
+    }
+
+    private Worker workerFor(long streamId) {
+        // Spread sequential ids evenly over the workers
+        long mixed = streamId * 0x9E3779B97F4A7C15L;
+        return workers[(int) ((mixed >>> 32) % workers.length)];
+    }
+
+    // Blocks while the stream's worker is full
+    public void submit(SampleChunk chunk) throws InterruptedException {
+        checkOpen();
+        workerFor(chunk.getStreamId()).queue.put(chunk);
+    }
+
+    // False if the stream's worker is full; the chunk was not taken
+    public boolean trySubmit(SampleChunk chunk) {
+        checkOpen();
+        if (workerFor(chunk.getStreamId()).queue.offer(chunk)) {
+            return true;
+        }
+        rejectedChunks.incrementAndGet();
+        return false;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Engine is closed");
+        }
+    }
+
+    // Waits until every chunk submitted before the call has been processed
+    public void flush() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(workers.length);
+        for (Worker worker : workers) {
+            worker.queue.put(new SampleChunk(done));
+        }
+        done.await();
+    }
+
+    public long getProcessedSamples() {
+        long total = 0L;
+        for (Worker worker : workers) {
+            total += worker.processedSamples;
+        }
+        return total;
+    }
+
+    public int getActiveStreams() {
+        int total = 0;
+        for (Worker worker : workers) {
+            total += worker.activeStreams;
+        }
+        return total;
+    }
+
+    public long getRejectedChunks() {
+        return rejectedChunks.get();
+    }
+
+    public long getFailedStreams() {
+        long total = 0L;
+        for (Worker worker : workers) {
+            total += worker.failedStreams;
+        }
+        return total;
+    }
+
+    // Dropped after the idle timeout without reaching their end
+    public long getEvictedStreams() {
+        long total = 0L;
+        for (Worker worker : workers) {
+            total += worker.evictedStreams;
+        }
+        return total;
+    }
+
+    public int getWorkerCount() {
+        return workers.length;
+    }
+
+    // Processes what was submitted, then stops the workers. Streams that were
+    // not ended are dropped without a callback.
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        boolean interrupted = false;
+        for (Worker worker : workers) {
+            while (true) {
+                try {
+                    worker.queue.put(STOP);
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        for (Worker worker : workers) {
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Stream {
+        final SensorPipeline pipeline;
+        final PipelineDriver driver;
+        long samples = 0L;
+        long lastChunkNanos;
+        // Its remaining chunks are skipped
+        boolean failed = false;
+
+        Stream(SensorPipeline pipeline, PipelineDriver driver) {
+            this.pipeline = pipeline;
+            this.driver = driver;
+        }
+    }
+
+    private final class Worker extends Thread {
+        final BlockingQueue<SampleChunk> queue;
+        // Confined to this thread
+        private final Map<Long, Stream> streams = new HashMap<>();
+        private final float[] values = new float[3];
+        private final SensorData snapshot = new SensorData();
+        volatile long processedSamples = 0L;
+        volatile int activeStreams = 0;
+        volatile long failedStreams = 0L;
+        volatile long evictedStreams = 0L;
+        private long lastSweepNanos = System.nanoTime();
+
+        Worker(int index, int queueCapacity) {
+            super("IngestionWorker-" + index);
+            setDaemon(true);
+            queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                SampleChunk chunk;
+                try {
+                    // Wakes up to evict idle streams even when nothing comes in
+                    chunk = queue.poll(idleTimeoutNanos / 2, TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                evictIdleStreams();
+                if (chunk == null) {
+                    continue;
+                }
+                if (chunk == STOP) {
+                    return;
+                }
+                if (chunk.barrier != null) {
+                    chunk.barrier.countDown();
+                    continue;
+                }
+                try {
+                    process(chunk);
+                } catch (RuntimeException e) {
+                    fail(chunk, e);
+                }
+            }
+        }
+
+        private void process(SampleChunk chunk) {
+            long streamId = chunk.getStreamId();
+            Stream stream = streams.get(streamId);
+            if (stream == null) {
+                SensorPipeline pipeline = new SensorPipeline(useStepDetector);
+                stream = new Stream(pipeline, new PipelineDriver(pipeline, batchCapacity));
+                streams.put(streamId, stream);
+                activeStreams = streams.size();
+            }
+            stream.lastChunkNanos = System.nanoTime();
+            if (stream.failed) {
+                if (chunk.isEndOfStream()) {
+                    streams.remove(streamId);
+                    activeStreams = streams.size();
+                }
+                return;
+            }
+
+            int size = chunk.size();
+            PipelineDriver driver = stream.driver;
+            for (int i = 0; i < size; i++) {
+                chunk.valuesAt(i, values);
+                driver.onSample(chunk.typeAt(i), chunk.timestampAt(i), values);
+            }
+            stream.samples += size;
+            processedSamples = processedSamples + size;
+
+            if (chunk.isEndOfStream()) {
+                driver.finish();
+                streams.remove(streamId);
+                activeStreams = streams.size();
+                if (listener != null) {
+                    snapshot.copyFrom(stream.pipeline.acquireSnapshot());
+                    listener.onStreamFinished(streamId, snapshot, stream.samples);
+                }
+            }
+        }
+
+        // The stream's state may be half updated, so none of it is kept. If
+        // more chunks are to come, it stays behind as failed to skip them.
+        private void fail(SampleChunk chunk, RuntimeException error) {
+            long streamId = chunk.getStreamId();
+            Stream stream = streams.get(streamId);
+            if (stream != null) {
+                if (chunk.isEndOfStream()) {
+                    streams.remove(streamId);
+                    activeStreams = streams.size();
+                } else {
+                    stream.failed = true;
+                }
+            }
+            failedStreams = failedStreams + 1;
+            if (listener != null) {
+                try {
+                    listener.onStreamFailed(streamId, error);
+                } catch (RuntimeException ignored) {
+                    // Nothing more to tell; the worker carries on
+                }
+            }
+        }
+
+        // At most twice per timeout, so a busy worker does not scan its
+        // streams on every chunk
+        private void evictIdleStreams() {
+            long now = System.nanoTime();
+            if (now - lastSweepNanos < idleTimeoutNanos / 2) {
+                return;
+            }
+            lastSweepNanos = now;
+            Iterator<Stream> iterator = streams.values().iterator();
+            while (iterator.hasNext()) {
+                if (now - iterator.next().lastChunkNanos >= idleTimeoutNanos) {
+                    iterator.remove();
+                    evictedStreams = evictedStreams + 1;
+                }
+            }
+            activeStreams = streams.size();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.healthsensorpro.data.source;
+
+import com.example.healthsensorpro.data.processing.AccelerometerBatch;
+import com.example.healthsensorpro.data.processing.SensorPipeline;
+
+// Feeds a SensorSource into a SensorPipeline without Android: the headless
+// counterpart of SensorRepository's dispatch, for replaying traces on a JVM.
+// Everything runs on event time, so a replay is deterministic at any speed.
+// Confined to the source's delivery thread.
+public final class PipelineDriver implements SensorSource.Listener {
+    private final SensorPipeline pipeline;
+    private final AccelerometerBatch batch;
+    private long sampleCount = 0L;
+
+    // batchCapacity 0 processes every accelerometer sample on its own; above
+    // that, samples are collected and processed together, like the batching
+    // SensorConfig modes
+    public PipelineDriver(SensorPipeline pipeline, int batchCapacity) {
+        this.pipeline = pipeline;
+        this.batch = batchCapacity > 0 ? new AccelerometerBatch(batchCapacity) : null;
+    }
+
+    @Override
+    public void onSample(int sensorType, long timestampNanos, float[] values) {
+        switch (sensorType) {
+            case SensorTypes.ACCELEROMETER:
+                if (batch != null) {
+                    if (!batch.add(timestampNanos, values[0], values[1], values[2])) {
+                        drainBatch();
+                        batch.add(timestampNanos, values[0], values[1], values[2]);
+                    }
+                    if (batch.isFull()) {
+                        drainBatch();
+                    }
+                } else {
+                    pipeline.onAccelerometer(timestampNanos, values[0], values[1], values[2]);
+                }
+                break;
+            case SensorTypes.STEP_COUNTER:
+                // As on the device, a pipeline detecting its own steps ignores the counter
+                if (!pipeline.usesStepDetector()) {
+                    pipeline.onStepCounter(values[0]);
+                }
+                break;
+            case SensorTypes.HEART_RATE:
+                // Accelerometer samples batched before it come first
+                drainBatch();
+                pipeline.onHeartRate(timestampNanos, values[0]);
+                break;
+            case SensorTypes.HEART_BEAT:
+                pipeline.onHeartBeat(timestampNanos, values[0]);
+                break;
+            default:
+                return;
+        }
+        sampleCount++;
+    }
+
+    @Override
+    public void onFlushCompleted(int sensorType) {
+        if (sensorType == SensorTypes.ACCELEROMETER) {
+            drainBatch();
+        }
+    }
+
+    // Processes samples still waiting in the batch, at the end of a replay
+    public void finish() {
+        drainBatch();
+    }
+
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    private void drainBatch() {
+        if (batch != null && batch.size() > 0) {
+            pipeline.onAccelerometerBatch(batch);
+            batch.clear();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.healthsensorpro.data.source;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+// Plays a trace recorded by TraceWriter back through the SensorSource
+// interface, either paced by the recorded timestamps or as fast as the
+// listener consumes it. The same trace always produces the same calls in the
+// same order; only their timing differs between speeds.
+public final class ReplaySource implements SensorSource {
+    public enum Speed {
+        REAL_TIME,
+        MAX_SPEED
+    }
+
+    private final File trace;
+    private final Speed speed;
+    private final int[] sensorTypes;
+    private final int[] fifoMaxEventCounts;
+
+    private volatile boolean flushRequested = false;
+    private volatile boolean stopped = false;
+    private volatile IOException error;
+    private Thread thread;
+
+    public ReplaySource(File trace, Speed speed) throws IOException {
+        this.trace = trace;
+        this.speed = speed;
+        try (TraceReader reader = new TraceReader(trace)) {
+            sensorTypes = reader.getSensorTypes();
+            fifoMaxEventCounts = new int[sensorTypes.length];
+            for (int i = 0; i < sensorTypes.length; i++) {
+                fifoMaxEventCounts[i] = reader.getFifoMaxEventCount(sensorTypes[i]);
+            }
+        }
+    }
+
+    @Override
+    public boolean hasSensor(int sensorType) {
+        return indexOf(sensorType) >= 0;
+    }
+
+    @Override
+    public int getFifoMaxEventCount(int sensorType) {
+        int index = indexOf(sensorType);
+        return index >= 0 ? fifoMaxEventCounts[index] : 0;
+    }
+
+    private int indexOf(int sensorType) {
+        for (int i = 0; i < sensorTypes.length; i++) {
+            if (sensorTypes[i] == sensorType) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Replays on a "TraceReplay" thread; a read error ends the replay and is
+    // kept in getError()
+    @Override
+    public synchronized void start(final Listener listener) {
+        if (thread != null) {
+            throw new IllegalStateException("Already started");
+        }
+        stopped = false;
+        thread = new Thread(() -> {
+            try {
+                replay(listener);
+            } catch (IOException e) {
+                error = e;
+            }
+        }, "TraceReplay");
+        thread.start();
+    }
+
+    // A trace plays back at the rate it was recorded
+    @Override
+    public void setSamplingRate(int sensorType, int samplingPeriodUs, int maxReportLatencyUs) {
+    }
+
+    @Override
+    public void flush() {
+        flushRequested = true;
+    }
+
+    // Returns once the replay thread has ended
+    @Override
+    public synchronized void stop() {
+        stopped = true;
+        if (thread == null) {
+            return;
+        }
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    // Replays the whole trace on the calling thread, unless stop() is called,
+    // and returns the number of samples delivered
+    public long replay(Listener listener) throws IOException {
+        long delivered = 0L;
+        try (TraceReader reader = new TraceReader(trace)) {
+            long startNanos = 0L;
+            long firstTimestamp = 0L;
+            while (!stopped && reader.next()) {
+                long timestamp = reader.timestampNanos();
+                if (speed == Speed.REAL_TIME) {
+                    if (delivered == 0) {
+                        startNanos = System.nanoTime();
+                        firstTimestamp = timestamp;
+                    } else if (!sleepUntil(startNanos + (timestamp - firstTimestamp))) {
+                        break;
+                    }
+                }
+
+                listener.onSample(reader.sensorType(), timestamp, reader.values());
+                delivered++;
+
+                if (flushRequested) {
+                    flushRequested = false;
+                    for (int type : sensorTypes) {
+                        listener.onFlushCompleted(type);
+                    }
+                }
+            }
+        }
+        return delivered;
+    }
+
+    // False if interrupted or stopped while waiting
+    private boolean sleepUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+            if (stopped || Thread.interrupted()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public IOException getError() {
+        return error;
+    }
+}
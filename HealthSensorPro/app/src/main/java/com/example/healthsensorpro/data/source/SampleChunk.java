@@ -0,0 +1,73 @@
+package com.example.healthsensorpro.data.source;
+
+import java.util.concurrent.CountDownLatch;
+
+// A run of consecutive samples from one device stream, in arrival order, as
+// submitted to an IngestionEngine. Up to three values per sample are kept
+// (enough for the accelerometer); a step counter uses the first.
+//
+// Filled by one producer thread, then handed over whole; it must not be
+// changed after submit().
+public final class SampleChunk {
+    private final long streamId;
+    private final int[] types;
+    private final long[] timestamps;
+    private final float[] values;
+    private int size = 0;
+    private boolean endOfStream = false;
+    // Set on the engine's flush markers, which carry no samples
+    final CountDownLatch barrier;
+
+    public SampleChunk(long streamId, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.streamId = streamId;
+        this.barrier = null;
+        types = new int[capacity];
+        timestamps = new long[capacity];
+        values = new float[capacity * 3];
+    }
+
+    SampleChunk(CountDownLatch barrier) {
+        this.streamId = -1L;
+        this.barrier = barrier;
+        types = new int[0];
+        timestamps = new long[0];
+        values = new float[0];
+    }
+
+    // Returns false when the chunk is full and the sample was not stored
+    public boolean add(int sensorType, long timestampNanos, float x, float y, float z) {
+        if (size == types.length) {
+            return false;
+        }
+        types[size] = sensorType;
+        timestamps[size] = timestampNanos;
+        values[size * 3] = x;
+        values[size * 3 + 1] = y;
+        values[size * 3 + 2] = z;
+        size++;
+        return true;
+    }
+
+    // The stream ends after this chunk: its state is finished and released
+    public void markEndOfStream() {
+        endOfStream = true;
+    }
+
+    public long getStreamId() { return streamId; }
+    public int size() { return size; }
+    public boolean isFull() { return size == types.length; }
+    public boolean isEndOfStream() { return endOfStream; }
+
+    int typeAt(int index) { return types[index]; }
+    long timestampAt(int index) { return timestamps[index]; }
+
+    // Copies the values of sample index into out (length 3)
+    void valuesAt(int index, float[] out) {
+        out[0] = values[index * 3];
+        out[1] = values[index * 3 + 1];
+        out[2] = values[index * 3 + 2];
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.healthsensorpro.data.source;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+// Lock-free hand-off of raw sensor samples from one producer thread (the
+// sensor callbacks) to one consumer thread (the processing stages). Samples
+// are copied into pre-allocated primitive slots, a timestamp, a type and up
+// to dimension values each, so nothing is allocated per sample and neither
+// side ever waits for the other.
+//
+// Each side owns one index and only reads the other's when its cached copy
+// says the ring looks full (producer) or empty (consumer); both are published
+// with ordered stores. The indices sit on cache lines of their own (see the
+// padding classes below), so the two threads do not invalidate each other's
+// lines on every sample.
+//
+// A full ring rejects the sample and counts it; the producer decides whether
+// to retry or drop. The consumer takes whole runs of samples with drain(),
+// publishing its index once per run.
+public final class SampleRing extends SampleRingConsumerPad {
+    private static final AtomicLongFieldUpdater<SampleRingProducer> TAIL =
+            AtomicLongFieldUpdater.newUpdater(SampleRingProducer.class, "tail");
+    private static final AtomicLongFieldUpdater<SampleRingConsumer> HEAD =
+            AtomicLongFieldUpdater.newUpdater(SampleRingConsumer.class, "head");
+
+    private final int mask;
+    private final int dimension;
+    private final long[] timestamps;
+    private final int[] sensorTypes;
+    private final byte[] lengths;
+    private final float[] values;
+    // Handed to the listener, one per length; consumer only
+    private final float[][] delivered;
+
+    // capacity is rounded up to a power of two. Samples with more than
+    // dimension values keep the first dimension.
+    public SampleRing(int capacity, int dimension) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity must be in (0, 2^30]: " + capacity);
+        }
+        if (dimension <= 0 || dimension > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("dimension must be in (0, 127]: " + dimension);
+        }
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        mask = size - 1;
+        this.dimension = dimension;
+        timestamps = new long[size];
+        sensorTypes = new int[size];
+        lengths = new byte[size];
+        values = new float[size * dimension];
+        delivered = new float[dimension + 1][];
+        for (int i = 0; i <= dimension; i++) {
+            delivered[i] = new float[i];
+        }
+    }
+
+    // Producer thread. False if the ring is full; the sample was not taken.
+    public boolean offer(int sensorType, long timestampNanos, float[] sample) {
+        long t = tail;
+        if (t - headCache > mask) {
+            headCache = head;
+            if (t - headCache > mask) {
+                overflowCount++;
+                return false;
+            }
+        }
+        int slot = (int) t & mask;
+        int length = Math.min(sample.length, dimension);
+        timestamps[slot] = timestampNanos;
+        sensorTypes[slot] = sensorType;
+        lengths[slot] = (byte) length;
+        System.arraycopy(sample, 0, values, slot * dimension, length);
+        TAIL.lazySet(this, t + 1);
+        return true;
+    }
+
+    // Producer thread, three values without an array
+    public boolean offer(int sensorType, long timestampNanos, float x, float y, float z) {
+        long t = tail;
+        if (t - headCache > mask) {
+            headCache = head;
+            if (t - headCache > mask) {
+                overflowCount++;
+                return false;
+            }
+        }
+        int slot = (int) t & mask;
+        int length = Math.min(3, dimension);
+        timestamps[slot] = timestampNanos;
+        sensorTypes[slot] = sensorType;
+        lengths[slot] = (byte) length;
+        int offset = slot * dimension;
+        values[offset] = x;
+        if (length > 1) {
+            values[offset + 1] = y;
+        }
+        if (length > 2) {
+            values[offset + 2] = z;
+        }
+        TAIL.lazySet(this, t + 1);
+        return true;
+    }
+
+    // Consumer thread. Hands up to limit samples to the listener in the order
+    // they were offered, with values arrays reused between calls; returns how
+    // many.
+    public int drain(SensorSource.Listener listener, int limit) {
+        long h = head;
+        long available = tailCache - h;
+        if (available < limit) {
+            tailCache = tail;
+            available = tailCache - h;
+        }
+        int count = (int) Math.min(available, limit);
+        for (int i = 0; i < count; i++) {
+            int slot = (int) (h + i) & mask;
+            float[] sample = delivered[lengths[slot]];
+            System.arraycopy(values, slot * dimension, sample, 0, sample.length);
+            listener.onSample(sensorTypes[slot], timestamps[slot], sample);
+        }
+        if (count > 0) {
+            HEAD.lazySet(this, h + count);
+        }
+        return count;
+    }
+
+    // Consumer thread. Everything offered before the call, and possibly more.
+    public int drain(SensorSource.Listener listener) {
+        return drain(listener, Integer.MAX_VALUE);
+    }
+
+    public int capacity() { return mask + 1; }
+    public int getDimension() { return dimension; }
+
+    // Approximate from any thread other than the two sides
+    public int size() {
+        long h = head;
+        return (int) Math.max(0L, Math.min(tail - h, mask + 1));
+    }
+
+    // Samples rejected because the ring was full
+    public long getOverflowCount() { return overflowCount; }
+}
+
+// Field layout: 64 bytes of padding on either side of each side's fields
+// keeps them off the other side's cache line and off the object header and
+// array references. Superclass fields are laid out first on HotSpot and ART.
+
+abstract class SampleRingProducerPad {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+}
+
+abstract class SampleRingProducer extends SampleRingProducerPad {
+    volatile long tail;
+    // Producer's last read of head
+    long headCache;
+    // Written by the producer only
+    volatile long overflowCount;
+}
+
+abstract class SampleRingMiddlePad extends SampleRingProducer {
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+abstract class SampleRingConsumer extends SampleRingMiddlePad {
+    volatile long head;
+    // Consumer's last read of tail
+    long tailCache;
+}
+
+abstract class SampleRingConsumerPad extends SampleRingConsumer {
+    long p20, p21, p22, p23, p24, p25, p26, p27;
+}
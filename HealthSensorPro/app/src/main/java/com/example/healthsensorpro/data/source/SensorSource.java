@@ -0,0 +1,29 @@
+package com.example.healthsensorpro.data.source;
+
+// Where sensor samples come from: the device's SensorManager, or a recorded
+// trace played back
+public interface SensorSource {
+    // Called on the source's delivery thread, one call at a time. values is
+    // reused by the source and only valid during the call.
+    interface Listener {
+        void onSample(int sensorType, long timestampNanos, float[] values);
+
+        // Everything queued before flush() was called has been delivered
+        void onFlushCompleted(int sensorType);
+    }
+
+    boolean hasSensor(int sensorType);
+
+    // Hardware FIFO size for batching; 0 if unknown or not batched
+    int getFifoMaxEventCount(int sensorType);
+
+    void start(Listener listener);
+
+    // Re-registers a running sensor at another rate; maxReportLatencyUs > 0
+    // lets the hardware FIFO batch samples
+    void setSamplingRate(int sensorType, int samplingPeriodUs, int maxReportLatencyUs);
+
+    void flush();
+
+    void stop();
+}
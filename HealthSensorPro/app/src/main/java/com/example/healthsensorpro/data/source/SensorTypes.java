@@ -0,0 +1,15 @@
+package com.example.healthsensorpro.data.source;
+
+// Sensor types as plain ints, with the same values as android.hardware.Sensor
+// TYPE_* constants, so device events pass through unchanged and code off the
+// device does not need the Android classes
+public final class SensorTypes {
+    public static final int ACCELEROMETER = 1;
+    public static final int GYROSCOPE = 4;
+    public static final int STEP_COUNTER = 19;
+    public static final int HEART_RATE = 21;
+    public static final int HEART_BEAT = 31;
+
+    private SensorTypes() {
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.healthsensorpro.data.source;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+// Reads a trace written by TraceWriter one event at a time. A trace cut off
+// in the middle of an event, e.g. by a crash while recording, simply ends
+// before it.
+public final class TraceReader implements Closeable {
+    private final InputStream in;
+    private final int[] sensorTypes;
+    private final int[] fifoMaxEventCounts;
+
+    private int sensorType;
+    private long timestamp = 0L;
+    private float[] values;
+    // One reusable values array per length
+    private final float[][] valuesByCount = new float[256][];
+
+    public TraceReader(File file) throws IOException {
+        in = new BufferedInputStream(new FileInputStream(file), 64 * 1024);
+        try {
+            if (readInt() != TraceWriter.MAGIC || readInt() != TraceWriter.VERSION) {
+                throw new IOException("Not a sensor trace: " + file);
+            }
+            int sensors = readInt();
+            if (sensors < 0 || sensors > 256) {
+                throw new IOException("Corrupt trace header: " + file);
+            }
+            sensorTypes = new int[sensors];
+            fifoMaxEventCounts = new int[sensors];
+            for (int i = 0; i < sensors; i++) {
+                sensorTypes[i] = readInt();
+                fifoMaxEventCounts[i] = readInt();
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    public int[] getSensorTypes() {
+        return sensorTypes.clone();
+    }
+
+    public int getFifoMaxEventCount(int type) {
+        for (int i = 0; i < sensorTypes.length; i++) {
+            if (sensorTypes[i] == type) {
+                return fifoMaxEventCounts[i];
+            }
+        }
+        return 0;
+    }
+
+    // Moves to the next event; false at the end of the trace
+    public boolean next() throws IOException {
+        int type = in.read();
+        if (type < 0) {
+            return false;
+        }
+        try {
+            int count = readByte();
+            long zigzag = 0L;
+            int shift = 0;
+            int b;
+            do {
+                b = readByte();
+                zigzag |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0 && shift < 64);
+            long delta = (zigzag >>> 1) ^ -(zigzag & 1);
+
+            float[] array = valuesByCount[count];
+            if (array == null) {
+                array = new float[count];
+                valuesByCount[count] = array;
+            }
+            for (int i = 0; i < count; i++) {
+                array[i] = Float.intBitsToFloat(readInt());
+            }
+
+            sensorType = type;
+            timestamp += delta;
+            values = array;
+            return true;
+        } catch (EOFException e) {
+            // Truncated last event
+            return false;
+        }
+    }
+
+    public int sensorType() {
+        return sensorType;
+    }
+
+    public long timestampNanos() {
+        return timestamp;
+    }
+
+    // Reused between events
+    public float[] values() {
+        return values;
+    }
+
+    private int readByte() throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException();
+        }
+        return b;
+    }
+
+    private int readInt() throws IOException {
+        return readByte() | readByte() << 8 | readByte() << 16 | readByte() << 24;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
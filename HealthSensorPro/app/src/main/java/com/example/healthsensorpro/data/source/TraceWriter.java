@@ -0,0 +1,200 @@
+package com.example.healthsensorpro.data.source;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+
+// Records sensor samples into a compact trace file, little endian:
+//
+//   header  int magic, int version, int sensor count,
+//           then int type, int FIFO size for each sensor
+//   event   byte type, byte value count,
+//           zigzag varint of the timestamp delta to the previous event (ns),
+//           float values
+//
+// An accelerometer event at 50 Hz takes 18 bytes. Events are encoded into a
+// buffer on the calling thread; full buffers are written out on a background
+// thread, so write() never touches the file system itself. The buffers are a
+// fixed pool: when the file falls so far behind that none is free, write()
+// drops events and counts them rather than waiting or allocating.
+public final class TraceWriter implements Closeable {
+    static final int MAGIC = 0x48535452; // "HSTR"
+    static final int VERSION = 1;
+    static final int[] KNOWN_TYPES = {
+            SensorTypes.ACCELEROMETER, SensorTypes.GYROSCOPE, SensorTypes.STEP_COUNTER,
+            SensorTypes.HEART_RATE, SensorTypes.HEART_BEAT};
+
+    public static final int DEFAULT_BUFFER_COUNT = 4;
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    // Longest event: type, count, 10-byte varint, 255 floats
+    private static final int MAX_EVENT_SIZE = 2 + 10 + 255 * 4;
+    // Ends the background thread
+    private static final Block STOP = new Block(0);
+
+    private final FileOutputStream out;
+    private final Thread io;
+    // Every block is in exactly one place: free, full or current, so neither
+    // queue can overflow
+    private final ArrayBlockingQueue<Block> free;
+    private final ArrayBlockingQueue<Block> full;
+    private volatile IOException writeError;
+
+    // Writer thread only
+    private Block current;
+    private byte[] buffer;
+    private int position = 0;
+    private long previousTimestamp = 0L;
+    private long eventCount = 0L;
+    private long droppedEvents = 0L;
+    private boolean closed = false;
+
+    // Lists the source's sensors in the header, so a replay can report them
+    public TraceWriter(File file, SensorSource source) throws IOException {
+        this(file, source, DEFAULT_BUFFER_COUNT);
+    }
+
+    // Offline writers that must not drop anything can make the pool big enough
+    // to hold the whole trace
+    public TraceWriter(File file, SensorSource source, int bufferCount) throws IOException {
+        if (bufferCount < 2) {
+            throw new IllegalArgumentException("bufferCount must be at least 2: " + bufferCount);
+        }
+        free = new ArrayBlockingQueue<>(bufferCount);
+        full = new ArrayBlockingQueue<>(bufferCount + 1);
+        for (int i = 1; i < bufferCount; i++) {
+            free.add(new Block(BUFFER_SIZE));
+        }
+        current = new Block(BUFFER_SIZE);
+        buffer = current.data;
+        out = new FileOutputStream(file);
+        io = new Thread(this::drain, "TraceWriter");
+        io.setDaemon(true);
+        io.start();
+
+        int sensors = 0;
+        for (int type : KNOWN_TYPES) {
+            if (source.hasSensor(type)) sensors++;
+        }
+        putInt(MAGIC);
+        putInt(VERSION);
+        putInt(sensors);
+        for (int type : KNOWN_TYPES) {
+            if (source.hasSensor(type)) {
+                putInt(type);
+                putInt(source.getFifoMaxEventCount(type));
+            }
+        }
+    }
+
+    // Sensor types above 255 (vendor sensors) are not recorded
+    public void write(int sensorType, long timestampNanos, float[] values) {
+        if (closed || sensorType < 0 || sensorType > 0xFF) {
+            return;
+        }
+        if (position + MAX_EVENT_SIZE > buffer.length && !handOff()) {
+            droppedEvents++;
+            return;
+        }
+
+        int count = Math.min(values.length, 0xFF);
+        buffer[position++] = (byte) sensorType;
+        buffer[position++] = (byte) count;
+        long delta = timestampNanos - previousTimestamp;
+        previousTimestamp = timestampNanos;
+        long zigzag = (delta << 1) ^ (delta >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((zigzag & 0x7F) | 0x80);
+            zigzag >>>= 7;
+        }
+        buffer[position++] = (byte) zigzag;
+        for (int i = 0; i < count; i++) {
+            putInt(Float.floatToRawIntBits(values[i]));
+        }
+        eventCount++;
+    }
+
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    // Events not recorded because every buffer was waiting for the file
+    public long getDroppedEvents() {
+        return droppedEvents;
+    }
+
+    private void putInt(int value) {
+        buffer[position++] = (byte) value;
+        buffer[position++] = (byte) (value >>> 8);
+        buffer[position++] = (byte) (value >>> 16);
+        buffer[position++] = (byte) (value >>> 24);
+    }
+
+    // False, keeping the current buffer, if no free one is left
+    private boolean handOff() {
+        Block next = free.poll();
+        if (next == null) {
+            return false;
+        }
+        current.length = position;
+        full.add(current);
+        current = next;
+        buffer = next.data;
+        position = 0;
+        return true;
+    }
+
+    // Background thread
+    private void drain() {
+        while (true) {
+            Block block;
+            try {
+                block = full.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (block == STOP) {
+                return;
+            }
+            try {
+                out.write(block.data, 0, block.length);
+            } catch (IOException e) {
+                writeError = e;
+            }
+            free.add(block);
+        }
+    }
+
+    // Writer thread. Writes what is buffered and waits for the file to be
+    // complete; throws if any write failed.
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        current.length = position;
+        full.add(current);
+        full.add(STOP);
+        try {
+            io.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        out.close();
+        if (writeError != null) {
+            throw writeError;
+        }
+    }
+
+    private static final class Block {
+        final byte[] data;
+        int length;
+
+        Block(int size) {
+            data = new byte[size];
+        }
+    }
+}
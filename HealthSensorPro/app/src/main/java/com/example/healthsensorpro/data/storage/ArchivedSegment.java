@@ -0,0 +1,231 @@
+package com.example.healthsensorpro.data.storage;
+
+import com.example.healthsensorpro.data.model.SensorData;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Locale;
+
+// A sealed segment compacted into a sequence of encoded SensorBlock frames:
+//
+//   0 int  magic
+//   4 int  record count
+//   8 long first timestamp
+//  16 long last timestamp
+//  24 int  payload length
+//  28 int  reserved
+//  32      payload (SensorBlock.encode)
+//
+// The file is written under a temporary name, synced and then renamed, so a
+// .blk file is either complete or absent. Opening it builds a sparse index of
+// the first timestamp and offset of every frame, so a scan binary-searches to
+// the frame holding its start and decodes nothing before it.
+final class ArchivedSegment extends LogPart {
+    static final int BLOCK_SIZE = 1024;
+    static final int FRAME_HEADER_SIZE = 32;
+    private static final int FRAME_MAGIC = 0x48534246; // "HSBF"
+
+    private final long sequence;
+    private final File file;
+    private final MappedByteBuffer buffer;
+    private final int count;
+    private final long firstTimestamp;
+    private final long lastTimestamp;
+
+    // Sparse index: first timestamp and file offset of each frame
+    private final long[] frameTimestamps;
+    private final int[] frameOffsets;
+
+    private ArchivedSegment(long sequence, File file, MappedByteBuffer buffer, int count,
+                            long firstTimestamp, long lastTimestamp,
+                            long[] frameTimestamps, int[] frameOffsets) {
+        this.sequence = sequence;
+        this.file = file;
+        this.buffer = buffer;
+        this.count = count;
+        this.firstTimestamp = firstTimestamp;
+        this.lastTimestamp = lastTimestamp;
+        this.frameTimestamps = frameTimestamps;
+        this.frameOffsets = frameOffsets;
+    }
+
+    static String fileName(long sequence) {
+        return String.format(Locale.US, "%016d.blk", sequence);
+    }
+
+    // Blocking; runs on the log's background thread
+    static ArchivedSegment write(File directory, LogSegment source) throws IOException {
+        long sequence = source.getSequence();
+        File target = new File(directory, fileName(sequence));
+        File temporary = new File(directory, fileName(sequence) + ".tmp");
+
+        SensorBlock block = new SensorBlock(BLOCK_SIZE);
+        SensorData data = new SensorData();
+        ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileOutputStream out = new FileOutputStream(temporary)) {
+            int total = source.getCount();
+            for (int i = 0; i < total; i++) {
+                source.read(i, data);
+                block.add(data);
+                if (block.isFull() || i == total - 1) {
+                    writeFrame(out, block, header);
+                    block.clear();
+                }
+            }
+            out.getFD().sync();
+        }
+
+        if (!temporary.renameTo(target)) {
+            throw new IOException("Cannot rename " + temporary);
+        }
+        return open(target, sequence);
+    }
+
+    private static void writeFrame(FileOutputStream out, SensorBlock block, ByteBuffer header)
+            throws IOException {
+        int length = block.encode();
+        header.clear();
+        header.putInt(FRAME_MAGIC);
+        header.putInt(block.size());
+        header.putLong(block.timestampAt(0));
+        header.putLong(block.timestampAt(block.size() - 1));
+        header.putInt(length);
+        header.putInt(0);
+        out.write(header.array(), 0, FRAME_HEADER_SIZE);
+        out.write(block.encodedBytes(), 0, length);
+    }
+
+    static ArchivedSegment open(File file, long sequence) throws IOException {
+        MappedByteBuffer buffer;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        int count = 0;
+        int frames = 0;
+        long[] frameTimestamps = new long[16];
+        int[] frameOffsets = new int[16];
+        int position = 0;
+        int limit = buffer.capacity();
+        while (position < limit) {
+            if (limit - position < FRAME_HEADER_SIZE || buffer.getInt(position) != FRAME_MAGIC) {
+                throw new IOException("Corrupt frame at " + position + " in " + file);
+            }
+            if (frames == frameOffsets.length) {
+                frameTimestamps = Arrays.copyOf(frameTimestamps, frames * 2);
+                frameOffsets = Arrays.copyOf(frameOffsets, frames * 2);
+            }
+            frameTimestamps[frames] = buffer.getLong(position + 8);
+            frameOffsets[frames] = position;
+            frames++;
+            count += buffer.getInt(position + 4);
+            position += FRAME_HEADER_SIZE + buffer.getInt(position + 24);
+        }
+        if (position != limit || frames == 0) {
+            throw new IOException("Truncated segment " + file);
+        }
+
+        long last = buffer.getLong(frameOffsets[frames - 1] + 16);
+        return new ArchivedSegment(sequence, file, buffer, count, frameTimestamps[0], last,
+                Arrays.copyOf(frameTimestamps, frames), Arrays.copyOf(frameOffsets, frames));
+    }
+
+    // Index of the frame a scan from fromMillis starts in: the last one
+    // starting at or before it, or the first
+    int findFrame(long fromMillis) {
+        int low = 0;
+        int high = frameTimestamps.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (frameTimestamps[mid] <= fromMillis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return Math.max(low - 1, 0);
+    }
+
+    @Override
+    Reader reader(long fromMillis) {
+        return new FrameReader(fromMillis);
+    }
+
+    // Decodes the one frame holding the record
+    @Override
+    boolean readLastBefore(long millis, SensorData out) {
+        int frame = findFrame(millis - 1);
+        if (frameTimestamps[frame] >= millis) {
+            return false;
+        }
+        SensorBlock block = new SensorBlock(BLOCK_SIZE);
+        block.decode(buffer, frameOffsets[frame] + FRAME_HEADER_SIZE);
+        block.get(block.search(millis) - 1, out);
+        return true;
+    }
+
+    private final class FrameReader implements Reader {
+        private final SensorBlock block = new SensorBlock(BLOCK_SIZE);
+        private long seekMillis;
+        private int nextFrame;
+        private int index = 0;
+
+        FrameReader(long fromMillis) {
+            // Frames before the one holding fromMillis are never decoded
+            seekMillis = fromMillis;
+            nextFrame = frameOffsets[findFrame(fromMillis)];
+            block.clear();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (index < block.size()) {
+                return true;
+            }
+            if (nextFrame >= buffer.capacity()) {
+                return false;
+            }
+            block.decode(buffer, nextFrame + FRAME_HEADER_SIZE);
+            nextFrame += FRAME_HEADER_SIZE + buffer.getInt(nextFrame + 24);
+            index = 0;
+            if (seekMillis != Long.MIN_VALUE) {
+                // Within the first frame too, start at fromMillis directly
+                index = block.search(seekMillis);
+                seekMillis = Long.MIN_VALUE;
+            }
+            return hasNext();
+        }
+
+        @Override
+        public long peekTimestamp() {
+            return block.timestampAt(index);
+        }
+
+        @Override
+        public void read(SensorData out) {
+            block.get(index++, out);
+        }
+
+        @Override
+        public void skip() {
+            index++;
+        }
+    }
+
+    @Override long getSequence() { return sequence; }
+    File getFile() { return file; }
+    long getFileBytes() { return buffer.capacity(); }
+    int getFrameCount() { return frameOffsets.length; }
+    @Override int getCount() { return count; }
+    @Override long getFirstTimestamp() { return firstTimestamp; }
+    @Override long getLastTimestamp() { return lastTimestamp; }
+}
@@ -0,0 +1,44 @@
+package com.example.healthsensorpro.data.storage;
+
+import java.nio.ByteBuffer;
+
+// Reads what BitWriter wrote, straight out of a (possibly mapped) buffer
+final class BitReader {
+    private ByteBuffer buffer;
+    private int offset;
+    private long bitPosition;
+
+    void reset(ByteBuffer buffer, int offset) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.bitPosition = 0L;
+    }
+
+    boolean readBit() {
+        int b = buffer.get(offset + (int) (bitPosition >>> 3));
+        boolean bit = (b & (0x80 >>> (int) (bitPosition & 7))) != 0;
+        bitPosition++;
+        return bit;
+    }
+
+    // Reads n bits written by BitWriter.writeBits; 0 <= n <= 64
+    long readBits(int n) {
+        long value = 0L;
+        while (n > 0) {
+            int b = buffer.get(offset + (int) (bitPosition >>> 3)) & 0xFF;
+            int available = 8 - (int) (bitPosition & 7);
+            int take = Math.min(available, n);
+            int chunk = (b >>> (available - take)) & ((1 << take) - 1);
+            value = (value << take) | chunk;
+            bitPosition += take;
+            n -= take;
+        }
+        return value;
+    }
+
+    // readBits with the top bit of the n-bit field extended as the sign
+    long readSigned(int n) {
+        long value = readBits(n);
+        return (value << (64 - n)) >> (64 - n);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.healthsensorpro.data.storage;
+
+import java.util.Arrays;
+
+// Big-endian bit stream into a growable byte array, reused between blocks
+final class BitWriter {
+    private byte[] bytes;
+    private long bitCount = 0L;
+
+    BitWriter(int initialBytes) {
+        bytes = new byte[Math.max(initialBytes, 16)];
+    }
+
+    void clear() {
+        Arrays.fill(bytes, 0, byteCount(), (byte) 0);
+        bitCount = 0L;
+    }
+
+    void writeBit(boolean bit) {
+        ensureCapacity(1);
+        if (bit) {
+            int index = (int) (bitCount >>> 3);
+            bytes[index] |= (byte) (0x80 >>> (int) (bitCount & 7));
+        }
+        bitCount++;
+    }
+
+    // Writes the low n bits of value, most significant first; 0 <= n <= 64
+    void writeBits(long value, int n) {
+        ensureCapacity(n);
+        while (n > 0) {
+            int index = (int) (bitCount >>> 3);
+            int free = 8 - (int) (bitCount & 7);
+            int take = Math.min(free, n);
+            int chunk = (int) (value >>> (n - take)) & ((1 << take) - 1);
+            bytes[index] |= (byte) (chunk << (free - take));
+            bitCount += take;
+            n -= take;
+        }
+    }
+
+    int byteCount() {
+        return (int) ((bitCount + 7) >>> 3);
+    }
+
+    byte[] buffer() {
+        return bytes;
+    }
+
+    private void ensureCapacity(int bits) {
+        long needed = (bitCount + bits + 7) >>> 3;
+        if (needed > bytes.length) {
+            bytes = Arrays.copyOf(bytes, (int) Math.max(needed, bytes.length * 2L));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.healthsensorpro.data.storage;
+
+import com.example.healthsensorpro.data.model.ActivityType;
+
+// One point of TieredHistory: a single snapshot in the raw tier, or the
+// aggregate of the snapshots in [start, end) in a coarser one. Query callbacks
+// receive a reused instance, so copy what needs to be kept.
+public final class HistoryPoint {
+    private long startMillis;
+    private long durationMillis;
+    private int sampleCount;
+    private int steps;
+    private float minHeartRate;
+    private float maxHeartRate;
+    private float avgHeartRate;
+    private float cadence;
+    private float minMagnitude;
+    private float maxMagnitude;
+    private float avgMagnitude;
+    private ActivityType activity;
+
+    public long getStartMillis() { return startMillis; }
+    // 0 for a raw snapshot
+    public long getDurationMillis() { return durationMillis; }
+    public long getEndMillis() { return startMillis + durationMillis; }
+    public int getSampleCount() { return sampleCount; }
+    // Step total at the last snapshot of the point
+    public int getSteps() { return steps; }
+
+    // NaN without heart rate samples
+    public float getMinHeartRate() { return minHeartRate; }
+    public float getMaxHeartRate() { return maxHeartRate; }
+    public float getAvgHeartRate() { return avgHeartRate; }
+
+    public float getCadence() { return cadence; }
+
+    // Accelerometer magnitude, m/s^2
+    public float getMinMagnitude() { return minMagnitude; }
+    public float getMaxMagnitude() { return maxMagnitude; }
+    public float getAvgMagnitude() { return avgMagnitude; }
+
+    // The activity of most of the snapshots
+    public ActivityType getActivity() { return activity; }
+
+    public void copyFrom(HistoryPoint other) {
+        set(other.startMillis, other.durationMillis, other.sampleCount, other.steps,
+                other.minHeartRate, other.maxHeartRate, other.avgHeartRate, other.cadence,
+                other.minMagnitude, other.maxMagnitude, other.avgMagnitude, other.activity);
+    }
+
+    void set(long startMillis, long durationMillis, int sampleCount, int steps,
+             float minHeartRate, float maxHeartRate, float avgHeartRate, float cadence,
+             float minMagnitude, float maxMagnitude, float avgMagnitude, ActivityType activity) {
+        this.startMillis = startMillis;
+        this.durationMillis = durationMillis;
+        this.sampleCount = sampleCount;
+        this.steps = steps;
+        this.minHeartRate = minHeartRate;
+        this.maxHeartRate = maxHeartRate;
+        this.avgHeartRate = avgHeartRate;
+        this.cadence = cadence;
+        this.minMagnitude = minMagnitude;
+        this.maxMagnitude = maxMagnitude;
+        this.avgMagnitude = avgMagnitude;
+        this.activity = activity;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.healthsensorpro.data.storage;
+
+import com.example.healthsensorpro.data.model.SensorData;
+
+import java.io.IOException;
+
+// A contiguous, ordered piece of the log: either the raw mapped segment that
+// is still being written, or a sealed segment compacted into encoded blocks
+abstract class LogPart {
+    abstract long getSequence();
+    abstract int getCount();
+    abstract long getFirstTimestamp();
+    abstract long getLastTimestamp();
+
+    boolean isEmpty() {
+        return getCount() == 0;
+    }
+
+    // A reader positioned at the first record with timestamp >= fromMillis
+    abstract Reader reader(long fromMillis) throws IOException;
+
+    // Reads the last record with timestamp < millis; false if there is none
+    abstract boolean readLastBefore(long millis, SensorData out);
+
+    interface Reader {
+        boolean hasNext() throws IOException;
+        long peekTimestamp();
+        void read(SensorData out);
+        void skip();
+    }
+}
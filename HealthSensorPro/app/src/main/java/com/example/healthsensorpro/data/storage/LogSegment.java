@@ -0,0 +1,194 @@
+package com.example.healthsensorpro.data.storage;
+
+import com.example.healthsensorpro.data.model.SensorData;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Locale;
+
+// One memory-mapped, fixed-size file of SensorData records behind a small
+// header. Records are appended by a single writer thread; readers on other
+// threads only look at the first getCount() records.
+final class LogSegment extends LogPart {
+    private static final int MAGIC = 0x484C5347; // "HLSG"
+    private static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+
+    private final long sequence;
+    private final File file;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+
+    // Published by the writer after each record is complete
+    private volatile int count;
+    private volatile long firstTimestamp;
+    private volatile long lastTimestamp;
+
+    private LogSegment(long sequence, File file, MappedByteBuffer buffer, int capacity) {
+        this.sequence = sequence;
+        this.file = file;
+        this.buffer = buffer;
+        this.capacity = capacity;
+    }
+
+    static String fileName(long sequence) {
+        return String.format(Locale.US, "%016d.seg", sequence);
+    }
+
+    static LogSegment create(File directory, long sequence, int segmentBytes) throws IOException {
+        File file = new File(directory, fileName(sequence));
+        MappedByteBuffer buffer = map(file, segmentBytes);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, SensorRecordFormat.RECORD_SIZE);
+        buffer.putInt(12, 0);
+        return new LogSegment(sequence, file, buffer, capacity(segmentBytes));
+    }
+
+    // Maps an existing segment and finds the end of its valid records. If
+    // recoverTail is set, the space after them is zeroed so stale bytes from
+    // a torn write can never be mistaken for records later.
+    static LogSegment open(File file, long sequence, boolean recoverTail) throws IOException {
+        int segmentBytes = (int) file.length();
+        if (segmentBytes < HEADER_SIZE + SensorRecordFormat.RECORD_SIZE) {
+            throw new IOException("Segment too small: " + file);
+        }
+
+        MappedByteBuffer buffer = map(file, segmentBytes);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                || buffer.getInt(8) != SensorRecordFormat.RECORD_SIZE) {
+            throw new IOException("Unrecognised segment header: " + file);
+        }
+
+        LogSegment segment = new LogSegment(sequence, file, buffer, capacity(segmentBytes));
+        int valid = 0;
+        while (valid < segment.capacity && SensorRecordFormat.isValid(buffer, offset(valid))) {
+            valid++;
+        }
+
+        if (recoverTail) {
+            for (int i = offset(valid); i < segmentBytes; i++) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+
+        if (valid > 0) {
+            segment.firstTimestamp = SensorRecordFormat.readTimestamp(buffer, offset(0));
+            segment.lastTimestamp = SensorRecordFormat.readTimestamp(buffer, offset(valid - 1));
+        }
+        segment.count = valid;
+        return segment;
+    }
+
+    private static MappedByteBuffer map(File file, int segmentBytes) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+             FileChannel channel = raf.getChannel()) {
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return buffer;
+        }
+    }
+
+    private static int capacity(int segmentBytes) {
+        return (segmentBytes - HEADER_SIZE) / SensorRecordFormat.RECORD_SIZE;
+    }
+
+    private static int offset(int index) {
+        return HEADER_SIZE + index * SensorRecordFormat.RECORD_SIZE;
+    }
+
+    // Writer thread only. Returns false when the segment is full.
+    boolean append(SensorData data) {
+        int index = count;
+        if (index == capacity) {
+            return false;
+        }
+        SensorRecordFormat.write(buffer, offset(index), data);
+        if (index == 0) {
+            firstTimestamp = data.getTimestamp();
+        }
+        lastTimestamp = data.getTimestamp();
+        count = index + 1;
+        return true;
+    }
+
+    void read(int index, SensorData out) {
+        SensorRecordFormat.read(buffer, offset(index), out);
+    }
+
+    long timestampAt(int index) {
+        return SensorRecordFormat.readTimestamp(buffer, offset(index));
+    }
+
+    // Writes dirty pages to the file; blocking, so never on the sensor thread
+    void force() {
+        buffer.force();
+    }
+
+    // Fixed-width records are their own index: binary search for the first
+    // record at or after fromMillis among those written so far
+    int search(long fromMillis) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestampAt(mid) < fromMillis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    boolean readLastBefore(long millis, SensorData out) {
+        int index = search(millis) - 1;
+        if (index < 0) {
+            return false;
+        }
+        read(index, out);
+        return true;
+    }
+
+    @Override
+    Reader reader(long fromMillis) {
+        final int start = search(fromMillis);
+        return new Reader() {
+            private int index = start;
+
+            @Override
+            public boolean hasNext() {
+                // Re-read, so records appended during a scan are seen too
+                return index < count;
+            }
+
+            @Override
+            public long peekTimestamp() {
+                return timestampAt(index);
+            }
+
+            @Override
+            public void read(SensorData out) {
+                LogSegment.this.read(index++, out);
+            }
+
+            @Override
+            public void skip() {
+                index++;
+            }
+        };
+    }
+
+    @Override long getSequence() { return sequence; }
+    File getFile() { return file; }
+    int getCapacity() { return capacity; }
+    @Override int getCount() { return count; }
+    @Override long getFirstTimestamp() { return firstTimestamp; }
+    @Override long getLastTimestamp() { return lastTimestamp; }
+}
@@ -0,0 +1,157 @@
+package com.example.healthsensorpro.data.storage;
+
+import com.example.healthsensorpro.data.model.ActivityType;
+import com.example.healthsensorpro.data.model.SensorData;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+// Folds log records, in timestamp order, into one open bucket per resolution
+// and hands each bucket to a Sink as it closes. Shared by RollupEngine, which
+// folds the whole log, and RollupBackfill, which folds it a chunk at a time.
+//
+// Records carry running totals since the pipeline was last reset, so a total
+// that goes down starts a new run rather than subtracting. Time in activity is
+// credited to the earlier record's activity, up to MAX_GAP_MILLIS per record.
+//
+// Not thread-safe.
+final class RollupAccumulator {
+    static final long MAX_GAP_MILLIS = 30_000L;
+    static final RollupResolution[] RESOLUTIONS = RollupResolution.values();
+
+    interface Sink {
+        void append(RollupBucket bucket) throws IOException;
+
+        // After the buckets a record closed have been appended, before the
+        // record itself is folded in
+        default void checkpoint() throws IOException {
+        }
+    }
+
+    private final long zoneOffsetMillis;
+    final RollupBucket[] open = new RollupBucket[RESOLUTIONS.length];
+
+    // Last record folded in, and how many records with that same timestamp
+    // have been folded in
+    boolean hasPrevious = false;
+    long previousTimestamp;
+    int sameTimestampCount;
+    private int previousSteps;
+    private double previousCalories;
+    private double previousDistance;
+    private ActivityType previousActivity = ActivityType.UNKNOWN;
+
+    RollupAccumulator(long zoneOffsetMillis) {
+        this.zoneOffsetMillis = zoneOffsetMillis;
+        for (int i = 0; i < open.length; i++) {
+            open[i] = new RollupBucket();
+        }
+    }
+
+    long bucketStart(RollupResolution resolution, long timestamp) {
+        return resolution.bucketStart(timestamp, zoneOffsetMillis);
+    }
+
+    void add(SensorData data, Sink sink) throws IOException {
+        long timestamp = data.getTimestamp();
+        if (!hasPrevious) {
+            openAt(timestamp);
+        } else if (timestamp >= open[0].getEndMillis()) {
+            closeBuckets(timestamp, sink);
+            sink.checkpoint();
+        }
+
+        int steps = data.getSteps();
+        double calories = data.getCalories();
+        double distance = data.getDistance();
+        int stepDelta;
+        double calorieDelta;
+        double distanceDelta;
+        if (hasPrevious && steps >= previousSteps && calories >= previousCalories
+                && distance >= previousDistance) {
+            stepDelta = steps - previousSteps;
+            calorieDelta = calories - previousCalories;
+            distanceDelta = distance - previousDistance;
+        } else {
+            // First record, or the totals were reset
+            stepDelta = steps;
+            calorieDelta = calories;
+            distanceDelta = distance;
+        }
+
+        long gap = hasPrevious ? Math.min(timestamp - previousTimestamp, MAX_GAP_MILLIS) : 0L;
+        boolean hasHeartRate = data.hasHeartRate();
+        for (RollupBucket bucket : open) {
+            bucket.add(stepDelta, calorieDelta, distanceDelta);
+            if (gap > 0) {
+                bucket.addActivity(previousActivity, gap);
+            }
+            if (hasHeartRate) {
+                bucket.addHeartRate(data.getHeartRate());
+            }
+        }
+
+        skip(data);
+    }
+
+    // Moves past a record without counting it, as if everything up to it had
+    // been folded in already. The open buckets are left empty.
+    void resumeAfter(SensorData data) {
+        openAt(data.getTimestamp());
+        skip(data);
+    }
+
+    private void skip(SensorData data) {
+        long timestamp = data.getTimestamp();
+        sameTimestampCount = hasPrevious && timestamp == previousTimestamp ? sameTimestampCount + 1 : 1;
+        hasPrevious = true;
+        previousTimestamp = timestamp;
+        previousSteps = data.getSteps();
+        previousCalories = data.getCalories();
+        previousDistance = data.getDistance();
+        previousActivity = data.getActivityType();
+    }
+
+    // Empties the open buckets and moves them to the ones holding timestamp
+    void openAt(long timestamp) {
+        for (int r = 0; r < RESOLUTIONS.length; r++) {
+            open[r].reset(RESOLUTIONS[r], bucketStart(RESOLUTIONS[r], timestamp));
+        }
+    }
+
+    // Closes every open bucket that ends at or before timestamp and opens the
+    // ones holding it
+    void closeBuckets(long timestamp, Sink sink) throws IOException {
+        for (int r = 0; r < RESOLUTIONS.length; r++) {
+            RollupBucket bucket = open[r];
+            if (timestamp < bucket.getEndMillis()) {
+                continue;
+            }
+            if (!bucket.isEmpty()) {
+                sink.append(bucket);
+            }
+            bucket.reset(RESOLUTIONS[r], bucketStart(RESOLUTIONS[r], timestamp));
+        }
+    }
+
+    void writePosition(DataOutputStream out) throws IOException {
+        out.writeBoolean(hasPrevious);
+        out.writeLong(previousTimestamp);
+        out.writeInt(sameTimestampCount);
+        out.writeInt(previousSteps);
+        out.writeDouble(previousCalories);
+        out.writeDouble(previousDistance);
+        out.writeByte(previousActivity.getCode());
+    }
+
+    void readPosition(DataInputStream in) throws IOException {
+        hasPrevious = in.readBoolean();
+        previousTimestamp = in.readLong();
+        sameTimestampCount = in.readInt();
+        previousSteps = in.readInt();
+        previousCalories = in.readDouble();
+        previousDistance = in.readDouble();
+        previousActivity = ActivityType.fromCode(in.readByte());
+    }
+}
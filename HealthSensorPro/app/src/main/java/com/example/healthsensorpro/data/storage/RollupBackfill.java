@@ -0,0 +1,256 @@
+package com.example.healthsensorpro.data.storage;
+
+import com.example.healthsensorpro.data.model.ActivityType;
+import com.example.healthsensorpro.data.model.SensorData;
+import com.example.healthsensorpro.data.processing.ActivityStage;
+import com.example.healthsensorpro.data.processing.CalorieStage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Rebuilds the rollups from the raw history with a new activity model, for
+// when the classifier or its thresholds change. Every record is classified
+// again from its stored accelerometer sample, and calories are derived again
+// from the steps, cadence and new activity, as CalorieStage does live.
+//
+// The log is split into hour chunks that run in parallel on a ForkJoinPool.
+// A chunk first replays the WARM_UP_MILLIS before its start through the
+// classifier and calorie stages without counting them, so their state at the
+// boundary is close to that of a single pass; then it folds its own records
+// into partial buckets. The replay starts from the last record before the
+// warm-up, however old, so a chunk after a gap in the log continues from its
+// running totals rather than counting them again. Partial buckets of
+// neighbouring chunks with the same start are merged as the results are
+// joined.
+//
+// The result is written into a separate directory as a complete set of
+// rollup files, checkpointed at the last minute boundary before untilMillis;
+// RollupEngine.replace() then swaps it in. Records after that boundary keep
+// their logged activity and are folded in by the engine as usual.
+public final class RollupBackfill {
+    static final long CHUNK_MILLIS = RollupResolution.HOUR.getMillis();
+    static final long WARM_UP_MILLIS = 60_000L;
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+
+    public interface ProgressListener {
+        // Called from the pool threads, once per chunk
+        void onProgress(float fraction);
+    }
+
+    private final SensorLog log;
+    private final long zoneOffsetMillis;
+    private final Supplier<ActivityStage> activityStages;
+    private final AtomicLong doneMillis = new AtomicLong();
+    private volatile long totalMillis = 0L;
+    private volatile ProgressListener progressListener;
+
+    // activityStages makes a fresh stage with the new model for every chunk
+    public RollupBackfill(SensorLog log, long zoneOffsetMillis, Supplier<ActivityStage> activityStages) {
+        this.log = log;
+        this.zoneOffsetMillis = zoneOffsetMillis;
+        this.activityStages = activityStages;
+    }
+
+    public void setProgressListener(ProgressListener listener) {
+        progressListener = listener;
+    }
+
+    // Share of the history processed so far, 0 to 1
+    public float getProgress() {
+        long total = totalMillis;
+        return total == 0 ? 0f : (float) doneMillis.get() / total;
+    }
+
+    // Blocking. Writes the rebuilt rollups for the records before the minute
+    // holding untilMillis into target, replacing whatever an interrupted run
+    // left there. Returns the number of records processed.
+    public long run(ForkJoinPool pool, File target, long untilMillis) throws IOException {
+        RollupEngine.deleteDirectory(target);
+        SensorData first = new SensorData();
+        long cutMillis = RollupResolution.MINUTE.bucketStart(untilMillis, zoneOffsetMillis);
+        if (!log.scan(Long.MIN_VALUE, cutMillis - 1).next(first)) {
+            RollupEngine.open(target, log, zoneOffsetMillis).close();
+            return 0L;
+        }
+
+        long fromMillis = RollupResolution.HOUR.bucketStart(first.getTimestamp(), zoneOffsetMillis);
+        doneMillis.set(0L);
+        totalMillis = cutMillis - fromMillis;
+        Chunk result;
+        try {
+            result = pool.invoke(new ChunkTask(fromMillis, cutMillis));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        // Hour and day buckets still open at the cut are rebuilt by the engine
+        // from the minutes
+        for (int r = 0; r < result.buckets.size(); r++) {
+            List<RollupBucket> buckets = result.buckets.get(r);
+            int closed = buckets.size();
+            while (closed > 0 && buckets.get(closed - 1).getEndMillis() > cutMillis) {
+                closed--;
+            }
+            buckets.subList(closed, buckets.size()).clear();
+        }
+
+        RollupEngine engine = RollupEngine.open(target, log, zoneOffsetMillis);
+        try {
+            engine.load(result.buckets, result.last, result.sameTimestampCount, cutMillis);
+        } finally {
+            engine.close();
+        }
+        return result.records;
+    }
+
+    private final class ChunkTask extends RecursiveTask<Chunk> {
+        private static final long serialVersionUID = 1L;
+
+        private final long fromMillis;
+        private final long toMillis;
+
+        ChunkTask(long fromMillis, long toMillis) {
+            this.fromMillis = fromMillis;
+            this.toMillis = toMillis;
+        }
+
+        @Override
+        protected Chunk compute() {
+            long hours = (toMillis - fromMillis + CHUNK_MILLIS - 1) / CHUNK_MILLIS;
+            if (hours <= 1) {
+                try {
+                    return processChunk(fromMillis, toMillis);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            long middle = fromMillis + hours / 2 * CHUNK_MILLIS;
+            ChunkTask earlier = new ChunkTask(fromMillis, middle);
+            earlier.fork();
+            Chunk later = new ChunkTask(middle, toMillis).compute();
+            return earlier.join().concat(later);
+        }
+    }
+
+    // Records in [fromMillis, toMillis), relabelled and folded into buckets
+    private Chunk processChunk(long fromMillis, long toMillis) throws IOException {
+        ActivityStage activityStage = activityStages.get();
+        CalorieStage calorieStage = new CalorieStage();
+        RollupAccumulator accumulator = new RollupAccumulator(zoneOffsetMillis);
+        Chunk chunk = new Chunk();
+        SensorData record = new SensorData();
+
+        boolean hasPrevious = false;
+        int previousSteps = 0;
+        double previousCalories = 0;
+        double previousDistance = 0;
+        long previousTimestamp = Long.MIN_VALUE;
+        long warmUpMillis = fromMillis - WARM_UP_MILLIS;
+        boolean seeded = log.findLastBefore(warmUpMillis, record);
+        SensorLog.Cursor cursor = log.scan(warmUpMillis, toMillis - 1);
+        while (seeded || cursor.next(record)) {
+            seeded = false;
+            int steps = record.getSteps();
+            double calories = record.getCalories();
+            double distance = record.getDistance();
+            if (hasPrevious && (steps < previousSteps || calories < previousCalories
+                    || distance < previousDistance)) {
+                // The pipeline was reset here
+                calorieStage.reset();
+            }
+            hasPrevious = true;
+            previousSteps = steps;
+            previousCalories = calories;
+            previousDistance = distance;
+
+            // Heart rate snapshots repeat the last accelerometer sample and
+            // its timestamp; the classifier has seen it already
+            if (record.getTimestamp() != previousTimestamp) {
+                activityStage.process(record.getTimestamp() * NANOS_PER_MILLI, record.getAccelerometerX(),
+                        record.getAccelerometerY(), record.getAccelerometerZ());
+                previousTimestamp = record.getTimestamp();
+            }
+            ActivityType activity = activityStage.getCurrentActivity();
+            record.setActivityType(activity);
+            record.setCalories(calorieStage.onSteps(steps, record.getCadence(), activity));
+
+            if (record.getTimestamp() < fromMillis) {
+                accumulator.resumeAfter(record);
+                continue;
+            }
+            accumulator.add(record, chunk);
+            chunk.records++;
+            if (chunk.last == null) {
+                chunk.last = new SensorData();
+            }
+            // The engine continues from the logged totals
+            chunk.last.copyFrom(record);
+            chunk.last.setCalories(calories);
+        }
+
+        // Whatever is still open is partial; the next chunk may add to it
+        for (RollupBucket bucket : accumulator.open) {
+            if (accumulator.hasPrevious && !bucket.isEmpty()) {
+                chunk.append(bucket);
+            }
+        }
+        chunk.sameTimestampCount = accumulator.sameTimestampCount;
+
+        long done = doneMillis.addAndGet(toMillis - fromMillis);
+        ProgressListener listener = progressListener;
+        if (listener != null) {
+            listener.onProgress((float) done / totalMillis);
+        }
+        return chunk;
+    }
+
+    // Buckets of a run of chunks per resolution, oldest first, and the last
+    // record they cover
+    private static final class Chunk implements RollupAccumulator.Sink {
+        final List<List<RollupBucket>> buckets = new ArrayList<>();
+        SensorData last;
+        int sameTimestampCount;
+        long records;
+
+        Chunk() {
+            for (int r = 0; r < RollupAccumulator.RESOLUTIONS.length; r++) {
+                buckets.add(new ArrayList<>());
+            }
+        }
+
+        @Override
+        public void append(RollupBucket bucket) {
+            RollupBucket copy = new RollupBucket();
+            copy.copyFrom(bucket);
+            buckets.get(bucket.getResolution().ordinal()).add(copy);
+        }
+
+        // Adds the chunk that follows this one
+        Chunk concat(Chunk later) {
+            for (int r = 0; r < buckets.size(); r++) {
+                List<RollupBucket> mine = buckets.get(r);
+                List<RollupBucket> theirs = later.buckets.get(r);
+                int from = 0;
+                if (!mine.isEmpty() && !theirs.isEmpty()
+                        && mine.get(mine.size() - 1).getStartMillis() == theirs.get(0).getStartMillis()) {
+                    mine.get(mine.size() - 1).merge(theirs.get(0));
+                    from = 1;
+                }
+                mine.addAll(theirs.subList(from, theirs.size()));
+            }
+            if (later.last != null) {
+                last = later.last;
+                sameTimestampCount = later.sameTimestampCount;
+            }
+            records += later.records;
+            return this;
+        }
+    }
+}
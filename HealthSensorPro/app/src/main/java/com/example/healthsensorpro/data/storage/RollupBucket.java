@@ -0,0 +1,134 @@
+package com.example.healthsensorpro.data.storage;
+
+import com.example.healthsensorpro.data.model.ActivityType;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// Aggregated metrics of one minute, hour or day. Query callbacks receive a
+// reused instance, so copy what needs to be kept.
+public final class RollupBucket {
+    // start, steps, calories, distance, time per activity, heart rate min/max/sum/count
+    static final int RECORD_SIZE = 8 + 4 + 8 + 8 + 8 * ActivityType.count() + 4 + 4 + 8 + 4;
+
+    private RollupResolution resolution;
+    private long startMillis;
+    private int steps;
+    private double calories;
+    private double distance;
+    private final long[] activityMillis = new long[ActivityType.count()];
+    private float minHeartRate = Float.NaN;
+    private float maxHeartRate = Float.NaN;
+    private double heartRateSum;
+    private int heartRateSamples;
+
+    public RollupResolution getResolution() { return resolution; }
+    public long getStartMillis() { return startMillis; }
+    public long getEndMillis() { return startMillis + resolution.getMillis(); }
+    public int getSteps() { return steps; }
+    public double getCalories() { return calories; }
+    // Meters
+    public double getDistance() { return distance; }
+
+    public long getActivityMillis(ActivityType activity) {
+        return activityMillis[activity.getCode()];
+    }
+
+    public boolean hasHeartRate() { return heartRateSamples > 0; }
+    // NaN without heart rate samples
+    public float getMinHeartRate() { return minHeartRate; }
+    public float getMaxHeartRate() { return maxHeartRate; }
+    public float getAvgHeartRate() {
+        return heartRateSamples > 0 ? (float) (heartRateSum / heartRateSamples) : Float.NaN;
+    }
+
+    void reset(RollupResolution resolution, long startMillis) {
+        this.resolution = resolution;
+        this.startMillis = startMillis;
+        steps = 0;
+        calories = 0;
+        distance = 0;
+        Arrays.fill(activityMillis, 0L);
+        minHeartRate = Float.NaN;
+        maxHeartRate = Float.NaN;
+        heartRateSum = 0;
+        heartRateSamples = 0;
+    }
+
+    boolean isEmpty() {
+        if (steps != 0 || calories != 0 || distance != 0 || heartRateSamples != 0) {
+            return false;
+        }
+        for (long millis : activityMillis) {
+            if (millis != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void add(int steps, double calories, double distance) {
+        this.steps += steps;
+        this.calories += calories;
+        this.distance += distance;
+    }
+
+    void addActivity(ActivityType activity, long millis) {
+        activityMillis[activity.getCode()] += millis;
+    }
+
+    void addHeartRate(float heartRate) {
+        if (heartRateSamples == 0 || heartRate < minHeartRate) minHeartRate = heartRate;
+        if (heartRateSamples == 0 || heartRate > maxHeartRate) maxHeartRate = heartRate;
+        heartRateSum += heartRate;
+        heartRateSamples++;
+    }
+
+    // Folds a finer bucket into this one
+    void merge(RollupBucket other) {
+        add(other.steps, other.calories, other.distance);
+        for (int i = 0; i < activityMillis.length; i++) {
+            activityMillis[i] += other.activityMillis[i];
+        }
+        if (other.heartRateSamples > 0) {
+            if (heartRateSamples == 0 || other.minHeartRate < minHeartRate) minHeartRate = other.minHeartRate;
+            if (heartRateSamples == 0 || other.maxHeartRate > maxHeartRate) maxHeartRate = other.maxHeartRate;
+            heartRateSum += other.heartRateSum;
+            heartRateSamples += other.heartRateSamples;
+        }
+    }
+
+    void copyFrom(RollupBucket other) {
+        reset(other.resolution, other.startMillis);
+        merge(other);
+    }
+
+    void write(ByteBuffer out) {
+        out.putLong(startMillis);
+        out.putInt(steps);
+        out.putDouble(calories);
+        out.putDouble(distance);
+        for (long millis : activityMillis) {
+            out.putLong(millis);
+        }
+        out.putFloat(minHeartRate);
+        out.putFloat(maxHeartRate);
+        out.putDouble(heartRateSum);
+        out.putInt(heartRateSamples);
+    }
+
+    void read(RollupResolution resolution, ByteBuffer in) {
+        this.resolution = resolution;
+        startMillis = in.getLong();
+        steps = in.getInt();
+        calories = in.getDouble();
+        distance = in.getDouble();
+        for (int i = 0; i < activityMillis.length; i++) {
+            activityMillis[i] = in.getLong();
+        }
+        minHeartRate = in.getFloat();
+        maxHeartRate = in.getFloat();
+        heartRateSum = in.getDouble();
+        heartRateSamples = in.getInt();
+    }
+}
@@ -0,0 +1,284 @@
+package com.example.healthsensorpro.data.storage;
+
+import com.example.healthsensorpro.data.model.SensorData;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+
+// Minute, hour and day rollups of the SensorLog, maintained incrementally.
+//
+// update() reads the records appended since the last call and folds them into
+// the open bucket of each resolution. When a bucket closes it is appended to
+// its series file, then a small state file is replaced with the position in
+// the log and the running totals at that point. Open buckets are never
+// written: after a crash they are rebuilt from the persisted finer buckets and
+// the log records after the checkpoint, the first time the engine is used.
+//
+// Records are folded in by a RollupAccumulator, which describes how running
+// totals and time in activity are counted.
+//
+// All methods are synchronized; update() and query() may block on I/O, so
+// keep them off the main thread.
+public final class RollupEngine implements Closeable {
+    private static final int STATE_MAGIC = 0x48535253; // "HSRS"
+    private static final int STATE_VERSION = 1;
+    private static final String STATE_FILE = "rollup.state";
+
+    public interface Visitor {
+        void visit(RollupBucket bucket);
+    }
+
+    private static final RollupResolution[] RESOLUTIONS = RollupAccumulator.RESOLUTIONS;
+
+    private final File directory;
+    private final SensorLog log;
+    private final long zoneOffsetMillis;
+    private final RollupSeries[] series = new RollupSeries[RESOLUTIONS.length];
+    private final RollupAccumulator accumulator;
+    private final RollupBucket[] open;
+    private final RollupAccumulator.Sink sink;
+    private final RollupBucket scratch = new RollupBucket();
+    private final SensorData record = new SensorData();
+
+    private RollupEngine(File directory, SensorLog log, long zoneOffsetMillis) {
+        this.directory = directory;
+        this.log = log;
+        this.zoneOffsetMillis = zoneOffsetMillis;
+        accumulator = new RollupAccumulator(zoneOffsetMillis);
+        open = accumulator.open;
+        sink = new RollupAccumulator.Sink() {
+            @Override
+            public void append(RollupBucket bucket) throws IOException {
+                series[bucket.getResolution().ordinal()].append(bucket);
+            }
+
+            // Saves the position just before the record that closed the buckets
+            @Override
+            public void checkpoint() throws IOException {
+                writeState();
+            }
+        };
+    }
+
+    // zoneOffsetMillis aligns hours and days to local time
+    public static RollupEngine open(File directory, SensorLog log, long zoneOffsetMillis) throws IOException {
+        recoverReplace(directory);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        RollupEngine engine = new RollupEngine(directory, log, zoneOffsetMillis);
+        long[] persisted = new long[RESOLUTIONS.length];
+        long[] openStarts = new long[RESOLUTIONS.length];
+        engine.readState(persisted, openStarts);
+        try {
+            for (int i = 0; i < RESOLUTIONS.length; i++) {
+                File file = new File(directory, RESOLUTIONS[i].name().toLowerCase(Locale.US) + ".rollup");
+                engine.series[i] = new RollupSeries(RESOLUTIONS[i], file, persisted[i]);
+            }
+            engine.rebuildOpenBuckets(openStarts);
+        } catch (IOException e) {
+            engine.close();
+            throw e;
+        }
+        return engine;
+    }
+
+    // Folds in every record appended to the log since the last call
+    public synchronized void update() throws IOException {
+        boolean hasPrevious = accumulator.hasPrevious;
+        long from = hasPrevious ? accumulator.previousTimestamp : Long.MIN_VALUE;
+        int alreadySeen = hasPrevious ? accumulator.sameTimestampCount : 0;
+        SensorLog.Cursor cursor = log.scan(from, Long.MAX_VALUE);
+        while (cursor.next(record)) {
+            if (alreadySeen > 0 && record.getTimestamp() == from) {
+                alreadySeen--;
+                continue;
+            }
+            alreadySeen = 0;
+            accumulator.add(record, sink);
+        }
+    }
+
+    // Brings the rollups up to date, then visits the buckets of the given
+    // resolution that overlap [fromMillis, toMillis], oldest first. Returns
+    // the number of buckets visited. Buckets older than the ones a series
+    // keeps in memory are read from its file.
+    public synchronized int query(RollupResolution resolution, long fromMillis, long toMillis,
+                                  Visitor visitor) throws IOException {
+        update();
+
+        int r = resolution.ordinal();
+        RollupSeries closed = series[r];
+        int visited = 0;
+        // Open-ended ranges would overflow the bucket arithmetic
+        long firstStart = fromMillis < Long.MIN_VALUE / 2
+                ? Long.MIN_VALUE : resolution.bucketStart(fromMillis, zoneOffsetMillis);
+        for (long i = closed.search(firstStart);
+             i < closed.size() && closed.startAt(i) <= toMillis; i++) {
+            closed.get(i, scratch);
+            visitor.visit(scratch);
+            visited++;
+        }
+
+        // Empty right after a backfill, until the next record comes in
+        RollupBucket current = open[r];
+        if (accumulator.hasPrevious && !current.isEmpty()
+                && current.getEndMillis() > fromMillis && current.getStartMillis() <= toMillis) {
+            visitor.visit(current);
+            visited++;
+        }
+        return visited;
+    }
+
+    // Backfill only, on a freshly created engine: stores recomputed closed
+    // buckets (oldest first per resolution) and checkpoints just after last,
+    // the last log record they cover, with the buckets holding cutMillis open.
+    // last holds the totals as logged, so update() goes on from the log.
+    synchronized void load(List<List<RollupBucket>> closed, SensorData last, int sameTimestampCount,
+                           long cutMillis) throws IOException {
+        for (int r = 0; r < RESOLUTIONS.length; r++) {
+            for (RollupBucket bucket : closed.get(r)) {
+                series[r].append(bucket);
+            }
+        }
+        accumulator.resumeAfter(last);
+        accumulator.sameTimestampCount = sameTimestampCount;
+        accumulator.openAt(cutMillis);
+        writeState();
+
+        long[] openStarts = new long[RESOLUTIONS.length];
+        for (int r = 0; r < RESOLUTIONS.length; r++) {
+            openStarts[r] = open[r].getStartMillis();
+        }
+        rebuildOpenBuckets(openStarts);
+    }
+
+    // Swaps a complete rollup directory (see RollupBackfill) in for the one
+    // at directory, which must not be open. Each step is a rename, and open()
+    // finishes or rolls back a swap that was interrupted.
+    public static void replace(File directory, File replacement) throws IOException {
+        File previous = previousOf(directory);
+        if (previous.exists()) {
+            deleteDirectory(previous);
+        }
+        if (directory.exists() && !directory.renameTo(previous)) {
+            throw new IOException("Cannot rename " + directory);
+        }
+        if (!replacement.renameTo(directory)) {
+            // Put the old rollups back
+            previous.renameTo(directory);
+            throw new IOException("Cannot rename " + replacement);
+        }
+        deleteDirectory(previous);
+    }
+
+    private static void recoverReplace(File directory) throws IOException {
+        File previous = previousOf(directory);
+        if (!previous.exists()) {
+            return;
+        }
+        if (directory.exists()) {
+            // The new rollups are in place; only the old ones were left over
+            deleteDirectory(previous);
+        } else if (!previous.renameTo(directory)) {
+            throw new IOException("Cannot rename " + previous);
+        }
+    }
+
+    private static File previousOf(File directory) {
+        return new File(directory.getPath() + ".old");
+    }
+
+    static void deleteDirectory(File directory) throws IOException {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.delete()) {
+                    throw new IOException("Cannot delete " + file);
+                }
+            }
+        }
+        if (directory.exists() && !directory.delete()) {
+            throw new IOException("Cannot delete " + directory);
+        }
+    }
+
+    // Re-creates the buckets that were open at the checkpoint from the finer
+    // buckets persisted since, so only the log records after the checkpoint
+    // have to be read again
+    private void rebuildOpenBuckets(long[] openStarts) throws IOException {
+        if (!accumulator.hasPrevious) {
+            return;
+        }
+        for (int r = 0; r < RESOLUTIONS.length; r++) {
+            long start = openStarts[r];
+            open[r].reset(RESOLUTIONS[r], start);
+            if (r == 0) {
+                continue;
+            }
+            RollupSeries finer = series[r - 1];
+            for (long i = finer.search(start); i < finer.size(); i++) {
+                finer.get(i, scratch);
+                open[r].merge(scratch);
+            }
+            if (open[r - 1].getStartMillis() >= start) {
+                open[r].merge(open[r - 1]);
+            }
+        }
+    }
+
+    private void writeState() throws IOException {
+        File state = new File(directory, STATE_FILE);
+        File temporary = new File(directory, STATE_FILE + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temporary);
+             DataOutputStream out = new DataOutputStream(stream)) {
+            out.writeInt(STATE_MAGIC);
+            out.writeInt(STATE_VERSION);
+            for (int r = 0; r < RESOLUTIONS.length; r++) {
+                out.writeLong(series[r].getPersistedCount());
+                out.writeLong(open[r].getStartMillis());
+            }
+            accumulator.writePosition(out);
+            out.flush();
+            stream.getFD().sync();
+        }
+        if (!temporary.renameTo(state)) {
+            throw new IOException("Cannot rename " + temporary);
+        }
+    }
+
+    // Fills in the persisted bucket count and open bucket start per
+    // resolution; leaves them at zero without a state file
+    private void readState(long[] persisted, long[] openStarts) throws IOException {
+        File state = new File(directory, STATE_FILE);
+        if (!state.isFile()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(state))) {
+            if (in.readInt() != STATE_MAGIC || in.readInt() != STATE_VERSION) {
+                throw new IOException("Unrecognised rollup state: " + state);
+            }
+            for (int r = 0; r < RESOLUTIONS.length; r++) {
+                persisted[r] = in.readLong();
+                openStarts[r] = in.readLong();
+            }
+            accumulator.readPosition(in);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (RollupSeries s : series) {
+            if (s != null) {
+                s.close();
+            }
+        }
+    }
+}
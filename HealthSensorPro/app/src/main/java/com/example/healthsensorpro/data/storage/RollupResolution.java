@@ -0,0 +1,26 @@
+package com.example.healthsensorpro.data.storage;
+
+public enum RollupResolution {
+    MINUTE(60_000L, 7 * 24 * 60),   // a week of minutes in memory
+    HOUR(3_600_000L, 400 * 24),     // a bit over a year of hours
+    DAY(86_400_000L, 10 * 366);
+
+    private final long millis;
+    private final int retainedBuckets;
+
+    RollupResolution(long millis, int retainedBuckets) {
+        this.millis = millis;
+        this.retainedBuckets = retainedBuckets;
+    }
+
+    public long getMillis() { return millis; }
+
+    // How many closed buckets are kept in memory; older ones stay on disk only
+    int getRetainedBuckets() { return retainedBuckets; }
+
+    // Start of the bucket holding timestamp, aligned to local time
+    long bucketStart(long timestamp, long zoneOffsetMillis) {
+        long local = timestamp + zoneOffsetMillis;
+        return Math.floorDiv(local, millis) * millis - zoneOffsetMillis;
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.healthsensorpro.data.storage;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// Closed buckets of one resolution, oldest first. Each is appended to its file
+// as it closes; the most recent getRetainedBuckets() are also kept in memory,
+// in the same fixed-width layout, for queries. Indices run over the whole
+// file: older buckets are read from it one record at a time.
+final class RollupSeries implements Closeable {
+    private final RollupResolution resolution;
+    private final RandomAccessFile file;
+    private final ByteBuffer fileRecord = ByteBuffer.allocate(RollupBucket.RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final ByteBuffer readRecord = ByteBuffer.allocate(RollupBucket.RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private long persistedCount;
+
+    private ByteBuffer memory;
+    private int size = 0;
+
+    // Opens the series file, dropping anything written after the last
+    // checkpoint (persistedCount records) so it matches the saved state
+    RollupSeries(RollupResolution resolution, File path, long persistedCount) throws IOException {
+        this.resolution = resolution;
+        this.file = new RandomAccessFile(path, "rw");
+        long records = file.length() / RollupBucket.RECORD_SIZE;
+        this.persistedCount = Math.min(records, persistedCount);
+        file.setLength(this.persistedCount * RollupBucket.RECORD_SIZE);
+
+        int loaded = (int) Math.min(this.persistedCount, resolution.getRetainedBuckets());
+        memory = ByteBuffer.allocate(Math.max(loaded, 64) * RollupBucket.RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        file.seek((this.persistedCount - loaded) * RollupBucket.RECORD_SIZE);
+        file.readFully(memory.array(), 0, loaded * RollupBucket.RECORD_SIZE);
+        size = loaded;
+    }
+
+    void append(RollupBucket bucket) throws IOException {
+        fileRecord.clear();
+        bucket.write(fileRecord);
+        file.seek(persistedCount * RollupBucket.RECORD_SIZE);
+        file.write(fileRecord.array(), 0, RollupBucket.RECORD_SIZE);
+        persistedCount++;
+
+        if (size == resolution.getRetainedBuckets()) {
+            // Drop the oldest half at once, so trimming stays amortised O(1)
+            int drop = size / 2;
+            System.arraycopy(memory.array(), drop * RollupBucket.RECORD_SIZE,
+                    memory.array(), 0, (size - drop) * RollupBucket.RECORD_SIZE);
+            size -= drop;
+        } else if ((size + 1) * RollupBucket.RECORD_SIZE > memory.capacity()) {
+            int capacity = Math.min(size * 2, resolution.getRetainedBuckets());
+            ByteBuffer grown = ByteBuffer.allocate(capacity * RollupBucket.RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            System.arraycopy(memory.array(), 0, grown.array(), 0, size * RollupBucket.RECORD_SIZE);
+            memory = grown;
+        }
+        System.arraycopy(fileRecord.array(), 0, memory.array(), size * RollupBucket.RECORD_SIZE,
+                RollupBucket.RECORD_SIZE);
+        size++;
+    }
+
+    void get(long index, RollupBucket out) throws IOException {
+        int inMemory = (int) (index - firstInMemory());
+        if (inMemory >= 0) {
+            memory.position(inMemory * RollupBucket.RECORD_SIZE);
+            out.read(resolution, memory);
+        } else {
+            out.read(resolution, readFromFile(index));
+        }
+    }
+
+    long startAt(long index) throws IOException {
+        int inMemory = (int) (index - firstInMemory());
+        if (inMemory >= 0) {
+            return memory.getLong(inMemory * RollupBucket.RECORD_SIZE);
+        }
+        return readFromFile(index).getLong(0);
+    }
+
+    // Index of the first bucket starting at or after startMillis. Only goes
+    // to the file when the buckets in memory all start after it.
+    long search(long startMillis) throws IOException {
+        long first = firstInMemory();
+        boolean inMemory = size > 0 && startAt(first) < startMillis;
+        long low = inMemory ? first : 0;
+        long high = inMemory || size == 0 ? persistedCount : first;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (startAt(mid) < startMillis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Buckets in the series, on disk and in memory
+    long size() {
+        return persistedCount;
+    }
+
+    private long firstInMemory() {
+        return persistedCount - size;
+    }
+
+    private ByteBuffer readFromFile(long index) throws IOException {
+        file.seek(index * RollupBucket.RECORD_SIZE);
+        file.readFully(readRecord.array(), 0, RollupBucket.RECORD_SIZE);
+        readRecord.clear();
+        return readRecord;
+    }
+
+    long getPersistedCount() {
+        return persistedCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
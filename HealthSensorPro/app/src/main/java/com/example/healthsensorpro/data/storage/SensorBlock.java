@@ -0,0 +1,368 @@
+package com.example.healthsensorpro.data.storage;
+
+import com.example.healthsensorpro.data.model.ActivityType;
+import com.example.healthsensorpro.data.model.SensorData;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// A block of SensorData records stored column by column, and its compressed
+// encoding. Each column is written in one piece with a codec suited to how it
+// changes over time:
+//
+//   timestamps        delta-of-delta, variable-width buckets (1 bit at a steady rate)
+//   steps             delta, same buckets (mostly 0 or 1)
+//   heart rate        XOR with the previous float (1 bit while unchanged)
+//   calories/distance XOR with the previous double
+//   accelerometer     int16 fixed point, 1/400 m/s^2 (error <= 1/800, range +-81.9)
+//   cadence           fixed point, 1/100 steps/min, delta buckets
+//   activity          run-length (code, length) pairs
+//
+// The accelerometer and cadence columns are lossy within the bounds above;
+// everything else round-trips exactly.
+public final class SensorBlock {
+    public static final float ACCELEROMETER_SCALE = 400f;
+    public static final float CADENCE_SCALE = 100f;
+
+    private final int capacity;
+    private int size = 0;
+
+    private final long[] timestamps;
+    private final int[] steps;
+    private final float[] heartRates;
+    private final double[] calories;
+    private final double[] distances;
+    private final short[] xs;
+    private final short[] ys;
+    private final short[] zs;
+    private final int[] cadences;
+    private final byte[] activities;
+
+    private final BitWriter writer;
+    private final BitReader reader = new BitReader();
+
+    public SensorBlock(int capacity) {
+        if (capacity <= 0 || capacity > 0xFFFF) {
+            throw new IllegalArgumentException("capacity must be in 1..65535: " + capacity);
+        }
+        this.capacity = capacity;
+        timestamps = new long[capacity];
+        steps = new int[capacity];
+        heartRates = new float[capacity];
+        calories = new double[capacity];
+        distances = new double[capacity];
+        xs = new short[capacity];
+        ys = new short[capacity];
+        zs = new short[capacity];
+        cadences = new int[capacity];
+        activities = new byte[capacity];
+        writer = new BitWriter(capacity * 12);
+    }
+
+    // Returns false when the block is full
+    public boolean add(SensorData data) {
+        if (size == capacity) {
+            return false;
+        }
+        timestamps[size] = data.getTimestamp();
+        steps[size] = data.getSteps();
+        heartRates[size] = data.getHeartRate();
+        calories[size] = data.getCalories();
+        distances[size] = data.getDistance();
+        xs[size] = toFixed16(data.getAccelerometerX());
+        ys[size] = toFixed16(data.getAccelerometerY());
+        zs[size] = toFixed16(data.getAccelerometerZ());
+        cadences[size] = Math.round(data.getCadence() * CADENCE_SCALE);
+        activities[size] = data.getActivityType().getCode();
+        size++;
+        return true;
+    }
+
+    public void get(int index, SensorData out) {
+        out.setTimestamp(timestamps[index]);
+        out.setSteps(steps[index]);
+        out.setHeartRate(heartRates[index]);
+        out.setCalories(calories[index]);
+        out.setDistance(distances[index]);
+        out.setAccelerometerX(xs[index] / ACCELEROMETER_SCALE);
+        out.setAccelerometerY(ys[index] / ACCELEROMETER_SCALE);
+        out.setAccelerometerZ(zs[index] / ACCELEROMETER_SCALE);
+        out.setCadence(cadences[index] / CADENCE_SCALE);
+        out.setActivityType(ActivityType.fromCode(activities[index]));
+    }
+
+    public long timestampAt(int index) {
+        return timestamps[index];
+    }
+
+    // Index of the first record at or after timestamp, or size()
+    public int search(long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    private static short toFixed16(float value) {
+        float scaled = value * ACCELEROMETER_SCALE;
+        // Symmetric range, so saturation does not depend on the sign
+        if (scaled >= Short.MAX_VALUE) return Short.MAX_VALUE;
+        if (scaled <= -Short.MAX_VALUE) return -Short.MAX_VALUE;
+        return (short) Math.round(scaled);
+    }
+
+    // Encodes the block into an internal buffer and returns its length in
+    // bytes; the bytes are in encodedBytes() until the next encode()
+    public int encode() {
+        BitWriter out = writer;
+        out.clear();
+        out.writeBits(size, 16);
+        if (size == 0) {
+            return out.byteCount();
+        }
+
+        // Timestamps: first value, first delta, then delta-of-delta
+        out.writeBits(timestamps[0], 64);
+        long previousDelta = 0L;
+        for (int i = 1; i < size; i++) {
+            long delta = timestamps[i] - timestamps[i - 1];
+            writeBucketed(out, delta - previousDelta);
+            previousDelta = delta;
+        }
+
+        out.writeBits(steps[0], 32);
+        for (int i = 1; i < size; i++) {
+            writeBucketed(out, (long) steps[i] - steps[i - 1]);
+        }
+
+        long previousBits = Float.floatToRawIntBits(heartRates[0]) & 0xFFFFFFFFL;
+        out.writeBits(previousBits, 32);
+        int leading = -1;
+        int trailing = 0;
+        for (int i = 1; i < size; i++) {
+            long bits = Float.floatToRawIntBits(heartRates[i]) & 0xFFFFFFFFL;
+            long window = writeXor(out, bits ^ previousBits, 32, leading, trailing);
+            if (window >= 0) {
+                leading = (int) (window >>> 8);
+                trailing = (int) (window & 0xFF);
+            }
+            previousBits = bits;
+        }
+
+        writeDoubles(out, calories);
+        writeDoubles(out, distances);
+
+        writeShorts(out, xs);
+        writeShorts(out, ys);
+        writeShorts(out, zs);
+
+        out.writeBits(cadences[0], 32);
+        for (int i = 1; i < size; i++) {
+            writeBucketed(out, (long) cadences[i] - cadences[i - 1]);
+        }
+
+        int runStart = 0;
+        for (int i = 1; i <= size; i++) {
+            if (i == size || activities[i] != activities[runStart]) {
+                out.writeBits(activities[runStart], 4);
+                writeBucketed(out, i - runStart);
+                runStart = i;
+            }
+        }
+        return out.byteCount();
+    }
+
+    public byte[] encodedBytes() {
+        return writer.buffer();
+    }
+
+    // Replaces the contents with a block read from buffer at offset
+    public void decode(ByteBuffer buffer, int offset) {
+        BitReader in = reader;
+        in.reset(buffer, offset);
+        int count = (int) in.readBits(16);
+        if (count > capacity) {
+            throw new IllegalArgumentException("Block of " + count + " records exceeds capacity " + capacity);
+        }
+        size = count;
+        if (count == 0) {
+            return;
+        }
+
+        timestamps[0] = in.readBits(64);
+        long delta = 0L;
+        for (int i = 1; i < count; i++) {
+            delta += readBucketed(in);
+            timestamps[i] = timestamps[i - 1] + delta;
+        }
+
+        steps[0] = (int) in.readBits(32);
+        for (int i = 1; i < count; i++) {
+            steps[i] = (int) (steps[i - 1] + readBucketed(in));
+        }
+
+        long bits = in.readBits(32);
+        heartRates[0] = Float.intBitsToFloat((int) bits);
+        int leading = 0;
+        int length = 0;
+        for (int i = 1; i < count; i++) {
+            if (in.readBit()) {
+                if (in.readBit()) {
+                    leading = (int) in.readBits(5);
+                    length = (int) in.readBits(5) + 1;
+                }
+                bits ^= in.readBits(length) << (32 - leading - length);
+            }
+            heartRates[i] = Float.intBitsToFloat((int) bits);
+        }
+
+        readDoubles(in, calories, count);
+        readDoubles(in, distances, count);
+
+        readShorts(in, xs, count);
+        readShorts(in, ys, count);
+        readShorts(in, zs, count);
+
+        cadences[0] = (int) in.readBits(32);
+        for (int i = 1; i < count; i++) {
+            cadences[i] = (int) (cadences[i - 1] + readBucketed(in));
+        }
+
+        int filled = 0;
+        while (filled < count) {
+            byte code = (byte) in.readBits(4);
+            int run = (int) readBucketed(in);
+            Arrays.fill(activities, filled, filled + run, code);
+            filled += run;
+        }
+    }
+
+    private void writeDoubles(BitWriter out, double[] values) {
+        long previous = Double.doubleToRawLongBits(values[0]);
+        out.writeBits(previous, 64);
+        int leading = -1;
+        int trailing = 0;
+        for (int i = 1; i < size; i++) {
+            long bits = Double.doubleToRawLongBits(values[i]);
+            long window = writeXor(out, bits ^ previous, 64, leading, trailing);
+            if (window >= 0) {
+                leading = (int) (window >>> 8);
+                trailing = (int) (window & 0xFF);
+            }
+            previous = bits;
+        }
+    }
+
+    private static void readDoubles(BitReader in, double[] values, int count) {
+        long bits = in.readBits(64);
+        values[0] = Double.longBitsToDouble(bits);
+        int leading = 0;
+        int length = 0;
+        for (int i = 1; i < count; i++) {
+            if (in.readBit()) {
+                if (in.readBit()) {
+                    leading = (int) in.readBits(6);
+                    length = (int) in.readBits(6) + 1;
+                }
+                bits ^= in.readBits(length) << (64 - leading - length);
+            }
+            values[i] = Double.longBitsToDouble(bits);
+        }
+    }
+
+    private void writeShorts(BitWriter out, short[] values) {
+        for (int i = 0; i < size; i++) {
+            out.writeBits(values[i], 16);
+        }
+    }
+
+    private static void readShorts(BitReader in, short[] values, int count) {
+        for (int i = 0; i < count; i++) {
+            values[i] = (short) in.readBits(16);
+        }
+    }
+
+    // Gorilla XOR step for a width-bit value (32 or 64). '0' when unchanged;
+    // '10' + meaningful bits when they fit the previous window; otherwise '11',
+    // leading zeros and length, then the bits. Returns the new window as
+    // leading << 8 | trailing, or -1 when the previous one was kept.
+    private static long writeXor(BitWriter out, long xor, int width, int leading, int trailing) {
+        if (xor == 0) {
+            out.writeBit(false);
+            return -1;
+        }
+        out.writeBit(true);
+
+        int fieldBits = width == 64 ? 6 : 5;
+        int newLeading = Long.numberOfLeadingZeros(xor) - (64 - width);
+        int newTrailing = Long.numberOfTrailingZeros(xor);
+
+        if (leading >= 0 && newLeading >= leading && newTrailing >= trailing) {
+            out.writeBit(false);
+            out.writeBits(xor >>> trailing, width - leading - trailing);
+            return -1;
+        }
+
+        int length = width - newLeading - newTrailing;
+        out.writeBit(true);
+        out.writeBits(newLeading, fieldBits);
+        out.writeBits(length - 1, fieldBits);
+        out.writeBits(xor >>> newTrailing, length);
+        return ((long) newLeading << 8) | newTrailing;
+    }
+
+    // Signed value in the smallest of 0 / 7 / 9 / 12 / 32 / 64 bit buckets,
+    // each behind a unary prefix
+    private static void writeBucketed(BitWriter out, long value) {
+        if (value == 0) {
+            out.writeBit(false);
+        } else if (value >= -64 && value < 64) {
+            out.writeBits(0b10, 2);
+            out.writeBits(value, 7);
+        } else if (value >= -256 && value < 256) {
+            out.writeBits(0b110, 3);
+            out.writeBits(value, 9);
+        } else if (value >= -2048 && value < 2048) {
+            out.writeBits(0b1110, 4);
+            out.writeBits(value, 12);
+        } else if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            out.writeBits(0b11110, 5);
+            out.writeBits(value, 32);
+        } else {
+            out.writeBits(0b11111, 5);
+            out.writeBits(value, 64);
+        }
+    }
+
+    private static long readBucketed(BitReader in) {
+        if (!in.readBit()) return 0L;
+        if (!in.readBit()) return in.readSigned(7);
+        if (!in.readBit()) return in.readSigned(9);
+        if (!in.readBit()) return in.readSigned(12);
+        if (!in.readBit()) return in.readSigned(32);
+        return in.readBits(64);
+    }
+}
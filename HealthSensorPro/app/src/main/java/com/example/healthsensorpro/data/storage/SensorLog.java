@@ -0,0 +1,460 @@
+package com.example.healthsensorpro.data.storage;
+
+import com.example.healthsensorpro.data.model.SensorData;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// Append-only log of fixed-width SensorData records in memory-mapped segment
+// files. Appending is a plain memory write, so it is safe on the sensor thread;
+// everything that can block on I/O (creating and mapping the next segment,
+// forcing pages to disk) runs on the log's own background thread.
+//
+// A process crash loses nothing that was appended, since the mapped pages
+// belong to the kernel. After a power loss the tail may be torn; open() keeps
+// the valid records of the last segment and discards the rest.
+//
+// Once a segment is full it is compacted in the background into columnar
+// SensorBlock frames (an ArchivedSegment, several times smaller) and the raw
+// file is deleted. Compaction quantises the accelerometer and cadence columns;
+// see SensorBlock for the bounds.
+//
+// Timestamps must be non-decreasing, since the index and scans rely on it;
+// append() rejects and counts a record older than the last one appended (the
+// wall clock set back between sessions, say) rather than break the order.
+//
+// Compacted segments whose records are all older than the retention, counted
+// back from the newest compacted record, are deleted after each compaction.
+// The rollups keep the long-term totals; a backfill can only rebuild what the
+// log still holds.
+public final class SensorLog implements Closeable {
+    public static final int DEFAULT_SEGMENT_BYTES = 4 * 1024 * 1024;
+    public static final long DEFAULT_RETENTION_MILLIS = 30L * 24 * 60 * 60 * 1000;
+
+    private final File directory;
+    private final int segmentBytes;
+    private final long retentionMillis;
+    private final CopyOnWriteArrayList<LogPart> parts;
+    private final ExecutorService io;
+
+    // Writer thread only
+    private LogSegment active;
+    private Future<LogSegment> nextSegment;
+    private long lastTimestamp;
+    private boolean closed = false;
+    // Written by the writer thread only
+    private volatile long droppedRecords = 0L;
+    private volatile long outOfOrderRecords = 0L;
+
+    private SensorLog(File directory, int segmentBytes, long retentionMillis, List<LogPart> parts,
+                      LogSegment active) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.retentionMillis = retentionMillis;
+        this.parts = new CopyOnWriteArrayList<>(parts);
+        this.active = active;
+        this.io = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "SensorLog");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        lastTimestamp = Long.MIN_VALUE;
+        for (LogPart part : parts) {
+            if (!part.isEmpty()) {
+                lastTimestamp = part.getLastTimestamp();
+            }
+        }
+
+        // Segments sealed before a crash may not have been compacted yet
+        for (LogPart part : parts) {
+            if (part != active && part instanceof LogSegment) {
+                compactInBackground((LogSegment) part);
+            }
+        }
+        io.execute(this::deleteExpiredParts);
+    }
+
+    public static SensorLog open(File directory) throws IOException {
+        return open(directory, DEFAULT_SEGMENT_BYTES, DEFAULT_RETENTION_MILLIS);
+    }
+
+    public static SensorLog open(File directory, int segmentBytes) throws IOException {
+        return open(directory, segmentBytes, DEFAULT_RETENTION_MILLIS);
+    }
+
+    // Blocking: recovers the existing segments, so keep it off the main thread
+    public static SensorLog open(File directory, int segmentBytes, long retentionMillis) throws IOException {
+        if (segmentBytes < LogSegment.HEADER_SIZE + SensorRecordFormat.RECORD_SIZE) {
+            throw new IllegalArgumentException("segmentBytes too small: " + segmentBytes);
+        }
+        if (retentionMillis <= 0) {
+            throw new IllegalArgumentException("retentionMillis must be positive: " + retentionMillis);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+
+        File[] files = directory.listFiles();
+        if (files == null) {
+            throw new IOException("Cannot list " + directory);
+        }
+        Arrays.sort(files);
+
+        // Sorted by name, so each sequence's .blk comes before its .seg
+        List<LogPart> parts = new ArrayList<>(files.length + 1);
+        List<File> rawFiles = new ArrayList<>(files.length);
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(".tmp")) {
+                // Compaction interrupted before the rename; the .seg is still there
+                deleteOrThrow(file);
+            } else if (name.matches("\\d{16}\\.blk")) {
+                parts.add(ArchivedSegment.open(file, parseSequence(name)));
+            } else if (name.matches("\\d{16}\\.seg")) {
+                long sequence = parseSequence(name);
+                if (!parts.isEmpty() && parts.get(parts.size() - 1).getSequence() == sequence) {
+                    // Compacted, but the raw file was not deleted yet
+                    deleteOrThrow(file);
+                } else {
+                    rawFiles.add(file);
+                }
+            }
+        }
+
+        for (int i = 0; i < rawFiles.size(); i++) {
+            File file = rawFiles.get(i);
+            long sequence = parseSequence(file.getName());
+            boolean last = i == rawFiles.size() - 1;
+            try {
+                parts.add(LogSegment.open(file, sequence, last));
+            } catch (IOException e) {
+                if (!last) {
+                    throw e;
+                }
+                // Crashed while the next segment was being created: start it over
+                deleteOrThrow(file);
+                parts.add(LogSegment.create(directory, sequence, segmentBytes));
+            }
+        }
+        parts.sort((a, b) -> Long.compare(a.getSequence(), b.getSequence()));
+
+        LogPart last = parts.isEmpty() ? null : parts.get(parts.size() - 1);
+        LogSegment active;
+        if (last instanceof LogSegment) {
+            active = (LogSegment) last;
+        } else {
+            active = LogSegment.create(directory, last == null ? 0L : last.getSequence() + 1, segmentBytes);
+            parts.add(active);
+        }
+        return new SensorLog(directory, segmentBytes, retentionMillis, parts, active);
+    }
+
+    private static long parseSequence(String name) {
+        return Long.parseLong(name.substring(0, 16));
+    }
+
+    private static void deleteOrThrow(File file) throws IOException {
+        if (!file.delete()) {
+            throw new IOException("Cannot delete " + file);
+        }
+    }
+
+    // Writer thread. Copies the record, so the caller may reuse data. Returns
+    // false if the record was dropped because it is older than the last one
+    // or no segment could be created.
+    public boolean append(SensorData data) {
+        if (closed) {
+            return false;
+        }
+        if (data.getTimestamp() < lastTimestamp) {
+            outOfOrderRecords++;
+            return false;
+        }
+        if (appendToSegment(data)) {
+            lastTimestamp = data.getTimestamp();
+            return true;
+        }
+        return false;
+    }
+
+    private boolean appendToSegment(SensorData data) {
+        if (active.append(data)) {
+            if (nextSegment == null && active.getCount() >= active.getCapacity() / 2) {
+                prepareNextSegment();
+            }
+            return true;
+        }
+
+        LogSegment next = takeNextSegment();
+        if (next == null) {
+            droppedRecords++;
+            return false;
+        }
+
+        compactInBackground(active);
+        parts.add(next);
+        active = next;
+        return active.append(data);
+    }
+
+    private void compactInBackground(final LogSegment segment) {
+        io.execute(() -> {
+            if (segment.isEmpty()) {
+                // Nothing to keep; an empty part would only get in the index's way
+                parts.remove(segment);
+                segment.getFile().delete();
+                return;
+            }
+            try {
+                ArchivedSegment archived = ArchivedSegment.write(directory, segment);
+                // Scans already running keep reading the raw mapping
+                parts.set(parts.indexOf(segment), archived);
+                segment.getFile().delete();
+            } catch (IOException e) {
+                // The raw segment stays in place and is retried on the next open
+                segment.force();
+                return;
+            }
+            deleteExpiredParts();
+        });
+    }
+
+    // Background thread. Only compacted parts are deleted, oldest first, so
+    // the log stays contiguous; scans already running keep their mappings.
+    private void deleteExpiredParts() {
+        long newest = Long.MIN_VALUE;
+        for (LogPart part : parts) {
+            if (part instanceof ArchivedSegment) {
+                newest = Math.max(newest, part.getLastTimestamp());
+            }
+        }
+        if (newest == Long.MIN_VALUE) {
+            return;
+        }
+        long cutoff = newest - retentionMillis;
+        while (!parts.isEmpty()) {
+            LogPart oldest = parts.get(0);
+            if (!(oldest instanceof ArchivedSegment) || oldest.getLastTimestamp() >= cutoff) {
+                return;
+            }
+            parts.remove(0);
+            // Left behind if this fails; the next open deletes it again
+            ((ArchivedSegment) oldest).getFile().delete();
+        }
+    }
+
+    private void prepareNextSegment() {
+        final long sequence = active.getSequence() + 1;
+        nextSegment = io.submit(() -> LogSegment.create(directory, sequence, segmentBytes));
+    }
+
+    // The next segment is created once the active one is half full, so it is
+    // ready long before it is needed and get() does not wait
+    private LogSegment takeNextSegment() {
+        if (nextSegment == null) {
+            prepareNextSegment();
+        }
+        Future<LogSegment> pending = nextSegment;
+        nextSegment = null;
+        try {
+            return pending.get();
+        } catch (ExecutionException e) {
+            // Try again on the next append
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    // Any thread. Visits the records with fromMillis <= timestamp <= toMillis,
+    // including ones appended while the scan is running. Finding the first
+    // record is a binary search over parts, frames and records, so it costs
+    // O(log n) whatever the range.
+    public Cursor scan(long fromMillis, long toMillis) {
+        return new Cursor(parts.toArray(new LogPart[0]), fromMillis, toMillis);
+    }
+
+    // Any thread. Reads the last record before millis into out, however long
+    // ago it was; false if there is none. A binary search like scan().
+    public boolean findLastBefore(long millis, SensorData out) {
+        LogPart[] snapshot = parts.toArray(new LogPart[0]);
+        for (int i = Cursor.findPart(snapshot, millis - 1); i >= 0; i--) {
+            LogPart part = snapshot[i];
+            if (!part.isEmpty() && part.getFirstTimestamp() < millis) {
+                return part.readLastBefore(millis, out);
+            }
+        }
+        return false;
+    }
+
+    public static Cursor emptyCursor() {
+        return new Cursor(new LogPart[0], 0L, -1L);
+    }
+
+    // Writes everything appended so far to disk in the background
+    public void flush() {
+        final LogSegment segment = active;
+        io.execute(segment::force);
+    }
+
+    public long getRecordCount() {
+        long count = 0L;
+        for (LogPart part : parts) {
+            count += part.getCount();
+        }
+        return count;
+    }
+
+    public int getSegmentCount() {
+        return parts.size();
+    }
+
+    // Size of the compacted history on disk, and the records in it
+    public long getArchivedBytes() {
+        long bytes = 0L;
+        for (LogPart part : parts) {
+            if (part instanceof ArchivedSegment) {
+                bytes += ((ArchivedSegment) part).getFileBytes();
+            }
+        }
+        return bytes;
+    }
+
+    public long getArchivedRecordCount() {
+        long count = 0L;
+        for (LogPart part : parts) {
+            if (part instanceof ArchivedSegment) {
+                count += part.getCount();
+            }
+        }
+        return count;
+    }
+
+    public long getDroppedRecords() {
+        return droppedRecords;
+    }
+
+    // Records rejected because they were older than the last one appended
+    public long getOutOfOrderRecords() {
+        return outOfOrderRecords;
+    }
+
+    public long getRetentionMillis() {
+        return retentionMillis;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    // Writer thread. Forces the active segment and stops the background thread;
+    // a segment prepared but never used stays behind empty and is reused on the
+    // next open.
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        active.force();
+        io.shutdown();
+        try {
+            io.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Sequential reader over a time range. Not thread-safe; use one per thread.
+    public static final class Cursor {
+        private final LogPart[] parts;
+        private final long fromMillis;
+        private final long toMillis;
+        private int partIndex;
+        private LogPart.Reader reader;
+        private boolean done = false;
+
+        Cursor(LogPart[] parts, long fromMillis, long toMillis) {
+            this.parts = parts;
+            this.fromMillis = fromMillis;
+            this.toMillis = toMillis;
+            this.partIndex = findPart(parts, fromMillis) - 1;
+        }
+
+        // The last part starting at or before fromMillis, or the first. Only
+        // the active part at the end can be empty, and it sorts last anyway.
+        private static int findPart(LogPart[] parts, long fromMillis) {
+            int low = 0;
+            int high = parts.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                LogPart part = parts[mid];
+                if (!part.isEmpty() && part.getFirstTimestamp() <= fromMillis) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return Math.max(low - 1, 0);
+        }
+
+        // Reads the next record in range into out; false when there is none left
+        public boolean next(SensorData out) throws IOException {
+            while (!done) {
+                if (reader == null || !reader.hasNext()) {
+                    if (!advancePart()) {
+                        done = true;
+                        return false;
+                    }
+                    continue;
+                }
+
+                long timestamp = reader.peekTimestamp();
+                if (timestamp > toMillis) {
+                    done = true;
+                    return false;
+                }
+                if (timestamp < fromMillis) {
+                    reader.skip();
+                    continue;
+                }
+                reader.read(out);
+                return true;
+            }
+            return false;
+        }
+
+        // Moves to the next part that can hold records in range
+        private boolean advancePart() throws IOException {
+            reader = null;
+            while (++partIndex < parts.length) {
+                LogPart part = parts[partIndex];
+                boolean isLast = partIndex == parts.length - 1;
+                if (part.isEmpty() && !isLast) {
+                    continue;
+                }
+                if (!part.isEmpty() && part.getFirstTimestamp() > toMillis) {
+                    return false;
+                }
+                // The last part may still be growing
+                if (isLast || part.getLastTimestamp() >= fromMillis) {
+                    reader = part.reader(fromMillis);
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
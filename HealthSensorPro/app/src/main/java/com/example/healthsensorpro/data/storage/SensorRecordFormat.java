@@ -0,0 +1,76 @@
+package com.example.healthsensorpro.data.storage;
+
+import com.example.healthsensorpro.data.model.ActivityType;
+import com.example.healthsensorpro.data.model.SensorData;
+
+import java.nio.ByteBuffer;
+
+// Fixed-width little-endian encoding of one SensorData record:
+//
+//   0 long   timestamp (wall clock millis)
+//   8 int    steps
+//  12 float  heart rate (NaN = none)
+//  16 double calories
+//  24 double distance (m)
+//  32 float  accelerometer x, y, z
+//  44 float  cadence (steps/min)
+//  48 int    activity code
+//  52 int    checksum of bytes 0..51, never 0
+//
+// A record whose checksum does not match was torn by a crash, or was never
+// written (zeroed file space), and ends the valid part of a segment.
+final class SensorRecordFormat {
+    static final int RECORD_SIZE = 56;
+    private static final int CHECKSUM_OFFSET = 52;
+
+    private SensorRecordFormat() {
+    }
+
+    static void write(ByteBuffer buffer, int offset, SensorData data) {
+        buffer.putLong(offset, data.getTimestamp());
+        buffer.putInt(offset + 8, data.getSteps());
+        buffer.putFloat(offset + 12, data.getHeartRate());
+        buffer.putDouble(offset + 16, data.getCalories());
+        buffer.putDouble(offset + 24, data.getDistance());
+        buffer.putFloat(offset + 32, data.getAccelerometerX());
+        buffer.putFloat(offset + 36, data.getAccelerometerY());
+        buffer.putFloat(offset + 40, data.getAccelerometerZ());
+        buffer.putFloat(offset + 44, data.getCadence());
+        buffer.putInt(offset + 48, data.getActivityType().getCode());
+        // Checksum last, so a record is only valid once everything else is in
+        buffer.putInt(offset + CHECKSUM_OFFSET, checksum(buffer, offset));
+    }
+
+    static void read(ByteBuffer buffer, int offset, SensorData out) {
+        out.setTimestamp(buffer.getLong(offset));
+        out.setSteps(buffer.getInt(offset + 8));
+        out.setHeartRate(buffer.getFloat(offset + 12));
+        out.setCalories(buffer.getDouble(offset + 16));
+        out.setDistance(buffer.getDouble(offset + 24));
+        out.setAccelerometerX(buffer.getFloat(offset + 32));
+        out.setAccelerometerY(buffer.getFloat(offset + 36));
+        out.setAccelerometerZ(buffer.getFloat(offset + 40));
+        out.setCadence(buffer.getFloat(offset + 44));
+        out.setActivityType(ActivityType.fromCode(buffer.getInt(offset + 48)));
+    }
+
+    static long readTimestamp(ByteBuffer buffer, int offset) {
+        return buffer.getLong(offset);
+    }
+
+    static boolean isValid(ByteBuffer buffer, int offset) {
+        return buffer.getInt(offset + CHECKSUM_OFFSET) == checksum(buffer, offset);
+    }
+
+    // FNV-1a over 32-bit words with a final avalanche
+    private static int checksum(ByteBuffer buffer, int offset) {
+        int hash = 0x811C9DC5;
+        for (int i = 0; i < CHECKSUM_OFFSET; i += 4) {
+            hash = (hash ^ buffer.getInt(offset + i)) * 0x01000193;
+        }
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        return hash == 0 ? 1 : hash;
+    }
+}
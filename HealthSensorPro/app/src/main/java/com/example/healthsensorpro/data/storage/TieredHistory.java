@@ -0,0 +1,378 @@
+package com.example.healthsensorpro.data.storage;
+
+import com.example.healthsensorpro.data.model.ActivityType;
+import com.example.healthsensorpro.data.model.SensorData;
+
+// Recent history in memory for the live charts, within a fixed byte budget.
+//
+// Three tiers of points: every snapshot of the last RAW_MAX_AGE_MILLIS, one
+// point per second up to SECOND_MAX_AGE_MILLIS, and one per minute beyond
+// that. When a tier is full, or its oldest point is past the tier's age, the
+// point is folded into the next coarser one. The minute tier never drops
+// anything either: when it fills up, neighbouring points are merged and its
+// resolution doubles, so it always covers everything since the first snapshot.
+//
+// Every tier is a ring of primitive columns allocated up front from its
+// share of the budget, so memory use is set at construction and adding
+// allocates nothing. Methods are synchronized: snapshots come in on the
+// sensor thread while charts query from elsewhere, and both are short. A
+// query only holds the lock to copy points into its QueryBuffer; the visitor
+// runs after, so a slow one never holds up the sensor thread.
+public final class TieredHistory {
+    public static final long RAW_MAX_AGE_MILLIS = 5 * 60_000L;
+    public static final long SECOND_MAX_AGE_MILLIS = 60 * 60_000L;
+    // start, sample count, steps, heart rate min/max/sum/count, cadence sum,
+    // magnitude sum/min/max, samples per activity
+    static final int POINT_SIZE = 8 + 4 + 4 + 4 + 4 + 8 + 4 + 8 + 8 + 4 + 4 + 4 * ActivityType.count();
+    // Shares of the budget, in quarters: raw, second, minute
+    private static final int[] TIER_QUARTERS = {2, 1, 1};
+    private static final int MIN_TIER_POINTS = 2;
+
+    public interface Visitor {
+        void visit(HistoryPoint point);
+    }
+
+    // Points copied out by a query, reused from one query to the next. Keep
+    // one per querying thread.
+    public static final class QueryBuffer {
+        private HistoryPoint[] points = new HistoryPoint[0];
+        private int size = 0;
+
+        public int size() { return size; }
+        public HistoryPoint get(int index) { return points[index]; }
+
+        private HistoryPoint next() {
+            if (size == points.length) {
+                HistoryPoint[] grown = new HistoryPoint[Math.max(16, size * 2)];
+                System.arraycopy(points, 0, grown, 0, size);
+                for (int i = size; i < grown.length; i++) {
+                    grown[i] = new HistoryPoint();
+                }
+                points = grown;
+            }
+            return points[size++];
+        }
+    }
+
+    private final long budgetBytes;
+    private final Tier[] tiers;
+
+    public TieredHistory(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        long[] resolutions = {0L, 1000L, 60_000L};
+        long[] maxAges = {RAW_MAX_AGE_MILLIS, SECOND_MAX_AGE_MILLIS, Long.MAX_VALUE};
+        tiers = new Tier[resolutions.length];
+        for (int i = 0; i < tiers.length; i++) {
+            long points = budgetBytes / 4 * TIER_QUARTERS[i] / POINT_SIZE;
+            if (points < MIN_TIER_POINTS || points > Integer.MAX_VALUE / ActivityType.count()) {
+                throw new IllegalArgumentException("Budget out of range: " + budgetBytes);
+            }
+            tiers[i] = new Tier((int) points, resolutions[i], maxAges[i]);
+        }
+    }
+
+    // Timestamps are expected not to go backwards; a late one is folded into
+    // the newest point when it moves to a coarser tier
+    public synchronized void add(SensorData snapshot) {
+        long timestamp = snapshot.getTimestamp();
+        for (int level = 0; level < tiers.length - 1; level++) {
+            Tier tier = tiers[level];
+            while (tier.size > 0
+                    && tier.starts[tier.head] + tier.resolutionMillis <= timestamp - tier.maxAgeMillis) {
+                promoteOldest(level);
+            }
+        }
+
+        Tier raw = tiers[0];
+        if (raw.size == raw.capacity) {
+            promoteOldest(0);
+        }
+        raw.addSample(raw.append(timestamp), snapshot);
+    }
+
+    private void promoteOldest(int level) {
+        Tier from = tiers[level];
+        if (level == tiers.length - 1) {
+            // Sparse points may not share a doubled bucket yet
+            do {
+                from.compact();
+            } while (from.size == from.capacity);
+            return;
+        }
+
+        Tier to = tiers[level + 1];
+        int source = from.head;
+        int target;
+        while (true) {
+            long start = bucketStart(from.starts[source], to.resolutionMillis);
+            if (to.size > 0 && start <= to.starts[to.newest()]) {
+                target = to.newest();
+                break;
+            }
+            if (to.size < to.capacity) {
+                target = to.append(start);
+                break;
+            }
+            promoteOldest(level + 1);
+        }
+        to.merge(target, from, source);
+        from.removeOldest();
+    }
+
+    static long bucketStart(long millis, long resolutionMillis) {
+        return Math.floorDiv(millis, resolutionMillis) * resolutionMillis;
+    }
+
+    // Visits the points overlapping [fromMillis, toMillis], oldest first, and
+    // returns how many there were. Where two tiers meet, the last coarse point
+    // can overlap the first finer ones. The points are copied into buffer
+    // under the lock and visited after it is released.
+    public int query(long fromMillis, long toMillis, QueryBuffer buffer, Visitor visitor) {
+        int count = copy(fromMillis, toMillis, buffer);
+        for (int i = 0; i < count; i++) {
+            visitor.visit(buffer.get(i));
+        }
+        return count;
+    }
+
+    // With a buffer of its own, for one-off queries
+    public int query(long fromMillis, long toMillis, Visitor visitor) {
+        return query(fromMillis, toMillis, new QueryBuffer(), visitor);
+    }
+
+    // Copies the points query() visits into buffer, replacing its contents
+    public synchronized int copy(long fromMillis, long toMillis, QueryBuffer buffer) {
+        buffer.size = 0;
+        for (int level = tiers.length - 1; level >= 0; level--) {
+            Tier tier = tiers[level];
+            for (int i = 0; i < tier.size; i++) {
+                int index = tier.physical(i);
+                long start = tier.starts[index];
+                if (start > toMillis) {
+                    break;
+                }
+                if (start < fromMillis && start + tier.resolutionMillis <= fromMillis) {
+                    continue;
+                }
+                tier.read(index, buffer.next());
+            }
+        }
+        return buffer.size;
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    // Allocated for the points up front; does not change after construction
+    public long getMemoryBytes() {
+        long bytes = 0;
+        for (Tier tier : tiers) {
+            bytes += (long) tier.capacity * POINT_SIZE;
+        }
+        return bytes;
+    }
+
+    // Taken by the points held right now
+    public synchronized long getUsedBytes() {
+        long bytes = 0;
+        for (Tier tier : tiers) {
+            bytes += (long) tier.size * POINT_SIZE;
+        }
+        return bytes;
+    }
+
+    public synchronized int getPointCount() {
+        int count = 0;
+        for (Tier tier : tiers) {
+            count += tier.size;
+        }
+        return count;
+    }
+
+    // Of the oldest points; starts at a minute and doubles as history grows
+    public synchronized long getCoarsestResolutionMillis() {
+        return tiers[tiers.length - 1].resolutionMillis;
+    }
+
+    public synchronized void clear() {
+        for (Tier tier : tiers) {
+            tier.head = 0;
+            tier.size = 0;
+            tier.resolutionMillis = tier.initialResolutionMillis;
+        }
+    }
+
+    private static final class Tier {
+        private static final int ACTIVITIES = ActivityType.count();
+
+        final int capacity;
+        final long maxAgeMillis;
+        // 0 for the raw tier
+        final long initialResolutionMillis;
+        long resolutionMillis;
+
+        final long[] starts;
+        final int[] sampleCounts;
+        final int[] steps;
+        final float[] minHeartRates;
+        final float[] maxHeartRates;
+        final double[] heartRateSums;
+        final int[] heartRateCounts;
+        final double[] cadenceSums;
+        final double[] magnitudeSums;
+        final float[] minMagnitudes;
+        final float[] maxMagnitudes;
+        // ACTIVITIES per point
+        final int[] activityCounts;
+
+        // Ring of size points from head, oldest first
+        int head = 0;
+        int size = 0;
+
+        Tier(int capacity, long resolutionMillis, long maxAgeMillis) {
+            this.capacity = capacity;
+            this.initialResolutionMillis = resolutionMillis;
+            this.resolutionMillis = resolutionMillis;
+            this.maxAgeMillis = maxAgeMillis;
+            starts = new long[capacity];
+            sampleCounts = new int[capacity];
+            steps = new int[capacity];
+            minHeartRates = new float[capacity];
+            maxHeartRates = new float[capacity];
+            heartRateSums = new double[capacity];
+            heartRateCounts = new int[capacity];
+            cadenceSums = new double[capacity];
+            magnitudeSums = new double[capacity];
+            minMagnitudes = new float[capacity];
+            maxMagnitudes = new float[capacity];
+            activityCounts = new int[capacity * ACTIVITIES];
+        }
+
+        int physical(int i) {
+            int index = head + i;
+            return index >= capacity ? index - capacity : index;
+        }
+
+        int newest() {
+            return physical(size - 1);
+        }
+
+        // Adds an empty point at the end; there must be room
+        int append(long start) {
+            int index = physical(size);
+            size++;
+            clear(index, start);
+            return index;
+        }
+
+        void removeOldest() {
+            head = physical(1);
+            size--;
+        }
+
+        void clear(int index, long start) {
+            starts[index] = start;
+            sampleCounts[index] = 0;
+            minHeartRates[index] = Float.NaN;
+            maxHeartRates[index] = Float.NaN;
+            heartRateSums[index] = 0;
+            heartRateCounts[index] = 0;
+            cadenceSums[index] = 0;
+            magnitudeSums[index] = 0;
+            minMagnitudes[index] = Float.NaN;
+            maxMagnitudes[index] = Float.NaN;
+            for (int a = 0; a < ACTIVITIES; a++) {
+                activityCounts[index * ACTIVITIES + a] = 0;
+            }
+        }
+
+        void addSample(int index, SensorData data) {
+            float x = data.getAccelerometerX();
+            float y = data.getAccelerometerY();
+            float z = data.getAccelerometerZ();
+            float magnitude = (float) Math.sqrt(x * x + y * y + z * z);
+            sampleCounts[index]++;
+            steps[index] = data.getSteps();
+            if (data.hasHeartRate()) {
+                float heartRate = data.getHeartRate();
+                minHeartRates[index] = minOf(minHeartRates[index], heartRate);
+                maxHeartRates[index] = maxOf(maxHeartRates[index], heartRate);
+                heartRateSums[index] += heartRate;
+                heartRateCounts[index]++;
+            }
+            cadenceSums[index] += data.getCadence();
+            magnitudeSums[index] += magnitude;
+            minMagnitudes[index] = minOf(minMagnitudes[index], magnitude);
+            maxMagnitudes[index] = maxOf(maxMagnitudes[index], magnitude);
+            activityCounts[index * ACTIVITIES + data.getActivityType().getCode()]++;
+        }
+
+        // Folds the point at source of other, which is not older, into index
+        void merge(int index, Tier other, int source) {
+            sampleCounts[index] += other.sampleCounts[source];
+            steps[index] = other.steps[source];
+            minHeartRates[index] = minOf(minHeartRates[index], other.minHeartRates[source]);
+            maxHeartRates[index] = maxOf(maxHeartRates[index], other.maxHeartRates[source]);
+            heartRateSums[index] += other.heartRateSums[source];
+            heartRateCounts[index] += other.heartRateCounts[source];
+            cadenceSums[index] += other.cadenceSums[source];
+            magnitudeSums[index] += other.magnitudeSums[source];
+            minMagnitudes[index] = minOf(minMagnitudes[index], other.minMagnitudes[source]);
+            maxMagnitudes[index] = maxOf(maxMagnitudes[index], other.maxMagnitudes[source]);
+            for (int a = 0; a < ACTIVITIES; a++) {
+                activityCounts[index * ACTIVITIES + a] += other.activityCounts[source * ACTIVITIES + a];
+            }
+        }
+
+        // Doubles the resolution, merging the points that share a bucket
+        void compact() {
+            long resolution = resolutionMillis * 2;
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int source = physical(i);
+                long start = bucketStart(starts[source], resolution);
+                if (kept > 0 && starts[physical(kept - 1)] == start) {
+                    merge(physical(kept - 1), this, source);
+                } else {
+                    int target = physical(kept);
+                    if (target != source) {
+                        clear(target, start);
+                        merge(target, this, source);
+                    }
+                    starts[target] = start;
+                    kept++;
+                }
+            }
+            size = kept;
+            resolutionMillis = resolution;
+        }
+
+        void read(int index, HistoryPoint point) {
+            int samples = sampleCounts[index];
+            int heartRates = heartRateCounts[index];
+            int activity = 0;
+            for (int a = 1; a < ACTIVITIES; a++) {
+                if (activityCounts[index * ACTIVITIES + a] > activityCounts[index * ACTIVITIES + activity]) {
+                    activity = a;
+                }
+            }
+            point.set(starts[index], resolutionMillis, samples, steps[index],
+                    minHeartRates[index], maxHeartRates[index],
+                    heartRates == 0 ? Float.NaN : (float) (heartRateSums[index] / heartRates),
+                    samples == 0 ? 0f : (float) (cadenceSums[index] / samples),
+                    minMagnitudes[index], maxMagnitudes[index],
+                    samples == 0 ? Float.NaN : (float) (magnitudeSums[index] / samples),
+                    ActivityType.fromCode(activity));
+        }
+
+        // NaN means no value yet
+        private static float minOf(float a, float b) {
+            return Float.isNaN(a) || b < a ? b : a;
+        }
+
+        private static float maxOf(float a, float b) {
+            return Float.isNaN(a) || b > a ? b : a;
+        }
+    }
+}
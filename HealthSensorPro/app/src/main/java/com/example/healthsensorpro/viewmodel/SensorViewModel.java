@@ -1,34 +1,64 @@
 package com.example.healthsensorpro.viewmodel;
 
 import android.app.Application;
+import android.content.pm.ApplicationInfo;
+import android.util.Log;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
+import com.example.healthsensorpro.data.model.ActivityType;
 import com.example.healthsensorpro.data.model.HealthMetrics;
+import com.example.healthsensorpro.data.processing.LatencyTracker;
 import com.example.healthsensorpro.data.repository.SensorRepository;
 
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
 
 public class SensorViewModel extends AndroidViewModel {
+    private static final String TAG = "SensorViewModel";
+
     private SensorRepository repository;
-    private MutableLiveData<HealthMetrics> healthMetrics = new MutableLiveData<>();
+
+    // One LiveData per metric so only the cards that changed are rebound
+    private MutableLiveData<Integer> steps = new MutableLiveData<>();
+    private MutableLiveData<Double> calories = new MutableLiveData<>();
+    private MutableLiveData<Double> distance = new MutableLiveData<>();
+    private MutableLiveData<Float> heartRate = new MutableLiveData<>();
+    private MutableLiveData<ActivityType> activity = new MutableLiveData<>();
+
     private MutableLiveData<List<String>> availableSensors = new MutableLiveData<>();
     private MutableLiveData<Boolean> isMonitoring = new MutableLiveData<>(false);
     private MutableLiveData<String> errorMessage = new MutableLiveData<>();
 
-    private Timer updateTimer;
-
     public SensorViewModel(Application application) {
         super(application);
         repository = new SensorRepository(application);
+        // Debug builds measure event-to-screen latency; dumped to logcat on stop
+        if ((application.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            repository.setLatencyTracking(true);
+        }
         loadAvailableSensors();
         startMonitoring();
     }
 
-    public LiveData<HealthMetrics> getHealthMetrics() {
-        return healthMetrics;
+    public LiveData<Integer> getSteps() {
+        return steps;
+    }
+
+    public LiveData<Double> getCalories() {
+        return calories;
+    }
+
+    public LiveData<Double> getDistance() {
+        return distance;
+    }
+
+    // null while there is no heart rate reading
+    public LiveData<Float> getHeartRate() {
+        return heartRate;
+    }
+
+    public LiveData<ActivityType> getActivity() {
+        return activity;
     }
 
     public LiveData<List<String>> getAvailableSensors() {
@@ -49,41 +79,75 @@ public class SensorViewModel extends AndroidViewModel {
 
     public void startMonitoring() {
         isMonitoring.setValue(true);
+        repository.flush();
 
-        if (updateTimer != null) {
-            updateTimer.cancel();
-        }
-
-        updateTimer = new Timer();
-        updateTimer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                updateMetrics();
-            }
-        }, 0, 1000); // Update every second
+        // Show the current state right away, then follow pushed changes
+        updateMetrics(repository.getHealthMetrics());
+        repository.setMetricsListener(this::updateMetrics);
     }
 
     public void stopMonitoring() {
         isMonitoring.setValue(false);
+        repository.setMetricsListener(null);
 
-        if (updateTimer != null) {
-            updateTimer.cancel();
-            updateTimer = null;
+        LatencyTracker latency = repository.getLatencyTracker();
+        if (latency != null) {
+            Log.d(TAG, "Event latency by stage:\n" + latency.dump());
         }
     }
 
-    private void updateMetrics() {
+    // Percentiles per stage, or null while latency tracking is off
+    public String getLatencyReport() {
+        LatencyTracker latency = repository.getLatencyTracker();
+        return latency == null ? null : latency.dump();
+    }
+
+    // Main thread. Values are compared as primitives first, so only metrics
+    // that changed get boxed and posted.
+    private void updateMetrics(HealthMetrics metrics) {
+        LatencyTracker latency = repository.getLatencyTracker();
+        if (latency != null) {
+            latency.recordForPublished(LatencyTracker.Stage.POST);
+        }
         try {
-            HealthMetrics metrics = repository.getHealthMetrics();
-            healthMetrics.postValue(metrics);
+            Integer currentSteps = steps.getValue();
+            if (currentSteps == null || currentSteps != metrics.getTotalSteps()) {
+                steps.setValue(metrics.getTotalSteps());
+            }
+
+            Double currentCalories = calories.getValue();
+            if (currentCalories == null || currentCalories != metrics.getTotalCalories()) {
+                calories.setValue(metrics.getTotalCalories());
+            }
+
+            Double currentDistance = distance.getValue();
+            if (currentDistance == null || currentDistance != metrics.getTotalDistance()) {
+                distance.setValue(metrics.getTotalDistance());
+            }
+
+            Float currentHeartRate = heartRate.getValue();
+            if (!metrics.hasHeartRate()) {
+                if (currentHeartRate != null) {
+                    heartRate.setValue(null);
+                }
+            } else if (currentHeartRate == null || currentHeartRate != metrics.getAvgHeartRate()) {
+                heartRate.setValue(metrics.getAvgHeartRate());
+            }
+
+            if (activity.getValue() != metrics.getCurrentActivity()) {
+                activity.setValue(metrics.getCurrentActivity());
+            }
         } catch (Exception e) {
-            errorMessage.postValue("Error updating metrics: " + e.getMessage());
+            errorMessage.setValue("Error updating metrics: " + e.getMessage());
+        }
+        // Active observers ran inside setValue, so the cards hold the new values
+        if (latency != null) {
+            latency.recordForPublished(LatencyTracker.Stage.BIND);
         }
     }
 
     public void resetData() {
         repository.resetCounters();
-        updateMetrics();
     }
 
     public void clearError() {
@@ -93,9 +157,6 @@ public class SensorViewModel extends AndroidViewModel {
     @Override
     protected void onCleared() {
         super.onCleared();
-        if (updateTimer != null) {
-            updateTimer.cancel();
-        }
         repository.cleanup();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,80 @@
+package com.example.healthsensorpro.data.processing;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class AccelerometerBatchTest {
+    @Test
+    public void packedSamples_stayWithinTheDocumentedError() {
+        float range = 4 * 9.80665f;
+        AccelerometerBatch batch = new AccelerometerBatch(1000, range);
+        assertEquals(range / 32767 / 2, batch.getMaxError(), 1e-9);
+
+        Random random = new Random(3);
+        long[] timestamps = new long[batch.capacity()];
+        float[] values = new float[batch.capacity()];
+        long timestamp = 5_000_000_000_000L;
+        for (int i = 0; i < batch.capacity(); i++) {
+            // Batched sensors can deliver slightly out of order
+            timestamp += 20_000_000L + random.nextInt(2_000_000) - 1_000_000;
+            timestamps[i] = i == 500 ? timestamp - 30_000_000L : timestamp;
+            values[i] = (float) ((random.nextDouble() * 2 - 1) * range);
+            assertTrue(batch.add(timestamps[i], values[i], -values[i], 9.81f));
+        }
+        assertTrue(batch.isFull());
+        assertFalse(batch.add(timestamp + 20_000_000L, 0f, 0f, 0f));
+
+        long unpacked = batch.getFirstTimestamp();
+        for (int i = 0; i < batch.size(); i++) {
+            unpacked += batch.timestampDeltas()[i];
+            assertEquals(timestamps[i], unpacked);
+            float bound = batch.getMaxError() + Math.ulp(range);
+            assertEquals(values[i], batch.xs()[i] * batch.getScale(), bound);
+            assertEquals(-values[i], batch.ys()[i] * batch.getScale(), bound);
+            assertEquals(9.81f, batch.zs()[i] * batch.getScale(), bound);
+        }
+        assertEquals(timestamps[batch.size() - 1], batch.getLastTimestamp());
+    }
+
+    @Test
+    public void scale_isTheSensorResolutionWhenTheRangeFits() {
+        // A 12-bit +-4 g sensor reports multiples of its resolution; they come back exactly
+        float range = 4 * 9.80665f;
+        float resolution = range / 2048;
+        AccelerometerBatch batch = new AccelerometerBatch(8, range, resolution);
+        assertEquals(resolution, batch.getScale(), 0f);
+        for (int i = 0; i < 8; i++) {
+            float value = (i * 301 - 1000) * resolution;
+            assertTrue(batch.add(i, value, -value, 0f));
+            assertEquals(value, batch.xs()[i] * batch.getScale(), 0f);
+        }
+
+        // Finer than 16 bits can hold, or unknown: the range decides
+        assertEquals(range / 32767, AccelerometerBatch.scaleFor(range, range / 65536), 0f);
+        assertEquals(range / 32767, AccelerometerBatch.scaleFor(range, 0f), 0f);
+        assertEquals(AccelerometerBatch.DEFAULT_SCALE, AccelerometerBatch.scaleFor(0f, 0f), 0f);
+    }
+
+    @Test
+    public void outOfRangeValuesAndLongGaps() {
+        AccelerometerBatch batch = new AccelerometerBatch(4);
+        assertTrue(batch.add(0L, 1000f, -1000f, Float.NaN));
+        float range = AccelerometerBatch.DEFAULT_MAXIMUM_RANGE;
+        // Clamped to the range, as the sensor would
+        assertEquals(range, batch.xs()[0] * batch.getScale(), 1e-4);
+        assertEquals(-range, batch.ys()[0] * batch.getScale(), 1e-4);
+        assertEquals(0, batch.zs()[0]);
+
+        // The delta to the previous sample has to fit in an int
+        assertFalse(batch.add(3_000_000_000L, 0f, 0f, 0f));
+        assertEquals(1, batch.size());
+        assertTrue(batch.add(2_000_000_000L, 0f, 0f, 0f));
+
+        batch.clear();
+        assertTrue(batch.add(3_000_000_000L, 0f, 0f, 0f));
+        assertEquals(3_000_000_000L, batch.getFirstTimestamp());
+    }
+}
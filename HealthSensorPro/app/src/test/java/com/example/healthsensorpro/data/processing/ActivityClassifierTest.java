@@ -0,0 +1,88 @@
+package com.example.healthsensorpro.data.processing;
+
+import com.example.healthsensorpro.data.model.ActivityType;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ActivityClassifierTest {
+    @Test
+    public void classifiesSyntheticTraces_atNormalAndGameRates() {
+        // SENSOR_DELAY_NORMAL (~5 Hz, 2 s window) and GAME (~50 Hz, 2 s window)
+        int[][] rates = {{5, 10}, {50, 100}};
+        for (int[] rate : rates) {
+            assertEquals(ActivityType.STATIONARY, classify(rate[0], rate[1], 0, 0, 0.1));
+            assertEquals(ActivityType.WALKING, classify(rate[0], rate[1], 1.8, 2.0, 0.15));
+            assertEquals(ActivityType.RUNNING, classify(rate[0], rate[1], 2.8, 6.0, 0.4));
+        }
+    }
+
+    @Test
+    public void fastCadenceWithModerateBounce_isRunning() {
+        assertEquals(ActivityType.RUNNING, classify(50, 100, 3.0, 2.0, 0.1));
+    }
+
+    @Test
+    public void decisionsOnlyOnHop_andUnknownUntilWindowFull() {
+        ActivityClassifier classifier = new ActivityClassifier(10, 5);
+        int decisions = 0;
+        for (int i = 0; i < 9; i++) {
+            assertFalse(classifier.onSample(i * 200_000_000L, 0f, 9.81f, 0f));
+        }
+        assertEquals(ActivityType.UNKNOWN, classifier.getActivity());
+        for (int i = 9; i < 40; i++) {
+            if (classifier.onSample(i * 200_000_000L, 0f, 9.81f, 0f)) {
+                decisions++;
+            }
+        }
+        // First decision when the window fills, then one every 5 samples
+        assertEquals(7, decisions);
+        assertEquals(ActivityType.STATIONARY, classifier.getActivity());
+    }
+
+    @Test
+    public void incrementalFeatures_matchDirectComputation() {
+        int window = 64;
+        ActivityClassifier classifier = new ActivityClassifier(window, 1);
+        Random random = new Random(3);
+        float[] recent = new float[window];
+
+        // Long enough to pass several resyncs of the running sums
+        for (int i = 0; i < 20_000; i++) {
+            float z = (float) (9.81 + 3 * random.nextGaussian());
+            classifier.onSample(i * 20_000_000L, 0f, 0f, z);
+            // The window holds magnitudes packed to the scale
+            recent[i % window] = Math.round(Math.abs(z) / classifier.getScale()) * classifier.getScale();
+        }
+
+        double sum = 0;
+        for (float m : recent) {
+            sum += m;
+        }
+        double mean = sum / window;
+        double squares = 0;
+        for (float m : recent) {
+            squares += (m - mean) * (m - mean);
+        }
+        assertEquals(mean, classifier.getMean(), 1e-4);
+        assertEquals(squares / window, classifier.getVariance(), 1e-3);
+    }
+
+    private static ActivityType classify(int rateHz, int window, double stepHz,
+                                         double amplitude, double noise) {
+        ActivityClassifier classifier = new ActivityClassifier(window);
+        Random random = new Random(11);
+        long period = 1_000_000_000L / rateHz;
+        for (int i = 0; i < 30 * rateHz; i++) {
+            double t = (double) i / rateHz;
+            double bounce = amplitude * Math.sin(2 * Math.PI * stepHz * t);
+            classifier.onSample(i * period,
+                    (float) (0.2 * bounce + noise * random.nextGaussian()),
+                    (float) (9.81 + bounce + noise * random.nextGaussian()),
+                    (float) (1.0 + noise * random.nextGaussian()));
+        }
+        return classifier.getActivity();
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.healthsensorpro.data.processing;
+
+import com.example.healthsensorpro.data.model.ActivityType;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ActivityWindowTest {
+    @Test
+    public void emptyWindow_isUnknown() {
+        ActivityWindow window = new ActivityWindow(5);
+        assertEquals(ActivityType.UNKNOWN, window.getMode());
+    }
+
+    @Test
+    public void evictingTheLeader_promotesNewMajority() {
+        ActivityWindow window = new ActivityWindow(3);
+        window.add(ActivityType.RUNNING);
+        window.add(ActivityType.RUNNING);
+        window.add(ActivityType.WALKING);
+        assertEquals(ActivityType.RUNNING, window.getMode());
+
+        window.add(ActivityType.WALKING); // evicts a RUNNING
+        assertEquals(ActivityType.WALKING, window.getMode());
+    }
+
+    @Test
+    public void runningMode_matchesFullRecount() {
+        int length = 7;
+        ActivityWindow window = new ActivityWindow(length);
+        ArrayDeque<ActivityType> reference = new ArrayDeque<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 10_000; i++) {
+            ActivityType next = ActivityType.fromCode(1 + random.nextInt(3));
+            window.add(next);
+            reference.addLast(next);
+            if (reference.size() > length) {
+                reference.removeFirst();
+            }
+
+            int[] counts = new int[ActivityType.count()];
+            for (ActivityType type : reference) {
+                counts[type.getCode()]++;
+            }
+            int max = 0;
+            for (int count : counts) {
+                max = Math.max(max, count);
+            }
+            assertEquals(max, counts[window.getMode().getCode()]);
+        }
+    }
+}
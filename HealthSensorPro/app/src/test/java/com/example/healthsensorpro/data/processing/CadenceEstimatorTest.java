@@ -0,0 +1,45 @@
+package com.example.healthsensorpro.data.processing;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CadenceEstimatorTest {
+    @Test
+    public void walkingAndRunning_cadenceWithinTwoStepsPerMinute() {
+        for (int rateHz : new int[] {20, 50, 200}) {
+            assertEquals("walking at " + rateHz + " Hz", 108f, run(rateHz, 1.8, 2.0, 0.15, 0), 2f);
+            assertEquals("running at " + rateHz + " Hz", 168f, run(rateHz, 2.8, 6.0, 0.4, 0), 2f);
+        }
+    }
+
+    @Test
+    public void jitteredTimestamps_stillTracked() {
+        // +-30% jitter on the sample spacing
+        assertEquals(132f, run(50, 2.2, 2.5, 0.2, 0.3), 2f);
+    }
+
+    @Test
+    public void stationary_reportsNoCadence() {
+        assertEquals(0f, run(50, 0, 0, 0.1, 0), 0f);
+    }
+
+    private static float run(int rateHz, double stepHz, double amplitude, double noise, double jitter) {
+        CadenceEstimator estimator = new CadenceEstimator();
+        Random random = new Random(5);
+        long period = 1_000_000_000L / rateHz;
+        long timestamp = 0;
+        for (int i = 0; i < 30 * rateHz; i++) {
+            timestamp += (long) (period * (1 + jitter * (2 * random.nextDouble() - 1)));
+            double t = timestamp / 1e9;
+            double bounce = amplitude * Math.sin(2 * Math.PI * stepHz * t);
+            estimator.onSample(timestamp,
+                    (float) (0.2 * bounce + noise * random.nextGaussian()),
+                    (float) (9.81 + bounce + noise * random.nextGaussian()),
+                    (float) (1.0 + noise * random.nextGaussian()));
+        }
+        return estimator.getCadence();
+    }
+}
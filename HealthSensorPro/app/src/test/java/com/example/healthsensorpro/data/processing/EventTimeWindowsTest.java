@@ -0,0 +1,178 @@
+package com.example.healthsensorpro.data.processing;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class EventTimeWindowsTest {
+    private static final long MILLI = 1_000_000L;
+    private static final long SECOND = 1000 * MILLI;
+
+    @Test
+    public void tumblingWindows_inOrder_areEmittedOnceTheWatermarkPasses() {
+        EventTimeWindows windows = new EventTimeWindows(SECOND, SECOND, 200 * MILLI);
+        List<WindowResult> results = collect(windows);
+
+        // 50 Hz, value = whole seconds
+        for (long t = 0; t < 3 * SECOND; t += 20 * MILLI) {
+            windows.add(t, t / SECOND);
+            // [0, 1 s) closes at 1.2 s
+            assertEquals(t >= 1200 * MILLI ? 1 : 0, Math.min(1, results.size()));
+        }
+        assertEquals(2, results.size());
+        windows.flush();
+
+        assertEquals(3, results.size());
+        for (int i = 0; i < 3; i++) {
+            WindowResult window = results.get(i);
+            assertEquals(i * SECOND, window.getStart());
+            assertEquals((i + 1) * SECOND, window.getEnd());
+            assertEquals(50, window.getCount());
+            assertEquals(i, window.getMean(), 1e-9);
+            assertEquals(0.0, window.getVariance(), 1e-9);
+            assertEquals(i, window.getMin(), 0f);
+            assertEquals(i, window.getMax(), 0f);
+        }
+        assertEquals(0L, windows.getLateCount());
+    }
+
+    @Test
+    public void eventOlderThanTheWatermark_joinsItsOpenWindow() {
+        EventTimeWindows windows = new EventTimeWindows(10, 10, 2);
+        List<WindowResult> results = collect(windows);
+
+        // The watermark is 6 after t = 8, but [0, 10) is still open
+        assertTrue(windows.add(1, 1f));
+        assertTrue(windows.add(8, 8f));
+        assertTrue(windows.add(5, 5f));
+        assertEquals(0L, windows.getLateCount());
+
+        // Closes [0, 10); only now is t = 5 too late
+        assertTrue(windows.add(12, 12f));
+        assertFalse(windows.add(5, 5f));
+        assertEquals(1L, windows.getLateCount());
+        assertEquals(1, results.size());
+        assertEquals(0, results.get(0).getStart());
+        assertEquals(3, results.get(0).getCount());
+        assertEquals(14.0, results.get(0).getSum(), 0.0);
+    }
+
+    @Test
+    public void reorderedBursts_giveTheSameSlidingWindows() {
+        long lateness = 700 * MILLI;
+        EventTimeWindows live = new EventTimeWindows(2 * SECOND, 500 * MILLI, lateness);
+        EventTimeWindows batched = new EventTimeWindows(2 * SECOND, 500 * MILLI, lateness);
+        List<WindowResult> expected = collect(live);
+        List<WindowResult> actual = collect(batched);
+
+        // Bursts of 20 samples, shuffled, with the bursts themselves swapped
+        // in pairs: never more than 600 ms late
+        Random random = new Random(3);
+        long period = 10 * MILLI;
+        int burst = 20;
+        long[] previous = null;
+        for (long from = 0; from < 30 * SECOND; from += burst * period) {
+            long[] current = new long[burst];
+            for (int i = 0; i < current.length; i++) {
+                current[i] = from + i * period;
+                live.add(current[i], value(current[i]));
+            }
+            for (int i = current.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                long swap = current[i];
+                current[i] = current[j];
+                current[j] = swap;
+            }
+            if (previous == null) {
+                previous = current;
+            } else {
+                addAll(batched, current);
+                addAll(batched, previous);
+                previous = null;
+            }
+        }
+        live.flush();
+        batched.flush();
+
+        assertEquals(0L, batched.getLateCount());
+        // Windows from -1.5 s to 29.5 s, every half second
+        assertEquals(63, actual.size());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            WindowResult e = expected.get(i);
+            WindowResult a = actual.get(i);
+            assertEquals(e.getStart(), a.getStart());
+            assertEquals(e.getCount(), a.getCount());
+            assertEquals(e.getMean(), a.getMean(), 1e-9);
+            assertEquals(e.getVariance(), a.getVariance(), 1e-6);
+            assertEquals(e.getMin(), a.getMin(), 0f);
+            assertEquals(e.getMax(), a.getMax(), 0f);
+            if (i > 0) {
+                assertEquals(500 * MILLI, a.getStart() - actual.get(i - 1).getStart());
+            }
+        }
+        WindowResult full = actual.get(10);
+        assertEquals(2 * SECOND, full.getEnd() - full.getStart());
+        assertEquals(200, full.getCount());
+    }
+
+    @Test
+    public void eventsBeyondTheLateness_areDroppedAndWindowsNeverRepeat() {
+        EventTimeWindows windows = new EventTimeWindows(SECOND, SECOND, 100 * MILLI);
+        List<WindowResult> results = collect(windows);
+
+        windows.add(500 * MILLI, 1f);
+        windows.add(1500 * MILLI, 2f);
+        assertEquals(1, results.size());
+        assertEquals(1, results.get(0).getCount());
+
+        // Older than the watermark at 1.4 s; its window has closed
+        assertFalse(windows.add(999 * MILLI, 9f));
+        assertTrue(windows.add(1400 * MILLI, 4f));
+        assertEquals(1L, windows.getLateCount());
+
+        // An hour later: the empty windows in between are skipped
+        windows.add(3600 * SECOND, 5f);
+        assertEquals(2, results.size());
+        WindowResult second = results.get(1);
+        assertEquals(SECOND, second.getStart());
+        assertEquals(2, second.getCount());
+        assertEquals(3.0, second.getMean(), 1e-9);
+        assertEquals(1.0, second.getVariance(), 1e-9);
+
+        windows.flush();
+        assertEquals(3, results.size());
+        assertEquals(3600 * SECOND, results.get(2).getStart());
+        // Its window is gone
+        assertFalse(windows.add(3600 * SECOND + 50 * MILLI, 6f));
+        assertTrue(windows.add(3601 * SECOND, 7f));
+        windows.flush();
+        assertEquals(4, results.size());
+        assertEquals(3601 * SECOND, results.get(3).getStart());
+        assertEquals(4L, windows.getWindowCount());
+    }
+
+    private static float value(long timestampNanos) {
+        return (float) Math.sin(timestampNanos / (double) SECOND);
+    }
+
+    private static void addAll(EventTimeWindows windows, long[] timestamps) {
+        for (long t : timestamps) {
+            assertTrue(windows.add(t, value(t)));
+        }
+    }
+
+    private static List<WindowResult> collect(EventTimeWindows windows) {
+        List<WindowResult> results = new ArrayList<>();
+        windows.setListener(window -> {
+            WindowResult copy = new WindowResult();
+            copy.copyFrom(window);
+            results.add(copy);
+        });
+        return results;
+    }
+}
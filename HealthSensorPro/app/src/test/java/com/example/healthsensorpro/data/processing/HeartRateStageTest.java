@@ -0,0 +1,126 @@
+package com.example.healthsensorpro.data.processing;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HeartRateStageTest {
+    private static final long SECOND = 1_000_000_000L;
+    private static final long MILLI = 1_000_000L;
+
+    @Test
+    public void statistics_doNotDependOnTheReportingRate() {
+        // The same minute at 60 bpm then minute at 120 bpm, reported every
+        // 5 s and every 100 ms
+        HeartRateStage sparse = new HeartRateStage();
+        HeartRateStage dense = new HeartRateStage();
+        report(sparse, 0, 60 * SECOND, 60, 5 * SECOND);
+        report(sparse, 60 * SECOND, 120 * SECOND, 120, 5 * SECOND);
+        report(dense, 0, 60 * SECOND, 60, 100 * MILLI);
+        report(dense, 60 * SECOND, 120 * SECOND, 120, 100 * MILLI);
+        sparse.onHeartRate(120 * SECOND, 120);
+        dense.onHeartRate(120 * SECOND, 120);
+
+        assertEquals(dense.getAverage(), sparse.getAverage(), 1e-3);
+        // Two time constants into the 120 bpm minute
+        assertEquals(120 - 60 * Math.exp(-2), sparse.getAverage(), 0.01);
+        for (int zone = 0; zone < HeartRateStage.ZONE_COUNT; zone++) {
+            assertEquals(dense.getZoneNanos(zone), sparse.getZoneNanos(zone));
+        }
+        assertEquals(60, sparse.getMin(), 0);
+        assertEquals(120, sparse.getMax(), 0);
+    }
+
+    @Test
+    public void zones_creditTimeHeldUpToTheLimit() {
+        HeartRateStage stage = new HeartRateStage();
+        stage.setMaxHeartRate(200);
+        stage.onHeartRate(0, 95);              // 47.5%: zone 0
+        stage.onHeartRate(4 * SECOND, 150);    // 75%: zone 3
+        // The sensor went quiet for a minute
+        stage.onHeartRate(64 * SECOND, 185);   // 92.5%: zone 5
+        stage.onHeartRate(65 * SECOND, 0);     // lost contact
+        stage.onHeartRate(90 * SECOND, 0);
+
+        assertEquals(4 * SECOND, stage.getZoneNanos(0));
+        assertEquals(HeartRateStage.MAX_HOLD_NANOS, stage.getZoneNanos(3));
+        assertEquals(SECOND, stage.getZoneNanos(5));
+        assertTrue(Float.isNaN(stage.getHeartRate()));
+        assertEquals(95, stage.getMin(), 0);
+    }
+
+    @Test
+    public void rmssd_ofCleanBeatsSkipsEctopicOnes() {
+        HeartRateStage stage = new HeartRateStage();
+        long t = 0;
+        // RR intervals alternating 800 and 850 ms: every difference is 50 ms
+        for (int beat = 0; beat < 10; beat++) {
+            t += beat % 2 == 0 ? 800 * MILLI : 850 * MILLI;
+            stage.onHeartBeat(t, 1f);
+        }
+        assertTrue(Float.isNaN(stage.getRmssd()));
+        for (int beat = 10; beat < 40; beat++) {
+            t += beat % 2 == 0 ? 800 * MILLI : 850 * MILLI;
+            stage.onHeartBeat(t, 1f);
+            if (beat == 30) {
+                // An extra beat halfway through an interval
+                stage.onHeartBeat(t + 420 * MILLI, 1f);
+                t += 800 * MILLI;
+                stage.onHeartBeat(t, 1f);
+            }
+        }
+        assertEquals(50, stage.getRmssd(), 1e-3);
+
+        // A minute and more of a perfectly steady rhythm pushes them all out
+        for (int beat = 0; beat < 80; beat++) {
+            t += 800 * MILLI;
+            stage.onHeartBeat(t, 1f);
+        }
+        assertEquals(0, stage.getRmssd(), 0);
+    }
+
+    @Test
+    public void readingsStopping_expireTheHeartRateAndHrv() {
+        HeartRateStage stage = new HeartRateStage();
+        stage.setMaxHeartRate(200);
+        long t = 0;
+        for (int beat = 0; beat < 40; beat++) {
+            t += beat % 2 == 0 ? 800 * MILLI : 850 * MILLI;
+            stage.onHeartBeat(t, 1f);
+            stage.onHeartRate(t, 72);
+        }
+        assertEquals(72, stage.getHeartRate(), 0);
+        assertEquals(50, stage.getRmssd(), 1e-3);
+
+        // Off the wrist: only the accelerometer's event time goes on
+        stage.advanceTo(t + HeartRateStage.MAX_HOLD_NANOS);
+        assertEquals(72, stage.getHeartRate(), 0);
+        stage.advanceTo(t + HeartRateStage.MAX_HOLD_NANOS + 1);
+        assertTrue(Float.isNaN(stage.getHeartRate()));
+        long zone = stage.getZoneNanos(stage.zoneOf(72));
+        assertEquals(t - 800 * MILLI + HeartRateStage.MAX_HOLD_NANOS, zone);
+        assertFalse(Float.isNaN(stage.getRmssd()));
+
+        stage.advanceTo(t + HeartRateStage.RMSSD_WINDOW_NANOS);
+        assertTrue(Float.isNaN(stage.getRmssd()));
+        // Expiring credits the hold once, not again on the next reading
+        stage.onHeartRate(t + 2 * HeartRateStage.RMSSD_WINDOW_NANOS, 72);
+        assertEquals(zone, stage.getZoneNanos(stage.zoneOf(72)));
+    }
+
+    @Test
+    public void pipeline_stopsShowingAHeartRateThatExpired() {
+        SensorPipeline pipeline = new SensorPipeline(true);
+        pipeline.onHeartRate(SECOND, 72);
+        pipeline.onAccelerometer(2 * SECOND, 0f, 0f, 9.81f);
+        assertTrue(pipeline.acquireSnapshot().hasHeartRate());
+        pipeline.onAccelerometer(SECOND + HeartRateStage.MAX_HOLD_NANOS + MILLI, 0f, 0f, 9.81f);
+        assertFalse(pipeline.acquireSnapshot().hasHeartRate());
+    }
+
+    private static void report(HeartRateStage stage, long from, long to, float bpm, long period) {
+        for (long t = from; t < to; t += period) {
+            stage.onHeartRate(t, bpm);
+        }
+    }
+}
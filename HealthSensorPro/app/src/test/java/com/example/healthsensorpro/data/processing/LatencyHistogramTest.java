@@ -0,0 +1,137 @@
+package com.example.healthsensorpro.data.processing;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void buckets_coverEveryValueWithoutGaps() {
+        assertEquals(0L, LatencyHistogram.lowerBound(0));
+        for (int bucket = 1; bucket < LatencyHistogram.BUCKET_COUNT; bucket++) {
+            assertEquals(LatencyHistogram.upperBound(bucket - 1) + 1, LatencyHistogram.lowerBound(bucket));
+        }
+
+        Random random = new Random(1);
+        for (int i = 0; i < 100_000; i++) {
+            long value = random.nextLong() >>> (1 + random.nextInt(63));
+            int bucket = LatencyHistogram.bucketFor(value);
+            assertTrue(value >= LatencyHistogram.lowerBound(bucket));
+            assertTrue(value <= LatencyHistogram.upperBound(bucket));
+            if (bucket < LatencyHistogram.BUCKET_COUNT - 1) {
+                // Bucket width is at most 1/8 of its values
+                long width = LatencyHistogram.upperBound(bucket) - LatencyHistogram.lowerBound(bucket) + 1;
+                assertTrue(width <= Math.max(1L, LatencyHistogram.lowerBound(bucket) / 8));
+            }
+        }
+        assertEquals(0, LatencyHistogram.bucketFor(-5L));
+    }
+
+    @Test
+    public void percentiles_areWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0L, histogram.getPercentile(0.5));
+
+        // 1..100 ms, evenly
+        for (int i = 1; i <= 100_000; i++) {
+            histogram.record(i * 1_000L);
+        }
+        assertEquals(100_000L, histogram.getCount());
+        assertEquals(50e6, histogram.getPercentile(0.5), 50e6 * 0.125);
+        assertEquals(99e6, histogram.getPercentile(0.99), 99e6 * 0.125);
+        assertTrue(histogram.getPercentile(1.0) >= 100_000_000L);
+
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(LatencyHistogram.MAX_TRACKABLE_NANOS, histogram.getPercentile(1.0));
+
+        histogram.reset();
+        assertEquals(0L, histogram.getCount());
+    }
+
+    @Test
+    public void tracker_recordsTheAgeOfEventsPerStage() throws Exception {
+        long[] now = {0L};
+        LatencyTracker tracker = new LatencyTracker(() -> now[0], 1);
+        SensorPipeline pipeline = new SensorPipeline(true);
+        pipeline.setLatencyTracker(tracker);
+
+        // Main thread stages have nothing to measure before a publish
+        tracker.recordForPublished(LatencyTracker.Stage.POST);
+        assertEquals(0L, tracker.getHistogram(LatencyTracker.Stage.POST).getCount());
+
+        for (int i = 0; i < 100; i++) {
+            long timestamp = i * 20_000_000L;
+            now[0] = timestamp + 3_000_000L;
+            pipeline.onAccelerometer(timestamp, 0f, 9.81f, 0f);
+        }
+        AccelerometerBatch batch = new AccelerometerBatch(10);
+        for (int i = 0; i < 10; i++) {
+            batch.add(2_000_000_000L + i * 20_000_000L, 0f, 9.81f, 0f);
+        }
+        // Delivered 1 s after the first sample of the burst
+        now[0] = 3_000_000_000L;
+        pipeline.onAccelerometerBatch(batch);
+        now[0] = 3_100_000_000L;
+        tracker.recordForPublished(LatencyTracker.Stage.POST);
+
+        LatencyHistogram ingest = tracker.getHistogram(LatencyTracker.Stage.INGEST);
+        assertEquals(110L, ingest.getCount());
+        assertEquals(3e6, ingest.getPercentile(0.5), 3e6 * 0.125);
+        assertEquals(1e9, ingest.getPercentile(1.0), 1e9 * 0.125);
+        assertEquals(101L, tracker.getHistogram(LatencyTracker.Stage.CLASSIFY).getCount());
+        assertEquals(101L, tracker.getHistogram(LatencyTracker.Stage.AGGREGATE).getCount());
+        // Measured from the newest event of the burst
+        assertEquals(920e6, tracker.getHistogram(LatencyTracker.Stage.POST).getPercentile(1.0), 920e6 * 0.125);
+
+        StringBuilder csv = new StringBuilder();
+        tracker.exportCsv(csv);
+        assertTrue(csv.toString().startsWith("stage,count,"));
+        assertTrue(csv.toString().contains("\nINGEST,110,"));
+        assertTrue(tracker.dump().contains("AGGREGATE"));
+    }
+
+    @Test
+    public void tracker_samplesOneEventInN() {
+        long[] now = {0L};
+        LatencyTracker tracker = new LatencyTracker(() -> now[0], 8);
+        SensorPipeline pipeline = new SensorPipeline(true);
+        pipeline.setLatencyTracker(tracker);
+        for (int i = 0; i < 80; i++) {
+            pipeline.onAccelerometer(i * 20_000_000L, 0f, 9.81f, 0f);
+        }
+        assertEquals(10L, tracker.getHistogram(LatencyTracker.Stage.INGEST).getCount());
+        assertEquals(10L, tracker.getHistogram(LatencyTracker.Stage.AGGREGATE).getCount());
+
+        try {
+            new LatencyTracker(() -> 0L, 3);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void mainThreadStages_measureTheNewestEventEvenIfUnsampled() {
+        long[] now = {0L};
+        LatencyTracker tracker = new LatencyTracker(() -> now[0], 8);
+        SensorPipeline pipeline = new SensorPipeline(true);
+        pipeline.setLatencyTracker(tracker);
+
+        // Events 0 and 8 are sampled; 9 is the newest
+        for (int i = 0; i < 10; i++) {
+            pipeline.onAccelerometer(i * 20_000_000L, 0f, 9.81f, 0f);
+        }
+        now[0] = 9 * 20_000_000L + 2_000_000L;
+        tracker.recordForPublished(LatencyTracker.Stage.POST);
+        assertEquals(2e6, tracker.getHistogram(LatencyTracker.Stage.POST).getPercentile(1.0), 2e6 * 0.125);
+
+        // A heart rate publish is newer still
+        pipeline.onHeartRate(190_000_000L, 72f);
+        now[0] = 193_000_000L;
+        tracker.recordForPublished(LatencyTracker.Stage.BIND);
+        assertEquals(3e6, tracker.getHistogram(LatencyTracker.Stage.BIND).getPercentile(1.0), 3e6 * 0.125);
+        assertEquals(2L, tracker.getHistogram(LatencyTracker.Stage.AGGREGATE).getCount());
+    }
+}
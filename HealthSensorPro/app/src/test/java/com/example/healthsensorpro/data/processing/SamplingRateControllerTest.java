@@ -0,0 +1,86 @@
+package com.example.healthsensorpro.data.processing;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.healthsensorpro.data.processing.SamplingRateController.Rate.HIGH;
+import static com.example.healthsensorpro.data.processing.SamplingRateController.Rate.LOW;
+import static org.junit.Assert.*;
+
+public class SamplingRateControllerTest {
+    private static final long SECOND = 1_000_000_000L;
+
+    private final List<SamplingRateController.Rate> changes = new ArrayList<>();
+    // Up after 1 s of movement, down after 10 s still, at most one change per 3 s
+    private final SamplingRateController controller =
+            new SamplingRateController(HIGH, SECOND, 10 * SECOND, 3 * SECOND, changes::add);
+
+    @Test
+    public void dropsOnlyAfterSustainedStillness() {
+        feed(0, 9, false);
+        assertTrue(changes.isEmpty());
+        // A brief movement restarts the still period
+        feed(9, 10, true);
+        feed(10, 19, false);
+        assertTrue(changes.isEmpty());
+        feed(19, 21, false);
+        assertEquals(List.of(LOW), changes);
+        assertEquals(LOW, controller.getRate());
+    }
+
+    @Test
+    public void flickeringActivityDoesNotThrash() {
+        feed(0, 11, false);
+        assertEquals(List.of(LOW), changes);
+
+        // Moving in short bursts never lasts long enough to ramp up
+        for (int second = 11; second < 60; second += 2) {
+            feed(second, second + 1, true);
+            feed(second + 1, second + 2, false);
+        }
+        assertEquals(List.of(LOW), changes);
+
+        // Sustained movement does, and dropping again waits for the full delay
+        feed(60, 62, true);
+        assertEquals(List.of(LOW, HIGH), changes);
+        feed(62, 70, false);
+        assertEquals(List.of(LOW, HIGH), changes);
+        assertEquals(2, controller.getRateChanges());
+    }
+
+    @Test
+    public void minimumDwellDelaysAQuickReturn() {
+        SamplingRateController eager = new SamplingRateController(LOW, 0L, 0L, 3 * SECOND, changes::add);
+        eager.onEvents(0L, 1, true);
+        eager.onEvents(SECOND, 1, false);
+        eager.onEvents(2 * SECOND, 1, false);
+        assertEquals(List.of(HIGH), changes);
+        eager.onEvents(3 * SECOND, 1, false);
+        assertEquals(List.of(HIGH, LOW), changes);
+    }
+
+    @Test
+    public void countsTimeAndEventsPerRate() {
+        // 50 Hz for 20 s still: drops to LOW at 10 s
+        for (int i = 0; i <= 1000; i++) {
+            controller.onEvents(i * 20_000_000L, 1, false);
+        }
+        // Then 2 Hz for 60 s
+        for (int i = 1; i <= 120; i++) {
+            controller.onEvents(20 * SECOND + i * 500_000_000L, 1, false);
+        }
+        assertEquals(10 * SECOND, controller.getNanosAt(HIGH));
+        assertEquals(70 * SECOND, controller.getNanosAt(LOW));
+        assertEquals(501, controller.getEventsAt(HIGH));
+        assertEquals(500 + 120, controller.getEventsAt(LOW));
+    }
+
+    // One event per 100 ms over [fromSecond, toSecond)
+    private void feed(int fromSecond, int toSecond, boolean moving) {
+        for (long t = fromSecond * SECOND; t < toSecond * SECOND; t += SECOND / 10) {
+            controller.onEvents(t, 1, moving);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.healthsensorpro.data.processing;
+
+import com.example.healthsensorpro.data.model.HealthMetrics;
+import com.example.healthsensorpro.data.model.SensorData;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+public class SensorPipelineAllocationTest {
+    private static final long PERIOD_NANOS = 20_000_000L; // 50 Hz
+    // Heart rate callbacks come once per 50 samples; this gives them 20000
+    // calls, past C2's compile thresholds
+    private static final int WARMUP_SAMPLES = 1_000_000;
+    private static final int SAMPLES = 500_000;          // ~2.8 hours at 50 Hz
+
+    @Test
+    public void steadyStateMonitoring_allocatesNothing() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeAllocationCounting(threads);
+        long threadId = Thread.currentThread().getId();
+
+        SensorPipeline pipeline = new SensorPipeline(true);
+        HealthMetrics metrics = new HealthMetrics();
+        SensorData data = new SensorData();
+
+        // Warm up so class loading and JIT tier transitions are not counted. A
+        // method first queued for C2 resolves its class's string constants on
+        // the calling thread, which shows up here as a few hundred bytes.
+        replay(pipeline, metrics, data, 0, WARMUP_SAMPLES);
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        replay(pipeline, metrics, data, WARMUP_SAMPLES, WARMUP_SAMPLES + SAMPLES);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue("steps should have been counted", metrics.getTotalSteps() > 0);
+        assertFalse("HRV should have been estimated", Float.isNaN(metrics.getHeartRateVariability()));
+        assertEquals("bytes allocated during replay", 0L, allocated);
+    }
+
+    // Producer and consumer share this thread here; the hand-off is the same
+    private static void replay(SensorPipeline pipeline, HealthMetrics metrics, SensorData data,
+                               int from, int to) {
+        for (int i = from; i < to; i++) {
+            long timestamp = i * PERIOD_NANOS;
+            double t = timestamp / 1e9;
+            // Alternate a minute of walking with a minute of standing still
+            double bounce = (i / 3000) % 2 == 0 ? 1.5 + 0.8 * Math.sin(2 * Math.PI * 2.0 * t) : 0.0;
+            pipeline.onAccelerometer(timestamp, 0.3f, 0.2f, (float) (9.81 + bounce));
+
+            // A beat every 0.8 s with a little variability, a reading every second
+            if (i % 40 == 0) {
+                pipeline.onHeartBeat(timestamp + (i / 40 % 3) * 10_000_000L, 1f);
+            }
+            if (i % 50 == 0) {
+                pipeline.onHeartRate(timestamp, 75f + (i / 50) % 10);
+                pipeline.readHealthMetrics(metrics);
+                data.copyFrom(pipeline.acquireSnapshot());
+            }
+        }
+    }
+
+    private static void assumeAllocationCounting(com.sun.management.ThreadMXBean threads) {
+        org.junit.Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+}
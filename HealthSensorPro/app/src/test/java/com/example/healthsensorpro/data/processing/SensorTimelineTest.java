@@ -0,0 +1,174 @@
+package com.example.healthsensorpro.data.processing;
+
+import com.example.healthsensorpro.data.source.SensorTypes;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SensorTimelineTest {
+    private static final long MILLI = 1_000_000L;
+    private static final long SECOND = 1000 * MILLI;
+
+    @Test
+    public void streamsAtDifferentRates_areAlignedToTheReference() {
+        SensorTimeline timeline = newTimeline(64, 100 * MILLI);
+        List<double[]> frames = collect(timeline);
+
+        // Accelerometer every 10 ms, gyroscope every 15 ms from 2 ms, heart
+        // rate every second; each carries a ramp of its own timestamp
+        long end = 3 * SECOND;
+        long accelerometer = 0;
+        long gyroscope = 2 * MILLI;
+        long heartRate = 500 * MILLI;
+        while (accelerometer < end) {
+            long next = Math.min(accelerometer, Math.min(gyroscope, heartRate));
+            if (next == gyroscope) {
+                timeline.onSample(SensorTypes.GYROSCOPE, gyroscope, ramp(gyroscope));
+                gyroscope += 15 * MILLI;
+            } else if (next == heartRate) {
+                timeline.onSample(SensorTypes.HEART_RATE, heartRate, new float[] {heartRate / (float) SECOND});
+                heartRate += SECOND;
+            } else {
+                timeline.onSample(SensorTypes.ACCELEROMETER, accelerometer, ramp(accelerometer));
+                accelerometer += 10 * MILLI;
+            }
+        }
+        // The last frames need the gyroscope sample after them
+        timeline.onSample(SensorTypes.GYROSCOPE, gyroscope, ramp(gyroscope));
+        timeline.flush();
+
+        assertEquals(300, frames.size());
+        assertEquals(0L, timeline.getDroppedCount());
+        for (double[] frame : frames) {
+            long timestamp = (long) frame[0];
+            assertEquals(timestamp / (float) SECOND, frame[1], 1e-6);
+            // The first frame comes before any gyroscope sample
+            assertEquals(Math.max(timestamp, 2 * MILLI) / (float) SECOND, frame[2], 1e-5);
+            if (timestamp < 500 * MILLI) {
+                assertTrue(Double.isNaN(frame[3]));
+            } else {
+                long held = 500 * MILLI + (timestamp - 500 * MILLI) / SECOND * SECOND;
+                assertEquals(held / (float) SECOND, frame[3], 1e-6);
+                assertEquals(timestamp - held, (long) frame[4]);
+            }
+        }
+    }
+
+    @Test
+    public void bursts_deliveredOneSensorAfterTheOther_giveTheSameFrames() {
+        SensorTimeline interleaved = newTimeline(256, 2 * SECOND);
+        SensorTimeline bursts = newTimeline(256, 2 * SECOND);
+        List<double[]> expected = collect(interleaved);
+        List<double[]> actual = collect(bursts);
+
+        for (int burst = 0; burst < 6; burst++) {
+            long from = burst * SECOND;
+            for (long t = from; t < from + SECOND; t += 20 * MILLI) {
+                interleaved.onSample(SensorTypes.ACCELEROMETER, t, ramp(t));
+                interleaved.onSample(SensorTypes.GYROSCOPE, t + 5 * MILLI, ramp(t + 5 * MILLI));
+            }
+            if (burst % 2 == 0) {
+                // Frames wait for the gyroscope burst
+                accelerometerBurst(bursts, from);
+                gyroscopeBurst(bursts, from, false);
+            } else {
+                // Out of order within the gyroscope burst, which comes first
+                gyroscopeBurst(bursts, from, true);
+                accelerometerBurst(bursts, from);
+            }
+        }
+        interleaved.flush();
+        bursts.flush();
+
+        assertEquals(300, actual.size());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i), actual.get(i), 0);
+        }
+    }
+
+    @Test
+    public void stalledOrRunawayStreams_stayWithinCapacity() {
+        int capacity = 32;
+        SensorTimeline timeline = newTimeline(capacity, 100 * MILLI);
+        List<double[]> frames = collect(timeline);
+
+        // The gyroscope stops after a second: frames wait at most 100 ms for it
+        // and then hold its last value
+        for (long t = 0; t < 3 * SECOND; t += 10 * MILLI) {
+            timeline.onSample(SensorTypes.ACCELEROMETER, t, ramp(t));
+            if (t < SECOND) {
+                timeline.onSample(SensorTypes.GYROSCOPE, t, ramp(t));
+            }
+            assertTrue(timeline.getBufferedCount() <= 2 * capacity);
+        }
+        assertTrue(frames.size() >= 289);
+        double[] last = frames.get(frames.size() - 1);
+        assertEquals(0.99f, last[2], 1e-6);
+
+        // Then floods in without the accelerometer
+        for (long t = 3 * SECOND; t < 4 * SECOND; t += MILLI) {
+            timeline.onSample(SensorTypes.GYROSCOPE, t, ramp(t));
+            assertTrue(timeline.getBufferedCount() <= 2 * capacity);
+        }
+        assertTrue(timeline.getDroppedCount() > 900);
+
+        // Late reference samples cannot go back in time
+        long dropped = timeline.getDroppedCount();
+        timeline.onSample(SensorTypes.ACCELEROMETER, SECOND, ramp(SECOND));
+        timeline.flush();
+        assertEquals(dropped + 1, timeline.getDroppedCount());
+        assertEquals(timeline.getFrameCount(), frames.size());
+    }
+
+    private static void accelerometerBurst(SensorTimeline timeline, long from) {
+        for (long t = from; t < from + SECOND; t += 20 * MILLI) {
+            timeline.onSample(SensorTypes.ACCELEROMETER, t, ramp(t));
+        }
+    }
+
+    private static void gyroscopeBurst(SensorTimeline timeline, long from, boolean swapPairs) {
+        for (long t = from + 5 * MILLI; t < from + SECOND; t += 40 * MILLI) {
+            long first = swapPairs ? t + 20 * MILLI : t;
+            long second = swapPairs ? t : t + 20 * MILLI;
+            timeline.onSample(SensorTypes.GYROSCOPE, first, ramp(first));
+            timeline.onSample(SensorTypes.GYROSCOPE, second, ramp(second));
+        }
+    }
+
+    private static SensorTimeline newTimeline(int capacity, long maxWaitNanos) {
+        SensorTimeline timeline = new SensorTimeline(SensorTypes.ACCELEROMETER, 3, capacity, maxWaitNanos);
+        assertEquals(1, timeline.addStream(SensorTypes.GYROSCOPE, 3, SensorTimeline.Alignment.INTERPOLATE));
+        assertEquals(2, timeline.addStream(SensorTypes.HEART_RATE, 1, SensorTimeline.Alignment.HOLD));
+        return timeline;
+    }
+
+    // Timestamp in seconds on every axis
+    private static float[] ramp(long timestampNanos) {
+        float seconds = timestampNanos / (float) SECOND;
+        return new float[] {seconds, seconds, seconds};
+    }
+
+    // timestamp, accelerometer x, gyroscope x, heart rate (NaN if missing),
+    // heart rate age
+    private static List<double[]> collect(SensorTimeline timeline) {
+        List<double[]> frames = new ArrayList<>();
+        timeline.setFrameListener(frame -> {
+            int heartRate = frame.indexOf(SensorTypes.HEART_RATE);
+            frames.add(new double[] {
+                    frame.getTimestamp(),
+                    frame.getValue(0, 0),
+                    frame.has(1) ? frame.getValue(1, 0) : Double.NaN,
+                    frame.has(heartRate) ? frame.getValue(heartRate, 0) : Double.NaN,
+                    frame.getAgeNanos(heartRate)});
+            if (frames.size() > 1) {
+                assertTrue(frames.get(frames.size() - 2)[0] < frame.getTimestamp());
+            }
+        });
+        return frames;
+    }
+}
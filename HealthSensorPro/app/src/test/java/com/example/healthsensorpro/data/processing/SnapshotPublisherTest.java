@@ -0,0 +1,179 @@
+package com.example.healthsensorpro.data.processing;
+
+import com.example.healthsensorpro.data.model.SensorData;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SnapshotPublisherTest {
+    private static final long MILLI = 1_000_000L;
+
+    @Test
+    public void stalledSubscriber_doesNotHoldBackTheOthers() throws Exception {
+        SnapshotPublisher publisher = new SnapshotPublisher();
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> fast = synchronizedList();
+        List<Integer> slow = synchronizedList();
+        SnapshotPublisher.Subscription ui = publisher.subscribe("ui", SnapshotPublisher.Policy.BLOCK,
+                64, TimeUnit.SECONDS.toNanos(10), snapshot -> fast.add(snapshot.getSteps()));
+        SnapshotPublisher.Subscription storage = publisher.subscribe("storage",
+                SnapshotPublisher.Policy.DROP_OLDEST, 16, snapshot -> {
+                    await(release);
+                    slow.add(snapshot.getSteps());
+                });
+        assertEquals(2, publisher.getSubscriberCount());
+
+        int count = 20_000;
+        publishSequence(publisher, count);
+        release.countDown();
+        publisher.close();
+        assertTrue(ui.awaitTermination(10_000));
+        assertTrue(storage.awaitTermination(10_000));
+        assertEquals(0, publisher.getSubscriberCount());
+
+        // Every snapshot in order for the one keeping up
+        assertEquals(count, fast.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, (int) fast.get(i));
+        }
+        assertEquals(0L, ui.getDroppedCount());
+
+        // The stalled one got the snapshot it was holding and the newest 16
+        assertEquals(count, storage.getPublishedCount());
+        assertEquals(count, storage.getDeliveredCount() + storage.getDroppedCount());
+        assertTrue(slow.size() <= 17);
+        assertEquals(count - 1, (int) slow.get(slow.size() - 1));
+        assertSorted(slow);
+    }
+
+    @Test
+    public void conflatingSubscriber_seesTheLatestSnapshot() throws Exception {
+        SnapshotPublisher publisher = new SnapshotPublisher();
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> seen = synchronizedList();
+        SnapshotPublisher.Subscription subscription = publisher.subscribe("export",
+                SnapshotPublisher.Policy.CONFLATE, 64, snapshot -> {
+                    await(release);
+                    seen.add(snapshot.getSteps());
+                });
+
+        publishSequence(publisher, 1000);
+        assertTrue(subscription.getPendingCount() <= 1);
+        release.countDown();
+        subscription.cancel();
+        assertTrue(subscription.awaitTermination(10_000));
+
+        // At most the one it was holding when the burst came, then the last
+        assertTrue(seen.size() <= 2);
+        assertEquals(999, (int) seen.get(seen.size() - 1));
+        assertEquals(1000, subscription.getDeliveredCount() + subscription.getDroppedCount());
+    }
+
+    @Test
+    public void blockingSubscriber_holdsThePublisherAtMostTheBound() throws Exception {
+        SnapshotPublisher publisher = new SnapshotPublisher();
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> seen = synchronizedList();
+        SnapshotPublisher.Subscription subscription = publisher.subscribe("analytics",
+                SnapshotPublisher.Policy.BLOCK, 4, 5 * MILLI, snapshot -> {
+                    await(release);
+                    seen.add(snapshot.getSteps());
+                });
+
+        long start = System.nanoTime();
+        publishSequence(publisher, 20);
+        long elapsed = System.nanoTime() - start;
+        // Up to 5 are taken without waiting; each of the others waits 5 ms
+        assertTrue(subscription.getDroppedCount() >= 15);
+        assertTrue(elapsed >= 15 * 5 * MILLI);
+        assertTrue(elapsed < TimeUnit.SECONDS.toNanos(5));
+
+        release.countDown();
+        subscription.cancel();
+        assertTrue(subscription.awaitTermination(10_000));
+        // The oldest ones are kept
+        assertEquals(20 - subscription.getDroppedCount(), seen.size());
+        for (int i = 0; i < seen.size(); i++) {
+            assertEquals(i, (int) seen.get(i));
+        }
+
+        // Nothing reaches a cancelled subscription
+        publishSequence(publisher, 1);
+        assertEquals(20, subscription.getPublishedCount());
+    }
+
+    @Test
+    public void throwingBlockingSubscriber_isCancelledWithoutStallingThePublisher() throws Exception {
+        SnapshotPublisher publisher = new SnapshotPublisher();
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> fine = synchronizedList();
+        SnapshotPublisher.Subscription ui = publisher.subscribe("ui", SnapshotPublisher.Policy.BLOCK,
+                64, TimeUnit.SECONDS.toNanos(10), snapshot -> fine.add(snapshot.getSteps()));
+        SnapshotPublisher.Subscription broken = publisher.subscribe("broken",
+                SnapshotPublisher.Policy.BLOCK, 4, TimeUnit.SECONDS.toNanos(10), snapshot -> {
+                    await(release);
+                    throw new IllegalStateException("subscriber failed");
+                });
+
+        long[] elapsed = new long[1];
+        Thread producer = new Thread(() -> {
+            long start = System.nanoTime();
+            publishSequence(publisher, 100);
+            elapsed[0] = System.nanoTime() - start;
+        }, "producer");
+        producer.start();
+        // The producer waits on the full buffer until the subscriber throws
+        while (broken.getPendingCount() < 4) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        producer.join(10_000);
+        assertFalse(producer.isAlive());
+        assertTrue(elapsed[0] < TimeUnit.SECONDS.toNanos(5));
+
+        assertTrue(broken.awaitTermination(10_000));
+        assertEquals("subscriber failed", broken.getFailure().getMessage());
+        assertEquals(0L, broken.getDeliveredCount());
+        assertEquals(broken.getPublishedCount(), broken.getDroppedCount());
+        assertEquals(1, publisher.getSubscriberCount());
+
+        // The others are untouched
+        publisher.close();
+        assertTrue(ui.awaitTermination(10_000));
+        assertNull(ui.getFailure());
+        assertEquals(100, fine.size());
+    }
+
+    private static void publishSequence(SnapshotPublisher publisher, int count) {
+        SensorData snapshot = new SensorData();
+        for (int i = 0; i < count; i++) {
+            snapshot.setSteps(i);
+            publisher.publish(snapshot);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void assertSorted(List<Integer> values) {
+        for (int i = 1; i < values.size(); i++) {
+            assertTrue(values.get(i - 1) < values.get(i));
+        }
+    }
+
+    private static List<Integer> synchronizedList() {
+        return Collections.synchronizedList(new ArrayList<>());
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.healthsensorpro.data.processing;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class StepDetectorTest {
+    private static final double GRAVITY = 9.81;
+
+    @Test
+    public void walking_countsStepsAtEveryRate() {
+        // 60 s at 1.8 steps/s = 108 steps
+        for (int rateHz : new int[] {25, 50, 100, 200}) {
+            long steps = run(rateHz, 60, 1.8, 2.0, 0.15);
+            assertEquals("walking at " + rateHz + " Hz", 108, steps, 3);
+        }
+    }
+
+    @Test
+    public void running_countsStepsAtEveryRate() {
+        // 60 s at 2.8 steps/s = 168 steps
+        for (int rateHz : new int[] {50, 100, 200}) {
+            long steps = run(rateHz, 60, 2.8, 6.0, 0.4);
+            assertEquals("running at " + rateHz + " Hz", 168, steps, 4);
+        }
+    }
+
+    @Test
+    public void stationaryNoise_countsNoSteps() {
+        assertEquals(0, run(50, 120, 0, 0, 0.1));
+    }
+
+    @Test
+    public void batchAndPerSamplePaths_agree() {
+        int rateHz = 100;
+        int count = 60 * rateHz;
+        long[] timestamps = new long[count];
+        float[] xs = new float[count];
+        float[] ys = new float[count];
+        float[] zs = new float[count];
+        fill(timestamps, xs, ys, zs, rateHz, 2.0, 3.0, 0.2);
+
+        StepDetector perSample = new StepDetector();
+        for (int i = 0; i < count; i++) {
+            perSample.onSample(timestamps[i], xs[i], ys[i], zs[i]);
+        }
+
+        StepDetector batched = new StepDetector();
+        batched.setProfiling(true);
+        int steps = 0;
+        for (int offset = 0; offset < count; offset += 64) {
+            steps += batched.process(timestamps, xs, ys, zs, offset, Math.min(64, count - offset));
+        }
+
+        assertEquals(perSample.getStepCount(), batched.getStepCount());
+        assertEquals(batched.getStepCount(), steps);
+        assertEquals(count, batched.getProfiledSamples());
+        assertTrue(batched.getNanosPerSample() > 0);
+    }
+
+    @Test
+    public void packedBatches_countTheSameSteps() {
+        int rateHz = 50;
+        int count = 60 * rateHz;
+        long[] timestamps = new long[count];
+        float[] xs = new float[count];
+        float[] ys = new float[count];
+        float[] zs = new float[count];
+        fill(timestamps, xs, ys, zs, rateHz, 1.8, 2.0, 0.15);
+
+        StepDetector unpacked = new StepDetector();
+        unpacked.process(timestamps, xs, ys, zs, 0, count);
+
+        StepDetector packed = new StepDetector();
+        AccelerometerBatch batch = new AccelerometerBatch(64);
+        for (int i = 0; i < count; i++) {
+            batch.add(timestamps[i], xs[i], ys[i], zs[i]);
+            if (batch.isFull() || i == count - 1) {
+                packed.process(batch);
+                batch.clear();
+            }
+        }
+
+        assertEquals(unpacked.getStepCount(), packed.getStepCount());
+    }
+
+    private static long run(int rateHz, int seconds, double stepHz, double amplitude, double noise) {
+        int count = seconds * rateHz;
+        long[] timestamps = new long[count];
+        float[] xs = new float[count];
+        float[] ys = new float[count];
+        float[] zs = new float[count];
+        fill(timestamps, xs, ys, zs, rateHz, stepHz, amplitude, noise);
+
+        StepDetector detector = new StepDetector();
+        detector.process(timestamps, xs, ys, zs, 0, count);
+        return detector.getStepCount();
+    }
+
+    // Device upright in a pocket: gravity mostly on y, one bounce per step
+    private static void fill(long[] timestamps, float[] xs, float[] ys, float[] zs,
+                             int rateHz, double stepHz, double amplitude, double noise) {
+        Random random = new Random(7);
+        long period = 1_000_000_000L / rateHz;
+        for (int i = 0; i < timestamps.length; i++) {
+            double t = (double) i / rateHz;
+            double bounce = amplitude * Math.sin(2 * Math.PI * stepHz * t);
+            timestamps[i] = i * period;
+            xs[i] = (float) (0.2 * bounce + noise * random.nextGaussian());
+            ys[i] = (float) (GRAVITY + bounce + noise * random.nextGaussian());
+            zs[i] = (float) (1.0 + noise * random.nextGaussian());
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.healthsensorpro.data.source;
+
+import com.example.healthsensorpro.data.model.SensorData;
+import com.example.healthsensorpro.data.processing.SensorPipeline;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class IngestionEngineTest {
+    private static final long PERIOD_NANOS = 20_000_000L;
+    private static final int SAMPLES = 3000;
+    private static final int CHUNK = 100;
+
+    @Test
+    public void streams_matchProcessingEachOnItsOwn() throws Exception {
+        int streams = 40;
+        Map<Long, String> results = new ConcurrentHashMap<>();
+        try (IngestionEngine engine = new IngestionEngine(3, 4, true, 64,
+                (id, snapshot, samples) -> results.put(id, describe(snapshot) + " " + samples))) {
+            // Two producers, each owning half of the streams, interleaving chunks
+            Thread[] producers = new Thread[2];
+            for (int p = 0; p < producers.length; p++) {
+                final int first = p;
+                producers[p] = new Thread(() -> {
+                    try {
+                        for (int offset = 0; offset < SAMPLES; offset += CHUNK) {
+                            for (int id = first; id < streams; id += 2) {
+                                engine.submit(chunk(id, offset, offset + CHUNK == SAMPLES));
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+                producers[p].start();
+            }
+            for (Thread producer : producers) {
+                producer.join();
+            }
+            engine.flush();
+            assertEquals((long) streams * SAMPLES, engine.getProcessedSamples());
+            assertEquals(0, engine.getActiveStreams());
+        }
+
+        assertEquals(streams, results.size());
+        for (long id = 0; id < streams; id++) {
+            assertEquals("stream " + id, expected(id), results.get(id));
+        }
+    }
+
+    @Test
+    public void trySubmit_failsWhileTheWorkerIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        try (IngestionEngine engine = new IngestionEngine(1, 2, true, 0, (id, snapshot, samples) -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        })) {
+            // The worker stops inside the callback of the first stream
+            engine.submit(chunk(0, 0, true));
+            blocked.await();
+            assertTrue(engine.trySubmit(chunk(1, 0, false)));
+            assertTrue(engine.trySubmit(chunk(1, CHUNK, false)));
+            assertFalse(engine.trySubmit(chunk(1, 2 * CHUNK, false)));
+            assertEquals(1, engine.getRejectedChunks());
+
+            release.countDown();
+            engine.flush();
+            assertEquals(3L * CHUNK, engine.getProcessedSamples());
+            assertEquals(1, engine.getActiveStreams());
+        }
+    }
+
+    @Test
+    public void throwingListener_failsItsStreamButNotTheWorker() throws Exception {
+        Map<Long, Long> finished = new ConcurrentHashMap<>();
+        Map<Long, RuntimeException> failed = new ConcurrentHashMap<>();
+        IngestionEngine.Listener listener = new IngestionEngine.Listener() {
+            @Override
+            public void onStreamFinished(long streamId, SensorData snapshot, long samples) {
+                if (streamId == 0) {
+                    throw new IllegalStateException("listener failed");
+                }
+                finished.put(streamId, samples);
+            }
+
+            @Override
+            public void onStreamFailed(long streamId, RuntimeException error) {
+                failed.put(streamId, error);
+            }
+        };
+        try (IngestionEngine engine = new IngestionEngine(1, 4, true, 64, listener)) {
+            for (long id = 0; id < 3; id++) {
+                engine.submit(chunk(id, 0, false));
+                engine.submit(chunk(id, CHUNK, true));
+            }
+            engine.flush();
+            assertEquals(1L, engine.getFailedStreams());
+            assertEquals(0, engine.getActiveStreams());
+            assertEquals(6L * CHUNK, engine.getProcessedSamples());
+        }
+
+        assertEquals(1, failed.size());
+        assertEquals("listener failed", failed.get(0L).getMessage());
+        assertEquals(2, finished.size());
+        assertEquals(2L * CHUNK, (long) finished.get(1L));
+        assertEquals(2L * CHUNK, (long) finished.get(2L));
+    }
+
+    @Test
+    public void idleStream_isEvicted() throws Exception {
+        Map<Long, Long> finished = new ConcurrentHashMap<>();
+        try (IngestionEngine engine = new IngestionEngine(1, 4, true, 64, 20L,
+                (id, snapshot, samples) -> finished.put(id, samples))) {
+            engine.submit(chunk(0, 0, false));
+            engine.flush();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (engine.getActiveStreams() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(0, engine.getActiveStreams());
+            assertEquals(1L, engine.getEvictedStreams());
+
+            // Its end arrives too late and starts the stream over
+            engine.submit(chunk(0, CHUNK, true));
+            engine.flush();
+        }
+        assertEquals(CHUNK, (long) finished.get(0L));
+    }
+
+    // The same samples through a pipeline and driver of its own
+    private static String expected(long id) {
+        SensorPipeline pipeline = new SensorPipeline(true);
+        PipelineDriver driver = new PipelineDriver(pipeline, 64);
+        float[] values = new float[3];
+        for (int i = 0; i < SAMPLES; i++) {
+            sample(id, i, values);
+            driver.onSample(SensorTypes.ACCELEROMETER, i * PERIOD_NANOS, values);
+        }
+        driver.finish();
+        return describe(pipeline.acquireSnapshot()) + " " + SAMPLES;
+    }
+
+    private static SampleChunk chunk(long id, int offset, boolean last) {
+        SampleChunk chunk = new SampleChunk(id, CHUNK);
+        float[] values = new float[3];
+        for (int i = offset; i < offset + CHUNK; i++) {
+            sample(id, i, values);
+            assertTrue(chunk.add(SensorTypes.ACCELEROMETER, i * PERIOD_NANOS, values[0], values[1], values[2]));
+        }
+        if (last) {
+            chunk.markEndOfStream();
+        }
+        return chunk;
+    }
+
+    // Each stream walks at its own pace, and some stand still
+    private static void sample(long id, int i, float[] out) {
+        double t = i * PERIOD_NANOS / 1e9;
+        double amplitude = id % 3 == 0 ? 0.05 : 2.0 + id % 4;
+        double bounce = amplitude * Math.sin(2 * Math.PI * (1.4 + 0.05 * id) * t);
+        out[0] = (float) (0.2 * bounce);
+        out[1] = (float) (9.81 + bounce);
+        out[2] = (float) (0.3 * Math.cos(2 * Math.PI * 0.7 * t));
+    }
+
+    private static String describe(SensorData data) {
+        return data.getSteps() + " " + data.getActivityType() + " " + data.getHeartRate() + " "
+                + data.getCadence() + " " + data.getCalories();
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.healthsensorpro.data.source;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class SampleRingTest {
+    @Test
+    public void fullRing_rejectsAndCountsUntilDrained() {
+        SampleRing ring = new SampleRing(6, 3);
+        assertEquals(8, ring.capacity());
+
+        // Wraps around five times, with one- and three-value samples mixed
+        long next = 0;
+        long expected = 0;
+        Collector collector = new Collector(true);
+        for (int round = 0; round < 5; round++) {
+            while (ring.offer(typeOf(next), next, valuesOf(next))) {
+                next++;
+            }
+            assertEquals(8, ring.size());
+            assertFalse(ring.offer(SensorTypes.ACCELEROMETER, -1, 0f, 0f, 0f));
+
+            collector.expected = expected;
+            assertEquals(3, ring.drain(collector, 3));
+            assertEquals(5, ring.drain(collector));
+            assertEquals(0, ring.drain(collector));
+            expected = collector.expected;
+            assertEquals(next, expected);
+        }
+        assertEquals(10L, ring.getOverflowCount());
+    }
+
+    @Test
+    public void concurrentProducerAndConsumer_loseAndReorderNothing() throws Exception {
+        SampleRing ring = new SampleRing(1024, 3);
+        int count = 2_000_000;
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        long[] rejected = new long[1];
+
+        Thread producer = new Thread(() -> {
+            float[] values = new float[3];
+            for (long i = 0; i < count; i++) {
+                fill(values, i);
+                // Alternates both offer methods
+                while (i % 2 == 0
+                        ? !ring.offer(typeOf(i), i, values)
+                        : !ring.offer(typeOf(i), i, values[0], values[1], values[2])) {
+                    rejected[0]++;
+                    Thread.yield();
+                }
+            }
+        }, "producer");
+        Collector collector = new Collector(false);
+        Thread consumer = new Thread(() -> {
+            try {
+                while (collector.expected < count) {
+                    // Small runs as well as whole ones
+                    int limit = collector.expected % 3 == 0 ? 7 : Integer.MAX_VALUE;
+                    if (ring.drain(collector, limit) == 0) {
+                        Thread.yield();
+                    }
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        }, "consumer");
+
+        producer.start();
+        consumer.start();
+        producer.join(60_000);
+        consumer.join(60_000);
+        assertFalse(producer.isAlive());
+        assertFalse(consumer.isAlive());
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        assertEquals(count, collector.expected);
+        assertEquals(0, ring.size());
+        // Every time the producer found the ring full
+        assertEquals(rejected[0], ring.getOverflowCount());
+    }
+
+    // Heart rate has one value, everything else three
+    private static int typeOf(long i) {
+        return i % 5 == 4 ? SensorTypes.HEART_RATE : SensorTypes.ACCELEROMETER;
+    }
+
+    private static float[] valuesOf(long i) {
+        float[] values = new float[typeOf(i) == SensorTypes.HEART_RATE ? 1 : 3];
+        fill(values, i);
+        return values;
+    }
+
+    private static void fill(float[] values, long i) {
+        for (int axis = 0; axis < values.length; axis++) {
+            values[axis] = i * 3 + axis;
+        }
+    }
+
+    // Checks that samples arrive in order with their own values
+    private static final class Collector implements SensorSource.Listener {
+        // Whether heart rate samples were offered with a single value
+        private final boolean shortHeartRate;
+        long expected = 0;
+
+        Collector(boolean shortHeartRate) {
+            this.shortHeartRate = shortHeartRate;
+        }
+
+        @Override
+        public void onSample(int sensorType, long timestampNanos, float[] values) {
+            assertEquals(expected, timestampNanos);
+            assertEquals(typeOf(expected), sensorType);
+            int length = shortHeartRate && sensorType == SensorTypes.HEART_RATE ? 1 : 3;
+            assertEquals(length, values.length);
+            for (int axis = 0; axis < length; axis++) {
+                assertEquals((float) (expected * 3 + axis), values[axis], 0f);
+            }
+            expected++;
+        }
+
+        @Override
+        public void onFlushCompleted(int sensorType) {
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.healthsensorpro.data.source;
+
+import com.example.healthsensorpro.data.model.SensorData;
+import com.example.healthsensorpro.data.processing.SensorPipeline;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TraceReplayTest {
+    private static final long PERIOD_NANOS = 20_000_000L; // 50 Hz
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void trace_roundTripsEverySample() throws IOException {
+        File file = folder.newFile();
+        List<float[]> written = new ArrayList<>();
+        List<Long> timestamps = new ArrayList<>();
+        Random random = new Random(3);
+        // Enough buffers for all of it, so nothing is dropped
+        try (TraceWriter writer = new TraceWriter(file, new FakeSource(64), 8)) {
+            long timestamp = 123_456_789_000L;
+            for (int i = 0; i < 20_000; i++) {
+                // Batched sensors can deliver out of order, so deltas may be negative
+                timestamp += random.nextInt(50_000_000) - 5_000_000;
+                float[] values = i % 100 == 0
+                        ? new float[]{random.nextInt(10_000)}
+                        : new float[]{random.nextFloat(), Float.NaN, -random.nextFloat() * 1e30f};
+                int type = values.length == 1 ? SensorTypes.STEP_COUNTER : SensorTypes.ACCELEROMETER;
+                writer.write(type, timestamp, values);
+                written.add(values);
+                timestamps.add(timestamp);
+            }
+            assertEquals(20_000, writer.getEventCount());
+        }
+
+        try (TraceReader reader = new TraceReader(file)) {
+            assertArrayEquals(new int[]{SensorTypes.ACCELEROMETER, SensorTypes.STEP_COUNTER},
+                    reader.getSensorTypes());
+            assertEquals(64, reader.getFifoMaxEventCount(SensorTypes.ACCELEROMETER));
+            assertEquals(0, reader.getFifoMaxEventCount(SensorTypes.HEART_RATE));
+            for (int i = 0; i < written.size(); i++) {
+                assertTrue(reader.next());
+                float[] expected = written.get(i);
+                assertEquals(expected.length == 1 ? SensorTypes.STEP_COUNTER : SensorTypes.ACCELEROMETER,
+                        reader.sensorType());
+                assertEquals((long) timestamps.get(i), reader.timestampNanos());
+                assertArrayEquals(expected, reader.values(), 0f);
+            }
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    public void fullBufferPool_dropsEventsAndCountsThem() throws IOException {
+        File file = folder.newFile();
+        int total = 200_000;
+        long written;
+        try (TraceWriter writer = new TraceWriter(file, new FakeSource(0), 2)) {
+            float[] values = new float[3];
+            for (int i = 0; i < total; i++) {
+                values[0] = i;
+                writer.write(SensorTypes.ACCELEROMETER, i * PERIOD_NANOS, values);
+            }
+            written = writer.getEventCount();
+            assertEquals(total, written + writer.getDroppedEvents());
+        }
+
+        // What was kept reads back in order, timestamps intact across the gaps
+        long count = 0;
+        float previous = -1f;
+        try (TraceReader reader = new TraceReader(file)) {
+            while (reader.next()) {
+                float index = reader.values()[0];
+                assertTrue(index > previous);
+                assertEquals((long) index * PERIOD_NANOS, reader.timestampNanos());
+                previous = index;
+                count++;
+            }
+        }
+        assertEquals(written, count);
+    }
+
+    @Test
+    public void truncatedTrace_endsBeforeTheTornEvent() throws IOException {
+        File file = folder.newFile();
+        writeWalk(file, 100, false);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 5);
+        }
+
+        int count = 0;
+        try (TraceReader reader = new TraceReader(file)) {
+            while (reader.next()) {
+                count++;
+            }
+        }
+        assertEquals(99, count);
+    }
+
+    @Test
+    public void replay_isDeterministic() throws IOException {
+        File file = folder.newFile();
+        // A minute of walking, with a heart rate reading every second
+        writeWalk(file, 60 * 50, true);
+
+        List<String> first = replaySnapshots(file, 0);
+        List<String> second = replaySnapshots(file, 0);
+        assertEquals(first, second);
+        assertTrue(first.size() >= 60 * 50);
+        assertTrue(first.get(first.size() - 1).contains(" 95.0 "));
+
+        // Batching publishes less often but counts the same steps
+        List<String> batched = replaySnapshots(file, 64);
+        assertTrue(batched.size() < first.size());
+        assertEquals(stepsOf(first.get(first.size() - 1)), stepsOf(batched.get(batched.size() - 1)));
+        assertEquals(batched, replaySnapshots(file, 64));
+    }
+
+    @Test
+    public void realTimeReplay_followsTheRecordedTimestamps() throws Exception {
+        File file = folder.newFile();
+        // 0.5 s of samples
+        writeWalk(file, 26, false);
+
+        ReplaySource source = new ReplaySource(file, ReplaySource.Speed.REAL_TIME);
+        assertTrue(source.hasSensor(SensorTypes.ACCELEROMETER));
+        List<Long> arrivals = new ArrayList<>();
+        long start = System.nanoTime();
+        long delivered = source.replay(new SensorSource.Listener() {
+            @Override
+            public void onSample(int sensorType, long timestampNanos, float[] values) {
+                arrivals.add(System.nanoTime() - start);
+            }
+
+            @Override
+            public void onFlushCompleted(int sensorType) {
+            }
+        });
+
+        assertEquals(26, delivered);
+        long elapsed = arrivals.get(arrivals.size() - 1);
+        assertTrue("replayed in " + elapsed + " ns", elapsed >= 25 * PERIOD_NANOS);
+        for (int i = 1; i < arrivals.size(); i++) {
+            assertTrue(arrivals.get(i) >= (i - 1) * PERIOD_NANOS);
+        }
+    }
+
+    private static List<String> replaySnapshots(File file, int batchCapacity) throws IOException {
+        SensorPipeline pipeline = new SensorPipeline(true);
+        List<String> snapshots = new ArrayList<>();
+        pipeline.setRecorder(snapshot -> snapshots.add(describe(snapshot)));
+
+        PipelineDriver driver = new PipelineDriver(pipeline, batchCapacity);
+        new ReplaySource(file, ReplaySource.Speed.MAX_SPEED).replay(driver);
+        driver.finish();
+        return snapshots;
+    }
+
+    private static String stepsOf(String snapshot) {
+        return snapshot.split(" ")[1];
+    }
+
+    private static String describe(SensorData data) {
+        return data.getTimestamp() + " " + data.getSteps() + " " + data.getHeartRate() + " "
+                + data.getActivityType() + " " + data.getCadence() + " " + data.getCalories();
+    }
+
+    // Walking at ~1.8 steps/s, sampled at 50 Hz
+    private static void writeWalk(File file, int samples, boolean heartRate) throws IOException {
+        Random random = new Random(9);
+        float[] values = new float[3];
+        try (TraceWriter writer = new TraceWriter(file, new FakeSource(0))) {
+            for (int i = 0; i < samples; i++) {
+                double t = i * PERIOD_NANOS / 1e9;
+                double bounce = 3.0 * Math.sin(2 * Math.PI * 1.8 * t);
+                values[0] = (float) (0.3 * bounce + 0.2 * random.nextGaussian());
+                values[1] = (float) (9.81 + bounce + 0.2 * random.nextGaussian());
+                values[2] = (float) (1.0 + 0.2 * random.nextGaussian());
+                writer.write(SensorTypes.ACCELEROMETER, 1_000_000_000L + i * PERIOD_NANOS, values);
+                if (heartRate && i % 50 == 25) {
+                    writer.write(SensorTypes.HEART_RATE, 1_000_000_000L + i * PERIOD_NANOS,
+                            new float[]{90 + i / 500});
+                }
+            }
+        }
+    }
+
+    // Accelerometer and step counter, no heart rate sensors
+    private static final class FakeSource implements SensorSource {
+        private final int fifo;
+
+        FakeSource(int fifo) {
+            this.fifo = fifo;
+        }
+
+        @Override
+        public boolean hasSensor(int sensorType) {
+            return sensorType == SensorTypes.ACCELEROMETER || sensorType == SensorTypes.STEP_COUNTER;
+        }
+
+        @Override
+        public int getFifoMaxEventCount(int sensorType) {
+            return sensorType == SensorTypes.ACCELEROMETER ? fifo : 0;
+        }
+
+        @Override public void start(Listener listener) { }
+        @Override public void setSamplingRate(int sensorType, int samplingPeriodUs, int maxReportLatencyUs) { }
+        @Override public void flush() { }
+        @Override public void stop() { }
+    }
+}
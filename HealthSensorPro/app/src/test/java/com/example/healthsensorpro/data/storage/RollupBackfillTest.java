@@ -0,0 +1,283 @@
+package com.example.healthsensorpro.data.storage;
+
+import com.example.healthsensorpro.data.model.ActivityType;
+import com.example.healthsensorpro.data.model.SensorData;
+import com.example.healthsensorpro.data.processing.ActivityStage;
+import com.example.healthsensorpro.data.processing.CalorieStage;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RollupBackfillTest {
+    // 2024-01-01 00:00 UTC
+    private static final long START = 1_704_067_200_000L;
+    private static final long MINUTE = 60_000L;
+    private static final long HOUR = 60 * MINUTE;
+    // A bit over a day, so chunks meet inside hours and days
+    private static final int SECONDS = 26 * 3600 + 1234;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void backfill_matchesASequentialRebuild() throws IOException {
+        File dir = folder.newFolder();
+        File rollupDir = new File(dir, "rollups");
+        File target = new File(dir, "rollups.backfill");
+        AtomicInteger progressCalls = new AtomicInteger();
+        long records;
+        try (SensorLog log = SensorLog.open(new File(dir, "log"))) {
+            appendHistory(log, 0, SECONDS);
+            RollupBackfill backfill = new RollupBackfill(log, 0L, ThresholdStage::new);
+            backfill.setProgressListener(fraction -> progressCalls.incrementAndGet());
+            ForkJoinPool pool = new ForkJoinPool(4);
+            try {
+                records = backfill.run(pool, target, START + SECONDS * 1000L + MINUTE);
+            } finally {
+                pool.shutdown();
+            }
+            assertEquals(1f, backfill.getProgress(), 1e-6);
+        }
+        assertEquals(SECONDS, records);
+        assertEquals(27, progressCalls.get());
+
+        List<RollupBucket> backfilled;
+        try (SensorLog log = SensorLog.open(new File(dir, "log"))) {
+            RollupEngine.open(rollupDir, log, 0L).close();
+            RollupEngine.replace(rollupDir, target);
+            assertFalse(target.exists());
+            try (RollupEngine engine = RollupEngine.open(rollupDir, log, 0L)) {
+                backfilled = queryAll(engine);
+            }
+        }
+
+        // The same history relabelled in one pass, then rolled up as usual
+        File freshDir = folder.newFolder();
+        List<RollupBucket> expected;
+        try (SensorLog log = SensorLog.open(new File(freshDir, "log"));
+             RollupEngine engine = RollupEngine.open(new File(freshDir, "rollups"), log, 0L)) {
+            appendRelabelled(log, 0, SECONDS);
+            expected = queryAll(engine);
+        }
+
+        assertEquals(expected.size(), backfilled.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertBucket(expected.get(i), backfilled.get(i));
+        }
+    }
+
+    @Test
+    public void gapAcrossAChunkBoundary_countsEachStepOnce() throws IOException {
+        // Nothing logged from 1:50 to 2:10, as while the phone was suspended,
+        // so the chunk from 2:00 has no records to warm up on
+        int gapFrom = 3600 + 50 * 60;
+        int gapTo = 2 * 3600 + 10 * 60;
+        int end = 4 * 3600;
+        File dir = folder.newFolder();
+        File rollupDir = new File(dir, "rollups");
+        File target = new File(dir, "rollups.backfill");
+        List<RollupBucket> backfilled;
+        try (SensorLog log = SensorLog.open(new File(dir, "log"))) {
+            appendHistory(log, 0, gapFrom);
+            appendHistory(log, gapTo, end);
+            new RollupBackfill(log, 0L, ThresholdStage::new)
+                    .run(ForkJoinPool.commonPool(), target, START + end * 1000L + MINUTE);
+            RollupEngine.replace(rollupDir, target);
+            try (RollupEngine engine = RollupEngine.open(rollupDir, log, 0L)) {
+                backfilled = queryAll(engine);
+            }
+        }
+
+        File freshDir = folder.newFolder();
+        List<RollupBucket> expected;
+        try (SensorLog log = SensorLog.open(new File(freshDir, "log"));
+             RollupEngine engine = RollupEngine.open(new File(freshDir, "rollups"), log, 0L)) {
+            appendRelabelled(log, 0, end, gapFrom, gapTo);
+            expected = queryAll(engine);
+        }
+
+        assertEquals(expected.size(), backfilled.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertBucket(expected.get(i), backfilled.get(i));
+        }
+        RollupBucket day = backfilled.get(backfilled.size() - 1);
+        assertEquals(RollupResolution.DAY, day.getResolution());
+        assertEquals(totalSteps(end - 1), day.getSteps());
+    }
+
+    @Test
+    public void engine_continuesFromTheLogAfterTheCut() throws IOException {
+        File dir = folder.newFolder();
+        File rollupDir = new File(dir, "rollups");
+        File target = new File(dir, "rollups.backfill");
+        int cutSecond = 3 * 3600 + 1800;
+        try (SensorLog log = SensorLog.open(new File(dir, "log"))) {
+            appendHistory(log, 0, 5 * 3600);
+            new RollupBackfill(log, 0L, ThresholdStage::new)
+                    .run(ForkJoinPool.commonPool(), target, START + cutSecond * 1000L + 1234);
+            RollupEngine.replace(rollupDir, target);
+
+            try (RollupEngine engine = RollupEngine.open(rollupDir, log, 0L)) {
+                appendHistory(log, 5 * 3600, 6 * 3600);
+                List<RollupBucket> days = new ArrayList<>();
+                engine.query(RollupResolution.DAY, Long.MIN_VALUE, Long.MAX_VALUE, bucket -> {
+                    RollupBucket copy = new RollupBucket();
+                    copy.copyFrom(bucket);
+                    days.add(copy);
+                });
+                assertEquals(1, days.size());
+                assertEquals(totalSteps(6 * 3600 - 1), days.get(0).getSteps());
+
+                // Relabelled before the cut, as logged after it
+                RollupBucket before = new RollupBucket();
+                RollupBucket after = new RollupBucket();
+                engine.query(RollupResolution.MINUTE, START + 2 * MINUTE, START + 2 * MINUTE,
+                        bucket -> before.copyFrom(bucket));
+                engine.query(RollupResolution.MINUTE, START + 302 * MINUTE, START + 302 * MINUTE,
+                        bucket -> after.copyFrom(bucket));
+                assertEquals(MINUTE, before.getActivityMillis(ActivityType.RUNNING));
+                assertEquals(MINUTE, after.getActivityMillis(ActivityType.UNKNOWN));
+            }
+        }
+    }
+
+    @Test
+    public void open_rollsBackAnInterruptedReplace() throws IOException {
+        File dir = folder.newFolder();
+        File rollupDir = new File(dir, "rollups");
+        try (SensorLog log = SensorLog.open(new File(dir, "log"))) {
+            appendHistory(log, 0, 3600);
+            List<RollupBucket> before;
+            try (RollupEngine engine = RollupEngine.open(rollupDir, log, 0L)) {
+                before = queryAll(engine);
+            }
+            // Interrupted after moving the old rollups aside
+            assertTrue(rollupDir.renameTo(new File(dir, "rollups.old")));
+
+            try (RollupEngine engine = RollupEngine.open(rollupDir, log, 0L)) {
+                List<RollupBucket> after = queryAll(engine);
+                assertEquals(before.size(), after.size());
+                for (int i = 0; i < before.size(); i++) {
+                    assertBucket(before.get(i), after.get(i));
+                }
+            }
+            assertFalse(new File(dir, "rollups.old").exists());
+        }
+    }
+
+    // The new model: RUNNING while the last few samples lean forward,
+    // STATIONARY otherwise
+    private static final class ThresholdStage extends ActivityStage {
+        private int leaning = 0;
+
+        @Override
+        public ActivityType process(long timestampNanos, float x, float y, float z) {
+            leaning = x > 1f ? Math.min(leaning + 1, 5) : Math.max(leaning - 1, 0);
+            return getCurrentActivity();
+        }
+
+        @Override
+        public ActivityType getCurrentActivity() {
+            return leaning >= 3 ? ActivityType.RUNNING : ActivityType.STATIONARY;
+        }
+    }
+
+    // Leaning forward for the first five minutes of every ten
+    private static boolean leaningAt(int second) {
+        return second % 600 < 300;
+    }
+
+    // As the old model logged it: no activity, no calories, and the totals
+    // reset once
+    private static void appendHistory(SensorLog log, int fromSecond, int toSecond) {
+        SensorData data = new SensorData();
+        for (int s = fromSecond; s < toSecond; s++) {
+            fill(data, s);
+            assertTrue(log.append(data));
+        }
+    }
+
+    private static void appendRelabelled(SensorLog log, int fromSecond, int toSecond) {
+        appendRelabelled(log, fromSecond, toSecond, toSecond, toSecond);
+    }
+
+    // Leaves out [gapFrom, gapTo)
+    private static void appendRelabelled(SensorLog log, int fromSecond, int toSecond,
+                                         int gapFrom, int gapTo) {
+        ThresholdStage stage = new ThresholdStage();
+        CalorieStage calories = new CalorieStage();
+        SensorData data = new SensorData();
+        int previousSteps = 0;
+        for (int s = fromSecond; s < toSecond; s++) {
+            if (s == gapFrom) {
+                s = gapTo - 1;
+                continue;
+            }
+            fill(data, s);
+            if (data.getSteps() < previousSteps) {
+                calories.reset();
+            }
+            previousSteps = data.getSteps();
+            stage.process(0L, data.getAccelerometerX(), data.getAccelerometerY(), data.getAccelerometerZ());
+            data.setActivityType(stage.getCurrentActivity());
+            data.setCalories(calories.onSteps(data.getSteps(), data.getCadence(), data.getActivityType()));
+            assertTrue(log.append(data));
+        }
+    }
+
+    private static void fill(SensorData data, int second) {
+        int steps = totalSteps(second);
+        data.setTimestamp(START + second * 1000L);
+        data.setSteps(steps);
+        data.setCalories(0);
+        data.setDistance(steps * 0.762);
+        data.setHeartRate(60 + (second % 60));
+        data.setAccelerometerX(leaningAt(second) ? 2f : 0f);
+        data.setAccelerometerZ(9.81f);
+        data.setCadence(leaningAt(second) && second % 7 != 0 ? 150f : 0f);
+        data.setActivityType(ActivityType.UNKNOWN);
+    }
+
+    // A step every other second while leaning; the count starts over after
+    // 20 hours
+    private static int totalSteps(int second) {
+        int since = second >= 20 * 3600 ? second - 20 * 3600 : second;
+        return since / 600 * 150 + Math.min(since % 600, 300) / 2;
+    }
+
+    private static List<RollupBucket> queryAll(RollupEngine engine) throws IOException {
+        List<RollupBucket> buckets = new ArrayList<>();
+        for (RollupResolution resolution : RollupResolution.values()) {
+            engine.query(resolution, Long.MIN_VALUE, Long.MAX_VALUE, bucket -> {
+                RollupBucket copy = new RollupBucket();
+                copy.copyFrom(bucket);
+                buckets.add(copy);
+            });
+        }
+        return buckets;
+    }
+
+    private static void assertBucket(RollupBucket expected, RollupBucket actual) {
+        assertEquals(expected.getResolution(), actual.getResolution());
+        assertEquals(expected.getStartMillis(), actual.getStartMillis());
+        assertEquals(expected.getSteps(), actual.getSteps());
+        assertEquals(expected.getCalories(), actual.getCalories(), 1e-6);
+        assertEquals(expected.getDistance(), actual.getDistance(), 1e-6);
+        for (ActivityType type : ActivityType.values()) {
+            assertEquals(expected.getActivityMillis(type), actual.getActivityMillis(type));
+        }
+        assertEquals(expected.getMinHeartRate(), actual.getMinHeartRate(), 0);
+        assertEquals(expected.getMaxHeartRate(), actual.getMaxHeartRate(), 0);
+        assertEquals(expected.getAvgHeartRate(), actual.getAvgHeartRate(), 1e-4);
+    }
+}
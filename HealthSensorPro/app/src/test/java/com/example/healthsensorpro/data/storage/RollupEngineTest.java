@@ -0,0 +1,264 @@
+package com.example.healthsensorpro.data.storage;
+
+import com.example.healthsensorpro.data.model.ActivityType;
+import com.example.healthsensorpro.data.model.SensorData;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RollupEngineTest {
+    // 2024-01-01 00:00 UTC
+    private static final long START = 1_704_067_200_000L;
+    private static final long MINUTE = 60_000L;
+    private static final long HOUR = 60 * MINUTE;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void buckets_addUpToTheRecordedTotals() throws IOException {
+        File dir = folder.newFolder();
+        try (SensorLog log = SensorLog.open(new File(dir, "log"));
+             RollupEngine engine = RollupEngine.open(new File(dir, "rollups"), log, 0L)) {
+            // 2.5 hours at 1 Hz, a step every other second while walking
+            int seconds = (int) (150 * MINUTE / 1000);
+            appendWalk(log, 0, seconds);
+            engine.update();
+
+            List<RollupBucket> minutes = query(engine, RollupResolution.MINUTE, Long.MIN_VALUE, Long.MAX_VALUE);
+            List<RollupBucket> hours = query(engine, RollupResolution.HOUR, Long.MIN_VALUE, Long.MAX_VALUE);
+            List<RollupBucket> days = query(engine, RollupResolution.DAY, Long.MIN_VALUE, Long.MAX_VALUE);
+            assertEquals(150, minutes.size());
+            assertEquals(3, hours.size());
+            assertEquals(1, days.size());
+
+            for (List<RollupBucket> buckets : List.of(minutes, hours, days)) {
+                int steps = 0;
+                double calories = 0;
+                long walking = 0;
+                long total = 0;
+                for (RollupBucket bucket : buckets) {
+                    steps += bucket.getSteps();
+                    calories += bucket.getCalories();
+                    walking += bucket.getActivityMillis(ActivityType.WALKING);
+                    for (ActivityType type : ActivityType.values()) {
+                        total += bucket.getActivityMillis(type);
+                    }
+                }
+                assertEquals(totalSteps(seconds - 1), steps);
+                assertEquals(totalSteps(seconds - 1) * 0.04, calories, 1e-6);
+                // Every second but the first is credited to some activity
+                assertEquals((seconds - 1) * 1000L, total);
+                assertTrue(walking > 0 && walking < total);
+            }
+
+            RollupBucket firstHour = hours.get(0);
+            assertEquals(START, firstHour.getStartMillis());
+            assertEquals(60, firstHour.getMinHeartRate(), 0);
+            assertEquals(119, firstHour.getMaxHeartRate(), 0);
+            assertEquals(89.5, firstHour.getAvgHeartRate(), 1e-3);
+        }
+    }
+
+    @Test
+    public void query_visitsOnlyOverlappingBuckets() throws IOException {
+        File dir = folder.newFolder();
+        try (SensorLog log = SensorLog.open(new File(dir, "log"));
+             RollupEngine engine = RollupEngine.open(new File(dir, "rollups"), log, 0L)) {
+            appendWalk(log, 0, 3 * 3600);
+
+            List<RollupBucket> minutes = query(engine, RollupResolution.MINUTE,
+                    START + 90 * MINUTE + 30_000, START + 95 * MINUTE);
+            assertEquals(6, minutes.size());
+            assertEquals(START + 90 * MINUTE, minutes.get(0).getStartMillis());
+            assertEquals(START + 95 * MINUTE, minutes.get(5).getStartMillis());
+
+            // The open bucket is included
+            List<RollupBucket> hours = query(engine, RollupResolution.HOUR, START + 2 * HOUR + 1, Long.MAX_VALUE);
+            assertEquals(1, hours.size());
+            assertEquals(START + 2 * HOUR, hours.get(0).getStartMillis());
+
+            assertEquals(0, query(engine, RollupResolution.DAY, Long.MIN_VALUE, START - 1).size());
+        }
+    }
+
+    @Test
+    public void resetTotals_startANewRun() throws IOException {
+        File dir = folder.newFolder();
+        try (SensorLog log = SensorLog.open(new File(dir, "log"));
+             RollupEngine engine = RollupEngine.open(new File(dir, "rollups"), log, 0L)) {
+            SensorData data = new SensorData();
+            int[] steps = {0, 10, 20, 3, 8};
+            for (int i = 0; i < steps.length; i++) {
+                data.setTimestamp(START + i * 1000L);
+                data.setSteps(steps[i]);
+                log.append(data);
+            }
+
+            List<RollupBucket> days = query(engine, RollupResolution.DAY, Long.MIN_VALUE, Long.MAX_VALUE);
+            assertEquals(28, days.get(0).getSteps());
+        }
+    }
+
+    @Test
+    public void zoneOffset_alignsDaysToLocalMidnight() throws IOException {
+        File dir = folder.newFolder();
+        long offset = 6 * HOUR; // UTC+6
+        try (SensorLog log = SensorLog.open(new File(dir, "log"));
+             RollupEngine engine = RollupEngine.open(new File(dir, "rollups"), log, offset)) {
+            // 17:00 to 19:00 UTC crosses local midnight at 18:00 UTC
+            appendWalk(log, 17 * 3600, 19 * 3600);
+            List<RollupBucket> days = query(engine, RollupResolution.DAY, Long.MIN_VALUE, Long.MAX_VALUE);
+            assertEquals(2, days.size());
+            assertEquals(START + 18 * HOUR, days.get(1).getStartMillis());
+        }
+    }
+
+    @Test
+    public void reopen_rebuildsOpenBucketsFromTheLog() throws IOException {
+        File dir = folder.newFolder();
+        File logDir = new File(dir, "log");
+        File rollupDir = new File(dir, "rollups");
+        int seconds = 5 * 3600;
+
+        try (SensorLog log = SensorLog.open(logDir)) {
+            appendWalk(log, 0, 2 * 3600 + 1234);
+            // The engine goes away without close(), as in a crash
+            RollupEngine engine = RollupEngine.open(rollupDir, log, 0L);
+            engine.update();
+        }
+
+        // A bucket and a half written after the last checkpoint
+        try (FileOutputStream out = new FileOutputStream(new File(rollupDir, "minute.rollup"), true)) {
+            out.write(new byte[RollupBucket.RECORD_SIZE * 3 / 2]);
+        }
+
+        List<RollupBucket> recovered;
+        try (SensorLog log = SensorLog.open(logDir);
+             RollupEngine engine = RollupEngine.open(rollupDir, log, 0L)) {
+            appendWalk(log, 2 * 3600 + 1234, seconds);
+            recovered = query(engine, RollupResolution.MINUTE, Long.MIN_VALUE, Long.MAX_VALUE);
+            recovered.addAll(query(engine, RollupResolution.HOUR, Long.MIN_VALUE, Long.MAX_VALUE));
+            recovered.addAll(query(engine, RollupResolution.DAY, Long.MIN_VALUE, Long.MAX_VALUE));
+        }
+
+        // Same records through a fresh engine in one go
+        File freshDir = folder.newFolder();
+        List<RollupBucket> expected;
+        try (SensorLog log = SensorLog.open(new File(freshDir, "log"));
+             RollupEngine engine = RollupEngine.open(new File(freshDir, "rollups"), log, 0L)) {
+            appendWalk(log, 0, seconds);
+            expected = query(engine, RollupResolution.MINUTE, Long.MIN_VALUE, Long.MAX_VALUE);
+            expected.addAll(query(engine, RollupResolution.HOUR, Long.MIN_VALUE, Long.MAX_VALUE));
+            expected.addAll(query(engine, RollupResolution.DAY, Long.MIN_VALUE, Long.MAX_VALUE));
+        }
+
+        assertEquals(expected.size(), recovered.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertBucket(expected.get(i), recovered.get(i));
+        }
+    }
+
+    @Test
+    public void query_readsBucketsOlderThanTheRetainedOnesFromDisk() throws IOException {
+        File dir = folder.newFolder();
+        // Eight days at one record every 30 s, more minutes than are kept in memory
+        int days = 8;
+        long retainedMillis = RollupResolution.MINUTE.getRetainedBuckets() * MINUTE;
+        assertTrue(days * 24 * HOUR > retainedMillis);
+        try (SensorLog log = SensorLog.open(new File(dir, "log"))) {
+            SensorData data = new SensorData();
+            for (int i = 0; i < days * 24 * 120; i++) {
+                data.setTimestamp(START + i * 30_000L);
+                data.setSteps(i);
+                data.setActivityType(ActivityType.WALKING);
+                assertTrue(log.append(data));
+            }
+
+            for (int pass = 0; pass < 2; pass++) {
+                // The second pass reopens, loading only the recent buckets
+                try (RollupEngine engine = RollupEngine.open(new File(dir, "rollups"), log, 0L)) {
+                    long dayEnd = START + 24 * HOUR - 1;
+                    List<RollupBucket> minutes = query(engine, RollupResolution.MINUTE, START, dayEnd);
+                    List<RollupBucket> firstDay = query(engine, RollupResolution.DAY, START, dayEnd);
+                    assertEquals(24 * 60, minutes.size());
+                    assertEquals(1, firstDay.size());
+                    int steps = 0;
+                    for (int m = 0; m < minutes.size(); m++) {
+                        assertEquals(START + m * MINUTE, minutes.get(m).getStartMillis());
+                        steps += minutes.get(m).getSteps();
+                    }
+                    assertEquals(firstDay.get(0).getSteps(), steps);
+
+                    // A range across the boundary of what is in memory
+                    long last = START + days * 24 * HOUR - MINUTE;
+                    long from = last - retainedMillis - 10 * MINUTE;
+                    List<RollupBucket> across = query(engine, RollupResolution.MINUTE, from, from + 20 * MINUTE);
+                    assertEquals(21, across.size());
+                    assertEquals(from, across.get(0).getStartMillis());
+                    assertEquals(from + 20 * MINUTE, across.get(20).getStartMillis());
+                }
+            }
+        }
+    }
+
+    // Walking for the first five minutes of every ten
+    private static boolean walkingAt(int second) {
+        return second % 600 < 300;
+    }
+
+    private static void appendWalk(SensorLog log, int fromSecond, int toSecond) {
+        SensorData data = new SensorData();
+        for (int s = fromSecond; s < toSecond; s++) {
+            int steps = totalSteps(s);
+            data.setTimestamp(START + s * 1000L);
+            data.setSteps(steps);
+            data.setCalories(steps * 0.04);
+            data.setDistance(steps * 0.762);
+            data.setHeartRate(60 + (s % 60));
+            data.setActivityType(walkingAt(s) ? ActivityType.WALKING : ActivityType.STATIONARY);
+            assertTrue(log.append(data));
+        }
+    }
+
+    // A step every other second while walking
+    private static int totalSteps(int second) {
+        int periods = second / 600;
+        int within = second % 600;
+        return periods * 150 + Math.min(within, 300) / 2;
+    }
+
+    private static List<RollupBucket> query(RollupEngine engine, RollupResolution resolution,
+                                            long from, long to) throws IOException {
+        List<RollupBucket> buckets = new ArrayList<>();
+        engine.query(resolution, from, to, bucket -> {
+            RollupBucket copy = new RollupBucket();
+            copy.copyFrom(bucket);
+            buckets.add(copy);
+        });
+        return buckets;
+    }
+
+    private static void assertBucket(RollupBucket expected, RollupBucket actual) {
+        assertEquals(expected.getResolution(), actual.getResolution());
+        assertEquals(expected.getStartMillis(), actual.getStartMillis());
+        assertEquals(expected.getSteps(), actual.getSteps());
+        assertEquals(expected.getCalories(), actual.getCalories(), 1e-9);
+        assertEquals(expected.getDistance(), actual.getDistance(), 1e-9);
+        for (ActivityType type : ActivityType.values()) {
+            assertEquals(expected.getActivityMillis(type), actual.getActivityMillis(type));
+        }
+        assertEquals(expected.getMinHeartRate(), actual.getMinHeartRate(), 0);
+        assertEquals(expected.getMaxHeartRate(), actual.getMaxHeartRate(), 0);
+        assertEquals(expected.getAvgHeartRate(), actual.getAvgHeartRate(), 1e-4);
+    }
+}
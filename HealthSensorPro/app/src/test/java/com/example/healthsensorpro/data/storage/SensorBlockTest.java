@@ -0,0 +1,151 @@
+package com.example.healthsensorpro.data.storage;
+
+import com.example.healthsensorpro.data.model.ActivityType;
+import com.example.healthsensorpro.data.model.SensorData;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SensorBlockTest {
+    private static final double GRAVITY = 9.81;
+
+    @Test
+    public void roundTrip_walkingStream() {
+        SensorBlock block = new SensorBlock(1024);
+        SensorData[] records = walkingStream(1024, 50, new Random(7));
+        for (SensorData record : records) {
+            assertTrue(block.add(record));
+        }
+        assertFalse(block.add(records[0]));
+
+        SensorBlock decoded = roundTrip(block);
+        assertEquals(records.length, decoded.size());
+        SensorData out = new SensorData();
+        for (int i = 0; i < records.length; i++) {
+            decoded.get(i, out);
+            assertRecord(records[i], out);
+        }
+    }
+
+    @Test
+    public void roundTrip_edgeValues() {
+        SensorBlock block = new SensorBlock(16);
+        long[] timestamps = {0L, 1L, 1L, 5_000_000_000L, 5_000_000_020L, Long.MAX_VALUE / 2};
+        int[] steps = {0, Integer.MAX_VALUE, 0, -5, 3, 3};
+        float[] heartRates = {Float.NaN, 72f, 72f, Float.NaN, 180.5f, -0f};
+        double[] calories = {0, Double.MAX_VALUE, Double.MIN_VALUE, -1e-300, 1e300, 0.1};
+        float[] accelerations = {0f, 1000f, -1000f, 81.9f, -0.0012f, 0.0012f};
+
+        for (int i = 0; i < timestamps.length; i++) {
+            SensorData data = new SensorData();
+            data.setTimestamp(timestamps[i]);
+            data.setSteps(steps[i]);
+            data.setHeartRate(heartRates[i]);
+            data.setCalories(calories[i]);
+            data.setDistance(-calories[i]);
+            data.setAccelerometerX(accelerations[i]);
+            data.setAccelerometerY(-accelerations[i]);
+            data.setAccelerometerZ(0f);
+            data.setCadence(i * 33.333f);
+            data.setActivityType(ActivityType.fromCode(i % 2));
+            block.add(data);
+        }
+
+        SensorBlock decoded = roundTrip(block);
+        SensorData out = new SensorData();
+        float limit = Short.MAX_VALUE / SensorBlock.ACCELEROMETER_SCALE;
+        for (int i = 0; i < timestamps.length; i++) {
+            decoded.get(i, out);
+            assertEquals(timestamps[i], out.getTimestamp());
+            assertEquals(steps[i], out.getSteps());
+            assertEquals(Float.floatToRawIntBits(heartRates[i]), Float.floatToRawIntBits(out.getHeartRate()));
+            assertEquals(calories[i], out.getCalories(), 0);
+            assertEquals(-calories[i], out.getDistance(), 0);
+            // Out-of-range accelerations saturate
+            float expected = Math.max(-limit, Math.min(limit, accelerations[i]));
+            assertEquals(expected, out.getAccelerometerX(), SensorLogTest.ACCELEROMETER_ERROR);
+            assertEquals(-expected, out.getAccelerometerY(), SensorLogTest.ACCELEROMETER_ERROR);
+            assertEquals(i * 33.333f, out.getCadence(), SensorLogTest.CADENCE_ERROR);
+            assertEquals(ActivityType.fromCode(i % 2), out.getActivityType());
+        }
+    }
+
+    @Test
+    public void emptyBlock_roundTrips() {
+        SensorBlock decoded = roundTrip(new SensorBlock(8));
+        assertEquals(0, decoded.size());
+    }
+
+    @Test
+    public void walkingStream_isAtLeastFiveTimesSmaller() {
+        SensorBlock block = new SensorBlock(1024);
+        for (SensorData record : walkingStream(1024, 50, new Random(11))) {
+            block.add(record);
+        }
+        int encoded = block.encode();
+        int raw = block.size() * SensorRecordFormat.RECORD_SIZE;
+        assertTrue("encoded " + encoded + " of " + raw + " bytes", raw >= 5 * encoded);
+    }
+
+    private static SensorBlock roundTrip(SensorBlock block) {
+        int length = block.encode();
+        // Decode from the middle of a larger buffer, as from a mapped file
+        ByteBuffer buffer = ByteBuffer.allocate(length + 64);
+        buffer.position(32);
+        buffer.put(block.encodedBytes(), 0, length);
+
+        SensorBlock decoded = new SensorBlock(block.capacity());
+        decoded.decode(buffer, 32);
+        return decoded;
+    }
+
+    // 50 Hz snapshots of a walk: jittery timestamps, a step every ~0.55 s with
+    // calories and distance following, a heart rate updated once a second
+    static SensorData[] walkingStream(int count, int rateHz, Random random) {
+        SensorData[] records = new SensorData[count];
+        long timestamp = 1_700_000_000_000L;
+        int steps = 0;
+        float heartRate = Float.NaN;
+        for (int i = 0; i < count; i++) {
+            double t = (double) i / rateHz;
+            timestamp += 1000 / rateHz + random.nextInt(3) - 1;
+            if (i % (rateHz * 11 / 20) == 0) {
+                steps++;
+            }
+            if (i % rateHz == 0) {
+                heartRate = 90 + random.nextInt(20);
+            }
+
+            SensorData data = new SensorData();
+            data.setTimestamp(timestamp);
+            data.setSteps(steps);
+            data.setCalories(steps * 0.04 * 1.2);
+            data.setDistance(steps * 0.762);
+            data.setHeartRate(heartRate);
+            data.setAccelerometerX((float) (0.5 * Math.sin(2 * Math.PI * 0.9 * t) + random.nextGaussian() * 0.2));
+            data.setAccelerometerY((float) (random.nextGaussian() * 0.2));
+            data.setAccelerometerZ((float) (GRAVITY + 2 * Math.sin(2 * Math.PI * 1.8 * t) + random.nextGaussian() * 0.2));
+            data.setCadence((float) (108 + Math.sin(t / 4)));
+            data.setActivityType(i < count / 10 ? ActivityType.STATIONARY : ActivityType.WALKING);
+            records[i] = data;
+        }
+        return records;
+    }
+
+    private static void assertRecord(SensorData expected, SensorData actual) {
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertEquals(expected.getSteps(), actual.getSteps());
+        assertEquals(expected.getHeartRate(), actual.getHeartRate(), 0);
+        assertEquals(expected.getCalories(), actual.getCalories(), 0);
+        assertEquals(expected.getDistance(), actual.getDistance(), 0);
+        assertEquals(expected.getAccelerometerX(), actual.getAccelerometerX(), SensorLogTest.ACCELEROMETER_ERROR);
+        assertEquals(expected.getAccelerometerY(), actual.getAccelerometerY(), SensorLogTest.ACCELEROMETER_ERROR);
+        assertEquals(expected.getAccelerometerZ(), actual.getAccelerometerZ(), SensorLogTest.ACCELEROMETER_ERROR);
+        assertEquals(expected.getCadence(), actual.getCadence(), SensorLogTest.CADENCE_ERROR);
+        assertEquals(expected.getActivityType(), actual.getActivityType());
+    }
+}
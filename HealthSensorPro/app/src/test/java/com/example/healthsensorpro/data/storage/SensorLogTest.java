@@ -0,0 +1,282 @@
+package com.example.healthsensorpro.data.storage;
+
+import com.example.healthsensorpro.data.model.ActivityType;
+import com.example.healthsensorpro.data.model.SensorData;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SensorLogTest {
+    // Room for 10 records per segment, so rollover happens often
+    private static final int SEGMENT_BYTES = LogSegment.HEADER_SIZE + 10 * SensorRecordFormat.RECORD_SIZE;
+
+    static final float ACCELEROMETER_ERROR = 0.5f / SensorBlock.ACCELEROMETER_SCALE + 1e-5f;
+    static final float CADENCE_ERROR = 0.5f / SensorBlock.CADENCE_SCALE + 1e-4f;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void appendAndScan_acrossSegments() throws IOException {
+        File dir = folder.newFolder();
+        try (SensorLog log = SensorLog.open(dir, SEGMENT_BYTES)) {
+            for (int i = 0; i < 95; i++) {
+                assertTrue(log.append(record(i)));
+            }
+            assertEquals(95, log.getRecordCount());
+            assertEquals(10, log.getSegmentCount());
+        }
+
+        // The nine full segments were compacted when they were sealed; the
+        // half-full one has its successor prepared already
+        assertEquals(9, dir.listFiles((d, name) -> name.endsWith(".blk")).length);
+        assertEquals(2, dir.listFiles((d, name) -> name.endsWith(".seg")).length);
+
+        try (SensorLog log = SensorLog.open(dir, SEGMENT_BYTES)) {
+            assertEquals(95, log.getRecordCount());
+            assertTrue(log.getArchivedRecordCount() >= 90);
+
+            // Records 23..61 inclusive
+            SensorLog.Cursor cursor = log.scan(timestamp(23), timestamp(61));
+            SensorData data = new SensorData();
+            int expected = 23;
+            while (cursor.next(data)) {
+                assertRecord(expected++, data);
+            }
+            assertEquals(62, expected);
+        }
+    }
+
+    @Test
+    public void scan_emptyAndOpenRanges() throws IOException {
+        try (SensorLog log = SensorLog.open(folder.newFolder(), SEGMENT_BYTES)) {
+            SensorData data = new SensorData();
+            assertFalse(log.scan(Long.MIN_VALUE, Long.MAX_VALUE).next(data));
+
+            for (int i = 0; i < 30; i++) {
+                log.append(record(i));
+            }
+            assertFalse(log.scan(timestamp(30), Long.MAX_VALUE).next(data));
+            assertFalse(log.scan(Long.MIN_VALUE, timestamp(0) - 1).next(data));
+
+            // Between two records
+            SensorLog.Cursor cursor = log.scan(timestamp(4) + 1, timestamp(5) - 1);
+            assertFalse(cursor.next(data));
+
+            cursor = log.scan(Long.MIN_VALUE, Long.MAX_VALUE);
+            int count = 0;
+            while (cursor.next(data)) {
+                assertRecord(count++, data);
+            }
+            assertEquals(30, count);
+        }
+    }
+
+    @Test
+    public void reopen_continuesAfterLastRecord() throws IOException {
+        File dir = folder.newFolder();
+        try (SensorLog log = SensorLog.open(dir, SEGMENT_BYTES)) {
+            for (int i = 0; i < 14; i++) {
+                log.append(record(i));
+            }
+        }
+        try (SensorLog log = SensorLog.open(dir, SEGMENT_BYTES)) {
+            for (int i = 14; i < 40; i++) {
+                log.append(record(i));
+            }
+        }
+        try (SensorLog log = SensorLog.open(dir, SEGMENT_BYTES)) {
+            SensorLog.Cursor cursor = log.scan(Long.MIN_VALUE, Long.MAX_VALUE);
+            SensorData data = new SensorData();
+            int count = 0;
+            while (cursor.next(data)) {
+                assertRecord(count++, data);
+            }
+            assertEquals(40, count);
+        }
+    }
+
+    @Test
+    public void olderRecords_areRejectedAcrossReopen() throws IOException {
+        File dir = folder.newFolder();
+        try (SensorLog log = SensorLog.open(dir, SEGMENT_BYTES)) {
+            for (int i = 0; i < 15; i++) {
+                assertTrue(log.append(record(i)));
+            }
+            assertFalse(log.append(record(3)));
+            // Same timestamp as the last is fine
+            assertTrue(log.append(record(14)));
+        }
+        try (SensorLog log = SensorLog.open(dir, SEGMENT_BYTES)) {
+            assertFalse(log.append(record(13)));
+            assertTrue(log.append(record(15)));
+            assertEquals(1L, log.getOutOfOrderRecords());
+
+            SensorLog.Cursor cursor = log.scan(Long.MIN_VALUE, Long.MAX_VALUE);
+            SensorData data = new SensorData();
+            long previous = Long.MIN_VALUE;
+            int count = 0;
+            while (cursor.next(data)) {
+                assertTrue(data.getTimestamp() >= previous);
+                previous = data.getTimestamp();
+                count++;
+            }
+            assertEquals(17, count);
+        }
+    }
+
+    @Test
+    public void retention_deletesExpiredCompactedSegments() throws IOException {
+        File dir = folder.newFolder();
+        long retention = timestamp(30) - timestamp(0);
+        try (SensorLog log = SensorLog.open(dir, SEGMENT_BYTES, retention)) {
+            for (int i = 0; i < 95; i++) {
+                log.append(record(i));
+            }
+        }
+
+        // The newest compacted record is 89; segments ending before 59 are gone
+        assertEquals(4, dir.listFiles((d, name) -> name.endsWith(".blk")).length);
+        try (SensorLog log = SensorLog.open(dir, SEGMENT_BYTES, retention)) {
+            assertEquals(45, log.getRecordCount());
+            SensorLog.Cursor cursor = log.scan(Long.MIN_VALUE, Long.MAX_VALUE);
+            SensorData data = new SensorData();
+            int expected = 50;
+            while (cursor.next(data)) {
+                assertRecord(expected++, data);
+            }
+            assertEquals(95, expected);
+        }
+    }
+
+    @Test
+    public void tornTail_isDiscardedOnOpen() throws IOException {
+        File dir = folder.newFolder();
+        try (SensorLog log = SensorLog.open(dir, SEGMENT_BYTES)) {
+            for (int i = 0; i < 5; i++) {
+                log.append(record(i));
+            }
+        }
+
+        // Damage the middle of the fifth record, as a torn write would
+        File segment = new File(dir, LogSegment.fileName(0));
+        try (RandomAccessFile raf = new RandomAccessFile(segment, "rw")) {
+            raf.seek(LogSegment.HEADER_SIZE + 4 * SensorRecordFormat.RECORD_SIZE + 20);
+            raf.writeInt(0xDEADBEEF);
+        }
+
+        try (SensorLog log = SensorLog.open(dir, SEGMENT_BYTES)) {
+            assertEquals(4, log.getRecordCount());
+            log.append(record(4));
+            log.append(record(5));
+        }
+
+        try (SensorLog log = SensorLog.open(dir, SEGMENT_BYTES)) {
+            SensorLog.Cursor cursor = log.scan(Long.MIN_VALUE, Long.MAX_VALUE);
+            SensorData data = new SensorData();
+            int count = 0;
+            while (cursor.next(data)) {
+                assertRecord(count++, data);
+            }
+            assertEquals(6, count);
+        }
+    }
+
+    @Test
+    public void unfinishedNextSegment_isRecreated() throws IOException {
+        File dir = folder.newFolder();
+        try (SensorLog log = SensorLog.open(dir, SEGMENT_BYTES)) {
+            for (int i = 0; i < 10; i++) {
+                log.append(record(i));
+            }
+        }
+
+        // A crash right after the file was created, before its header was written
+        File next = new File(dir, LogSegment.fileName(1));
+        try (RandomAccessFile raf = new RandomAccessFile(next, "rw")) {
+            raf.setLength(SEGMENT_BYTES);
+        }
+
+        try (SensorLog log = SensorLog.open(dir, SEGMENT_BYTES)) {
+            assertEquals(10, log.getRecordCount());
+            assertTrue(log.append(record(10)));
+            assertEquals(11, log.getRecordCount());
+        }
+    }
+
+    @Test
+    public void scan_seeksToAnyRangeThroughTheIndex() throws IOException {
+        // Several frames per compacted segment, and timestamps that repeat
+        File dir = folder.newFolder();
+        int segmentBytes = LogSegment.HEADER_SIZE + 2500 * SensorRecordFormat.RECORD_SIZE;
+        int records = 9000;
+        try (SensorLog log = SensorLog.open(dir, segmentBytes)) {
+            for (int i = 0; i < records; i++) {
+                SensorData data = record(i);
+                data.setTimestamp(timestamp(i / 2));
+                log.append(data);
+            }
+        }
+
+        try (SensorLog log = SensorLog.open(dir, segmentBytes)) {
+            assertEquals(3 * 2500, log.getArchivedRecordCount());
+            Random random = new Random(3);
+            SensorData data = new SensorData();
+            for (int query = 0; query < 200; query++) {
+                int a = random.nextInt(records / 2 + 10) - 5;
+                int b = a + random.nextInt(400);
+                SensorLog.Cursor cursor = log.scan(timestamp(a), timestamp(b));
+
+                int expected = Math.max(a, 0) * 2;
+                int last = Math.min(b, records / 2 - 1) * 2 + 1;
+                while (cursor.next(data)) {
+                    assertEquals(expected, data.getSteps());
+                    expected++;
+                }
+                assertEquals("range " + a + ".." + b, Math.max(last + 1, Math.max(a, 0) * 2), expected);
+            }
+        }
+    }
+
+    private static long timestamp(int i) {
+        return 1_700_000_000_000L + i * 20L;
+    }
+
+    private static SensorData record(int i) {
+        SensorData data = new SensorData();
+        data.setTimestamp(timestamp(i));
+        data.setSteps(i);
+        data.setCalories(i * 0.04);
+        data.setDistance(i * 0.762);
+        data.setHeartRate(i % 3 == 0 ? Float.NaN : 70 + i);
+        data.setAccelerometerX(i * 0.1f);
+        data.setAccelerometerY(-i * 0.1f);
+        data.setAccelerometerZ(9.81f);
+        data.setActivityType(ActivityType.fromCode(i % ActivityType.count()));
+        data.setCadence(i * 1.5f);
+        return data;
+    }
+
+    private static void assertRecord(int i, SensorData actual) {
+        SensorData expected = record(i);
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertEquals(expected.getSteps(), actual.getSteps());
+        assertEquals(expected.getCalories(), actual.getCalories(), 0);
+        assertEquals(expected.getDistance(), actual.getDistance(), 0);
+        assertEquals(expected.getHeartRate(), actual.getHeartRate(), 0);
+        // Compacted segments keep these columns in fixed point
+        assertEquals(expected.getAccelerometerX(), actual.getAccelerometerX(), ACCELEROMETER_ERROR);
+        assertEquals(expected.getAccelerometerY(), actual.getAccelerometerY(), ACCELEROMETER_ERROR);
+        assertEquals(expected.getAccelerometerZ(), actual.getAccelerometerZ(), ACCELEROMETER_ERROR);
+        assertEquals(expected.getActivityType(), actual.getActivityType());
+        assertEquals(expected.getCadence(), actual.getCadence(), CADENCE_ERROR);
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.healthsensorpro.data.storage;
+
+import com.example.healthsensorpro.data.model.ActivityType;
+import com.example.healthsensorpro.data.model.SensorData;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class TieredHistoryTest {
+    // 2024-01-01 00:00 UTC
+    private static final long START = 1_704_067_200_000L;
+    private static final long SECOND = 1000L;
+    private static final long MINUTE = 60 * SECOND;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long PERIOD = 20L; // 50 Hz
+
+    @Test
+    public void dayOfSnapshots_staysWithinTheBudgetAndKeepsEverySample() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+
+        TieredHistory history = new TieredHistory(2L * 1024 * 1024);
+        long memory = history.getMemoryBytes();
+        assertTrue(memory <= history.getBudgetBytes());
+
+        SensorData data = new SensorData();
+        long samples = 24 * HOUR / PERIOD;
+        long maxUsed = 0;
+        long allocated = 0;
+        for (long i = 0; i < samples; i++) {
+            fill(data, i);
+            if (i == HOUR / PERIOD) {
+                // Past warm-up: every tier has been written
+                allocated = threads.getThreadAllocatedBytes(threadId);
+            }
+            history.add(data);
+            if (i % 10_000 == 0) {
+                maxUsed = Math.max(maxUsed, history.getUsedBytes());
+            }
+        }
+        allocated = threads.getThreadAllocatedBytes(threadId) - allocated;
+
+        assertEquals(memory, history.getMemoryBytes());
+        assertTrue(maxUsed <= memory);
+        // Only JIT noise; 4M snapshots kept as objects would be hundreds of MB
+        assertTrue("bytes allocated while adding: " + allocated, allocated < 64 * 1024);
+
+        List<HistoryPoint> points = queryAll(history);
+        assertEquals(history.getPointCount(), points.size());
+        long total = 0;
+        for (HistoryPoint point : points) {
+            total += point.getSampleCount();
+        }
+        assertEquals(samples, total);
+        assertEquals(START, points.get(0).getStartMillis());
+        HistoryPoint last = points.get(points.size() - 1);
+        assertEquals(START + (samples - 1) * PERIOD, last.getStartMillis());
+        assertEquals(0, last.getDurationMillis());
+        assertEquals(stepsAt(samples - 1), last.getSteps());
+
+        // Raw for the last minutes (the budget holds about four at 50 Hz),
+        // per second for the last hour
+        long secondFrom = last.getStartMillis() - TieredHistory.SECOND_MAX_AGE_MILLIS;
+        for (HistoryPoint point : points) {
+            if (point.getStartMillis() > last.getStartMillis() - 3 * MINUTE) {
+                assertEquals(0, point.getDurationMillis());
+            } else if (point.getStartMillis() > secondFrom
+                    && point.getStartMillis() < last.getStartMillis() - 5 * MINUTE) {
+                assertEquals(SECOND, point.getDurationMillis());
+            } else if (point.getStartMillis() < secondFrom - MINUTE) {
+                assertEquals(MINUTE, point.getDurationMillis());
+            }
+        }
+    }
+
+    @Test
+    public void fullMinuteTier_doublesItsResolutionInsteadOfDropping() {
+        // Room for about 100 points per coarse tier
+        TieredHistory history = new TieredHistory(400L * TieredHistory.POINT_SIZE);
+        SensorData data = new SensorData();
+        long samples = 24 * HOUR / SECOND;
+        for (long i = 0; i < samples; i++) {
+            fill(data, i * SECOND / PERIOD);
+            history.add(data);
+        }
+
+        // 1440 minutes in 100 points
+        assertEquals(16 * MINUTE, history.getCoarsestResolutionMillis());
+        List<HistoryPoint> points = queryAll(history);
+        long total = 0;
+        for (HistoryPoint point : points) {
+            total += point.getSampleCount();
+        }
+        assertEquals(samples, total);
+        assertEquals(START, points.get(0).getStartMillis());
+        assertEquals(16 * MINUTE, points.get(0).getDurationMillis());
+    }
+
+    @Test
+    public void coarsePoints_aggregateTheirSnapshots() {
+        TieredHistory history = new TieredHistory(1024L * 1024);
+        SensorData data = new SensorData();
+        // 1 Hz until the first minutes are past the per second tier
+        long until = TieredHistory.SECOND_MAX_AGE_MILLIS + 10 * MINUTE;
+        for (long t = 0; t < until; t += SECOND) {
+            int second = (int) (t / SECOND);
+            data.setTimestamp(START + t);
+            data.setSteps(second);
+            // 60 to 119 bpm through each minute, no reading on the hour
+            data.setHeartRate(second % 60 == 0 ? Float.NaN : 60 + second % 60);
+            data.setCadence(second % 2 == 0 ? 100f : 0f);
+            data.setAccelerometerX(0f);
+            data.setAccelerometerY(0f);
+            data.setAccelerometerZ(second % 3 == 0 ? 12f : 9f);
+            data.setActivityType(second % 3 == 0 ? ActivityType.STATIONARY : ActivityType.WALKING);
+            history.add(data);
+        }
+
+        HistoryPoint point = new HistoryPoint();
+        assertEquals(1, history.query(START + 2 * MINUTE + 30 * SECOND, START + 2 * MINUTE + 30 * SECOND,
+                point::copyFrom));
+        assertEquals(START + 2 * MINUTE, point.getStartMillis());
+        assertEquals(MINUTE, point.getDurationMillis());
+        assertEquals(60, point.getSampleCount());
+        assertEquals(179, point.getSteps());
+        assertEquals(61, point.getMinHeartRate(), 0);
+        assertEquals(119, point.getMaxHeartRate(), 0);
+        assertEquals(90, point.getAvgHeartRate(), 1e-4);
+        assertEquals(50, point.getCadence(), 1e-4);
+        assertEquals(9, point.getMinMagnitude(), 0);
+        assertEquals(12, point.getMaxMagnitude(), 0);
+        assertEquals(10, point.getAvgMagnitude(), 1e-4);
+        assertEquals(ActivityType.WALKING, point.getActivity());
+    }
+
+    @Test
+    public void query_visitsOutsideTheLock() throws Exception {
+        TieredHistory history = new TieredHistory(64 * 1024);
+        SensorData data = new SensorData();
+        for (long i = 0; i < 100; i++) {
+            fill(data, i);
+            history.add(data);
+        }
+
+        // A visitor slow enough to wait for the sensor thread must not block it
+        TieredHistory.QueryBuffer buffer = new TieredHistory.QueryBuffer();
+        int[] visited = {0};
+        int count = history.query(Long.MIN_VALUE, Long.MAX_VALUE, buffer, point -> {
+            if (visited[0]++ == 0) {
+                Thread sensor = new Thread(() -> {
+                    SensorData next = new SensorData();
+                    fill(next, 100);
+                    history.add(next);
+                });
+                sensor.start();
+                try {
+                    sensor.join(10_000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                assertFalse(sensor.isAlive());
+            }
+        });
+        assertEquals(100, count);
+        assertEquals(100, visited[0]);
+
+        // The buffer is reused, and the new snapshot is there now
+        assertEquals(101, history.copy(Long.MIN_VALUE, Long.MAX_VALUE, buffer));
+        assertEquals(START + 100 * PERIOD, buffer.get(100).getStartMillis());
+    }
+
+    private static void fill(SensorData data, long i) {
+        double t = i * PERIOD / 1000.0;
+        boolean walking = (i * PERIOD / MINUTE) % 30 < 10;
+        data.setTimestamp(START + i * PERIOD);
+        data.setSteps(stepsAt(i));
+        data.setHeartRate(walking ? 110 : 70);
+        data.setAccelerometerX(0.1f);
+        data.setAccelerometerY(0.2f);
+        data.setAccelerometerZ((float) (9.81 + (walking ? 3 * Math.sin(2 * Math.PI * 1.8 * t) : 0)));
+        data.setCadence(walking ? 108f : 0f);
+        data.setActivityType(walking ? ActivityType.WALKING : ActivityType.STATIONARY);
+    }
+
+    private static int stepsAt(long i) {
+        return (int) (i / 30);
+    }
+
+    private static List<HistoryPoint> queryAll(TieredHistory history) {
+        List<HistoryPoint> points = new ArrayList<>();
+        history.query(Long.MIN_VALUE, Long.MAX_VALUE, point -> {
+            HistoryPoint copy = new HistoryPoint();
+            copy.copyFrom(point);
+            points.add(copy);
+        });
+        return points;
+    }
+}
@@ -0,0 +1,31 @@
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+// The processing code is plain Java, so it is compiled straight from the app
+// sources and benchmarked on the JVM without an Android device.
+sourceSets {
+    main {
+        java {
+            srcDir("../app/src/main/java")
+            include(
+                "com/example/healthsensorpro/data/model/**",
+                "com/example/healthsensorpro/data/processing/**",
+                "com/example/healthsensorpro/data/source/**",
+                "com/example/healthsensorpro/data/storage/**"
+            )
+        }
+    }
+}
+
+jmh {
+    jmhVersion = libs.versions.jmh
+    // Bytes allocated per operation next to the timings
+    profilers = listOf("gc")
+}
@@ -0,0 +1,82 @@
+package com.example.healthsensorpro.benchmark;
+
+import com.example.healthsensorpro.data.processing.AccelerometerBatch;
+import com.example.healthsensorpro.data.processing.SensorPipeline;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Per-event delivery vs. FIFO bursts of BURST samples, reported per sample
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AccelerometerBatchBenchmark {
+    private static final int SAMPLES = 4096;
+    private static final long PERIOD_NANOS = 20_000_000L; // 50 Hz
+
+    @Param({"64"})
+    public int burst;
+
+    private long[] timestamps;
+    private float[] xs;
+    private float[] ys;
+    private float[] zs;
+    private SensorPipeline pipeline;
+    private AccelerometerBatch batch;
+
+    @Setup
+    public void setUp() {
+        timestamps = new long[SAMPLES];
+        xs = new float[SAMPLES];
+        ys = new float[SAMPLES];
+        zs = new float[SAMPLES];
+        // Walking-like signal: gravity on z plus a ~2 Hz bounce
+        for (int i = 0; i < SAMPLES; i++) {
+            double t = i * PERIOD_NANOS / 1e9;
+            timestamps[i] = i * PERIOD_NANOS;
+            xs[i] = (float) (0.8 * Math.sin(2 * Math.PI * 1.0 * t));
+            ys[i] = (float) (0.5 * Math.cos(2 * Math.PI * 1.0 * t));
+            zs[i] = (float) (9.81 + 2.5 * Math.sin(2 * Math.PI * 2.0 * t));
+        }
+        pipeline = new SensorPipeline(true);
+        batch = new AccelerometerBatch(burst);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public Object perEvent() {
+        for (int i = 0; i < SAMPLES; i++) {
+            pipeline.onAccelerometer(timestamps[i], xs[i], ys[i], zs[i]);
+        }
+        return pipeline.acquireSnapshot();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public Object batched() {
+        for (int i = 0; i < SAMPLES; i++) {
+            batch.add(timestamps[i], xs[i], ys[i], zs[i]);
+            if (batch.isFull()) {
+                pipeline.onAccelerometerBatch(batch);
+                batch.clear();
+            }
+        }
+        pipeline.onAccelerometerBatch(batch);
+        batch.clear();
+        return pipeline.acquireSnapshot();
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.healthsensorpro.benchmark;
+
+import com.example.healthsensorpro.data.source.SensorTypes;
+import com.example.healthsensorpro.data.source.TraceReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+// A fixed number of accelerometer samples in arrays: a synthetic walk, or the
+// accelerometer events of a trace recorded on a device (see TraceWriter),
+// repeated if the trace is shorter. Benchmarks take a "trace" parameter;
+// empty means synthetic, e.g. -p trace=/path/to/walk.trace for a field trace.
+final class AccelerometerStream {
+    final long[] timestamps;
+    final float[] xs;
+    final float[] ys;
+    final float[] zs;
+    // Time covered by the whole stream, for shifting it forward on every pass
+    final long spanNanos;
+
+    private AccelerometerStream(int samples, long spanNanos) {
+        timestamps = new long[samples];
+        xs = new float[samples];
+        ys = new float[samples];
+        zs = new float[samples];
+        this.spanNanos = spanNanos;
+    }
+
+    static AccelerometerStream load(String trace, int samples, int rateHz) throws IOException {
+        return trace.isEmpty() ? walking(samples, rateHz, 1L) : recorded(new File(trace), samples);
+    }
+
+    // Gravity on y plus a 1.8 Hz bounce and sensor noise
+    static AccelerometerStream walking(int samples, int rateHz, long seed) {
+        long period = 1_000_000_000L / rateHz;
+        AccelerometerStream stream = new AccelerometerStream(samples, samples * period);
+        Random random = new Random(seed);
+        for (int i = 0; i < samples; i++) {
+            double t = (double) i / rateHz;
+            double bounce = 2.0 * Math.sin(2 * Math.PI * 1.8 * t);
+            stream.timestamps[i] = i * period;
+            stream.xs[i] = (float) (0.2 * bounce + 0.15 * random.nextGaussian());
+            stream.ys[i] = (float) (9.81 + bounce + 0.15 * random.nextGaussian());
+            stream.zs[i] = (float) (1.0 + 0.15 * random.nextGaussian());
+        }
+        return stream;
+    }
+
+    static AccelerometerStream recorded(File trace, int samples) throws IOException {
+        long[] timestamps = new long[samples];
+        float[][] values = new float[3][samples];
+        int count = 0;
+        try (TraceReader reader = new TraceReader(trace)) {
+            while (count < samples && reader.next()) {
+                if (reader.sensorType() == SensorTypes.ACCELEROMETER) {
+                    float[] v = reader.values();
+                    timestamps[count] = reader.timestampNanos();
+                    values[0][count] = v[0];
+                    values[1][count] = v[1];
+                    values[2][count] = v[2];
+                    count++;
+                }
+            }
+        }
+        if (count < 2) {
+            throw new IOException("Not enough accelerometer samples in " + trace);
+        }
+
+        // Repeat the recording back to back, one average period apart
+        long first = timestamps[0];
+        long period = (timestamps[count - 1] - first) / (count - 1);
+        long loop = timestamps[count - 1] - first + period;
+        int recorded = count;
+        AccelerometerStream stream = new AccelerometerStream(samples, (samples / recorded) * loop
+                + (samples % recorded == 0 ? 0 : timestamps[samples % recorded] - first));
+        for (int i = 0; i < samples; i++) {
+            int source = i % recorded;
+            stream.timestamps[i] = timestamps[source] - first + (i / recorded) * loop;
+            stream.xs[i] = values[0][source];
+            stream.ys[i] = values[1][source];
+            stream.zs[i] = values[2][source];
+        }
+        return stream;
+    }
+
+    int size() {
+        return timestamps.length;
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.healthsensorpro.benchmark;
+
+import com.example.healthsensorpro.data.model.ActivityType;
+import com.example.healthsensorpro.data.model.SensorData;
+import com.example.healthsensorpro.data.storage.SensorLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Range queries over a month of 50 Hz history: time to the first row of a
+// random hour, and to stream a whole minute. Building the log takes a while
+// (~130M records for 31 days); use -p days=1 for a quick run.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HistoryQueryBenchmark {
+    private static final int RATE_HZ = 50;
+    private static final long PERIOD_MILLIS = 1000 / RATE_HZ;
+    private static final long START = 1_704_067_200_000L;
+    private static final long MINUTE = 60_000L;
+    private static final long HOUR = 60 * MINUTE;
+    private static final int QUERIES = 1024;
+
+    @Param({"31"})
+    public int days;
+
+    private File directory;
+    private SensorLog log;
+    private long[] queryStarts;
+    private int nextQuery;
+    private final SensorData data = new SensorData();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        directory = Files.createTempDirectory("history-benchmark").toFile();
+        long records = days * 24L * 3600 * RATE_HZ;
+        try (SensorLog writer = SensorLog.open(directory)) {
+            SensorData record = new SensorData();
+            Random random = new Random(1);
+            int steps = 0;
+            for (long i = 0; i < records; i++) {
+                double t = (double) i / RATE_HZ;
+                if (i % 27 == 0) {
+                    steps++;
+                }
+                record.setTimestamp(START + i * PERIOD_MILLIS);
+                record.setSteps(steps);
+                record.setCalories(steps * 0.048);
+                record.setDistance(steps * 0.762);
+                record.setHeartRate(95 + (int) (i / RATE_HZ) % 7);
+                record.setAccelerometerX((float) (0.2 * random.nextGaussian()));
+                record.setAccelerometerY((float) (0.2 * random.nextGaussian()));
+                record.setAccelerometerZ((float) (9.81 + 2 * Math.sin(2 * Math.PI * 1.8 * t)));
+                record.setCadence(108f);
+                record.setActivityType(ActivityType.WALKING);
+                writer.append(record);
+
+                // Let compaction keep up instead of queueing raw segments
+                if (i % 65_536 == 0) {
+                    while (writer.getRecordCount() - writer.getArchivedRecordCount() > 300_000) {
+                        Thread.sleep(1);
+                    }
+                }
+            }
+        }
+        log = SensorLog.open(directory);
+
+        queryStarts = new long[QUERIES];
+        Random random = new Random(2);
+        long span = records * PERIOD_MILLIS - HOUR;
+        for (int i = 0; i < QUERIES; i++) {
+            queryStarts[i] = START + (long) (random.nextDouble() * span);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        log.close();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private long nextStart() {
+        long start = queryStarts[nextQuery];
+        nextQuery = (nextQuery + 1) % QUERIES;
+        return start;
+    }
+
+    @Benchmark
+    public long firstRowOfRandomHour() throws IOException {
+        long from = nextStart();
+        SensorLog.Cursor cursor = log.scan(from, from + HOUR);
+        return cursor.next(data) ? data.getTimestamp() : -1L;
+    }
+
+    @Benchmark
+    public int streamRandomMinute() throws IOException {
+        long from = nextStart();
+        SensorLog.Cursor cursor = log.scan(from, from + MINUTE);
+        int rows = 0;
+        while (cursor.next(data)) {
+            rows++;
+        }
+        return rows;
+    }
+}
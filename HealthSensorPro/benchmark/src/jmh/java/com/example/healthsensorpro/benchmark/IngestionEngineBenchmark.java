@@ -0,0 +1,88 @@
+package com.example.healthsensorpro.benchmark;
+
+import com.example.healthsensorpro.data.source.IngestionEngine;
+import com.example.healthsensorpro.data.source.SampleChunk;
+import com.example.healthsensorpro.data.source.SensorTypes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Load generator for the headless engine: many device streams uploading
+// 50 Hz accelerometer data in chunks, processed by the worker pool. Each
+// invocation sends one chunk per stream and waits until all are processed;
+// the score is samples per second end to end, chunk building included.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IngestionEngineBenchmark {
+    private static final int CHUNK = 250;
+    private static final int STREAMS = 2000;
+
+    // Recorded trace to replay on every stream; empty for a synthetic walk
+    @Param({""})
+    public String trace;
+
+    // 0 for one per core
+    @Param({"0"})
+    public int workers;
+
+    private AccelerometerStream stream;
+    private IngestionEngine engine;
+    private int position = 0;
+    private long offsetNanos = 0L;
+
+    @Setup
+    public void setUp() throws IOException {
+        stream = AccelerometerStream.load(trace, 8192, 50);
+        int count = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        engine = new IngestionEngine(count, null);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STREAMS * CHUNK)
+    public long ingest() throws InterruptedException {
+        int from = position;
+        int samples = stream.size();
+        for (int id = 0; id < STREAMS; id++) {
+            SampleChunk chunk = new SampleChunk(id, CHUNK);
+            // Streams start at different points of the recording
+            int index = (from + id * 37) % samples;
+            long base = offsetNanos - stream.timestamps[index];
+            for (int i = 0; i < CHUNK; i++) {
+                if (index == samples) {
+                    index = 0;
+                    base += stream.spanNanos;
+                }
+                chunk.add(SensorTypes.ACCELEROMETER, stream.timestamps[index] + base,
+                        stream.xs[index], stream.ys[index], stream.zs[index]);
+                index++;
+            }
+            engine.submit(chunk);
+        }
+        position = (from + CHUNK) % samples;
+        offsetNanos += CHUNK * 20_000_000L;
+        engine.flush();
+        return engine.getProcessedSamples();
+    }
+
+    @TearDown
+    public void tearDown() {
+        engine.close();
+    }
+}
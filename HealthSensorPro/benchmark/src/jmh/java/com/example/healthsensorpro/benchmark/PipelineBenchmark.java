@@ -0,0 +1,107 @@
+package com.example.healthsensorpro.benchmark;
+
+import com.example.healthsensorpro.data.model.ActivityType;
+import com.example.healthsensorpro.data.model.HealthMetrics;
+import com.example.healthsensorpro.data.model.SensorData;
+import com.example.healthsensorpro.data.processing.LatencyTracker;
+import com.example.healthsensorpro.data.processing.SensorPipeline;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// What the repository does per accelerometer event (the whole pipeline and
+// its snapshot publish), and the reads the UI makes per frame. Run with
+// -prof gc (on by default from Gradle) for the allocation per sample.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PipelineBenchmark {
+    private static final int SAMPLES = 8192;
+
+    // Recorded trace to replay; empty for a synthetic walk
+    @Param({""})
+    public String trace;
+
+    @Param({"50", "200"})
+    public int rateHz;
+
+    private AccelerometerStream stream;
+    private SensorPipeline pipeline;
+    // Same pipeline with latency tracking on
+    private SensorPipeline trackedPipeline;
+    private long offsetNanos;
+    private final HealthMetrics metrics = new HealthMetrics();
+    private final SensorData data = new SensorData();
+
+    @Setup
+    public void setUp() throws IOException {
+        stream = AccelerometerStream.load(trace, SAMPLES, rateHz);
+        pipeline = new SensorPipeline(true);
+        trackedPipeline = new SensorPipeline(true);
+        trackedPipeline.setLatencyTracker(new LatencyTracker(System::nanoTime));
+        // Warm state for the readers: windows full, an activity detected, a
+        // heart rate reading
+        onAccelerometer();
+        pipeline.onHeartRate(stream.timestamps[SAMPLES - 1], 80f);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public ActivityType onAccelerometer() {
+        return feed(pipeline);
+    }
+
+    // The difference to onAccelerometer is the cost of latency tracking
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public ActivityType onAccelerometerTracked() {
+        return feed(trackedPipeline);
+    }
+
+    private ActivityType feed(SensorPipeline target) {
+        long offset = offsetNanos;
+        offsetNanos += stream.spanNanos;
+        long[] timestamps = stream.timestamps;
+        float[] xs = stream.xs;
+        float[] ys = stream.ys;
+        float[] zs = stream.zs;
+        for (int i = 0; i < SAMPLES; i++) {
+            target.onAccelerometer(timestamps[i] + offset, xs[i], ys[i], zs[i]);
+        }
+        return target.getCurrentActivity();
+    }
+
+    @Benchmark
+    public ActivityType getCurrentActivity() {
+        return pipeline.getCurrentActivity();
+    }
+
+    // SensorRepository.getHealthMetrics(HealthMetrics)
+    @Benchmark
+    public HealthMetrics getHealthMetrics() {
+        pipeline.readHealthMetrics(metrics);
+        return metrics;
+    }
+
+    // SensorRepository.getSensorData(SensorData)
+    @Benchmark
+    public SensorData getSensorData() {
+        data.copyFrom(pipeline.acquireSnapshot());
+        return data;
+    }
+}
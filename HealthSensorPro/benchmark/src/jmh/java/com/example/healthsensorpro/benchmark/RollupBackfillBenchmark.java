@@ -0,0 +1,118 @@
+package com.example.healthsensorpro.benchmark;
+
+import com.example.healthsensorpro.data.model.ActivityType;
+import com.example.healthsensorpro.data.model.SensorData;
+import com.example.healthsensorpro.data.processing.ActivityStage;
+import com.example.healthsensorpro.data.storage.RollupBackfill;
+import com.example.healthsensorpro.data.storage.SensorLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+// Time to re-classify and roll up a week of 5 Hz history with the default
+// ActivityStage, per pool size. Compare the parallelism rows to see how the
+// backfill scales on this machine; it cannot go past the core count.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RollupBackfillBenchmark {
+    private static final int RATE_HZ = 5;
+    private static final long PERIOD_MILLIS = 1000 / RATE_HZ;
+    private static final long START = 1_704_067_200_000L;
+
+    @Param({"7"})
+    public int days;
+
+    // Pool size; 0 for one thread per core
+    @Param({"1", "2", "4", "0"})
+    public int parallelism;
+
+    private File directory;
+    private File target;
+    private SensorLog log;
+    private ForkJoinPool pool;
+    private long untilMillis;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        directory = Files.createTempDirectory("backfill-benchmark").toFile();
+        target = new File(directory, "rollups.backfill");
+        long records = days * 24L * 3600 * RATE_HZ;
+        File logDirectory = new File(directory, "log");
+        try (SensorLog writer = SensorLog.open(logDirectory)) {
+            SensorData record = new SensorData();
+            Random random = new Random(1);
+            int steps = 0;
+            for (long i = 0; i < records; i++) {
+                double t = (double) i / RATE_HZ;
+                // Walking for ten minutes of every half hour
+                boolean walking = (i / RATE_HZ) % 1800 < 600;
+                if (walking && i % 3 == 0) {
+                    steps++;
+                }
+                record.setTimestamp(START + i * PERIOD_MILLIS);
+                record.setSteps(steps);
+                record.setCalories(steps * 0.04);
+                record.setDistance(steps * 0.762);
+                record.setHeartRate(walking ? 110 : 70);
+                record.setAccelerometerX((float) (0.2 * random.nextGaussian()));
+                record.setAccelerometerY((float) (0.2 * random.nextGaussian()));
+                record.setAccelerometerZ((float) (9.81 + (walking ? 3 * Math.sin(2 * Math.PI * 1.8 * t) : 0)));
+                record.setCadence(walking ? 108f : 0f);
+                record.setActivityType(walking ? ActivityType.WALKING : ActivityType.STATIONARY);
+                writer.append(record);
+
+                if (i % 65_536 == 0) {
+                    while (writer.getRecordCount() - writer.getArchivedRecordCount() > 300_000) {
+                        Thread.sleep(1);
+                    }
+                }
+            }
+        }
+        log = SensorLog.open(logDirectory);
+        untilMillis = START + records * PERIOD_MILLIS;
+        pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+        log.close();
+        deleteRecursively(directory);
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    @Benchmark
+    public long backfill() throws IOException {
+        return new RollupBackfill(log, 0L, ActivityStage::new).run(pool, target, untilMillis);
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.healthsensorpro.benchmark;
+
+import com.example.healthsensorpro.data.source.SampleRing;
+import com.example.healthsensorpro.data.source.SensorSource;
+import com.example.healthsensorpro.data.source.SensorTypes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.infra.Control;
+
+import java.util.concurrent.TimeUnit;
+
+// Samples per second through a SampleRing. handOff runs a producer and a
+// consumer thread as the callback and sensor threads would; the producer's
+// score is the rate (the consumer's only counts drain calls), and needs two
+// free cores to mean anything. roundTrip offers and drains a burst on one
+// thread, the cost of the ring itself without cache line transfers.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class SampleRingBenchmark {
+    private static final int BURST = 64;
+
+    @Param({"4096"})
+    public int capacity;
+
+    private SampleRing ring;
+    private final float[] values = new float[3];
+
+    @Setup
+    public void setUp() {
+        ring = new SampleRing(capacity, 3);
+    }
+
+    @Benchmark
+    @Group("handOff")
+    @GroupThreads(1)
+    @OperationsPerInvocation(BURST)
+    public void produce(Control control) {
+        for (int i = 0; i < BURST; i++) {
+            values[0] = i;
+            while (!ring.offer(SensorTypes.ACCELEROMETER, i, values)) {
+                if (control.stopMeasurement) {
+                    return;
+                }
+                Thread.yield();
+            }
+        }
+    }
+
+    @Benchmark
+    @Group("handOff")
+    @GroupThreads(1)
+    public int consume(Consumer consumer) {
+        int drained = ring.drain(consumer);
+        if (drained == 0) {
+            Thread.yield();
+        }
+        return drained;
+    }
+
+    @Benchmark
+    @Group("roundTrip")
+    @OperationsPerInvocation(BURST)
+    public int roundTrip(Consumer consumer) {
+        for (int i = 0; i < BURST; i++) {
+            values[0] = i;
+            ring.offer(SensorTypes.ACCELEROMETER, i, values);
+        }
+        return ring.drain(consumer);
+    }
+
+    @State(Scope.Thread)
+    public static class Consumer implements SensorSource.Listener {
+        private Blackhole blackhole;
+
+        @Setup
+        public void setUp(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void onSample(int sensorType, long timestampNanos, float[] values) {
+            blackhole.consume(timestampNanos);
+            blackhole.consume(values[0]);
+        }
+
+        @Override
+        public void onFlushCompleted(int sensorType) {
+        }
+    }
+}
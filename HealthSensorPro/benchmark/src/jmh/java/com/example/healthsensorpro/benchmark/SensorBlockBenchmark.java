@@ -0,0 +1,90 @@
+package com.example.healthsensorpro.benchmark;
+
+import com.example.healthsensorpro.data.model.ActivityType;
+import com.example.healthsensorpro.data.model.SensorData;
+import com.example.healthsensorpro.data.storage.SensorBlock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Per-record encode and decode cost of the columnar block format, on a
+// 50 Hz walking stream
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SensorBlockBenchmark {
+    private static final int RECORDS = 1024;
+
+    private SensorData[] records;
+    private SensorBlock block;
+    private SensorBlock decoded;
+    private ByteBuffer encoded;
+
+    @Setup
+    public void setUp() {
+        records = new SensorData[RECORDS];
+        Random random = new Random(1);
+        long timestamp = 1_700_000_000_000L;
+        int steps = 0;
+        for (int i = 0; i < RECORDS; i++) {
+            double t = i / 50.0;
+            timestamp += 20 + random.nextInt(3) - 1;
+            if (i % 27 == 0) {
+                steps++;
+            }
+            SensorData data = new SensorData();
+            data.setTimestamp(timestamp);
+            data.setSteps(steps);
+            data.setCalories(steps * 0.048);
+            data.setDistance(steps * 0.762);
+            data.setHeartRate(95 + (i / 50) % 7);
+            data.setAccelerometerX((float) (0.5 * Math.sin(2 * Math.PI * 0.9 * t) + 0.2 * random.nextGaussian()));
+            data.setAccelerometerY((float) (0.2 * random.nextGaussian()));
+            data.setAccelerometerZ((float) (9.81 + 2 * Math.sin(2 * Math.PI * 1.8 * t) + 0.2 * random.nextGaussian()));
+            data.setCadence((float) (108 + Math.sin(t / 4)));
+            data.setActivityType(ActivityType.WALKING);
+            records[i] = data;
+        }
+
+        block = new SensorBlock(RECORDS);
+        decoded = new SensorBlock(RECORDS);
+        for (SensorData record : records) {
+            block.add(record);
+        }
+        int length = block.encode();
+        encoded = ByteBuffer.allocate(length);
+        encoded.put(block.encodedBytes(), 0, length);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public int encode() {
+        block.clear();
+        for (SensorData record : records) {
+            block.add(record);
+        }
+        return block.encode();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public int decode() {
+        decoded.decode(encoded, 0);
+        return decoded.size();
+    }
+}
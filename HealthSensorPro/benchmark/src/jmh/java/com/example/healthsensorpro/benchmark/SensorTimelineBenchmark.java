@@ -0,0 +1,163 @@
+package com.example.healthsensorpro.benchmark;
+
+import com.example.healthsensorpro.data.processing.SensorTimeline;
+import com.example.healthsensorpro.data.source.ReplaySource;
+import com.example.healthsensorpro.data.source.SensorSource;
+import com.example.healthsensorpro.data.source.SensorTypes;
+import com.example.healthsensorpro.data.source.TraceWriter;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Replays a multi-sensor trace at full speed into a SensorTimeline: 100 Hz
+// accelerometer, 200 Hz gyroscope and 1 Hz heart rate for ten minutes,
+// either interleaved or delivered as FIFO bursts of each sensor in turn.
+// The score is replays per second, trace decoding included; the samples
+// counter next to it is the same in samples per second.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SensorTimelineBenchmark {
+    private static final long SECONDS = 600;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final long ACCELEROMETER_PERIOD = NANOS_PER_SECOND / 100;
+    private static final long GYROSCOPE_PERIOD = NANOS_PER_SECOND / 200;
+
+    // Recorded trace to replay; empty for a synthetic one
+    @Param({""})
+    public String trace;
+
+    // Samples per sensor burst in the synthetic trace; 0 for interleaved
+    @Param({"0", "128"})
+    public int burst;
+
+    private File file;
+    private boolean temporary;
+    private ReplaySource source;
+    private SensorTimeline timeline;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        temporary = trace.isEmpty();
+        file = temporary ? writeSynthetic() : new File(trace);
+        source = new ReplaySource(file, ReplaySource.Speed.MAX_SPEED);
+
+        // Frames wait for the gyroscope burst that follows theirs
+        int capacity = Math.max(256, 2 * burst);
+        long maxWait = Math.max(NANOS_PER_SECOND, 2 * burst * ACCELEROMETER_PERIOD);
+        timeline = new SensorTimeline(SensorTypes.ACCELEROMETER, 3, capacity, maxWait);
+        timeline.addStream(SensorTypes.GYROSCOPE, 3, SensorTimeline.Alignment.INTERPOLATE);
+        timeline.addStream(SensorTypes.HEART_RATE, 1, SensorTimeline.Alignment.HOLD);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (temporary) {
+            file.delete();
+        }
+    }
+
+    @Benchmark
+    public long replay(Counters counters, Blackhole blackhole) throws IOException {
+        timeline.reset();
+        timeline.setFrameListener(blackhole::consume);
+        long delivered = source.replay(new SensorSource.Listener() {
+            @Override
+            public void onSample(int sensorType, long timestampNanos, float[] values) {
+                timeline.onSample(sensorType, timestampNanos, values);
+            }
+
+            @Override
+            public void onFlushCompleted(int sensorType) {
+            }
+        });
+        timeline.flush();
+        counters.samples += delivered;
+        return delivered + timeline.getFrameCount();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long samples;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            samples = 0;
+        }
+    }
+
+    private File writeSynthetic() throws IOException {
+        File out = File.createTempFile("timeline-benchmark", ".trace");
+        Random random = new Random(5);
+        float[] xyz = new float[3];
+        float[] heartRate = new float[1];
+        long end = SECONDS * NANOS_PER_SECOND;
+        // Bursts cover the same time span for both sensors
+        long span = burst > 0 ? burst * ACCELEROMETER_PERIOD : ACCELEROMETER_PERIOD;
+        // Room for the whole trace (about 300 samples of 18 bytes a second), so
+        // nothing is dropped while the file catches up
+        int buffers = (int) (SECONDS * 300 * 18 / TraceWriter.BUFFER_SIZE) + 2;
+        try (TraceWriter writer = new TraceWriter(out, new TimelineSource(), buffers)) {
+            for (long from = 0; from < end; from += span) {
+                for (long t = from; t < from + span; t += ACCELEROMETER_PERIOD) {
+                    double seconds = (double) t / NANOS_PER_SECOND;
+                    xyz[0] = (float) (0.3 * random.nextGaussian());
+                    xyz[1] = (float) (0.3 * random.nextGaussian());
+                    xyz[2] = (float) (9.81 + 2.5 * Math.sin(2 * Math.PI * 1.8 * seconds));
+                    writer.write(SensorTypes.ACCELEROMETER, t, xyz);
+                }
+                for (long t = from; t < from + span; t += GYROSCOPE_PERIOD) {
+                    double seconds = (double) t / NANOS_PER_SECOND;
+                    xyz[0] = (float) (0.5 * Math.sin(2 * Math.PI * 0.9 * seconds));
+                    xyz[1] = (float) (0.05 * random.nextGaussian());
+                    xyz[2] = (float) (0.05 * random.nextGaussian());
+                    writer.write(SensorTypes.GYROSCOPE, t, xyz);
+                }
+                // Once a second, or once a burst if those are longer
+                if (from % NANOS_PER_SECOND < span) {
+                    heartRate[0] = 100 + random.nextInt(10);
+                    writer.write(SensorTypes.HEART_RATE, from, heartRate);
+                }
+            }
+            if (writer.getDroppedEvents() > 0) {
+                throw new IllegalStateException("Dropped " + writer.getDroppedEvents() + " events");
+            }
+        }
+        return out;
+    }
+
+    private static final class TimelineSource implements SensorSource {
+        @Override
+        public boolean hasSensor(int sensorType) {
+            return sensorType == SensorTypes.ACCELEROMETER || sensorType == SensorTypes.GYROSCOPE
+                    || sensorType == SensorTypes.HEART_RATE;
+        }
+
+        @Override public int getFifoMaxEventCount(int sensorType) { return 0; }
+        @Override public void start(Listener listener) { }
+        @Override public void setSamplingRate(int sensorType, int samplingPeriodUs, int maxReportLatencyUs) { }
+        @Override public void flush() { }
+        @Override public void stop() { }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.healthsensorpro.benchmark;
+
+import com.example.healthsensorpro.data.processing.StepDetector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Per-sample cost of the step detector at different sampling rates
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StepDetectorBenchmark {
+    private static final int SAMPLES = 8192;
+
+    // Recorded trace to replay; empty for a synthetic walk
+    @Param({""})
+    public String trace;
+
+    @Param({"50", "200"})
+    public int rateHz;
+
+    private AccelerometerStream stream;
+    private StepDetector detector;
+    private long offsetNanos;
+
+    @Setup
+    public void setUp() throws IOException {
+        stream = AccelerometerStream.load(trace, SAMPLES, rateHz);
+        detector = new StepDetector();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public long perSample() {
+        // Keep time moving forward across invocations
+        long offset = offsetNanos;
+        offsetNanos += stream.spanNanos;
+        for (int i = 0; i < SAMPLES; i++) {
+            detector.onSample(stream.timestamps[i] + offset, stream.xs[i], stream.ys[i], stream.zs[i]);
+        }
+        return detector.getStepCount();
+    }
+}